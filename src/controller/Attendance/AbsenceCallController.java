@@ -1,6 +1,7 @@
 
 package src.controller.Attendance;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import src.model.ClassSession;
@@ -296,8 +297,13 @@ public class AbsenceCallController {
 
             view.showInfo("Đã lưu thành công " + successCount + " bản ghi điểm danh.");
             setDataChanged(false);
-            // Refresh data from DB to ensure src.view is consistent
-            loadAbsenceRecordsForSession(currentSession); // Reload the current session's data
+            // Bản ghi có thể vẫn nằm trong hàng đợi write-behind: bảng đang hiển thị đúng những gì vừa lưu,
+            // chỉ tải lại từ DB khi đã ghi xong (nếu người dùng vẫn ở buổi học đó và chưa sửa thêm)
+            attendanceController.whenSaved().thenAccept(written -> Platform.runLater(() -> {
+                if (written && !dataChanged && currentSession == view.getSelectedSession()) {
+                    loadAbsenceRecordsForSession(currentSession);
+                }
+            }));
 
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error saving attendance data.", e);
@@ -5,19 +5,22 @@ import src.model.attendance.Attendance;
 import src.model.ClassSession;
 import src.model.person.Student;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.UUID; // <<<< IMPORT ADDED HERE
 
 // Import the DaoManager
 import src.utils.DaoManager;
+import src.utils.IdGenerators;
 // Import the specific DAO classes
 import src.dao.Attendance.AttendanceDAO;
+import src.dao.Attendance.AttendanceWriteBehindQueue;
 import src.dao.ClassSession.ClassSessionDAO;
 import src.dao.Person.StudentDAO;
 
@@ -290,10 +293,12 @@ public class AttendanceController {
      * for the given student and session using `attendanceDAO.findByStudentAndSession`.
      * If it exists, the existing record is updated.
      * If it does not exist, a new record is created with a generated UUID as its `attendance_id`.
+     * With the write-behind queue the records are only journaled here; {@link #whenSaved()} tells when they
+     * reach the database.
      *
      * @param recordsToUpsert List of Attendance records (potentially from UI, may or may not have an ID)
      *                       to be inserted or updated. Each record must have studentId and sessionId.
-     * @return The total number of records successfully inserted or updated.
+     * @return The total number of records successfully inserted or updated (or queued).
      * @throws SQLException if a database error occurs.
      */
     public int batchUpsertAttendance(List<Attendance> recordsToUpsert) throws SQLException {
@@ -302,6 +307,28 @@ public class AttendanceController {
             return 0;
         }
 
+        // Khi có hàng đợi write-behind: ghi journal cục bộ rồi upsert theo (student_id, session_id) ở nền,
+        // nên việc lưu vẫn thành công khi DB tạm thời không kết nối được.
+        AttendanceWriteBehindQueue queue = DaoManager.getInstance().getAttendanceWriteBehindQueue();
+        if (queue != null) {
+            List<Attendance> validRecords = new ArrayList<>();
+            for (Attendance uiRecord : recordsToUpsert) {
+                if (uiRecord.getStudentId() == null || uiRecord.getStudentId().trim().isEmpty() ||
+                        uiRecord.getSessionId() == null || uiRecord.getSessionId().trim().isEmpty()) {
+                    LOGGER.log(Level.WARNING, "Skipping record in batchUpsertAttendance due to missing studentId or sessionId.");
+                    continue;
+                }
+                validRecords.add(uiRecord);
+            }
+            try {
+                int queued = queue.submitAttendance(validRecords);
+                LOGGER.log(Level.INFO, "Queued {0} attendance records for write-behind.", queued);
+                return queued;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not journal attendance records, writing directly to the database.", e);
+            }
+        }
+
         List<Attendance> recordsToInsert = new ArrayList<>();
         List<Attendance> recordsToUpdate = new ArrayList<>();
 
@@ -335,9 +362,9 @@ public class AttendanceController {
 
             } else {
                 // Record DOES NOT EXIST - this is an INSERT
-                // Generate a new attendance_id (UUID) for this new record because attendance_id is VARCHAR(50)
+                // Generate a new time-ordered attendance_id for this new record because attendance_id is VARCHAR(50)
                 // and must be application-generated.
-                String newId = UUID.randomUUID().toString();
+                String newId = IdGenerators.nextId();
                 uiRecord.setId(newId); // Set the generated ID on the uiRecord
 
                 // uiRecord already contains all the data from the UI (status, notes, etc.)
@@ -363,6 +390,18 @@ public class AttendanceController {
     }
 
 
+    /**
+     * Waits for the saves handed to the write-behind queue so far (see {@link #batchUpsertAttendance(List)}).
+     * A view should only reload from the database once this completes with true; until then it keeps showing
+     * what the user saved, since the database does not have it yet.
+     *
+     * @return Completes with true when the saves are in the database, false if they are still queued
+     */
+    public CompletableFuture<Boolean> whenSaved() {
+        AttendanceWriteBehindQueue queue = DaoManager.getInstance().getAttendanceWriteBehindQueue();
+        return queue != null ? queue.flushAsync() : CompletableFuture.completedFuture(true);
+    }
+
     /**
      * Get attendance statistics for a student
      *
@@ -376,6 +415,17 @@ public class AttendanceController {
         return attendanceDAO.getStudentStats(studentId, startDate, endDate);
     }
 
+    /**
+     * Get a student's attendance statistics per course (e.g. for summaries sent to parents).
+     * Reads the per-month attendance counters, so the cost does not grow with the attendance history.
+     *
+     * @param studentId Student ID
+     * @return Map of course ID to attendance statistics
+     */
+    public Map<String, AttendanceDAO.AttendanceStats> getStudentCourseAttendanceSummaries(String studentId) {
+        return DaoManager.getInstance().getAttendanceCounterDAO().getStudentCourseSummaries(studentId);
+    }
+
     /**
      * Filters the provided list of class sessions by day of week
      *
@@ -5,12 +5,15 @@ import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 
 import src.dao.ClassSession.ClassSessionDAO;
+import src.dao.Attendance.AttendanceDAO;
+import src.dao.Attendance.AttendanceWriteBehindQueue;
 import src.dao.Attendance.HomeworkDAO;
 import src.dao.Attendance.HomeworkSubmissionDAO;
 import src.dao.Person.StudentDAO;
 
 import src.model.ClassSession;
 import src.model.attendance.ClassAttendanceModel;
+import src.model.attendance.CourseAttendanceMatrix;
 import src.model.attendance.HomeworkSubmissionModel;
 import src.model.attendance.StudentAttendanceData;
 import src.model.homework.Homework;
@@ -18,6 +21,7 @@ import src.model.person.Student;
 import src.view.Attendance.ClassroomAttendanceView;
 import src.utils.DaoManager;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -38,8 +42,14 @@ public class ClassroomAttendanceController {
     private final StudentDAO studentDAO;
     private final HomeworkSubmissionDAO homeworkSubmissionDAO;
     private final HomeworkDAO homeworkDAO;
+    private final AttendanceDAO attendanceDAO;
+    private final AttendanceWriteBehindQueue writeBehindQueue; // null nếu không mở được journal cục bộ
     private final ClassAttendanceModel attendanceModel;
     private List<ClassSession> classSessions; // Thêm biến lưu trữ danh sách buổi học
+    private CourseAttendanceMatrix attendanceMatrix; // Ma trận điểm danh (học viên × buổi) của khóa học hiện tại
+    // Bài nộp vừa lưu theo homework_id (đủ cả lớp); dùng lại khi tải lại buổi học thay vì đọc DB,
+    // vì bản ghi có thể vẫn đang nằm trong hàng đợi write-behind
+    private final Map<String, List<HomeworkSubmissionModel>> savedSubmissionsByHomework = new HashMap<>();
 
     // Logger for debugging
     private static final Logger LOGGER = Logger.getLogger(ClassroomAttendanceController.class.getName());
@@ -53,6 +63,8 @@ public class ClassroomAttendanceController {
         this.studentDAO = daoManager.getStudentDAO();
         this.homeworkSubmissionDAO = daoManager.getHomeworkSubmissionDAO();
         this.homeworkDAO = daoManager.getHomeworkDAO();
+        this.attendanceDAO = daoManager.getAttendanceDAO();
+        this.writeBehindQueue = daoManager.getAttendanceWriteBehindQueue();
 
         // The model holding attendance data
         this.attendanceModel = new ClassAttendanceModel();
@@ -71,7 +83,8 @@ public class ClassroomAttendanceController {
         }
 
         // Đặt courseId cho attendanceModel ngay từ đầu
-        attendanceModel.setCourseId(classId); // Giả sử classId truyền vào thực chất là courseId
+        attendanceModel.setCourseId(classId);
+        savedSubmissionsByHomework.clear(); // Giả sử classId truyền vào thực chất là courseId
 
         LOGGER.log(Level.INFO, "Fetching students for courseId: {0}", classId);
         List<Student> students = studentDAO.findByCourseId(classId); // Giả sử findByCourseId là đúng
@@ -80,6 +93,9 @@ public class ClassroomAttendanceController {
         // Tải danh sách buổi học
         loadSessionsForClass(classId); // Phương thức này đã gọi view.setAvailableSessions và cập nhật view/model cho session đầu tiên
 
+        // Nạp ma trận điểm danh của cả khóa học một lần (một truy vấn), dùng cho thống kê theo học viên
+        loadAttendanceMatrix(classId, students);
+
         // Sau khi loadSessionsForClass, attendanceModel.getSessionId() và attendanceModel.getSessionDate()
         // đã được đặt cho buổi học đầu tiên (nếu có).
         // Và view.setSessionNotes(), view.setSelectedDate() cũng đã được gọi trong loadSessionsForClass cho buổi đầu tiên.
@@ -153,6 +169,54 @@ public class ClassroomAttendanceController {
         }
     }
 
+    /**
+     * Nạp ma trận điểm danh (học viên × buổi học) cho khóa học bằng một truy vấn duy nhất.
+     * Các cột được sắp xếp theo thời gian bắt đầu của buổi học để tính chuỗi buổi liên tiếp.
+     *
+     * @param courseId ID của khóa học
+     * @param students Danh sách học viên của khóa học
+     */
+    private void loadAttendanceMatrix(String courseId, List<Student> students) {
+        List<String> studentIds = students.stream()
+                .map(Student::getId)
+                .collect(Collectors.toList());
+        List<String> sessionIds = classSessions.stream()
+                .sorted(Comparator.comparing(ClassSession::getStartTime,
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .map(ClassSession::getId)
+                .collect(Collectors.toList());
+        try {
+            attendanceMatrix = attendanceDAO.loadCourseAttendanceMatrix(courseId, studentIds, sessionIds);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error loading attendance matrix for courseId: " + courseId, e);
+            attendanceMatrix = new CourseAttendanceMatrix(courseId, studentIds, sessionIds);
+        }
+    }
+
+    /**
+     * @return Ma trận điểm danh của khóa học hiện tại, hoặc null nếu chưa nạp
+     */
+    public CourseAttendanceMatrix getAttendanceMatrix() {
+        return attendanceMatrix;
+    }
+
+    /**
+     * Tóm tắt tình hình điểm danh của một học viên trong khóa học (tỷ lệ có mặt, số buổi vắng,
+     * chuỗi có mặt hiện tại), tính hoàn toàn từ ma trận trong bộ nhớ.
+     *
+     * @param studentId ID của học viên
+     * @return Chuỗi hiển thị, hoặc chuỗi rỗng nếu chưa có dữ liệu
+     */
+    public String getAttendanceSummary(String studentId) {
+        if (attendanceMatrix == null || studentId == null || attendanceMatrix.getRecordedCount(studentId) == 0) {
+            return "";
+        }
+        return String.format("%.0f%% | Vắng %d | Chuỗi %d",
+                attendanceMatrix.getAttendanceRate(studentId) * 100,
+                attendanceMatrix.getAbsenceCount(studentId),
+                attendanceMatrix.getCurrentPresentStreak(studentId));
+    }
+
     /**
      * Save modified attendance information back to the database including metrics.
      */
@@ -206,22 +270,8 @@ public class ClassroomAttendanceController {
             // =======================================================
 
             // === BƯỚC 2: LƯU STUDENT METRICS (Chuyên cần, Đúng giờ, Ghi chú HV) ===
-            // Trước hết, lấy tất cả các metrics hiện có cho các học sinh trong lớp này để update nếu có
-            Map<String, String> existingMetricsMap = new HashMap<>();
-            // Giả sử homeworkDAO.getStudentMetricsForCourse trả về List<Map<String, Object>>
-            // với key "student_id" và "metric_id" (là String)
-            if (courseId != null && !courseId.isEmpty()) { // Chỉ lấy metrics nếu courseId hợp lệ
-                List<Map<String, Object>> existingMetrics = homeworkDAO.getStudentMetricsForCourse(courseId);
-                for (Map<String, Object> metric : existingMetrics) {
-                    String studentId = (String) metric.get("student_id");
-                    String metricId = (String) metric.get("metric_id"); // metric_id là String
-                    if (studentId != null && metricId != null) {
-                        existingMetricsMap.put(studentId, metricId);
-                    }
-                }
-            }
-
-
+            // student_metrics là chuỗi thời gian: mỗi lần lưu thêm một điểm mới cho ngày của buổi học.
+            // Giá trị hiển thị là điểm cuối cùng trong ngày (rollup student_metrics_daily).
             List<Map<String, Object>> metricsDataList = new ArrayList<>();
             if (recordDate == null) { // Cần recordDate để lưu metrics
                 LOGGER.log(Level.SEVERE, "Record date is null. Cannot save student metrics.");
@@ -238,11 +288,6 @@ public class ClassroomAttendanceController {
                     metrics.put("awarenessScore", data.getDiligenceRating()); // Điểm chuyên cần
                     metrics.put("punctualityScore", data.getPunctualityRating()); // Điểm đúng giờ
                     metrics.put("notes", data.getStudentSessionNotes()); // Ghi chú của riêng học viên đó
-
-                    // Thêm metric_id nếu đã tồn tại cho học sinh này (để DAO biết update thay vì insert)
-                    if (existingMetricsMap.containsKey(studentId)) {
-                        metrics.put("metricId", existingMetricsMap.get(studentId));
-                    }
                     metricsDataList.add(metrics);
                 }
 
@@ -330,7 +375,7 @@ public class ClassroomAttendanceController {
                 view.showError("Session date not available. Cannot save homework submissions.");
                 return;
             }
-            String homeworkTitle = "Bài tập buổi " + sessionActualDate.toString();
+            String homeworkTitle = HomeworkDAO.sessionHomeworkTitle(sessionActualDate);
             // Sử dụng assignedDate từ sessionActualDate cho getOrCreateHomeworkForSession
             homeworkToUpdate = homeworkDAO.getOrCreateHomeworkForSession(sessionId, homeworkTitle, courseId, sessionActualDate);
 
@@ -342,26 +387,14 @@ public class ClassroomAttendanceController {
             determinedHomeworkId = homeworkToUpdate.getHomeworkId();
             LOGGER.log(Level.INFO, "Using homework_id: {0} for session: {1}", new Object[]{determinedHomeworkId, sessionId});
 
-            // Bước 2: Lấy các bản ghi nộp bài hiện có cho homework_id này (để so sánh và chuẩn bị update/insert)
-            Map<String, HomeworkSubmissionModel> existingSubmissionsMap = new HashMap<>();
-            List<HomeworkSubmissionModel> submissionsForThisHomeworkFromDb = homeworkSubmissionDAO.getSubmissionsByHomeworkId(determinedHomeworkId);
-            for (HomeworkSubmissionModel sub : submissionsForThisHomeworkFromDb) {
-                existingSubmissionsMap.put(sub.getStudentId(), sub);
-            }
-            LOGGER.log(Level.INFO, "Fetched {0} existing submissions for homework_id: {1}", new Object[]{existingSubmissionsMap.size(), determinedHomeworkId});
-
-            // Bước 3: Chuẩn bị danh sách các bài nộp cần lưu (tạo mới hoặc cập nhật)
+            // Bước 2: Chuẩn bị danh sách các bài nộp cần lưu. Không cần đọc bản ghi hiện có:
+            // saveOrUpdateBatch upsert theo (student_id, homework_id) và tự phân biệt thêm mới/cập nhật
             List<HomeworkSubmissionModel> submissionsToSave = new ArrayList<>();
             for (StudentAttendanceData data : attendanceModel.getAttendanceList()) {
-                String studentId = data.getStudent().getId();
-                HomeworkSubmissionModel submission = existingSubmissionsMap.get(studentId);
-
-                if (submission == null) {
-                    submission = new HomeworkSubmissionModel();
-                    // student_submission_id sẽ được tạo trong saveOrUpdateBatch nếu cần
-                    submission.setStudentId(studentId);
-                    submission.setHomeworkId(determinedHomeworkId);
-                }
+                HomeworkSubmissionModel submission = new HomeworkSubmissionModel();
+                // student_submission_id sẽ được tạo (hoặc lấy từ DB) trong saveOrUpdateBatch
+                submission.setStudentId(data.getStudent().getId());
+                submission.setHomeworkId(determinedHomeworkId);
                 // Cập nhật thông tin từ StudentAttendanceData
                 submission.setSubmitted(data.isHomeworkSubmitted());
                 submission.setGrade(data.getHomeworkGrade());
@@ -374,19 +407,36 @@ public class ClassroomAttendanceController {
                 submissionsToSave.add(submission);
             }
 
-            // Bước 4: Lưu hoặc cập nhật các bài nộp theo lô
+            // Bước 3: Lưu hoặc cập nhật các bài nộp theo lô
             if (!submissionsToSave.isEmpty()) {
-                // Giả sử saveOrUpdateBatch trong HomeworkSubmissionDAO đã được sửa để tự tạo student_submission_id
-                homeworkSubmissionDAO.saveOrUpdateBatch(submissionsToSave);
+                // Ghi vào journal cục bộ rồi đẩy xuống DB ở nền; nếu journal không dùng được thì ghi thẳng DB
+                boolean queued = false;
+                if (writeBehindQueue != null) {
+                    try {
+                        writeBehindQueue.submitHomeworkSubmissions(submissionsToSave);
+                        queued = true;
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Could not journal homework submissions, writing directly to the database.", e);
+                    }
+                }
+                if (!queued) {
+                    // saveOrUpdateBatch cập nhật lại student_submission_id trên từng đối tượng theo DB
+                    List<HomeworkSubmissionDAO.UpsertOutcome> outcomes = homeworkSubmissionDAO.saveOrUpdateBatch(submissionsToSave);
+                    long inserted = outcomes.stream().filter(o -> o == HomeworkSubmissionDAO.UpsertOutcome.INSERTED).count();
+                    long updated = outcomes.stream().filter(o -> o == HomeworkSubmissionDAO.UpsertOutcome.UPDATED).count();
+                    LOGGER.log(Level.INFO, "Homework submissions upserted: {0} inserted, {1} updated, {2} unchanged.",
+                            new Object[]{inserted, updated, outcomes.size() - inserted - updated});
+                }
+                savedSubmissionsByHomework.put(determinedHomeworkId, submissionsToSave);
                 LOGGER.log(Level.INFO, "Successfully processed {0} homework submissions for homework_id: {1}.",
                         new Object[]{submissionsToSave.size(), determinedHomeworkId});
 
-                // === BƯỚC 5: TÍNH TOÁN VÀ CẬP NHẬT ĐIỂM TRUNG BÌNH CHO HOMEWORK ===
-                // Lấy lại tất cả các bài nộp (đã được cập nhật) cho homework này để tính điểm TB
-                List<HomeworkSubmissionModel> updatedSubmissions = homeworkSubmissionDAO.getSubmissionsByHomeworkId(determinedHomeworkId);
+                // === BƯỚC 4: TÍNH TOÁN VÀ CẬP NHẬT ĐIỂM TRUNG BÌNH CHO HOMEWORK ===
+                // submissionsToSave đã chứa toàn bộ học viên của lớp, nên tính điểm TB ngay trên danh sách này
+                // thay vì đọc lại từ DB (bản ghi có thể vẫn đang nằm trong hàng đợi write-behind)
                 double totalScore = 0;
                 int submittedCount = 0;
-                for (HomeworkSubmissionModel sub : updatedSubmissions) {
+                for (HomeworkSubmissionModel sub : submissionsToSave) {
                     if (sub.isSubmitted() && sub.getGrade() != 0) { // Chỉ tính những bài đã nộp và có điểm
                         totalScore += sub.getGrade();
                         submittedCount++;
@@ -533,28 +583,19 @@ public class ClassroomAttendanceController {
             view.setFilteredAttendanceList(emptyFilteredList);
             return;
         }
-        // Áp dụng bộ lọc bằng cách xử lý riêng từng học sinh
+        // Lấy điểm mới nhất của cả lớp trong một truy vấn; ngưỡng lọc được áp dụng trong SQL
+        Map<String, StudentAttendanceData> latestMetrics =
+                studentDAO.findLatestMetricsByStudent(students, classId, punctualityFilter, diligenceFilter);
+        boolean filtering = punctualityFilter > 0 || diligenceFilter > 0;
+        // Giữ thứ tự danh sách lớp (như trước), không phụ thuộc thứ tự của map kết quả
         List<StudentAttendanceData> filteredStudents = new ArrayList<>();
         for (Student student : students) {
-            List<StudentAttendanceData> metrics = studentDAO.getStudentMetricsHistory(student.getId(), classId);
-
-            // Nếu không có dữ liệu metrics hoặc không có bộ lọc, thêm học sinh vào kết quả
-            if (metrics.isEmpty()) {
-                if (punctualityFilter <= 0 && diligenceFilter <= 0) {
-                    filteredStudents.add(new StudentAttendanceData(student));
-                }
-                continue;
-            }
-
-            // Lấy bản ghi gần nhất
-            StudentAttendanceData latestMetrics = metrics.get(0);
-
-            // Kiểm tra điều kiện lọc
-            boolean punctualityMatch = punctualityFilter <= 0 || latestMetrics.getPunctualityRating() >= punctualityFilter;
-            boolean diligenceMatch = diligenceFilter <= 0 || latestMetrics.getDiligenceRating() >= diligenceFilter;
-
-            if (punctualityMatch && diligenceMatch) {
-                filteredStudents.add(latestMetrics);
+            StudentAttendanceData data = latestMetrics.get(student.getId());
+            if (data != null) {
+                filteredStudents.add(data);
+            } else if (!filtering) {
+                // Khi không lọc, học sinh chưa có dữ liệu điểm vẫn được hiển thị
+                filteredStudents.add(new StudentAttendanceData(student));
             }
         }
         LOGGER.log(Level.INFO, "Filter applied: {0} students match criteria", filteredStudents.size());
@@ -661,7 +702,7 @@ public class ClassroomAttendanceController {
 
             Homework homeworkForSession = homeworkDAO.getOrCreateHomeworkForSession(
                     sessionId,
-                    "Bài tập buổi " + sessionActualDate.toString(),
+                    HomeworkDAO.sessionHomeworkTitle(sessionActualDate),
                     courseId,
                     sessionActualDate
             );
@@ -677,9 +718,13 @@ public class ClassroomAttendanceController {
 
 
             // 3. Lấy tất cả homework submissions cho homework_id này một lần để tối ưu
+            // (dùng lại lô vừa lưu nếu có, không đọc lại DB)
             Map<String, HomeworkSubmissionModel> homeworkSubmissionsMap = new HashMap<>();
             if (actualHomeworkId != null && !actualHomeworkId.isEmpty()) {
-                List<HomeworkSubmissionModel> submissions = homeworkSubmissionDAO.getSubmissionsByHomeworkId(actualHomeworkId);
+                List<HomeworkSubmissionModel> submissions = savedSubmissionsByHomework.get(actualHomeworkId);
+                if (submissions == null) {
+                    submissions = homeworkSubmissionDAO.getSubmissionsByHomeworkId(actualHomeworkId);
+                }
                 for (HomeworkSubmissionModel sub : submissions) {
                     homeworkSubmissionsMap.put(sub.getStudentId(), sub);
                 }
@@ -67,7 +67,7 @@ public class CourseController {
                             null // scheduleDAO - truyền null nếu không dùng
                     );
 
-                    sessionConn.commit(); // Commit transaction của việc tạo session
+                    DatabaseConnection.commit(sessionConn); // Commit transaction của việc tạo session
                     sessionsGeneratedSuccessfully = true;
                     LOGGER_SERVICE.log(Level.INFO, "Đã tạo thành công {0} buổi học cho khóa: {1}",
                             new Object[]{generatedSessions.size(), courseToCreate.getCourseName()});
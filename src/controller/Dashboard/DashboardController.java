@@ -2,19 +2,26 @@ package src.controller.Dashboard;
 
 // Remove direct import of DashboardDAO if it is only accessed via DaoManager
 // import src.dao.Dashboard.DashboardDAO;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.chart.PieChart;
 
 import src.model.ClassSession;
 import src.model.dashboard.DashboardModel;
+import src.model.dashboard.DashboardSnapshot;
 import src.model.system.schedule.ScheduleItem;
 
-import java.sql.SQLException;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 // import java.util.UUID; // Removed unnecessary import
 
 // Import the DaoManager
@@ -25,119 +32,110 @@ import src.dao.Dashboard.DashboardDAO;
 
 /**
  * Controller for the Dashboard - handles all data operations and business logic application
+ * <p>
+ * The data comes as one {@link DashboardSnapshot} per refresh, loaded on a background thread and published on
+ * the FX thread through {@link #snapshotProperty()}. While the dashboard is shown it is refreshed every
+ * {@link #AUTO_REFRESH_SECONDS} seconds; when it is opened again it first shows the last snapshot.
  */
-public class DashboardController {
+public final class DashboardController {
+    private static final Logger LOGGER = Logger.getLogger(DashboardController.class.getName());
+
+    private static final int UPCOMING_SCHEDULE_LIMIT = 5;
+    // Số lớp học có lát riêng trên biểu đồ; các lớp còn lại gộp thành "Các lớp khác"
+    private static final int TOP_COURSE_SLICES = 9;
+    static final long AUTO_REFRESH_SECONDS = 60;
+
     private DashboardModel model;
     // Keep the type declaration, but get the instance from DaoManager
     private DashboardDAO dashboardDAO;
 
+    private final ReadOnlyObjectWrapper<DashboardSnapshot> snapshot = new ReadOnlyObjectWrapper<>(this, "snapshot");
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "dashboard-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> autoRefresh;
+
     public DashboardController() {
         model = new DashboardModel();
         // Obtain the DAO instance from the DaoManager singleton
         this.dashboardDAO = DaoManager.getInstance().getDashboardDAO();
+        DashboardSnapshot cached = dashboardDAO.getCachedSnapshot();
+        if (cached != null) {
+            applySnapshot(cached);
+            snapshot.set(cached);
+        }
     }
 
     /**
-     * Loads all data for the dashboard from data sources
+     * The latest snapshot; changes on the FX thread, after the model has been updated from it.
+     *
+     * @return Read-only property, null until the first snapshot is loaded
      */
-    public void refreshDashboard() {
-        try {
-            fetchStatistics();
-            fetchTodayClasses();
-            fetchCourseDistribution();
-            fetchUpcomingSchedules();
-        } catch (SQLException e) {
-            System.err.println("Error loading dashboard data: " + e.getMessage());
-            e.printStackTrace();
-            // Handle error appropriately, perhaps update the model or src.view with an error state
-        }
+    public ReadOnlyObjectProperty<DashboardSnapshot> snapshotProperty() {
+        return snapshot.getReadOnlyProperty();
     }
 
     /**
-     * Fetches statistics data and updates the model
+     * Starts refreshing the snapshot in the background now and every {@link #AUTO_REFRESH_SECONDS} seconds.
      */
-    private void fetchStatistics() throws SQLException {
-        // Use the dashboardDAO obtained from DaoManager
-        int totalStudents = dashboardDAO.getTotalStudents();
-        int totalClasses = dashboardDAO.getTotalClasses();
-        // The original code calculated attendance rate based on model's todayClasses,
-        // then got it from DAO if model was empty. Sticking closer to original logic
-        // but ensuring DAO call if needed.
-        double attendanceRate;
-        if (!model.getTodayClasses().isEmpty()) {
-            attendanceRate = model.calculateAttendanceRate(); // Assuming this method exists and works
-        } else {
-            attendanceRate = dashboardDAO.getAttendanceRate();
+    public synchronized void startAutoRefresh() {
+        if (autoRefresh == null || autoRefresh.isDone()) {
+            autoRefresh = refresher.scheduleWithFixedDelay(this::loadAndPublish, 0, AUTO_REFRESH_SECONDS, TimeUnit.SECONDS);
         }
-
-
-        // Update model
-        model.setTotalStudents(totalStudents);
-        model.setTotalClasses(totalClasses);
-        model.setAttendanceRate(attendanceRate);
     }
 
     /**
-     * Fetches course distribution data and updates the model
+     * Stops the periodic refresh (e.g. when another screen is shown). A refresh in progress still completes.
      */
-    private void fetchCourseDistribution() throws SQLException {
-        // The original code also had logic to generate from model if todayClasses was not empty.
-        // Reverting to the simpler DAO call as per the second part of the original logic
-        // and assuming the DAO provides the primary data source for this.
-        ObservableList<PieChart.Data> pieChartData = dashboardDAO.getCourseDistribution();
-        model.setCourseDistribution(pieChartData);
+    public synchronized void stopAutoRefresh() {
+        if (autoRefresh != null) {
+            autoRefresh.cancel(false);
+            autoRefresh = null;
+        }
     }
 
     /**
-     * Fetches upcoming schedules and updates the model
+     * Loads a new snapshot in the background; the result arrives through {@link #snapshotProperty()}.
      */
-    private void fetchUpcomingSchedules() throws SQLException {
-        List<ScheduleItem> scheduleItems = new ArrayList<>();
+    public void refreshNow() {
+        refresher.execute(this::loadAndPublish);
+    }
 
+    // Chạy trên luồng dashboard-refresh; lỗi không được lọt ra ngoài vì sẽ huỷ lịch chạy định kỳ
+    private void loadAndPublish() {
         try {
-            // Get raw data from DAO
-            // Use the dashboardDAO obtained from DaoManager
-            List<Object[]> scheduleData = dashboardDAO.getUpcomingSchedulesData(5);
-
-            // Convert raw data to business objects - Keeping original conversion logic
-            for (Object[] row : scheduleData) {
-                String id = (String) row[0];
-                String title = (String) row[1];
-                String description = (String) row[2];
-
-                // Get timestamps directly and convert to LocalDateTime
-                java.sql.Timestamp startTimestamp = (java.sql.Timestamp) row[3];
-                java.sql.Timestamp endTimestamp = (java.sql.Timestamp) row[4];
-
-                LocalDateTime startDateTime = startTimestamp.toLocalDateTime();
-                LocalDateTime endDateTime = endTimestamp.toLocalDateTime();
-
-                // Create business object with the schedule type (schedule type was not used in original item creation)
-                // String scheduleType = (String) row[5]; // Original code fetched but didn't use this field for item creation
-                ScheduleItem item = new ScheduleItem(id, title, description, startDateTime, endDateTime);
-                scheduleItems.add(item);
-            }
-        } catch (Exception e) { // Catch any other unexpected exceptions during processing
-            System.err.println("Unexpected error loading upcoming schedules: " + e.getMessage());
-            e.printStackTrace();
-            // Handle as needed, maybe wrap in a custom exception or rethrow RuntimeException
+            DashboardSnapshot loaded = dashboardDAO.loadSnapshot(UPCOMING_SCHEDULE_LIMIT, TOP_COURSE_SLICES);
+            Platform.runLater(() -> {
+                applySnapshot(loaded);
+                snapshot.set(loaded);
+            });
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error refreshing the dashboard snapshot.", e);
         }
-
-        // Update model with processed data
-        model.setScheduleItems(scheduleItems);
     }
 
-
     /**
-     * Fetches today's classes and updates the model
+     * Copies a snapshot into the model
      */
-    private void fetchTodayClasses() throws SQLException {
-        // Get data from DAO
-        // Use the dashboardDAO obtained from DaoManager
-        List<ClassSession> classSessions = dashboardDAO.getTodayClasses();
-
-        // Update model
-        model.setTodayClasses(classSessions);
+    private void applySnapshot(DashboardSnapshot loaded) {
+        model.setTodayClasses(loaded.getTodayClasses());
+        model.setTotalStudents(loaded.getTotalStudents());
+        model.setTotalClasses(loaded.getTotalCourses());
+        // The attendance rate comes from today's classes when there are any, otherwise from the snapshot
+        if (!model.getTodayClasses().isEmpty()) {
+            model.setAttendanceRate(model.calculateAttendanceRate());
+        } else {
+            model.setAttendanceRate(loaded.getAttendanceRate());
+        }
+        ObservableList<PieChart.Data> distribution = FXCollections.observableArrayList();
+        for (DashboardSnapshot.CourseShare share : loaded.getCourseDistribution()) {
+            String name = share.isOthers() ? "Các lớp khác (" + share.getFoldedCourses() + " lớp)" : share.getCourseName();
+            distribution.add(new PieChart.Data(name, share.getSessionCount()));
+        }
+        model.setCourseDistribution(distribution);
+        model.setScheduleItems(loaded.getUpcomingSchedules());
     }
 
     /**
@@ -163,7 +161,7 @@ public class DashboardController {
 
             if (success) {
                 // Reload data to get the new ID and updated list
-                refreshDashboard();
+                refreshNow();
             }
 
             return success;
@@ -2,7 +2,6 @@ package src.controller.Holidays;
 
 import src.dao.ClassSession.ClassSessionDAO;
 import src.dao.Person.CourseDAO;
-import src.model.ClassSession;
 import src.model.holidays.Holiday;
 import src.model.holidays.HolidayHistory;
 import src.model.holidays.HolidaysModel;
@@ -136,11 +135,12 @@ public class HolidaysController {
             conn = DatabaseConnection.getConnection();
             conn.setAutoCommit(false);
 
-            List<Course> coursesToReschedule = courseDAO.findCoursesEndingOnOrAfter(conn, affectedPeriodStart);
+            // Chỉ các khóa học có buổi học rơi vào khoảng ngày nghỉ mới có thể thay đổi lịch
+            List<Course> coursesToReschedule = courseDAO.findCoursesAffectedByPeriod(conn, affectedPeriodStart, affectedPeriodEnd);
 
             if (coursesToReschedule.isEmpty()) {
                 LOGGER.info("Không có khóa học nào cần sắp xếp lại lịch.");
-                conn.commit();
+                DatabaseConnection.commit(conn);
                 return;
             }
 
@@ -149,26 +149,16 @@ public class HolidaysController {
             for (Course course : coursesToReschedule) {
                 LOGGER.info("Đang xử lý khóa học: " + course.getCourseId() + " - " + course.getCourseName());
 
-                int deletedSessions = classSessionDAO.deleteAllSessionsByCourseId(conn, course.getCourseId());
-                LOGGER.fine("Đã xóa " + deletedSessions + " session cũ của khóa " + course.getCourseId());
-
-                // generateAndSaveSessionsForCourse trả về List<ClassSession>
-                List<ClassSession> newSessions = classSessionDAO.generateAndSaveSessionsForCourse(
+                // So sánh lịch mới với các session hiện có và chỉ ghi phần thay đổi (giữ nguyên session_id)
+                ClassSessionDAO.RescheduleResult result = classSessionDAO.rescheduleCourse(
                         conn,
                         course,
                         daoManager.getClassroomDAO(),
                         daoManager.getTeacherDAO(),
-                        holidayDAOForReschedule,
-                        null
+                        holidayDAOForReschedule
                 );
 
-                LocalDate newActualEndDate = null;
-                if (newSessions != null && !newSessions.isEmpty()) {
-                    // Lấy ngày của session cuối cùng.
-                    // ClassSession.java có getDate() để lấy sessionDate.
-                    ClassSession lastSession = newSessions.get(newSessions.size() - 1);
-                    newActualEndDate = lastSession.getDate(); // SỬ DỤNG getDate() từ ClassSession.java
-                }
+                LocalDate newActualEndDate = result.getLastSessionDate();
 
                 if (newActualEndDate != null) {
                     if (course.getEndDate() == null || !course.getEndDate().equals(newActualEndDate)) {
@@ -183,7 +173,7 @@ public class HolidaysController {
                 }
             }
 
-            conn.commit();
+            DatabaseConnection.commit(conn);
             LOGGER.info("Đã sắp xếp lại thành công lịch học cho " + coursesToReschedule.size() + " khóa học bị ảnh hưởng.");
 
         } catch (SQLException e) {
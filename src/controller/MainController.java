@@ -152,6 +152,8 @@ public class MainController {
     public void onAppExit() {
 // Dọn dẹp tài nguyên, đóng kết nối, etc.
         System.out.println("Ứng dụng kết thúc...");
+        // Ghi nốt các bản ghi điểm danh đang chờ trong hàng đợi write-behind
+        DaoManager.getInstance().shutdown();
     }
     /**
      Xử lý đăng nhập
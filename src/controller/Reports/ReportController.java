@@ -6,7 +6,14 @@ import src.model.report.ReportModel;
 import src.model.report.ReportModel.ClassReportData;
 // Import ReportView để controller có thể tương tác
 import src.view.Report.ReportView;
-
+import src.dao.Report.ReportExportDAO;
+import src.dao.Report.ReportExportDAO.ExportQuery;
+import src.utils.DaoManager;
+import src.utils.ExportTask;
+import src.utils.TableWriter;
+import src.utils.pdf.ReportCardBatch;
+
+import java.nio.file.Path;
 import java.time.LocalDate;
 
 public class ReportController {
@@ -59,6 +66,11 @@ public class ReportController {
         } else {
             System.err.println("ReportController.initializeEventHandlers: PrintButton is null in View.");
         }
+        if (view.getReportCardButton() != null) {
+            view.getReportCardButton().setOnAction(e -> exportReportCards());
+        } else {
+            System.err.println("ReportController.initializeEventHandlers: ReportCardButton is null in View.");
+        }
     }
 
     public void loadInitialData() {
@@ -137,18 +149,70 @@ public class ReportController {
     }
 
     private void exportToPdf() {
-        if(view!=null) view.showError("Chức năng xuất PDF đang được phát triển.");
         System.out.println("ReportController: exportToPdf called.");
+        ExportQuery query = selectedClassReport("xuất PDF");
+        if (query != null) {
+            view.trackExport(ExportTask.start(query, TableWriter.Format.PDF));
+        }
     }
 
     private void exportToExcel() {
-        if(view!=null) view.showError("Chức năng xuất Excel đang được phát triển.");
         System.out.println("ReportController: exportToExcel called.");
+        ExportQuery query = selectedClassReport("xuất Excel");
+        if (query != null) {
+            // Xuất chạy nền, ghi thẳng từng dòng từ DAO vào file .xlsx
+            view.trackExport(ExportTask.start(query, TableWriter.Format.XLSX));
+        }
     }
 
     private void printReport() {
-        if(view!=null) view.showError("Chức năng in đang được phát triển.");
         System.out.println("ReportController: printReport called.");
+        ExportQuery query = selectedClassReport("in báo cáo");
+        if (query != null) {
+            view.trackExport(ExportTask.startPrint(query));
+        }
+    }
+
+    /**
+     * In phiếu điểm của toàn bộ học viên, mỗi lớp một file PDF, chạy nền song song theo lớp.
+     */
+    private void exportReportCards() {
+        if (view == null) {
+            return;
+        }
+        // ~/CS3332 Exports/phieu-diem_<thời điểm>/<mã lớp>.pdf
+        Path marker = ExportTask.defaultTarget("phieu-diem", TableWriter.Format.PDF);
+        Path directory = marker.resolveSibling(marker.getFileName().toString().replace(".pdf", ""));
+        ReportCardBatch batch = new ReportCardBatch(DaoManager.getInstance().getReportCardDAO(), directory);
+        batch.setOnSucceeded(e -> {
+            String message = "Đã in phiếu điểm của " + batch.getValue() + " lớp vào " + batch.getTargetDirectory();
+            if (batch.getFailedCourses() > 0) {
+                view.showError(message + ". Có " + batch.getFailedCourses() + " lớp bị lỗi, xem log để biết chi tiết.");
+            } else {
+                view.showSuccess(message);
+            }
+        });
+        batch.setOnFailed(e -> view.showError("Không thể in phiếu điểm: " +
+                (batch.getException() != null ? batch.getException().getMessage() : "lỗi không xác định")));
+        Thread worker = new Thread(batch, "report-card-batch");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * @return Báo cáo lớp theo khoảng ngày đang chọn, hoặc null (đã báo lỗi) nếu khoảng ngày không hợp lệ
+     */
+    private ExportQuery selectedClassReport(String action) {
+        if (view == null || view.getFromDatePicker() == null || view.getToDatePicker() == null) {
+            return null;
+        }
+        LocalDate fromDate = view.getFromDatePicker().getValue();
+        LocalDate toDate = view.getToDatePicker().getValue();
+        if (fromDate == null || toDate == null || fromDate.isAfter(toDate)) {
+            view.showError("Vui lòng chọn khoảng ngày hợp lệ trước khi " + action + ".");
+            return null;
+        }
+        return ReportExportDAO.classReport(fromDate, toDate);
     }
 }
 
@@ -4,12 +4,21 @@ import src.dao.Report.TeachingStatisticsDAO;
 import javafx.collections.ObservableList;
 import src.model.teaching.TeacherStatisticsModel;
 import src.model.teaching.TeachingStatisticsFilter;
+import src.model.teaching.cube.CubeDimension;
+import src.model.teaching.cube.CubeResult;
 import src.utils.DaoManager; // Import DaoManager
+import src.utils.ExportTask;
+import src.utils.TableWriter;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class TeachingStatisticsController {
+    private static final Logger LOGGER = Logger.getLogger(TeachingStatisticsController.class.getName());
+
     private final TeachingStatisticsFilter filter;
     private final TeachingStatisticsDAO teachingStatisticsDAO;
 
@@ -45,31 +54,88 @@ public class TeachingStatisticsController {
         filter.setStatus(status);
     }
 
+    public void updateGroupBy(CubeDimension... dimensions) {
+        filter.setGroupBy(dimensions);
+    }
+
     public List<String> getStatusOptions() {
         return TeachingStatisticsFilter.STATUS_OPTIONS;
     }
 
-    public boolean exportToExcel() {
-        return teachingStatisticsDAO.exportToExcel(
+    /**
+     * Runs an ad-hoc slice of the current filter (period, status, dimension filters, group-by) on the in-memory
+     * teaching cube, e.g. filter.setGroupBy(CubeDimension.ROOM, CubeDimension.WEEKDAY).
+     * @return The aggregated rows, or null if the cube could not be loaded
+     */
+    public CubeResult queryCube() {
+        try {
+            return DaoManager.getInstance().getTeachingCubeDAO().query(filter);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Could not load the teaching cube", e);
+            return null;
+        }
+    }
+
+    /**
+     * Starts exporting the statistics of the current filter to an .xlsx file in the background.
+     * @return The running export, or null if the filter has no date range
+     */
+    public ExportTask exportToExcel() {
+        if (filter.getFromDate() == null || filter.getToDate() == null) {
+            return null;
+        }
+        ExportTask task = ExportTask.start(teachingStatisticsDAO.getExportQuery(
+                filter.getFromDate(),
+                filter.getToDate(),
+                filter.getStatus()
+        ), TableWriter.Format.XLSX);
+        teachingStatisticsDAO.exportToExcel(
                 filter.getFromDate(),
                 filter.getToDate(),
                 filter.getStatus()
         );
+        return task;
     }
 
-    public boolean exportToPdf() {
-        return teachingStatisticsDAO.exportToPdf(
+    /**
+     * Starts rendering the statistics of the current filter to a PDF file in the background.
+     * @return The running export, or null if the filter has no date range
+     */
+    public ExportTask exportToPdf() {
+        if (filter.getFromDate() == null || filter.getToDate() == null) {
+            return null;
+        }
+        ExportTask task = ExportTask.start(teachingStatisticsDAO.getExportQuery(
+                filter.getFromDate(),
+                filter.getToDate(),
+                filter.getStatus()
+        ), TableWriter.Format.PDF);
+        teachingStatisticsDAO.exportToPdf(
                 filter.getFromDate(),
                 filter.getToDate(),
                 filter.getStatus()
         );
+        return task;
     }
 
-    public boolean print() {
-        return teachingStatisticsDAO.logPrintRequest(
+    /**
+     * Renders the statistics of the current filter to PDF and sends the file to the printer.
+     * @return The running export, or null if the filter has no date range
+     */
+    public ExportTask print() {
+        if (filter.getFromDate() == null || filter.getToDate() == null) {
+            return null;
+        }
+        ExportTask task = ExportTask.startPrint(teachingStatisticsDAO.getExportQuery(
+                filter.getFromDate(),
+                filter.getToDate(),
+                filter.getStatus()
+        ));
+        teachingStatisticsDAO.logPrintRequest(
                 filter.getFromDate(),
                 filter.getToDate(),
                 filter.getStatus()
         );
+        return task;
     }
 }
@@ -6,14 +6,22 @@ import src.model.ClassSession;
 import src.dao.ClassSession.ClassSessionDAO; // Import ClassSessionDAO
 import src.utils.DaoManager;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional; // Import Optional
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -31,6 +39,35 @@ public class ScheduleController { // Renaming this to ClassSessionController mig
     // Map to cache ClassSession objects by ID (using String for ID)
     private final Map<String, ClassSession> sessionCache;
 
+    // Cache lịch theo tuần ISO (key: thứ Hai đầu tuần + giáo viên). Tuần trước và tuần sau được tải trước ở nền.
+    // Bị xóa khi ClassSessionDAO.getWriteVersion() thay đổi (mọi thao tác ghi buổi học / khóa học).
+    // Mỗi tuần hết hạn sau 10 phút như cache dimension của ClassSessionDAO, để thấy cả thay đổi từ máy khác.
+    private static final int MAX_CACHED_WEEKS = 24;
+    private static final long WEEK_CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final ExecutorService WEEK_PREFETCHER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "schedule-week-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, CachedWeek> weekCache = new LinkedHashMap<String, CachedWeek>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedWeek> eldest) {
+            return size() > MAX_CACHED_WEEKS;
+        }
+    };
+    private final Set<String> prefetchInFlight = ConcurrentHashMap.newKeySet();
+    private long weekCacheVersion = ClassSessionDAO.getWriteVersion();
+
+    private static final class CachedWeek {
+        final List<ClassSession> sessions;
+        final long loadedAtMillis;
+
+        CachedWeek(List<ClassSession> sessions) {
+            this.sessions = sessions;
+            this.loadedAtMillis = System.currentTimeMillis();
+        }
+    }
+
     public ScheduleController() {
         // Get the ClassSessionDAO from DaoManager
         this.classSessionDAO = DaoManager.getInstance().getClassSessionDAO(); // Assumes DaoManager has getClassSessionDAO()
@@ -39,7 +76,7 @@ public class ScheduleController { // Renaming this to ClassSessionController mig
 
     /**
      * Lấy danh sách lịch học (buổi học) trong khoảng thời gian.
-     * Uses ClassSessionDAO.findByTimeRange.
+     * Uses ClassSessionDAO.findByTimeRange; a Monday-to-Sunday range is served from the week cache.
      * @param fromDate Ngày bắt đầu
      * @param toDate Ngày kết thúc
      * @param teacherName Lọc theo tên giáo viên, null nếu không lọc
@@ -51,21 +88,15 @@ public class ScheduleController { // Renaming this to ClassSessionController mig
                 LOGGER.log(Level.WARNING, "Attempted to get schedule with null dates.");
                 return new ArrayList<>();
             }
-            LocalDateTime startDateTime = fromDate.atStartOfDay();
-            // Ensure endDateTime includes the whole day of toDate
-            LocalDateTime endDateTime = toDate.plusDays(1).atStartOfDay();
 
-            // Call ClassSessionDAO.findByTimeRange
-            // FIX: Use findByTimeRange from ClassSessionDAO
-            List<ClassSession> sessions = classSessionDAO.findByTimeRange(startDateTime, endDateTime); // Uses the new method
-
-            // Filter by teacher if specified.
-            // Ideally, ClassSessionDAO should have findByTimeRangeAndTeacher for efficiency.
-            // Filtering here is less efficient if the dataset is large.
-            if (teacherName != null && !teacherName.trim().isEmpty()) {
-                sessions = sessions.stream()
-                        .filter(session -> session != null && session.getTeacher() != null && session.getTeacher().equalsIgnoreCase(teacherName))
-                        .collect(Collectors.toList());
+            List<ClassSession> sessions;
+            if (fromDate.getDayOfWeek() == DayOfWeek.MONDAY && toDate.equals(fromDate.plusDays(6))) {
+                // Đúng một tuần: đọc từ cache và tải trước tuần liền kề cho thao tác chuyển tuần
+                sessions = new ArrayList<>(getWeek(fromDate, teacherName));
+                prefetchWeek(fromDate.minusWeeks(1), teacherName);
+                prefetchWeek(fromDate.plusWeeks(1), teacherName);
+            } else {
+                sessions = loadSchedule(fromDate, toDate, teacherName);
             }
 
             // Add fetched sessions to cache
@@ -82,26 +113,108 @@ public class ScheduleController { // Renaming this to ClassSessionController mig
         }
     }
 
+    /**
+     * Xóa toàn bộ cache lịch theo tuần (ví dụ khi người dùng bấm làm mới).
+     */
+    public void clearWeekCache() {
+        synchronized (weekCache) {
+            weekCache.clear();
+        }
+    }
+
+    private List<ClassSession> loadSchedule(LocalDate fromDate, LocalDate toDate, String teacherName) {
+        LocalDateTime startDateTime = fromDate.atStartOfDay();
+        // Ensure endDateTime includes the whole day of toDate
+        LocalDateTime endDateTime = toDate.plusDays(1).atStartOfDay();
+
+        List<ClassSession> sessions = classSessionDAO.findByTimeRange(startDateTime, endDateTime);
+
+        // Filter by teacher if specified.
+        if (teacherName != null && !teacherName.trim().isEmpty()) {
+            sessions = sessions.stream()
+                    .filter(session -> session != null && session.getTeacher() != null && session.getTeacher().equalsIgnoreCase(teacherName))
+                    .collect(Collectors.toList());
+        }
+        return sessions;
+    }
+
+    private static String weekKey(LocalDate weekStart, String teacherName) {
+        String teacherKey = teacherName == null ? "" : teacherName.trim().toLowerCase();
+        return weekStart + "|" + teacherKey;
+    }
+
+    private List<ClassSession> getWeek(LocalDate weekStart, String teacherName) {
+        String key = weekKey(weekStart, teacherName);
+        synchronized (weekCache) {
+            List<ClassSession> cached = cachedWeek(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        long version = ClassSessionDAO.getWriteVersion();
+        List<ClassSession> loaded = Collections.unmodifiableList(loadSchedule(weekStart, weekStart.plusDays(6), teacherName));
+        synchronized (weekCache) {
+            discardStaleWeeks();
+            // Không lưu nếu có thao tác ghi trong lúc đang tải
+            if (version == weekCacheVersion) {
+                weekCache.put(key, new CachedWeek(loaded));
+            }
+        }
+        return loaded;
+    }
+
+    // Gọi khi đang giữ khóa weekCache; trả về null (và bỏ entry) nếu tuần chưa có hoặc đã hết hạn
+    private List<ClassSession> cachedWeek(String key) {
+        discardStaleWeeks();
+        CachedWeek cached = weekCache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - cached.loadedAtMillis >= WEEK_CACHE_TTL_MILLIS) {
+            weekCache.remove(key);
+            return null;
+        }
+        return cached.sessions;
+    }
+
+    // Gọi khi đang giữ khóa weekCache
+    private void discardStaleWeeks() {
+        long currentVersion = ClassSessionDAO.getWriteVersion();
+        if (currentVersion != weekCacheVersion) {
+            weekCache.clear();
+            weekCacheVersion = currentVersion;
+        }
+    }
+
+    private void prefetchWeek(LocalDate weekStart, String teacherName) {
+        String key = weekKey(weekStart, teacherName);
+        synchronized (weekCache) {
+            if (cachedWeek(key) != null) {
+                return;
+            }
+        }
+        if (!prefetchInFlight.add(key)) {
+            return;
+        }
+        WEEK_PREFETCHER.execute(() -> {
+            try {
+                getWeek(weekStart, teacherName);
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Prefetch of week " + weekStart + " failed", e);
+            } finally {
+                prefetchInFlight.remove(key);
+            }
+        });
+    }
+
     /**
      * Lấy danh sách nhân sự (giáo viên) liên quan đến lịch học (buổi học).
-     * Uses ClassSessionDAO.findAll and streams for distinct teachers.
-     * Ideally, ClassSessionDAO should have a method to get distinct teacher names efficiently.
+     * Uses ClassSessionDAO.findDistinctTeacherNames (SELECT DISTINCT, cached in the DAO).
      * @return Danh sách tên giáo viên
      */
     public List<String> getTeachers() {
-        try {
-            // Retrieving all sessions and extracting teachers is inefficient for large datasets.
-            // A dedicated DAO method to get distinct teachers would be much better.
-            List<ClassSession> allSessions = classSessionDAO.findAll(); // Assumes findAll exists and returns List<ClassSession>
-            return allSessions.stream()
-                    .map(ClassSession::getTeacher)
-                    .filter(teacher -> teacher != null && !teacher.trim().isEmpty())
-                    .distinct()
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Unexpected error getting teachers from class sessions", e);
-            return new ArrayList<>();
-        }
+        return new ArrayList<>(classSessionDAO.findDistinctTeacherNames());
     }
 
     /**
@@ -114,46 +227,28 @@ public class ScheduleController { // Renaming this to ClassSessionController mig
 
     /**
      * Lấy danh sách các phòng học liên quan đến lịch học (buổi học).
-     * Uses ClassSessionDAO.findAll and streams for distinct rooms.
-     * Ideally, ClassSessionDAO should have a method to get distinct rooms efficiently.
+     * Uses ClassSessionDAO.findDistinctRooms (SELECT DISTINCT, cached in the DAO).
      * @return Danh sách phòng học
      */
     public List<String> getRooms() {
-        try {
-            // Retrieving all sessions and extracting rooms is inefficient for large datasets.
-            // A dedicated DAO method to get distinct rooms would be much better.
-            List<ClassSession> allSessions = classSessionDAO.findAll(); // Assumes findAll exists and returns List<ClassSession>
-            return allSessions.stream()
-                    .map(ClassSession::getRoom)
-                    .filter(room -> room != null && !room.trim().isEmpty())
-                    .distinct()
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Unexpected error getting rooms from class sessions", e);
-            return new ArrayList<>();
-        }
+        return new ArrayList<>(classSessionDAO.findDistinctRooms());
     }
 
     /**
      * Lấy danh sách các khóa học liên quan đến lịch học (buổi học).
-     * Uses ClassSessionDAO.findAll and streams for distinct course names.
-     * Ideally, ClassSessionDAO should have a method to get distinct course names efficiently.
+     * Uses ClassSessionDAO.findDistinctCourseNames (SELECT DISTINCT, cached in the DAO).
      * @return Danh sách tên khóa học
      */
     public List<String> getCourses() {
-        try {
-            // Retrieving all sessions and extracting courses is inefficient for large datasets.
-            // A dedicated DAO method to get distinct course names would be much better.
-            List<ClassSession> allSessions = classSessionDAO.findAll(); // Assumes findAll exists and returns List<ClassSession>
-            return allSessions.stream()
-                    .map(ClassSession::getCourseName)
-                    .filter(course -> course != null && !course.trim().isEmpty())
-                    .distinct()
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Unexpected error getting courses from class sessions", e);
-            return new ArrayList<>();
-        }
+        return new ArrayList<>(classSessionDAO.findDistinctCourseNames());
+    }
+
+    /**
+     * Lấy danh sách tên khóa học - tương thích với tên gọi getCourseNames
+     * @return Danh sách tên khóa học
+     */
+    public List<String> getCourseNames() {
+        return getCourses();
     }
 
     /**
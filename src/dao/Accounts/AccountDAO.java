@@ -3,6 +3,7 @@ package src.dao.Accounts;
 import src.dao.Person.TeacherDAO;
 import src.model.person.*;
 import src.utils.DatabaseConnection;
+import src.utils.IdGenerators;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -38,8 +39,8 @@ public class AccountDAO {
         String userSql = "INSERT INTO users (id, account_id, name, active) VALUES (?, ?, ?, true)";
 
         // Tạo ID mới cho account và user (ví dụ sử dụng UUID)
-        String newAccountId = java.util.UUID.randomUUID().toString().substring(0, Math.min(50, 36));
-        String newUserId = java.util.UUID.randomUUID().toString().substring(0, Math.min(50, 36));
+        String newAccountId = IdGenerators.nextId();
+        String newUserId = IdGenerators.nextId();
         // Tên mặc định cho user mới, bạn có thể muốn truyền tên này vào hàm save
         String defaultNameForNewUser = "Người dùng " + username;
 
@@ -55,7 +56,7 @@ public class AccountDAO {
                 stmt.setString(4, role);
                 int affectedRows = stmt.executeUpdate();
                 if (affectedRows == 0) {
-                    conn.rollback();
+                    DatabaseConnection.rollback(conn);
                     return false; // Không chèn được account
                 }
             }
@@ -68,12 +69,12 @@ public class AccountDAO {
                 // Các trường khác của users có thể cần giá trị mặc định hoặc null
                 // active đã được đặt là true trong câu SQL
                 if (userStmt.executeUpdate() == 0) {
-                    conn.rollback();
+                    DatabaseConnection.rollback(conn);
                     return false; // Không chèn được user
                 }
             }
 
-            conn.commit(); // Hoàn thành transaction
+            DatabaseConnection.commit(conn); // Hoàn thành transaction
             return true;
 
         } catch (SQLException e) {
@@ -3,11 +3,11 @@ package src.dao.Accounts;
 
 // Import các lớp model cần thiết (giữ lại nếu được sử dụng)
 import src.utils.DatabaseConnection;
+import src.utils.IdGenerators;
 
 import java.sql.*;
 import java.time.LocalDate;
 // Giữ lại các import này nếu chúng được sử dụng ở các phương thức khác
-import java.util.UUID;
 
 public class RegisterDAO {
     private DatabaseConnection dbConnector;
@@ -42,7 +42,7 @@ public class RegisterDAO {
         PreparedStatement userStmt = null;
         PreparedStatement roleStmt = null; // Sử dụng chung PreparedStatement cho các bảng vai trò
 
-        String newAccountId = UUID.randomUUID().toString();
+        String newAccountId = IdGenerators.nextId();
         String roleForDB;
 
         switch (roleFromUI.trim()) {
@@ -84,7 +84,7 @@ public class RegisterDAO {
 
             if (accountRowsAffected <= 0) {
                 System.err.println("Không chèn được vào bảng accounts.");
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
                 return false;
             }
 
@@ -112,13 +112,13 @@ public class RegisterDAO {
             int userRowsAffected = userStmt.executeUpdate();
             if (userRowsAffected <= 0) {
                 System.err.println("Không chèn được vào bảng users.");
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
                 return false;
             }
 
             // 4. Chèn vào bảng vai trò cụ thể và cấu trúc bảng đã cung cấp
             String insertRoleSQL = null;
-            String roleTableId = UUID.randomUUID().toString(); // Tạo ID riêng cho bảng vai trò
+            String roleTableId = IdGenerators.nextId(); // Tạo ID riêng cho bảng vai trò
 
             switch (roleForDB) {
                 case "TEACHER":
@@ -158,14 +158,14 @@ public class RegisterDAO {
                 int roleRowsAffected = roleStmt.executeUpdate();
                 if (roleRowsAffected <= 0) {
                     System.err.println("Không chèn được vào bảng vai trò '" + roleForDB + "' cho user ID: " + userIdForUsersTable);
-                    conn.rollback(); // Rollback nếu chèn vào bảng vai trò thất bại
+                    DatabaseConnection.rollback(conn); // Rollback nếu chèn vào bảng vai trò thất bại
                     return false;
                 }
                 System.out.println("Đã tạo bản ghi trong bảng vai trò '" + roleForDB + "' với ID: " + roleTableId + " cho user ID: " + userIdForUsersTable);
             }
 
             // 5. Commit transaction nếu tất cả các bước thành công
-            conn.commit();
+            DatabaseConnection.commit(conn);
             System.out.println("Đăng ký thành công cho username: " + username + " với Account ID: " + newAccountId + " và User ID: " + userIdForUsersTable + " với vai trò: " + roleForDB);
             return true;
 
@@ -175,7 +175,7 @@ public class RegisterDAO {
             try {
                 if (conn != null && !conn.isClosed() && !conn.getAutoCommit()) {
                     System.err.println("Đang tiến hành rollback do lỗi.");
-                    conn.rollback();
+                    DatabaseConnection.rollback(conn);
                     System.err.println("Rollback thành công do lỗi.");
                 }
             } catch (SQLException exRollback) {
@@ -1,20 +1,35 @@
 
 package src.dao.Attendance;
 
+import src.dao.Report.ReportSnapshotDAO;
 import src.model.absence.AbsenceRecord;
 import src.utils.DatabaseConnection;
+import src.utils.IdGenerators;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class AbsenceRecordDAO {
     private static final Logger LOGGER = Logger.getLogger(AbsenceRecordDAO.class.getName());
 
+    private AttendanceCounterDAO counterDAO;
+
+    /**
+     * Set AttendanceCounterDAO - used for dependency injection.
+     * Saving absence records keeps the per-month attendance counters in sync when it is set.
+     *
+     * @param counterDAO The AttendanceCounterDAO instance
+     */
+    public void setAttendanceCounterDAO(AttendanceCounterDAO counterDAO) {
+        this.counterDAO = counterDAO;
+    }
 
 
     public List<String> getClassIdsByTeacherId(String teacherId) throws SQLException {
@@ -185,7 +200,7 @@ public class AbsenceRecordDAO {
             String insertSql = "INSERT INTO attendance (attendance_id, session_id, student_id, status, notes, present, called, has_permission, absence_date, check_in_time, record_time) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
             try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                String newAttendanceId = UUID.randomUUID().toString();
+                String newAttendanceId = IdGenerators.nextId();
                 insertStmt.setString(1, newAttendanceId);
                 insertStmt.setString(2, record.getSessionId());
                 insertStmt.setString(3, record.getStudentId());
@@ -222,6 +237,14 @@ public class AbsenceRecordDAO {
             conn = DatabaseConnection.getConnection();
             conn.setAutoCommit(false); // Start transaction
 
+            List<String[]> studentSessions = new ArrayList<>();
+            for (AbsenceRecord record : absenceRecords) {
+                if (record.getSessionId() != null && record.getStudentId() != null) {
+                    studentSessions.add(new String[]{record.getStudentId(), record.getSessionId()});
+                }
+            }
+            Set<AttendanceCounterDAO.CounterKey> counterKeys = captureCounterKeys(conn, studentSessions);
+
             for (AbsenceRecord record : absenceRecords) {
                 // Assuming AbsenceRecord has getSessionId() and getStudentId()
                 if (record.getSessionId() == null || record.getStudentId() == null) {
@@ -235,17 +258,25 @@ public class AbsenceRecordDAO {
                 }
             }
 
-            conn.commit(); // Commit transaction
+            // Lỗi cập nhật bộ đếm làm rollback cả lô để bộ đếm không bị lệch
+            if (counterDAO != null) {
+                counterKeys.addAll(counterDAO.internalFindKeysByStudentSession(conn, studentSessions));
+                counterDAO.internalRefresh(conn, counterKeys);
+            }
+
+            Set<String> sessionIds = new HashSet<>();
+            for (String[] studentSession : studentSessions) {
+                sessionIds.add(studentSession[1]);
+            }
+            ReportSnapshotDAO.invalidateSessions(conn, sessionIds, Collections.singletonList(ReportSnapshotDAO.CLASS_REPORT));
+
+            DatabaseConnection.commit(conn); // Commit transaction
             LOGGER.info("Successfully saved " + absenceRecords.size() + " absence records.");
             return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error saving batch of absence records. Rolling back transaction.", e);
             if (conn != null) {
-                try {
-                    conn.rollback(); // Rollback on error
-                } catch (SQLException ex) {
-                    LOGGER.log(Level.SEVERE, "Error during transaction rollback.", ex);
-                }
+                DatabaseConnection.rollback(conn); // Rollback on error
             }
             return false;
         } finally {
@@ -259,5 +290,11 @@ public class AbsenceRecordDAO {
             }
         }
     }
-}
 
+    private Set<AttendanceCounterDAO.CounterKey> captureCounterKeys(Connection conn, List<String[]> studentSessions) throws SQLException {
+        if (counterDAO == null || studentSessions.isEmpty()) {
+            return new HashSet<>();
+        }
+        return counterDAO.internalFindKeysByStudentSession(conn, studentSessions);
+    }
+}
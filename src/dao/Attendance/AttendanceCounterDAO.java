@@ -0,0 +1,400 @@
+package src.dao.Attendance;
+
+import src.model.attendance.Attendance;
+import src.utils.DatabaseConnection;
+
+import java.sql.*;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object for the attendance_monthly_counters table.
+ * <p>
+ * The table holds one row per (student, course, month) with the present / excused / unexcused counts of that bucket,
+ * so attendance statistics can be read from a handful of rows instead of scanning the attendance history.
+ * Buckets are keyed on the month of absence_date (rows without absence_date go to {@link #UNDATED_MONTH}),
+ * and the course comes from class_sessions (empty string if the session is unknown).
+ * <p>
+ * AttendanceDAO and AbsenceRecordDAO call the internal methods inside their write transactions: the keys touched
+ * by a write are captured before and after it, and those buckets are recomputed from attendance. A bucket holds at
+ * most one row per session of the course in that month, so this stays cheap and never drifts the way +1/-1 deltas
+ * can. {@link #rebuildAll()} and {@link #rebuildForStudent(String)} repair the table if it ever gets out of sync.
+ */
+public class AttendanceCounterDAO {
+    private static final Logger DAO_LOGGER = Logger.getLogger(AttendanceCounterDAO.class.getName());
+
+    /** Bucket used for attendance rows without absence_date. */
+    static final LocalDate UNDATED_MONTH = LocalDate.of(1000, 1, 1);
+
+    private static final String MONTH_EXPR = "COALESCE(DATE_FORMAT(a.absence_date, '%Y-%m-01'), '1000-01-01')";
+    private static final String COURSE_EXPR = "COALESCE(cs.course_id, '')";
+
+    private static final String AGGREGATE_COLUMNS =
+            "SUM(CASE WHEN a.present = TRUE THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN a.present = FALSE AND a.has_permission = TRUE THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN a.present = FALSE AND a.has_permission = FALSE THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN a.status = 'Có mặt' THEN 1 ELSE 0 END), " +
+            "COUNT(*) ";
+
+    private static final String INSERT_COLUMNS =
+            "INSERT INTO attendance_monthly_counters (student_id, course_id, month_start, present_count, excused_count, " +
+            "unexcused_count, status_present_count, total_count) ";
+
+    /**
+     * Fills attendance_monthly_counters from the whole attendance table (used by {@link #rebuildAll()}; expects the
+     * counter table to be empty). Migration V002 keeps its own frozen copy.
+     */
+    private static final String BACKFILL_SQL = INSERT_COLUMNS +
+            "SELECT a.student_id, " + COURSE_EXPR + ", " + MONTH_EXPR + ", " + AGGREGATE_COLUMNS +
+            "FROM attendance a LEFT JOIN class_sessions cs ON cs.session_id = a.session_id " +
+            "GROUP BY a.student_id, " + COURSE_EXPR + ", " + MONTH_EXPR;
+
+    /**
+     * Identifies one counter row.
+     */
+    static final class CounterKey {
+        final String studentId;
+        final String courseId;
+        final LocalDate monthStart;
+
+        CounterKey(String studentId, String courseId, LocalDate monthStart) {
+            this.studentId = studentId;
+            this.courseId = courseId;
+            this.monthStart = monthStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CounterKey)) return false;
+            CounterKey other = (CounterKey) o;
+            return studentId.equals(other.studentId) && courseId.equals(other.courseId) && monthStart.equals(other.monthStart);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(studentId, courseId, monthStart);
+        }
+    }
+
+    public AttendanceCounterDAO() {
+    }
+
+    // --- Internal Methods (Package-private) ---
+
+    /**
+     * Finds the counter buckets of the given attendance records as they are currently stored.
+     * Records are matched on attendance_id or on (student_id, session_id), so the result covers both
+     * existing rows (before a write) and rows just written (after a write).
+     *
+     * @param conn        the active database connection
+     * @param attendances Attendance records
+     * @return Counter keys of the matching rows
+     * @throws SQLException if a database access error occurs
+     */
+    Set<CounterKey> internalFindKeys(Connection conn, Collection<Attendance> attendances) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        List<String[]> pairs = new ArrayList<>();
+        for (Attendance attendance : attendances) {
+            if (attendance.getId() != null && !attendance.getId().trim().isEmpty()) {
+                ids.add(attendance.getId());
+            }
+            if (attendance.getStudentId() != null && attendance.getSessionId() != null) {
+                pairs.add(new String[]{attendance.getStudentId(), attendance.getSessionId()});
+            }
+        }
+        return internalFindKeys(conn, ids, pairs);
+    }
+
+    /**
+     * Finds the counter buckets of the attendance rows with the given IDs.
+     *
+     * @param conn          the active database connection
+     * @param attendanceIds attendance_id values
+     * @return Counter keys of the matching rows
+     * @throws SQLException if a database access error occurs
+     */
+    Set<CounterKey> internalFindKeysByIds(Connection conn, Collection<String> attendanceIds) throws SQLException {
+        return internalFindKeys(conn, new ArrayList<>(attendanceIds), Collections.emptyList());
+    }
+
+    /**
+     * Finds the counter buckets of the attendance rows for the given (student_id, session_id) pairs.
+     *
+     * @param conn  the active database connection
+     * @param pairs {studentId, sessionId} pairs
+     * @return Counter keys of the matching rows
+     * @throws SQLException if a database access error occurs
+     */
+    Set<CounterKey> internalFindKeysByStudentSession(Connection conn, List<String[]> pairs) throws SQLException {
+        return internalFindKeys(conn, Collections.emptyList(), pairs);
+    }
+
+    private Set<CounterKey> internalFindKeys(Connection conn, List<String> ids, List<String[]> pairs) throws SQLException {
+        Set<CounterKey> keys = new HashSet<>();
+        if (ids.isEmpty() && pairs.isEmpty()) {
+            return keys;
+        }
+
+        StringBuilder where = new StringBuilder();
+        if (!ids.isEmpty()) {
+            where.append("a.attendance_id IN (").append(String.join(",", Collections.nCopies(ids.size(), "?"))).append(")");
+        }
+        if (!pairs.isEmpty()) {
+            if (where.length() > 0) {
+                where.append(" OR ");
+            }
+            where.append("(a.student_id, a.session_id) IN (")
+                    .append(String.join(",", Collections.nCopies(pairs.size(), "(?, ?)"))).append(")");
+        }
+
+        String sql = "SELECT DISTINCT a.student_id, " + COURSE_EXPR + " AS course_id, " + MONTH_EXPR + " AS month_start " +
+                "FROM attendance a LEFT JOIN class_sessions cs ON cs.session_id = a.session_id " +
+                "WHERE " + where;
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            for (String[] pair : pairs) {
+                stmt.setString(index++, pair[0]);
+                stmt.setString(index++, pair[1]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(new CounterKey(rs.getString("student_id"), rs.getString("course_id"),
+                            rs.getDate("month_start").toLocalDate()));
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Recomputes the given counter buckets from the attendance table.
+     * Buckets that no longer have any attendance row are removed.
+     *
+     * @param conn the active database connection (expected to be in the caller's write transaction)
+     * @param keys Buckets to recompute
+     * @throws SQLException if a database access error occurs
+     */
+    void internalRefresh(Connection conn, Set<CounterKey> keys) throws SQLException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        String deleteSql = "DELETE FROM attendance_monthly_counters WHERE student_id = ? AND course_id = ? AND month_start = ?";
+        String insertSql = INSERT_COLUMNS +
+                "SELECT a.student_id, ?, ?, " + AGGREGATE_COLUMNS +
+                "FROM attendance a LEFT JOIN class_sessions cs ON cs.session_id = a.session_id " +
+                "WHERE a.student_id = ? AND " + COURSE_EXPR + " = ? AND " + MONTH_EXPR + " = ? " +
+                "GROUP BY a.student_id";
+
+        try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql);
+             PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+            for (CounterKey key : keys) {
+                Date month = Date.valueOf(key.monthStart);
+                deleteStmt.setString(1, key.studentId);
+                deleteStmt.setString(2, key.courseId);
+                deleteStmt.setDate(3, month);
+                deleteStmt.addBatch();
+
+                insertStmt.setString(1, key.courseId);
+                insertStmt.setDate(2, month);
+                insertStmt.setString(3, key.studentId);
+                insertStmt.setString(4, key.courseId);
+                insertStmt.setDate(5, month);
+                insertStmt.addBatch();
+            }
+            deleteStmt.executeBatch();
+            insertStmt.executeBatch();
+        }
+    }
+
+    /**
+     * Sums a student's counters over whole months.
+     *
+     * @param conn       the active database connection
+     * @param studentId  Student ID
+     * @param firstMonth First day of the first month (inclusive)
+     * @param lastMonth  First day of the last month (inclusive)
+     * @return Summed statistics
+     * @throws SQLException if a database access error occurs
+     */
+    AttendanceDAO.AttendanceStats internalSumStudentMonths(Connection conn, String studentId, LocalDate firstMonth,
+                                                           LocalDate lastMonth) throws SQLException {
+        String sql = "SELECT SUM(present_count) AS present_count, SUM(excused_count) AS excused_count, " +
+                "SUM(unexcused_count) AS unexcused_count " +
+                "FROM attendance_monthly_counters " +
+                "WHERE student_id = ? AND month_start BETWEEN ? AND ? AND month_start > ?";
+
+        AttendanceDAO.AttendanceStats stats = new AttendanceDAO.AttendanceStats();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, studentId);
+            stmt.setDate(2, Date.valueOf(firstMonth));
+            stmt.setDate(3, Date.valueOf(lastMonth));
+            stmt.setDate(4, Date.valueOf(UNDATED_MONTH));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    stats.setPresentCount(rs.getInt("present_count"));
+                    stats.setExcusedAbsenceCount(rs.getInt("excused_count"));
+                    stats.setUnexcusedAbsenceCount(rs.getInt("unexcused_count"));
+                }
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Internal method to get a student's statistics per course, over all months.
+     *
+     * @param conn      the active database connection
+     * @param studentId Student ID
+     * @return Map of course_id to statistics
+     * @throws SQLException if a database access error occurs
+     */
+    Map<String, AttendanceDAO.AttendanceStats> internalGetStudentCourseSummaries(Connection conn, String studentId) throws SQLException {
+        String sql = "SELECT course_id, SUM(present_count) AS present_count, SUM(excused_count) AS excused_count, " +
+                "SUM(unexcused_count) AS unexcused_count " +
+                "FROM attendance_monthly_counters WHERE student_id = ? GROUP BY course_id";
+
+        Map<String, AttendanceDAO.AttendanceStats> summaries = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, studentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    AttendanceDAO.AttendanceStats stats = new AttendanceDAO.AttendanceStats();
+                    stats.setPresentCount(rs.getInt("present_count"));
+                    stats.setExcusedAbsenceCount(rs.getInt("excused_count"));
+                    stats.setUnexcusedAbsenceCount(rs.getInt("unexcused_count"));
+                    summaries.put(rs.getString("course_id"), stats);
+                }
+            }
+        }
+        return summaries;
+    }
+
+    // --- Public Wrapper Methods ---
+
+    /**
+     * Gets a student's attendance statistics per course (e.g. for parent-facing summaries).
+     *
+     * @param studentId Student ID
+     * @return Map of course_id to statistics; empty on error
+     */
+    public Map<String, AttendanceDAO.AttendanceStats> getStudentCourseSummaries(String studentId) {
+        if (studentId == null || studentId.trim().isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return internalGetStudentCourseSummaries(conn, studentId);
+        } catch (SQLException e) {
+            DAO_LOGGER.log(Level.SEVERE, "Error getting attendance course summaries for student " + studentId, e);
+            return new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * Gets the overall attendance rate (share of rows with status 'Có mặt') from the counters.
+     *
+     * @return Attendance rate as a percentage (0-100)
+     * @throws SQLException if a database access error occurs
+     */
+    public double getOverallAttendanceRate() throws SQLException {
+        String sql = "SELECT SUM(status_present_count) AS present_count, SUM(total_count) AS total_count " +
+                "FROM attendance_monthly_counters";
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next()) {
+                long presentCount = rs.getLong("present_count");
+                long totalCount = rs.getLong("total_count");
+                if (totalCount > 0) {
+                    return ((double) presentCount / totalCount) * 100.0;
+                }
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * Rebuilds the whole counter table from attendance in one transaction.
+     *
+     * @return Number of counter rows written
+     * @throws SQLException if the rebuild fails; the previous counters are kept
+     */
+    public int rebuildAll() throws SQLException {
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM attendance_monthly_counters");
+                int rows = stmt.executeUpdate(BACKFILL_SQL);
+                DatabaseConnection.commit(conn);
+                DAO_LOGGER.log(Level.INFO, "Rebuilt attendance counters: {0} rows.", rows);
+                return rows;
+            }
+        } catch (SQLException e) {
+            DAO_LOGGER.log(Level.SEVERE, "Error rebuilding attendance counters.", e);
+            DatabaseConnection.rollback(conn);
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    DAO_LOGGER.log(Level.SEVERE, "Error closing connection after rebuilding attendance counters.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the counters of a single student.
+     *
+     * @param studentId Student ID
+     * @return true if successful, false otherwise
+     */
+    public boolean rebuildForStudent(String studentId) {
+        if (studentId == null || studentId.trim().isEmpty()) {
+            return false;
+        }
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+            try (PreparedStatement deleteStmt = conn.prepareStatement(
+                    "DELETE FROM attendance_monthly_counters WHERE student_id = ?");
+                 PreparedStatement insertStmt = conn.prepareStatement(INSERT_COLUMNS +
+                         "SELECT a.student_id, " + COURSE_EXPR + ", " + MONTH_EXPR + ", " + AGGREGATE_COLUMNS +
+                         "FROM attendance a LEFT JOIN class_sessions cs ON cs.session_id = a.session_id " +
+                         "WHERE a.student_id = ? " +
+                         "GROUP BY a.student_id, " + COURSE_EXPR + ", " + MONTH_EXPR)) {
+                deleteStmt.setString(1, studentId);
+                deleteStmt.executeUpdate();
+                insertStmt.setString(1, studentId);
+                insertStmt.executeUpdate();
+            }
+            DatabaseConnection.commit(conn);
+            return true;
+        } catch (SQLException e) {
+            DAO_LOGGER.log(Level.SEVERE, "Error rebuilding attendance counters for student " + studentId, e);
+            DatabaseConnection.rollback(conn);
+            return false;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    DAO_LOGGER.log(Level.SEVERE, "Error closing connection after rebuilding attendance counters for student " + studentId, e);
+                }
+            }
+        }
+    }
+}
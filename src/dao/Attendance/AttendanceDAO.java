@@ -3,8 +3,10 @@ package src.dao.Attendance;
 
 import src.dao.ClassSession.ClassSessionDAO;
 import src.dao.Person.StudentDAO;
+import src.dao.Report.ReportSnapshotDAO;
 import src.model.ClassSession;
 import src.model.attendance.Attendance;
+import src.model.attendance.CourseAttendanceMatrix;
 import src.model.person.Student;
 import src.utils.DatabaseConnection;
 
@@ -25,9 +27,17 @@ import java.util.logging.Logger;
 public class AttendanceDAO {
     private static final Logger DAO_LOGGER = Logger.getLogger(AttendanceDAO.class.getName());
 
+    // Điểm danh chỉ ảnh hưởng báo cáo lớp học (cột chuyên cần)
+    private static final List<String> CLASS_REPORT_ONLY = Collections.singletonList(ReportSnapshotDAO.CLASS_REPORT);
+
     // Dependencies - must be set externally by a DaoManager
     private StudentDAO studentDAO;
     private ClassSessionDAO sessionDAO;
+    private AttendanceCounterDAO counterDAO;
+
+    // Các ma trận điểm danh đang được màn hình sử dụng; được cập nhật sau mỗi lần lưu thành công
+    private final Set<CourseAttendanceMatrix> openMatrices =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
     /**
      * Constructor. Dependencies are not initialized here; they must be set externally.
@@ -54,6 +64,16 @@ public class AttendanceDAO {
         this.sessionDAO = sessionDAO;
     }
 
+    /**
+     * Set AttendanceCounterDAO - used for dependency injection.
+     * Writes keep the per-month attendance counters in sync when it is set.
+     *
+     * @param counterDAO The AttendanceCounterDAO instance
+     */
+    public void setAttendanceCounterDAO(AttendanceCounterDAO counterDAO) {
+        this.counterDAO = counterDAO;
+    }
+
     /**
      * Check if StudentDAO dependency is set.
      */
@@ -73,6 +93,74 @@ public class AttendanceDAO {
     }
 
 
+    /**
+     * Applies committed attendance records to the matrices loaded by loadCourseAttendanceMatrix.
+     * Cells outside a matrix (other courses or students) are ignored by the matrix itself.
+     */
+    private void updateMatrices(Collection<Attendance> written) {
+        List<CourseAttendanceMatrix> matrices;
+        synchronized (openMatrices) {
+            if (openMatrices.isEmpty()) {
+                return;
+            }
+            matrices = new ArrayList<>(openMatrices);
+        }
+        for (CourseAttendanceMatrix matrix : matrices) {
+            for (Attendance attendance : written) {
+                matrix.setAttendance(attendance);
+            }
+        }
+    }
+
+    private void clearMatrices(String studentId, String sessionId) {
+        List<CourseAttendanceMatrix> matrices;
+        synchronized (openMatrices) {
+            matrices = new ArrayList<>(openMatrices);
+        }
+        for (CourseAttendanceMatrix matrix : matrices) {
+            matrix.clearAttendance(studentId, sessionId);
+        }
+    }
+
+    /**
+     * Captures the counter buckets of the given records before a write.
+     * Counter errors are rethrown so the attendance write rolls back with them and the counters never drift.
+     */
+    private Set<AttendanceCounterDAO.CounterKey> captureCounterKeys(Connection conn, Collection<Attendance> attendances) throws SQLException {
+        if (counterDAO == null || attendances.isEmpty()) {
+            return new HashSet<>();
+        }
+        return counterDAO.internalFindKeys(conn, attendances);
+    }
+
+    /**
+     * Recomputes the counter buckets touched by a write: those captured before it plus those of the written records.
+     */
+    private void refreshCounters(Connection conn, Set<AttendanceCounterDAO.CounterKey> keysBefore, Collection<Attendance> written) throws SQLException {
+        if (counterDAO == null) {
+            return;
+        }
+        Set<AttendanceCounterDAO.CounterKey> keys = new HashSet<>(keysBefore);
+        if (!written.isEmpty()) {
+            keys.addAll(counterDAO.internalFindKeys(conn, written));
+        }
+        counterDAO.internalRefresh(conn, keys);
+    }
+
+    /**
+     * Drops the class report snapshots whose period covers the sessions of the written records.
+     */
+    private void invalidateReportSnapshots(Connection conn, Collection<Attendance> written) {
+        Set<String> sessionIds = new HashSet<>();
+        for (Attendance attendance : written) {
+            if (attendance.getSessionId() != null) {
+                sessionIds.add(attendance.getSessionId());
+            }
+        }
+        ReportSnapshotDAO.invalidateSessions(conn, sessionIds, CLASS_REPORT_ONLY);
+    }
+
+
     // --- Internal Methods (Package-private or Private) ---
     // These methods take a Connection as a parameter and perform the core SQL logic.
 
@@ -119,6 +207,10 @@ public class AttendanceDAO {
             }
 
             int affectedRows = stmt.executeUpdate();
+            if (affectedRows > 0) {
+                refreshCounters(conn, new HashSet<>(), Collections.singletonList(attendance));
+                invalidateReportSnapshots(conn, Collections.singletonList(attendance));
+            }
             return affectedRows > 0;
         }
     }
@@ -135,6 +227,9 @@ public class AttendanceDAO {
         String sql = "UPDATE attendance SET student_id = ?, session_id = ?, present = ?, " +
                 "notes = ?, called = ?, has_permission = ?, check_in_time = ?, record_time = ?, status = ?, absence_date = ? " +
                 "WHERE attendance_id = ?";
+        Set<AttendanceCounterDAO.CounterKey> counterKeys = captureCounterKeys(conn, Collections.singletonList(attendance));
+        // Buổi học cũ của bản ghi (nếu bị đổi sang buổi khác)
+        ReportSnapshotDAO.invalidateAttendance(conn, Collections.singletonList(attendance.getId()), CLASS_REPORT_ONLY);
 
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, attendance.getStudentId());
@@ -165,7 +260,12 @@ public class AttendanceDAO {
             }
             stmt.setString(11, attendance.getId()); // attendance_id for WHERE clause
 
-            return stmt.executeUpdate() > 0;
+            boolean updated = stmt.executeUpdate() > 0;
+            if (updated) {
+                refreshCounters(conn, counterKeys, Collections.singletonList(attendance));
+                invalidateReportSnapshots(conn, Collections.singletonList(attendance));
+            }
+            return updated;
         }
     }
 
@@ -179,9 +279,17 @@ public class AttendanceDAO {
      */
     boolean internalDelete(Connection conn, String id) throws SQLException {
         String sql = "DELETE FROM attendance WHERE attendance_id = ?";
+        Attendance deleted = new Attendance();
+        deleted.setId(id);
+        Set<AttendanceCounterDAO.CounterKey> counterKeys = captureCounterKeys(conn, Collections.singletonList(deleted));
+        ReportSnapshotDAO.invalidateAttendance(conn, Collections.singletonList(id), CLASS_REPORT_ONLY);
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, id);
-            return stmt.executeUpdate() > 0;
+            boolean removed = stmt.executeUpdate() > 0;
+            if (removed) {
+                refreshCounters(conn, counterKeys, Collections.emptyList());
+            }
+            return removed;
         }
     }
 
@@ -401,6 +509,7 @@ public class AttendanceDAO {
         String sql = "INSERT INTO attendance (attendance_id, student_id, session_id, present, notes, called, has_permission, " +
                 "check_in_time, record_time, status, absence_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         int successCount = 0;
+        Set<AttendanceCounterDAO.CounterKey> counterKeys = captureCounterKeys(conn, attendances);
 
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             for (Attendance attendance : attendances) {
@@ -437,6 +546,8 @@ public class AttendanceDAO {
                 }
             }
         }
+        refreshCounters(conn, counterKeys, attendances);
+        invalidateReportSnapshots(conn, attendances);
         return successCount;
     }
 
@@ -453,6 +564,7 @@ public class AttendanceDAO {
                 "notes = ?, called = ?, has_permission = ?, check_in_time = ?, record_time = ?, status = ?, absence_date = ? " +
                 "WHERE attendance_id = ?";
         int successCount = 0;
+        Set<AttendanceCounterDAO.CounterKey> counterKeys = captureCounterKeys(conn, attendances);
 
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             for (Attendance attendance : attendances) {
@@ -489,12 +601,77 @@ public class AttendanceDAO {
                 }
             }
         }
+        refreshCounters(conn, counterKeys, attendances);
+        invalidateReportSnapshots(conn, attendances);
+        return successCount;
+    }
+
+    /**
+     * Internal method to insert or update multiple attendance records in one batch using an existing connection.
+     * Rows are matched on attendance_id or on the (student_id, session_id) unique key, so replaying the same
+     * records is idempotent. Like an update through AttendanceController (which edits the stored row), an existing
+     * row keeps its check_in_time, record_time and absence_date; they are only filled in when still empty.
+     *
+     * @param conn        the active database connection
+     * @param attendances List of attendance records to upsert
+     * @return Number of records successfully written
+     * @throws SQLException if a database access error occurs
+     */
+    int internalBatchUpsert(Connection conn, List<Attendance> attendances) throws SQLException {
+        String sql = "INSERT INTO attendance (attendance_id, student_id, session_id, present, notes, called, has_permission, " +
+                "check_in_time, record_time, status, absence_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE present = VALUES(present), notes = VALUES(notes), called = VALUES(called), " +
+                "has_permission = VALUES(has_permission), " +
+                "check_in_time = COALESCE(check_in_time, VALUES(check_in_time)), " +
+                "record_time = COALESCE(record_time, VALUES(record_time)), status = VALUES(status), " +
+                "absence_date = COALESCE(absence_date, VALUES(absence_date))";
+        int successCount = 0;
+        Set<AttendanceCounterDAO.CounterKey> counterKeys = captureCounterKeys(conn, attendances);
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Attendance attendance : attendances) {
+                stmt.setString(1, attendance.getId());
+                stmt.setString(2, attendance.getStudentId());
+                stmt.setString(3, attendance.getSessionId());
+                stmt.setBoolean(4, attendance.isPresent());
+                stmt.setString(5, attendance.getNote());
+                stmt.setBoolean(6, attendance.isCalled());
+                stmt.setBoolean(7, attendance.hasPermission());
+
+                if (attendance.getCheckInTime() != null) {
+                    stmt.setTimestamp(8, Timestamp.valueOf(attendance.getCheckInTime()));
+                } else {
+                    stmt.setNull(8, Types.TIMESTAMP);
+                }
+                if (attendance.getRecordTime() != null) {
+                    stmt.setTimestamp(9, Timestamp.valueOf(attendance.getRecordTime()));
+                } else {
+                    stmt.setTimestamp(9, Timestamp.valueOf(LocalDateTime.now()));
+                }
+                stmt.setString(10, attendance.getStatus());
+                if (attendance.getAbsenceDate() != null) {
+                    stmt.setDate(11, Date.valueOf(attendance.getAbsenceDate()));
+                } else {
+                    stmt.setNull(11, Types.DATE);
+                }
+                stmt.addBatch();
+            }
+            int[] results = stmt.executeBatch();
+            for (int result : results) {
+                if (result >= 0 || result == Statement.SUCCESS_NO_INFO) {
+                    successCount++;
+                }
+            }
+        }
+        refreshCounters(conn, counterKeys, attendances);
+        invalidateReportSnapshots(conn, attendances);
         return successCount;
     }
 
     /**
      * Internal method to get attendance statistics for a student over a time period using an existing connection.
-     * Uses 'absence_date' for filtering.
+     * Uses 'absence_date' for filtering. Whole calendar months inside the range are read from the
+     * attendance_monthly_counters table; only the partial months at either end are scanned from attendance.
      * @param conn      the active database connection
      * @param studentId Student ID
      * @param startDate Start date
@@ -503,6 +680,39 @@ public class AttendanceDAO {
      * @throws SQLException if a database access error occurs
      */
     AttendanceStats internalGetStudentStats(Connection conn, String studentId, LocalDate startDate, LocalDate endDate) throws SQLException {
+        if (counterDAO == null || endDate.isBefore(startDate)) {
+            return internalScanStudentStats(conn, studentId, startDate, endDate);
+        }
+        LocalDate firstFullMonth = startDate.getDayOfMonth() == 1 ? startDate : startDate.withDayOfMonth(1).plusMonths(1);
+        LocalDate lastFullMonth = endDate.equals(endDate.withDayOfMonth(endDate.lengthOfMonth()))
+                ? endDate.withDayOfMonth(1)
+                : endDate.withDayOfMonth(1).minusMonths(1);
+        if (firstFullMonth.isAfter(lastFullMonth)) {
+            // Không có tháng trọn vẹn nào trong khoảng: quét trực tiếp (tối đa ~2 tháng dữ liệu của một học viên)
+            return internalScanStudentStats(conn, studentId, startDate, endDate);
+        }
+
+        AttendanceStats stats = counterDAO.internalSumStudentMonths(conn, studentId, firstFullMonth, lastFullMonth);
+        if (startDate.isBefore(firstFullMonth)) {
+            addStats(stats, internalScanStudentStats(conn, studentId, startDate, firstFullMonth.minusDays(1)));
+        }
+        LocalDate afterLastFullMonth = lastFullMonth.plusMonths(1);
+        if (!endDate.isBefore(afterLastFullMonth)) {
+            addStats(stats, internalScanStudentStats(conn, studentId, afterLastFullMonth, endDate));
+        }
+        return stats;
+    }
+
+    private static void addStats(AttendanceStats target, AttendanceStats other) {
+        target.setPresentCount(target.getPresentCount() + other.getPresentCount());
+        target.setExcusedAbsenceCount(target.getExcusedAbsenceCount() + other.getExcusedAbsenceCount());
+        target.setUnexcusedAbsenceCount(target.getUnexcusedAbsenceCount() + other.getUnexcusedAbsenceCount());
+    }
+
+    /**
+     * Scans the attendance table for a student's statistics over a date range (filtered on 'absence_date').
+     */
+    private AttendanceStats internalScanStudentStats(Connection conn, String studentId, LocalDate startDate, LocalDate endDate) throws SQLException {
         String sql = "SELECT " +
                 "SUM(CASE WHEN present = TRUE THEN 1 ELSE 0 END) as present_count, " +
                 "SUM(CASE WHEN present = FALSE AND has_permission = TRUE THEN 1 ELSE 0 END) as excused_count, " +
@@ -678,19 +888,16 @@ public class AttendanceDAO {
             conn.setAutoCommit(false);
             boolean success = internalSave(conn, attendance);
             if (success) {
-                conn.commit();
+                DatabaseConnection.commit(conn);
+                updateMatrices(Collections.singletonList(attendance));
             } else {
-                conn.rollback(); // Explicit rollback on failure
+                DatabaseConnection.rollback(conn); // Explicit rollback on failure
             }
             return success;
         } catch (SQLException e) {
             DAO_LOGGER.log(Level.SEVERE, "Error saving attendance: " + attendance.getId(), e);
             if (conn != null) {
-                try {
-                    conn.rollback(); // Attempt rollback on exception
-                } catch (SQLException ex) {
-                    DAO_LOGGER.log(Level.SEVERE, "Error rolling back transaction for attendance: " + attendance.getId(), ex);
-                }
+                DatabaseConnection.rollback(conn); // Attempt rollback on exception
             }
             return false;
         } finally {
@@ -716,19 +923,16 @@ public class AttendanceDAO {
             conn.setAutoCommit(false);
             boolean success = internalUpdate(conn, attendance);
             if (success) {
-                conn.commit();
+                DatabaseConnection.commit(conn);
+                updateMatrices(Collections.singletonList(attendance));
             } else {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
             }
             return success;
         } catch (SQLException e) {
             DAO_LOGGER.log(Level.SEVERE, "Error updating attendance: " + attendance.getId(), e);
             if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex) {
-                    DAO_LOGGER.log(Level.SEVERE, "Error rolling back transaction for attendance update: " + attendance.getId(), ex);
-                }
+                DatabaseConnection.rollback(conn);
             }
             return false;
         } finally {
@@ -752,21 +956,21 @@ public class AttendanceDAO {
         try {
             conn = DatabaseConnection.getConnection();
             conn.setAutoCommit(false);
+            String[] cell = findMatrixCell(conn, id);
             boolean success = internalDelete(conn, id);
             if (success) {
-                conn.commit();
+                DatabaseConnection.commit(conn);
+                if (cell != null) {
+                    clearMatrices(cell[0], cell[1]);
+                }
             } else {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
             }
             return success;
         } catch (SQLException e) {
             DAO_LOGGER.log(Level.SEVERE, "Error deleting attendance with ID: " + id, e);
             if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex) {
-                    DAO_LOGGER.log(Level.SEVERE, "Error rolling back transaction for attendance deletion: " + id, ex);
-                }
+                DatabaseConnection.rollback(conn);
             }
             return false;
         } finally {
@@ -885,16 +1089,13 @@ public class AttendanceDAO {
             conn = DatabaseConnection.getConnection();
             conn.setAutoCommit(false);
             int savedCount = internalBatchSave(conn, attendances);
-            conn.commit();
+            DatabaseConnection.commit(conn);
+            updateMatrices(attendances);
             return savedCount;
         } catch (SQLException e) {
             DAO_LOGGER.log(Level.SEVERE, "Error batch saving attendances.", e);
             if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex) {
-                    DAO_LOGGER.log(Level.SEVERE, "Error rolling back batch save transaction.", ex);
-                }
+                DatabaseConnection.rollback(conn);
             }
             return 0;
         } finally {
@@ -922,16 +1123,13 @@ public class AttendanceDAO {
             conn = DatabaseConnection.getConnection();
             conn.setAutoCommit(false);
             int updatedCount = internalBatchUpdate(conn, attendances);
-            conn.commit();
+            DatabaseConnection.commit(conn);
+            updateMatrices(attendances);
             return updatedCount;
         } catch (SQLException e) {
             DAO_LOGGER.log(Level.SEVERE, "Error batch updating attendances.", e);
             if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex) {
-                    DAO_LOGGER.log(Level.SEVERE, "Error rolling back batch update transaction.", ex);
-                }
+                DatabaseConnection.rollback(conn);
             }
             return 0;
         } finally {
@@ -946,6 +1144,40 @@ public class AttendanceDAO {
         }
     }
 
+    /**
+     * Insert or update a batch of attendance records in one transaction.
+     * Unlike batchSave/batchUpdate, errors are propagated so callers (e.g. the write-behind flusher) can retry.
+     *
+     * @param attendances Attendance records, each with attendance_id, student_id and session_id set
+     * @return Number of records written
+     * @throws SQLException if the batch could not be written; the transaction is rolled back
+     */
+    public int batchUpsert(List<Attendance> attendances) throws SQLException {
+        if (attendances == null || attendances.isEmpty()) return 0;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+            int writtenCount = internalBatchUpsert(conn, attendances);
+            DatabaseConnection.commit(conn);
+            updateMatrices(attendances);
+            return writtenCount;
+        } catch (SQLException e) {
+            DAO_LOGGER.log(Level.SEVERE, "Error batch upserting attendances.", e);
+            DatabaseConnection.rollback(conn);
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    DAO_LOGGER.log(Level.SEVERE, "Error closing connection after batch upserting attendances.", e);
+                }
+            }
+        }
+    }
+
     public AttendanceStats getStudentStats(String studentId, LocalDate startDate, LocalDate endDate) {
         if (studentId == null || studentId.trim().isEmpty() || startDate == null || endDate == null) {
             DAO_LOGGER.warning("Invalid input for getStudentStats: studentId, startDate, or endDate is null/empty.");
@@ -979,4 +1211,61 @@ public class AttendanceDAO {
         return resultMap;
     }
 
+    // (student_id, session_id) của bản ghi sắp bị xóa, hoặc null nếu không cần hay không tìm thấy
+    private String[] findMatrixCell(Connection conn, String attendanceId) throws SQLException {
+        if (openMatrices.isEmpty()) {
+            return null;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT student_id, session_id FROM attendance WHERE attendance_id = ?")) {
+            stmt.setString(1, attendanceId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new String[]{rs.getString("student_id"), rs.getString("session_id")} : null;
+            }
+        }
+    }
+
+    /**
+     * Nạp ma trận điểm danh (học viên × buổi học) của một khóa học bằng một truy vấn duy nhất.
+     * Chỉ đọc các cột trạng thái, không nạp Student/ClassSession cho từng dòng như mapResultSetToAttendance.
+     * Ma trận trả về được DAO này giữ (tham chiếu yếu) và cập nhật sau mỗi lần lưu điểm danh thành công.
+     *
+     * @param courseId   ID của khóa học
+     * @param studentIds Danh sách ID học viên (thứ tự dòng của ma trận)
+     * @param sessionIds Danh sách ID buổi học theo thứ tự thời gian (thứ tự cột của ma trận)
+     * @return Ma trận điểm danh đã được điền dữ liệu
+     * @throws SQLException Nếu có lỗi truy vấn CSDL
+     */
+    public CourseAttendanceMatrix loadCourseAttendanceMatrix(String courseId, List<String> studentIds,
+                                                            List<String> sessionIds) throws SQLException {
+        CourseAttendanceMatrix matrix = new CourseAttendanceMatrix(courseId, studentIds, sessionIds);
+        openMatrices.add(matrix);
+        if (courseId == null || courseId.trim().isEmpty() || studentIds.isEmpty() || sessionIds.isEmpty()) {
+            return matrix;
+        }
+
+        String sql = "SELECT a.student_id, a.session_id, a.present, a.has_permission, a.called " +
+                "FROM attendance a " +
+                "JOIN class_sessions cs ON a.session_id = cs.session_id " +
+                "WHERE cs.course_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, courseId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    matrix.setAttendance(
+                            rs.getString("student_id"),
+                            rs.getString("session_id"),
+                            rs.getBoolean("present"),
+                            rs.getBoolean("has_permission"),
+                            rs.getBoolean("called"));
+                }
+            }
+        }
+        DAO_LOGGER.log(Level.INFO, "Loaded attendance matrix for course {0}: {1} students x {2} sessions.",
+                new Object[]{courseId, matrix.getStudentCount(), matrix.getSessionCount()});
+        return matrix;
+    }
+
 }
@@ -0,0 +1,462 @@
+package src.dao.Attendance;
+
+import src.model.attendance.Attendance;
+import src.model.attendance.HomeworkSubmissionModel;
+import src.utils.WriteBehindJournal;
+import src.utils.IdGenerators;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind pipeline for attendance and homework-check saves.
+ * <p>
+ * Saves are appended to a local {@link WriteBehindJournal} (fsync'd per batch) and acknowledged to the
+ * caller immediately. A background flusher drains the pending entries into the database in batches,
+ * retrying with exponential backoff while the database is unavailable. Journal entries are only
+ * acknowledged after the database commit, so nothing is lost if the application stops mid-way;
+ * pending entries are replayed on the next start.
+ * <p>
+ * Idempotency keys: attendance rows are upserted on attendance_id / (student_id, session_id) and homework
+ * submissions on (student_id, homework_id), so re-applying an entry after a crash has no extra effect.
+ * <p>
+ * When a batch fails for a reason other than an unreachable database (e.g. a foreign key violation), its
+ * entries are retried one by one so a single bad entry cannot hold back the whole batch. An entry that keeps
+ * failing is moved to a dead-letter journal (kept for manual inspection) after {@value #MAX_ENTRY_ATTEMPTS}
+ * attempts, or at once if it cannot even be decoded, and the entries behind it continue.
+ */
+public class AttendanceWriteBehindQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(AttendanceWriteBehindQueue.class.getName());
+
+    static final String TYPE_ATTENDANCE = "ATTENDANCE";
+    static final String TYPE_HOMEWORK_SUBMISSION = "HOMEWORK_SUBMISSION";
+
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final long FLUSH_INTERVAL_MS = 2_000;
+    private static final long MAX_BACKOFF_MS = 60_000;
+    private static final int MAX_ENTRY_ATTEMPTS = 5;
+
+    private final WriteBehindJournal journal;
+    private final WriteBehindJournal deadLetters;
+    private final AttendanceDAO attendanceDAO;
+    private final HomeworkSubmissionDAO homeworkSubmissionDAO;
+
+    private final Deque<WriteBehindJournal.Entry> pending = new ArrayDeque<>();
+    private final ScheduledExecutorService flusher;
+    private final Object flushLock = new Object();
+    private final Map<String, Integer> failedAttempts = new HashMap<>(); // entryId -> số lần lỗi, chỉ dùng trong flushLock
+
+    private long backoffMs = 0;
+    private long nextAttemptAt = 0;
+    private boolean journalNeedsCompaction = false;
+    private volatile boolean running = false;
+
+    /**
+     * @param journal               Durable local journal
+     * @param deadLetters           Journal receiving the entries that could not be applied
+     * @param attendanceDAO         DAO used to apply attendance entries
+     * @param homeworkSubmissionDAO DAO used to apply homework submission entries
+     */
+    public AttendanceWriteBehindQueue(WriteBehindJournal journal, WriteBehindJournal deadLetters,
+                                      AttendanceDAO attendanceDAO, HomeworkSubmissionDAO homeworkSubmissionDAO) {
+        this.journal = journal;
+        this.deadLetters = deadLetters;
+        this.attendanceDAO = attendanceDAO;
+        this.homeworkSubmissionDAO = homeworkSubmissionDAO;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "attendance-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Replays entries left in the journal by a previous run and starts the background flusher.
+     */
+    public void start() {
+        if (running) {
+            return;
+        }
+        try {
+            List<WriteBehindJournal.Entry> replay = journal.readPending();
+            synchronized (pending) {
+                pending.addAll(replay);
+            }
+            if (!replay.isEmpty()) {
+                LOGGER.log(Level.INFO, "Replaying {0} pending write-behind entries from journal.", replay.size());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Could not read write-behind journal. Pending entries from a previous run are not replayed.", e);
+        }
+        running = true;
+        flusher.scheduleWithFixedDelay(this::flushSafely, 0, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tries a last flush and stops the background thread. Entries that could not be written stay in the journal.
+     */
+    public void shutdown() {
+        running = false;
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flusher.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        backoffMs = 0;
+        nextAttemptAt = 0;
+        flushSafely();
+        journal.close();
+        deadLetters.close();
+    }
+
+    /**
+     * @return Number of entries accepted but not yet written to the database
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Flushes on the flusher thread, after every save submitted so far. Callers that want to show the saved rows
+     * as stored reload once this completes with true; with false the rows are still only in the journal.
+     *
+     * @return Completes with true when nothing is pending any more, false if entries are still waiting
+     * (database unreachable or in backoff, or the queue is stopped)
+     */
+    public CompletableFuture<Boolean> flushAsync() {
+        if (!running) {
+            return CompletableFuture.completedFuture(getPendingCount() == 0);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                flushSafely();
+                return getPendingCount() == 0;
+            }, flusher);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(getPendingCount() == 0);
+        }
+    }
+
+    // --- Producers ---
+
+    /**
+     * Journals attendance records (insert or update) for asynchronous write to the database.
+     * Records without an attendance_id get a new one, which then serves as their idempotency key.
+     *
+     * @param attendances Attendance records with student_id and session_id set
+     * @return Number of records accepted
+     * @throws IOException if the records could not be made durable locally
+     */
+    public int submitAttendance(List<Attendance> attendances) throws IOException {
+        if (attendances == null || attendances.isEmpty()) {
+            return 0;
+        }
+        List<String[]> records = new ArrayList<>(attendances.size());
+        for (Attendance attendance : attendances) {
+            if (attendance.getId() == null || attendance.getId().trim().isEmpty()) {
+                attendance.setId(IdGenerators.nextId());
+            }
+            records.add(toFields(attendance));
+        }
+        enqueue(journal.append(TYPE_ATTENDANCE, records));
+        return records.size();
+    }
+
+    /**
+     * Journals homework submission checks for asynchronous write to the database.
+     *
+     * @param submissions Submissions with student_id and homework_id set
+     * @return Number of submissions accepted
+     * @throws IOException if the submissions could not be made durable locally
+     */
+    public int submitHomeworkSubmissions(List<HomeworkSubmissionModel> submissions) throws IOException {
+        if (submissions == null || submissions.isEmpty()) {
+            return 0;
+        }
+        List<String[]> records = new ArrayList<>(submissions.size());
+        for (HomeworkSubmissionModel submission : submissions) {
+            records.add(toFields(submission));
+        }
+        enqueue(journal.append(TYPE_HOMEWORK_SUBMISSION, records));
+        return records.size();
+    }
+
+    private void enqueue(List<WriteBehindJournal.Entry> entries) {
+        synchronized (pending) {
+            pending.addAll(entries);
+        }
+        if (running) {
+            flusher.execute(this::flushSafely);
+        }
+    }
+
+    // --- Flusher ---
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Unexpected error in write-behind flusher.", e);
+        }
+    }
+
+    /**
+     * Writes pending entries to the database in batches until the queue is empty or the database is unreachable.
+     * After a failure the next attempt is delayed with exponential backoff. Entries taken from the queue are
+     * always either acknowledged, dead-lettered or put back, even if an unexpected exception escapes.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            if (System.currentTimeMillis() < nextAttemptAt) {
+                return;
+            }
+            while (true) {
+                List<WriteBehindJournal.Entry> batch = new ArrayList<>();
+                synchronized (pending) {
+                    while (!pending.isEmpty() && batch.size() < MAX_BATCH_SIZE) {
+                        batch.add(pending.pollFirst());
+                    }
+                }
+                if (batch.isEmpty()) {
+                    if (journalNeedsCompaction) {
+                        compactJournal();
+                    }
+                    return;
+                }
+                List<WriteBehindJournal.Entry> unresolved = new ArrayList<>(batch);
+                try {
+                    try {
+                        applyBatch(batch);
+                        acknowledge(batch);
+                        unresolved.clear();
+                        if (!failedAttempts.isEmpty()) {
+                            for (WriteBehindJournal.Entry entry : batch) {
+                                failedAttempts.remove(entry.getId());
+                            }
+                        }
+                    } catch (SQLException | RuntimeException e) {
+                        if (isUnavailable(e)) {
+                            backOff(e);
+                            return;
+                        }
+                        LOGGER.log(Level.WARNING, "Write-behind batch of " + batch.size()
+                                + " entries failed; retrying the entries one by one.", e);
+                        if (!applyOneByOne(unresolved)) {
+                            return;
+                        }
+                    }
+                    journalNeedsCompaction = true;
+                    backoffMs = 0;
+                    nextAttemptAt = 0;
+                } finally {
+                    requeue(unresolved);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the entries one at a time, in order; every entry that is written or dead-lettered is removed from
+     * the list. Stops at the first entry that fails but has attempts left, so entries for the same student and
+     * session are never applied out of order; that entry and the ones after it are retried after a backoff.
+     *
+     * @return false if the flush has to stop (database unreachable, or an entry is waiting for a retry)
+     */
+    private boolean applyOneByOne(List<WriteBehindJournal.Entry> entries) {
+        while (!entries.isEmpty()) {
+            WriteBehindJournal.Entry entry = entries.get(0);
+            try {
+                applyBatch(Collections.singletonList(entry));
+                acknowledge(Collections.singletonList(entry));
+                failedAttempts.remove(entry.getId());
+            } catch (SQLException e) {
+                if (isUnavailable(e)) {
+                    backOff(e);
+                    return false;
+                }
+                int attempts = failedAttempts.merge(entry.getId(), 1, Integer::sum);
+                if (attempts < MAX_ENTRY_ATTEMPTS) {
+                    backOff(e);
+                    LOGGER.log(Level.WARNING, "Write-behind entry {0} failed (attempt {1} of {2}).",
+                            new Object[]{entry.getId(), attempts, MAX_ENTRY_ATTEMPTS});
+                    return false;
+                }
+                deadLetter(entry, e);
+            } catch (RuntimeException e) {
+                deadLetter(entry, e); // Không giải mã được: thử lại cũng không thành công
+            }
+            entries.remove(0);
+        }
+        return true;
+    }
+
+    private void deadLetter(WriteBehindJournal.Entry entry, Exception cause) {
+        try {
+            List<WriteBehindJournal.Entry> moved = deadLetters.append(entry.getType(),
+                    Collections.singletonList(entry.getFields()));
+            acknowledge(Collections.singletonList(entry));
+            failedAttempts.remove(entry.getId());
+            LOGGER.log(Level.SEVERE, "Write-behind entry " + entry.getId() + " could not be applied and was moved to "
+                    + "the dead-letter journal as " + moved.get(0).getId() + ".", cause);
+        } catch (IOException e) {
+            // Giữ mục trong journal chính; nó sẽ được thử lại ở lần chạy sau
+            LOGGER.log(Level.SEVERE, "Could not dead-letter write-behind entry " + entry.getId()
+                    + "; it stays in the journal.", e);
+        }
+    }
+
+    private static boolean isUnavailable(Exception e) {
+        if (!(e instanceof SQLException)) {
+            return false;
+        }
+        SQLException sqlException = (SQLException) e;
+        String state = sqlException.getSQLState();
+        return sqlException instanceof SQLTransientException
+                || sqlException instanceof SQLNonTransientConnectionException
+                || (state != null && (state.startsWith("08") || state.startsWith("40")));
+    }
+
+    private void backOff(Exception cause) {
+        backoffMs = backoffMs == 0 ? FLUSH_INTERVAL_MS : Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+        nextAttemptAt = System.currentTimeMillis() + backoffMs;
+        LOGGER.log(Level.WARNING, "Write-behind flush failed; " + getPendingCount()
+                + " entries pending, retrying in " + backoffMs + " ms.", cause);
+    }
+
+    private void applyBatch(List<WriteBehindJournal.Entry> batch) throws SQLException {
+        List<Attendance> attendances = new ArrayList<>();
+        List<HomeworkSubmissionModel> submissions = new ArrayList<>();
+        for (WriteBehindJournal.Entry entry : batch) {
+            if (TYPE_ATTENDANCE.equals(entry.getType())) {
+                attendances.add(attendanceFromFields(entry.getFields()));
+            } else if (TYPE_HOMEWORK_SUBMISSION.equals(entry.getType())) {
+                submissions.add(submissionFromFields(entry.getFields()));
+            } else {
+                LOGGER.log(Level.WARNING, "Dropping write-behind entry {0} with unknown type {1}.",
+                        new Object[]{entry.getId(), entry.getType()});
+            }
+        }
+        if (!attendances.isEmpty()) {
+            attendanceDAO.batchUpsert(attendances);
+        }
+        if (!submissions.isEmpty()) {
+            homeworkSubmissionDAO.saveOrUpdateBatch(submissions);
+        }
+    }
+
+    private void acknowledge(List<WriteBehindJournal.Entry> batch) {
+        List<String> ids = new ArrayList<>(batch.size());
+        for (WriteBehindJournal.Entry entry : batch) {
+            ids.add(entry.getId());
+        }
+        try {
+            journal.acknowledge(ids);
+        } catch (IOException e) {
+            // The rows are already committed; a replay after restart is harmless because writes are idempotent.
+            LOGGER.log(Level.WARNING, "Could not acknowledge write-behind entries in journal.", e);
+        }
+    }
+
+    private void requeue(List<WriteBehindJournal.Entry> batch) {
+        synchronized (pending) {
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                pending.addFirst(batch.get(i));
+            }
+        }
+    }
+
+    private void compactJournal() {
+        try {
+            if (journal.compactIfDrained()) {
+                journalNeedsCompaction = false;
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not compact write-behind journal.", e);
+        }
+    }
+
+    // --- Serialization ---
+
+    private static String[] toFields(Attendance attendance) {
+        return new String[]{
+                attendance.getId(),
+                attendance.getStudentId(),
+                attendance.getSessionId(),
+                String.valueOf(attendance.isPresent()),
+                attendance.getNote(),
+                String.valueOf(attendance.isCalled()),
+                String.valueOf(attendance.hasPermission()),
+                attendance.getCheckInTime() != null ? attendance.getCheckInTime().toString() : null,
+                attendance.getRecordTime() != null ? attendance.getRecordTime().toString() : null,
+                attendance.getStatus(),
+                attendance.getAbsenceDate() != null ? attendance.getAbsenceDate().toString() : null
+        };
+    }
+
+    private static Attendance attendanceFromFields(String[] f) {
+        Attendance attendance = new Attendance();
+        attendance.setId(f[0]);
+        attendance.setStudentId(f[1]);
+        attendance.setSessionId(f[2]);
+        attendance.setPresent(Boolean.parseBoolean(f[3]));
+        attendance.setNote(f[4]);
+        attendance.setCalled(Boolean.parseBoolean(f[5]));
+        attendance.setHasPermission(Boolean.parseBoolean(f[6]));
+        attendance.setCheckInTime(f[7] != null ? LocalDateTime.parse(f[7]) : null);
+        attendance.setRecordTime(f[8] != null ? LocalDateTime.parse(f[8]) : null);
+        attendance.setStatus(f[9]);
+        attendance.setAbsenceDate(f[10] != null ? LocalDate.parse(f[10]) : null);
+        return attendance;
+    }
+
+    private static String[] toFields(HomeworkSubmissionModel submission) {
+        return new String[]{
+                submission.getStudentSubmissionId(),
+                submission.getStudentId(),
+                submission.getHomeworkId(),
+                String.valueOf(submission.isSubmitted()),
+                String.valueOf(submission.getGrade()),
+                submission.getSubmissionTimestamp() != null ? submission.getSubmissionTimestamp().toString() : null,
+                submission.getEvaluatorNotes(),
+                submission.getCheckedInSessionId()
+        };
+    }
+
+    private static HomeworkSubmissionModel submissionFromFields(String[] f) {
+        HomeworkSubmissionModel submission = new HomeworkSubmissionModel();
+        submission.setStudentSubmissionId(f[0]);
+        submission.setStudentId(f[1]);
+        submission.setHomeworkId(f[2]);
+        submission.setSubmitted(Boolean.parseBoolean(f[3]));
+        submission.setGrade(Double.parseDouble(f[4]));
+        submission.setSubmissionTimestamp(f[5] != null ? LocalDateTime.parse(f[5]) : null);
+        submission.setEvaluatorNotes(f[6]);
+        submission.setCheckedInSessionId(f[7]);
+        return submission;
+    }
+}
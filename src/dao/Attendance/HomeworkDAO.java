@@ -1,12 +1,17 @@
 package src.dao.Attendance;
 
+import src.dao.Report.ReportSnapshotDAO;
 import src.model.homework.Homework; // Đảm bảo đường dẫn và tên lớp Model Homework là chính xác
 import src.utils.DatabaseConnection;
+import src.utils.IdGenerators;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,10 +41,63 @@ public class HomeworkDAO {
     private static final String METRICS_COLUMN_PUNCTUALITY_SCORE = "punctuality_score";
     private static final String METRICS_COLUMN_NOTES = "notes";
 
+    // Tiêu đề bài tập tự động của một buổi học: tiền tố + ngày học (xem sessionHomeworkTitle)
+    private static final String SESSION_HOMEWORK_TITLE_PREFIX = "Bài tập buổi ";
+
+    // Cache homework theo (buổi học, tiêu đề) cho getOrCreateHomeworkForSession: giới hạn số mục (LRU) và hết hạn
+    // sau 10 phút như cache của ClassSessionDAO. Dùng static vì moveSessionHomework (static) cũng phải xóa cache.
+    private static final long SESSION_HOMEWORK_CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_CACHED_SESSION_HOMEWORK = 512;
+    private static final Map<String, SessionHomeworkEntry> SESSION_HOMEWORK_CACHE =
+            new LinkedHashMap<String, SessionHomeworkEntry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SessionHomeworkEntry> eldest) {
+                    return size() > MAX_CACHED_SESSION_HOMEWORK;
+                }
+            };
+    // Tăng sau mỗi lần xóa cache; getOrCreateHomeworkForSession không lưu kết quả đọc trước một lần ghi
+    private static final AtomicLong SESSION_HOMEWORK_VERSION = new AtomicLong();
+
+    // Rollup ngày/tháng của student_metrics, được cập nhật sau mỗi lần ghi metrics
+    private StudentMetricsRollupDAO studentMetricsRollupDAO;
+
     public HomeworkDAO() {
         // Constructor
     }
 
+    /**
+     * Set StudentMetricsRollupDAO - used for dependency injection
+     *
+     * @param studentMetricsRollupDAO The StudentMetricsRollupDAO to use
+     */
+    public void setStudentMetricsRollupDAO(StudentMetricsRollupDAO studentMetricsRollupDAO) {
+        this.studentMetricsRollupDAO = studentMetricsRollupDAO;
+    }
+
+    /**
+     * Cập nhật rollup của các ngày đã ghi metrics trên kết nối hiện tại, trong transaction của lần ghi.
+     * Lỗi được ném lại để transaction rollback, tránh rollup lệch với dữ liệu gốc.
+     */
+    private void refreshMetricsRollups(Connection conn, Collection<StudentMetricsRollupDAO.MetricKey> keys) throws SQLException {
+        Set<LocalDate> days = new HashSet<>();
+        for (StudentMetricsRollupDAO.MetricKey key : keys) {
+            days.add(key.getDay());
+        }
+        ReportSnapshotDAO.invalidateDays(conn, days, Collections.singletonList(ReportSnapshotDAO.CLASS_REPORT));
+
+        if (studentMetricsRollupDAO == null || keys.isEmpty()) {
+            return;
+        }
+        studentMetricsRollupDAO.refresh(conn, keys);
+    }
+
+    // Bài tập và bài nộp nằm trong báo cáo lớp học theo ngày giao bài
+    private void invalidateReportSnapshots(Connection conn, LocalDate assignedDate) {
+        if (assignedDate != null) {
+            ReportSnapshotDAO.invalidateDays(conn, Collections.singletonList(assignedDate), ReportSnapshotDAO.CLASS_REPORT_TYPES);
+        }
+    }
+
     // =======================================================================================
     // PHƯƠNG THỨC LIÊN QUAN ĐẾN BẢNG 'homework'
     // =======================================================================================
@@ -109,16 +167,89 @@ public class HomeworkDAO {
             pstmt.setString(paramIndex++, homework.getAssignedInSessionId());
 
             int affectedRows = pstmt.executeUpdate();
+            if (affectedRows > 0) {
+                invalidateReportSnapshots(conn, homework.getAssignedDate());
+            }
             return affectedRows > 0;
         }
     }
 
     /**
-     * Lấy hoặc tạo một bản ghi homework "placeholder" cho một buổi học cụ thể.
-     * homework_id trong bảng homework được giả định là chính sessionId.
+     * Buổi học đổi ngày: bài tập tự động của buổi phải đổi tiêu đề theo ngày mới (xem moveSessionHomework).
+     */
+    public static final class SessionDateChange {
+        private final String sessionId;
+        private final LocalDate previousDate;
+        private final LocalDate newDate;
+
+        public SessionDateChange(String sessionId, LocalDate previousDate, LocalDate newDate) {
+            this.sessionId = sessionId;
+            this.previousDate = previousDate;
+            this.newDate = newDate;
+        }
+
+        public String getSessionId() { return sessionId; }
+        public LocalDate getPreviousDate() { return previousDate; }
+        public LocalDate getNewDate() { return newDate; }
+    }
+
+    /**
+     * Tiêu đề của bài tập tự động gắn với buổi học diễn ra vào ngày đã cho.
      *
-     * @param sessionId ID của buổi học, cũng được dùng làm homework_id cho bản ghi homework.
-     * @param title Tiêu đề cho bài tập (ví dụ: "Bài tập buổi [sessionId]").
+     * @param sessionDate Ngày học
+     * @return Tiêu đề dùng cho getOrCreateHomeworkForSession
+     */
+    public static String sessionHomeworkTitle(LocalDate sessionDate) {
+        return SESSION_HOMEWORK_TITLE_PREFIX + sessionDate;
+    }
+
+    /**
+     * Đổi tiêu đề và ngày giao của bài tập tự động khi buổi học được dời ngày, trên kết nối (giao dịch) của người gọi.
+     * Nhờ vậy getOrCreateHomeworkForSession với tiêu đề theo ngày mới vẫn tìm thấy bài tập cũ cùng các bài nộp,
+     * thay vì tạo một bản ghi mới. Nếu buổi học đã có bài tập mang tiêu đề mới thì bài tập cũ được giữ nguyên.
+     *
+     * @param conn    Kết nối đang dùng
+     * @param changes Các buổi học đã đổi ngày
+     * @throws SQLException Nếu có lỗi cơ sở dữ liệu
+     */
+    public static void moveSessionHomework(Connection conn, Collection<SessionDateChange> changes) throws SQLException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE IGNORE " + HOMEWORK_TABLE_NAME + " SET " + HW_COLUMN_TITLE + " = ?, " +
+                HW_COLUMN_ASSIGNED_DATE + " = ? WHERE " + HW_COLUMN_ASSIGNED_IN_SESSION_ID + " = ? AND " +
+                HW_COLUMN_TITLE + " = ?";
+        Set<LocalDate> days = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (SessionDateChange change : changes) {
+                pstmt.setString(1, sessionHomeworkTitle(change.getNewDate()));
+                pstmt.setDate(2, java.sql.Date.valueOf(change.getNewDate()));
+                pstmt.setString(3, change.getSessionId());
+                pstmt.setString(4, sessionHomeworkTitle(change.getPreviousDate()));
+                pstmt.addBatch();
+                days.add(change.getPreviousDate());
+                days.add(change.getNewDate());
+            }
+            pstmt.executeBatch();
+        }
+        Set<String> sessionIds = new HashSet<>();
+        for (SessionDateChange change : changes) {
+            sessionIds.add(change.getSessionId());
+        }
+        evictSessionHomework(conn, cached -> sessionIds.contains(cached.getAssignedInSessionId()));
+        ReportSnapshotDAO.invalidateDays(conn, days, ReportSnapshotDAO.CLASS_REPORT_TYPES);
+    }
+
+    /**
+     * Lấy hoặc tạo một bản ghi homework "placeholder" cho một buổi học cụ thể, theo khóa duy nhất
+     * (assigned_in_session_id, title).
+     * Kết quả được cache theo buổi học, nên các lần gọi sau cho cùng buổi và tiêu đề không truy vấn CSDL.
+     * Khi chưa có trong cache: một truy vấn SELECT nếu bài tập đã tồn tại; nếu chưa, một lệnh
+     * INSERT ... ON DUPLICATE KEY UPDATE (không đổi gì nếu thiết bị khác vừa tạo) rồi đọc lại trên cùng kết nối,
+     * nên hai thiết bị lưu cùng lúc luôn nhận cùng một bản ghi.
+     *
+     * @param sessionId ID của buổi học.
+     * @param title Tiêu đề cho bài tập (thường là sessionHomeworkTitle(ngày học)).
      * @param courseId ID của khóa học (bắt buộc).
      * @param assignedDate Ngày giao bài.
      * @return HomeworkModel đã tồn tại hoặc vừa được tạo.
@@ -132,36 +263,107 @@ public class HomeworkDAO {
             throw new IllegalArgumentException("Course ID cannot be null or empty for homework.");
         }
 
-        String homeworkIdForThisSession = sessionId;
-        Optional<Homework> existingOpt = findById(homeworkIdForThisSession);
+        String cacheKey = sessionHomeworkCacheKey(sessionId, title);
+        synchronized (SESSION_HOMEWORK_CACHE) {
+            SessionHomeworkEntry cached = SESSION_HOMEWORK_CACHE.get(cacheKey);
+            if (cached != null && System.currentTimeMillis() - cached.loadedAtMillis < SESSION_HOMEWORK_CACHE_TTL_MILLIS) {
+                return cached.homework;
+            }
+        }
 
-        if (existingOpt.isPresent()) {
-            LOGGER.log(Level.INFO, "Found existing homework with ID (based on session ID): {0}", homeworkIdForThisSession);
-            return existingOpt.get();
-        } else {
-            LOGGER.log(Level.INFO, "No existing homework found for ID (based on session ID): {0}. Creating new placeholder homework.", homeworkIdForThisSession);
-            Homework newHomework = new Homework();
-            newHomework.setHomeworkId(homeworkIdForThisSession);
-            newHomework.setTitle(title);
-            newHomework.setDescription("Bài tập được tạo tự động cho buổi học " + sessionId); // Default description
-            newHomework.setCourseId(courseId);
-            newHomework.setAssignedDate(assignedDate);
-            newHomework.setAssignedInSessionId(sessionId);
-            newHomework.setStatus("Assigned"); // Default status
-            newHomework.setScore(null);
-            newHomework.setSubmissionDate(null);
-
-            if (this.create(newHomework)) {
-                LOGGER.log(Level.INFO, "Successfully created placeholder homework with ID: {0}", homeworkIdForThisSession);
-                return newHomework;
-            } else {
-                String errorMsg = "Failed to create placeholder homework for session with ID: " + homeworkIdForThisSession;
-                LOGGER.log(Level.SEVERE, errorMsg);
-                throw new SQLException(errorMsg);
+        long version = SESSION_HOMEWORK_VERSION.get();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            Optional<Homework> existingOpt = findBySessionAndTitle(conn, sessionId, title);
+            if (!existingOpt.isPresent()) {
+                LOGGER.log(Level.INFO, "No existing homework found for session {0} and title ''{1}''. Creating placeholder homework.",
+                        new Object[]{sessionId, title});
+                insertHomeworkIfAbsent(conn, sessionId, title, courseId, assignedDate);
+                invalidateReportSnapshots(conn, assignedDate);
+                existingOpt = findBySessionAndTitle(conn, sessionId, title);
+            }
+            Homework homework = existingOpt.orElseThrow(() ->
+                    new SQLException("Failed to get or create placeholder homework for session with ID: " + sessionId));
+            synchronized (SESSION_HOMEWORK_CACHE) {
+                // Không lưu nếu đã có thao tác ghi trong lúc truy vấn
+                if (SESSION_HOMEWORK_VERSION.get() == version) {
+                    SESSION_HOMEWORK_CACHE.put(cacheKey, new SessionHomeworkEntry(homework));
+                }
             }
+            return homework;
         }
     }
 
+    private Optional<Homework> findBySessionAndTitle(Connection conn, String sessionId, String title) throws SQLException {
+        String sql = "SELECT * FROM " + HOMEWORK_TABLE_NAME + " WHERE " + HW_COLUMN_ASSIGNED_IN_SESSION_ID + " = ? AND " +
+                HW_COLUMN_TITLE + " = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, sessionId);
+            pstmt.setString(2, title);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToHomeworkModel(rs));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void insertHomeworkIfAbsent(Connection conn, String sessionId, String title, String courseId,
+                                        LocalDate assignedDate) throws SQLException {
+        String sql = "INSERT INTO " + HOMEWORK_TABLE_NAME + " (" +
+                HW_COLUMN_HOMEWORK_ID + ", " + HW_COLUMN_COURSE_ID + ", " + HW_COLUMN_TITLE + ", " +
+                HW_COLUMN_DESCRIPTION + ", " + HW_COLUMN_ASSIGNED_DATE + ", " + HW_COLUMN_STATUS + ", " +
+                HW_COLUMN_ASSIGNED_IN_SESSION_ID + ") VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE " + HW_COLUMN_HOMEWORK_ID + " = " + HW_COLUMN_HOMEWORK_ID;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, IdGenerators.nextId());
+            pstmt.setString(2, courseId);
+            pstmt.setString(3, title);
+            pstmt.setString(4, "Bài tập được tạo tự động cho buổi học " + sessionId); // Default description
+            pstmt.setDate(5, assignedDate != null ? java.sql.Date.valueOf(assignedDate) : null);
+            pstmt.setString(6, "Assigned"); // Default status
+            pstmt.setString(7, sessionId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static String sessionHomeworkCacheKey(String sessionId, String title) {
+        return sessionId + "|" + title;
+    }
+
+    private static final class SessionHomeworkEntry {
+        private final Homework homework;
+        private final long loadedAtMillis = System.currentTimeMillis();
+
+        private SessionHomeworkEntry(Homework homework) {
+            this.homework = homework;
+        }
+    }
+
+    /**
+     * Xóa các bài tập của một buổi học khỏi cache (ví dụ khi dữ liệu bị thay đổi từ nơi khác).
+     * @param sessionId ID của buổi học.
+     */
+    public void invalidateSessionHomeworkCache(String sessionId) {
+        evictSessionHomework(cached -> Objects.equals(cached.getAssignedInSessionId(), sessionId));
+    }
+
+    private static void evictSessionHomework(Predicate<Homework> filter) {
+        synchronized (SESSION_HOMEWORK_CACHE) {
+            SESSION_HOMEWORK_VERSION.incrementAndGet();
+            SESSION_HOMEWORK_CACHE.values().removeIf(entry -> filter.test(entry.homework));
+        }
+    }
+
+    /**
+     * Xóa cache cho một thao tác ghi trên kết nối đã cho: ngay lúc này và lần nữa sau khi transaction commit
+     * (xem DatabaseConnection#afterCommit), để một lần đọc chen giữa không giữ lại dữ liệu cũ.
+     */
+    private static void evictSessionHomework(Connection conn, Predicate<Homework> filter) {
+        evictSessionHomework(filter);
+        DatabaseConnection.afterCommit(conn, () -> evictSessionHomework(filter));
+    }
+
     /**
      * Tìm bài tập theo ID.
      * @param homeworkId ID của bài tập cần tìm.
@@ -256,6 +458,9 @@ public class HomeworkDAO {
                 "WHERE " + HW_COLUMN_HOMEWORK_ID + " = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            // Ngày giao cũ (nếu bị đổi) cũng nằm trong kỳ của các snapshot bị ảnh hưởng: đọc trước khi ghi,
+            // nhưng chỉ hủy snapshot sau khi ghi, để báo cáo chạy song song không lưu lại dữ liệu cũ
+            LocalDate previousDate = findAssignedDate(conn, homework.getHomeworkId());
             int paramIndex = 1;
             pstmt.setString(paramIndex++, homework.getCourseId());
             pstmt.setString(paramIndex++, homework.getTitle());
@@ -272,10 +477,32 @@ public class HomeworkDAO {
             pstmt.setString(paramIndex, homework.getHomeworkId());
 
             int affectedRows = pstmt.executeUpdate();
+            // Cả buổi học cũ (tìm theo ID) lẫn buổi học mới của bài tập
+            evictSessionHomework(conn, cached -> Objects.equals(cached.getHomeworkId(), homework.getHomeworkId())
+                    || Objects.equals(cached.getAssignedInSessionId(), homework.getAssignedInSessionId()));
+            if (affectedRows > 0) {
+                invalidateReportSnapshots(conn, previousDate);
+                invalidateReportSnapshots(conn, homework.getAssignedDate());
+            }
             return affectedRows > 0;
         }
     }
 
+    private LocalDate findAssignedDate(Connection conn, String homeworkId) throws SQLException {
+        String sql = "SELECT " + HW_COLUMN_ASSIGNED_DATE + " FROM " + HOMEWORK_TABLE_NAME + " WHERE " +
+                HW_COLUMN_HOMEWORK_ID + " = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, homeworkId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    java.sql.Date assignedDate = rs.getDate(1);
+                    return assignedDate != null ? assignedDate.toLocalDate() : null;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Xóa một bài tập khỏi CSDL dựa trên ID.
      * @param homeworkId ID của bài tập cần xóa.
@@ -285,8 +512,13 @@ public class HomeworkDAO {
         String sql = "DELETE FROM " + HOMEWORK_TABLE_NAME + " WHERE " + HW_COLUMN_HOMEWORK_ID + " = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            LocalDate assignedDate = findAssignedDate(conn, homeworkId);
             pstmt.setString(1, homeworkId);
             int affectedRows = pstmt.executeUpdate();
+            evictSessionHomework(conn, cached -> Objects.equals(cached.getHomeworkId(), homeworkId));
+            if (affectedRows > 0) {
+                invalidateReportSnapshots(conn, assignedDate);
+            }
             return affectedRows > 0;
         }
     }
@@ -314,7 +546,7 @@ public class HomeworkDAO {
      */
     public boolean saveStudentMetrics(String studentId, String courseId, java.sql.Date recordDate,
                                       Double awarenessScore, Double punctualityScore, String notes) throws SQLException {
-        String metricId = UUID.randomUUID().toString(); // metric_id cho trường hợp INSERT
+        String metricId = IdGenerators.nextId(); // metric_id cho trường hợp INSERT
         String sql = "INSERT INTO " + METRICS_TABLE_NAME + " (" +
                 METRICS_COLUMN_METRIC_ID + ", " + METRICS_COLUMN_STUDENT_ID + ", " + METRICS_COLUMN_COURSE_ID + ", " +
                 METRICS_COLUMN_RECORD_DATE + ", " + METRICS_COLUMN_AWARENESS_SCORE + ", " +
@@ -325,30 +557,46 @@ public class HomeworkDAO {
                 METRICS_COLUMN_PUNCTUALITY_SCORE + " = VALUES(" + METRICS_COLUMN_PUNCTUALITY_SCORE + "), " +
                 METRICS_COLUMN_NOTES + " = VALUES(" + METRICS_COLUMN_NOTES + ")";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            int paramIndex = 1;
-            pstmt.setString(paramIndex++, metricId);
-            pstmt.setString(paramIndex++, studentId);
-            pstmt.setString(paramIndex++, courseId);
-            pstmt.setDate(paramIndex++, recordDate);
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false); // Điểm và rollup được ghi cùng một transaction
+            int affectedRows;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int paramIndex = 1;
+                pstmt.setString(paramIndex++, metricId);
+                pstmt.setString(paramIndex++, studentId);
+                pstmt.setString(paramIndex++, courseId);
+                pstmt.setDate(paramIndex++, recordDate);
 
-            if (awarenessScore != null) pstmt.setDouble(paramIndex++, awarenessScore);
-            else pstmt.setNull(paramIndex++, Types.DOUBLE);
+                if (awarenessScore != null) pstmt.setDouble(paramIndex++, awarenessScore);
+                else pstmt.setNull(paramIndex++, Types.DOUBLE);
 
-            if (punctualityScore != null) pstmt.setDouble(paramIndex++, punctualityScore);
-            else pstmt.setNull(paramIndex++, Types.DOUBLE);
+                if (punctualityScore != null) pstmt.setDouble(paramIndex++, punctualityScore);
+                else pstmt.setNull(paramIndex++, Types.DOUBLE);
 
-            pstmt.setString(paramIndex++, notes);
+                pstmt.setString(paramIndex++, notes);
 
-            int affectedRows = pstmt.executeUpdate();
+                affectedRows = pstmt.executeUpdate();
+            }
+            if (affectedRows > 0 && recordDate != null) {
+                refreshMetricsRollups(conn, Collections.singleton(
+                        new StudentMetricsRollupDAO.MetricKey(studentId, courseId, recordDate.toLocalDate())));
+            }
+            DatabaseConnection.commit(conn);
             return affectedRows > 0;
+        } catch (SQLException e) {
+            DatabaseConnection.rollback(conn);
+            throw e;
+        } finally {
+            DatabaseConnection.closeConnection(conn);
         }
     }
 
     /**
      * Lưu thông tin metrics của học sinh theo lô (batch).
-     * Tạo mới nếu "metricId" không có trong map data, cập nhật nếu có.
+     * Tạo mới (thêm một điểm vào chuỗi thời gian) nếu "metricId" không có trong map data, cập nhật nếu có.
+     * Rollup ngày/tháng của các ngày bị ảnh hưởng được tính lại trong cùng transaction.
      * @param metricsDataList Danh sách thông tin metrics cần lưu.
      * @return Số lượng bản ghi đã được xử lý thành công.
      * @throws SQLException nếu có lỗi.
@@ -374,6 +622,19 @@ public class HomeworkDAO {
             autoCommitStatus = conn.getAutoCommit();
             conn.setAutoCommit(false);
 
+            // Ngày cũ của các bản ghi bị cập nhật (record_date có thể thay đổi)
+            Set<String> updatedMetricIds = new HashSet<>();
+            for (Map<String, Object> data : metricsDataList) {
+                Object metricIdObj = data.get("metricId");
+                if (metricIdObj != null && !metricIdObj.toString().isEmpty()) {
+                    updatedMetricIds.add(metricIdObj.toString());
+                }
+            }
+            Set<StudentMetricsRollupDAO.MetricKey> touchedKeys = new HashSet<>();
+            if (studentMetricsRollupDAO != null && !updatedMetricIds.isEmpty()) {
+                touchedKeys.addAll(studentMetricsRollupDAO.findKeysByMetricIds(conn, updatedMetricIds));
+            }
+
             try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery);
                  PreparedStatement updateStmt = conn.prepareStatement(updateQuery)) {
 
@@ -399,10 +660,14 @@ public class HomeworkDAO {
                         updateStmt.setString(paramIdxUpd++, (String) data.get("notes"));
                         updateStmt.setString(paramIdxUpd++, metricIdObj.toString());
                         updateStmt.addBatch();
+                        if (sqlRecordDate != null) {
+                            touchedKeys.add(new StudentMetricsRollupDAO.MetricKey((String) data.get("studentId"),
+                                    (String) data.get("courseId"), sqlRecordDate.toLocalDate()));
+                        }
                     } else {
                         // Insert
                         insertStmt.clearParameters();
-                        String newMetricId = UUID.randomUUID().toString();
+                        String newMetricId = IdGenerators.nextId();
                         int paramIdxIns = 1;
                         insertStmt.setString(paramIdxIns++, newMetricId);
                         insertStmt.setString(paramIdxIns++, (String) data.get("studentId"));
@@ -421,11 +686,16 @@ public class HomeworkDAO {
                         insertStmt.setObject(paramIdxIns++, data.get("punctualityScore")); // Cho phép null
                         insertStmt.setString(paramIdxIns++, (String) data.get("notes"));
                         insertStmt.addBatch();
+                        if (sqlRecordDate != null) {
+                            touchedKeys.add(new StudentMetricsRollupDAO.MetricKey((String) data.get("studentId"),
+                                    (String) data.get("courseId"), sqlRecordDate.toLocalDate()));
+                        }
                     }
                 }
                 int[] insertCounts = insertStmt.executeBatch();
                 int[] updateCounts = updateStmt.executeBatch();
-                conn.commit();
+                refreshMetricsRollups(conn, touchedKeys);
+                DatabaseConnection.commit(conn);
 
                 for (int i : insertCounts) {
                     if (i >= 0 || i == PreparedStatement.SUCCESS_NO_INFO) successCount++;
@@ -437,7 +707,7 @@ public class HomeworkDAO {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error in saveStudentMetricsBatch, attempting rollback.", e);
             if (conn != null) {
-                try { conn.rollback(); } catch (SQLException ex) { LOGGER.log(Level.SEVERE, "Error rolling back transaction in saveStudentMetricsBatch", ex); }
+                DatabaseConnection.rollback(conn);
             }
             throw e;
         } finally {
@@ -468,26 +738,40 @@ public class HomeworkDAO {
                 METRICS_COLUMN_NOTES + " = ? " +
                 "WHERE " + METRICS_COLUMN_METRIC_ID + " = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            int paramIndex = 1;
-            if (awarenessScore != null) pstmt.setDouble(paramIndex++, awarenessScore);
-            else pstmt.setNull(paramIndex++, Types.DOUBLE);
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false); // Điểm và rollup được ghi cùng một transaction
+            int affectedRows;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int paramIndex = 1;
+                if (awarenessScore != null) pstmt.setDouble(paramIndex++, awarenessScore);
+                else pstmt.setNull(paramIndex++, Types.DOUBLE);
 
-            if (punctualityScore != null) pstmt.setDouble(paramIndex++, punctualityScore);
-            else pstmt.setNull(paramIndex++, Types.DOUBLE);
+                if (punctualityScore != null) pstmt.setDouble(paramIndex++, punctualityScore);
+                else pstmt.setNull(paramIndex++, Types.DOUBLE);
 
-            pstmt.setString(paramIndex++, notes);
-            pstmt.setString(paramIndex++, metricId);
+                pstmt.setString(paramIndex++, notes);
+                pstmt.setString(paramIndex++, metricId);
 
-            int affectedRows = pstmt.executeUpdate();
+                affectedRows = pstmt.executeUpdate();
+            }
+            if (affectedRows > 0 && studentMetricsRollupDAO != null) {
+                refreshMetricsRollups(conn, studentMetricsRollupDAO.findKeysByMetricIds(conn, Collections.singleton(metricId)));
+            }
+            DatabaseConnection.commit(conn);
             return affectedRows > 0;
+        } catch (SQLException e) {
+            DatabaseConnection.rollback(conn);
+            throw e;
+        } finally {
+            DatabaseConnection.closeConnection(conn);
         }
     }
 
 
     /**
-     * Tìm kiếm một bản ghi student_metrics cụ thể.
+     * Tìm kiếm bản ghi student_metrics mới nhất của một học sinh trong một ngày.
      * @param studentId ID của sinh viên.
      * @param courseId ID của khóa học.
      * @param recordDate Ngày ghi nhận.
@@ -498,7 +782,8 @@ public class HomeworkDAO {
         String sql = "SELECT * FROM " + METRICS_TABLE_NAME + " WHERE " +
                 METRICS_COLUMN_STUDENT_ID + " = ? AND " +
                 METRICS_COLUMN_COURSE_ID + " = ? AND " +
-                METRICS_COLUMN_RECORD_DATE + " = ?";
+                METRICS_COLUMN_RECORD_DATE + " = ? " +
+                "ORDER BY metric_seq DESC LIMIT 1"; // Điểm được ghi sau cùng trong ngày
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
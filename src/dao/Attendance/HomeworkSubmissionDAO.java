@@ -1,25 +1,34 @@
 package src.dao.Attendance;
 
+import src.dao.Report.ReportSnapshotDAO;
 import src.model.attendance.HomeworkSubmissionModel;
 import src.utils.DatabaseConnection;
+import src.utils.IdGenerators;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Data Access Object for HomeworkSubmissionModel.
  * Handles database operations for the student_homework_submissions table.
  */
 public class HomeworkSubmissionDAO {
-    private final Connection connection;
+    private static final Logger LOGGER = Logger.getLogger(HomeworkSubmissionDAO.class.getName());
 
     /**
-     * Constructor initializes the database connection.
-     * @throws SQLException if a database error occurs
+     * Each method opens its own connection, so the DAO can be shared between the UI and the write-behind flusher.
+     */
+    public HomeworkSubmissionDAO() {
+    }
+
+    /**
+     * Drops the class report snapshots whose period covers the assigned date of the given homework.
      */
-    public HomeworkSubmissionDAO() throws SQLException {
-        this.connection = DatabaseConnection.getConnection();
+    private void invalidateReportSnapshots(Connection conn, Collection<String> homeworkIds) {
+        ReportSnapshotDAO.invalidateHomework(conn, homeworkIds, ReportSnapshotDAO.CLASS_REPORT_TYPES);
     }
 
     /**
@@ -56,9 +65,15 @@ public class HomeworkSubmissionDAO {
      * @throws SQLException if a database error occurs
      */
     public HomeworkSubmissionModel getByStudentAndHomework(String studentId, String homeworkId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getByStudentAndHomework(conn, studentId, homeworkId);
+        }
+    }
+
+    private HomeworkSubmissionModel getByStudentAndHomework(Connection conn, String studentId, String homeworkId) throws SQLException {
         String sql = "SELECT * FROM student_homework_submissions WHERE student_id = ? AND homework_id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, studentId);
             stmt.setString(2, homeworkId);
 
@@ -82,7 +97,8 @@ public class HomeworkSubmissionDAO {
         List<HomeworkSubmissionModel> submissions = new ArrayList<>();
         String sql = "SELECT * FROM student_homework_submissions WHERE homework_id = ? AND is_submitted = ? ORDER BY student_id";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, homeworkId);
             stmt.setBoolean(2, submitted);
 
@@ -106,7 +122,8 @@ public class HomeworkSubmissionDAO {
         List<HomeworkSubmissionModel> submissions = new ArrayList<>();
         String sql = "SELECT * FROM student_homework_submissions WHERE checked_in_session_id = ? AND homework_id = ? ORDER BY student_id";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, sessionId);
             stmt.setString(2, homeworkId);
 
@@ -126,15 +143,21 @@ public class HomeworkSubmissionDAO {
      * @throws SQLException if a database error occurs
      */
     public boolean create(HomeworkSubmissionModel submission) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return create(conn, submission);
+        }
+    }
+
+    private boolean create(Connection conn, HomeworkSubmissionModel submission) throws SQLException {
         String sql = "INSERT INTO student_homework_submissions " +
                 "(student_submission_id, student_id, homework_id, is_submitted, grade, " +
                 "submission_timestamp, evaluator_notes, checked_in_session_id) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            // Generate a UUID if not provided
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            // Generate an ID if not provided
             if (submission.getStudentSubmissionId() == null || submission.getStudentSubmissionId().isEmpty()) {
-                submission.setStudentSubmissionId(UUID.randomUUID().toString());
+                submission.setStudentSubmissionId(IdGenerators.nextId());
             }
 
             stmt.setString(1, submission.getStudentSubmissionId());
@@ -154,6 +177,9 @@ public class HomeworkSubmissionDAO {
             stmt.setString(8, submission.getCheckedInSessionId());
 
             int rowsAffected = stmt.executeUpdate();
+            if (rowsAffected > 0) {
+                invalidateReportSnapshots(conn, Collections.singletonList(submission.getHomeworkId()));
+            }
             return rowsAffected > 0;
         }
     }
@@ -165,12 +191,18 @@ public class HomeworkSubmissionDAO {
      * @throws SQLException if a database error occurs
      */
     public boolean update(HomeworkSubmissionModel submission) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return update(conn, submission);
+        }
+    }
+
+    private boolean update(Connection conn, HomeworkSubmissionModel submission) throws SQLException {
         String sql = "UPDATE student_homework_submissions SET " +
                 "is_submitted = ?, grade = ?, submission_timestamp = ?, " +
                 "evaluator_notes = ?, checked_in_session_id = ? " +
                 "WHERE student_submission_id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setBoolean(1, submission.isSubmitted());
             stmt.setDouble(2, submission.getGrade());
 
@@ -186,6 +218,9 @@ public class HomeworkSubmissionDAO {
             stmt.setString(6, submission.getStudentSubmissionId());
 
             int rowsAffected = stmt.executeUpdate();
+            if (rowsAffected > 0) {
+                invalidateReportSnapshots(conn, Collections.singletonList(submission.getHomeworkId()));
+            }
             return rowsAffected > 0;
         }
     }
@@ -204,13 +239,14 @@ public class HomeworkSubmissionDAO {
                 "is_submitted = ?, checked_in_session_id = ?, submission_timestamp = ? " +
                 "WHERE student_id = ? AND homework_id = ?";
 
-        boolean autoCommitStatus = connection.getAutoCommit();
+        Connection conn = null;
         int totalUpdated = 0;
 
         try {
-            connection.setAutoCommit(false);
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
 
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 for (Map.Entry<String, Boolean> entry : studentSubmissions.entrySet()) {
                     String studentId = entry.getKey();
                     Boolean isSubmitted = entry.getValue();
@@ -236,13 +272,14 @@ public class HomeworkSubmissionDAO {
                     }
                 }
 
-                connection.commit();
+                invalidateReportSnapshots(conn, Collections.singletonList(homeworkId));
+                DatabaseConnection.commit(conn);
             }
         } catch (SQLException e) {
-            connection.rollback();
+            DatabaseConnection.rollback(conn);
             throw e;
         } finally {
-            connection.setAutoCommit(autoCommitStatus);
+            DatabaseConnection.closeConnection(conn);
         }
 
         return totalUpdated;
@@ -263,20 +300,21 @@ public class HomeworkSubmissionDAO {
                 "submission_timestamp, evaluator_notes, checked_in_session_id) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
-        boolean autoCommitStatus = connection.getAutoCommit();
+        Connection conn = null;
         int totalCreated = 0;
 
         try {
-            connection.setAutoCommit(false);
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
 
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 for (String studentId : studentIds) {
                     // Skip if a record already exists for this student and homework
-                    if (getByStudentAndHomework(studentId, homeworkId) != null) {
+                    if (getByStudentAndHomework(conn, studentId, homeworkId) != null) {
                         continue;
                     }
 
-                    String submissionId = UUID.randomUUID().toString();
+                    String submissionId = IdGenerators.nextId();
 
                     stmt.setString(1, submissionId);
                     stmt.setString(2, studentId);
@@ -296,13 +334,14 @@ public class HomeworkSubmissionDAO {
                     }
                 }
 
-                connection.commit();
+                invalidateReportSnapshots(conn, Collections.singletonList(homeworkId));
+                DatabaseConnection.commit(conn);
             }
         } catch (SQLException e) {
-            connection.rollback();
+            DatabaseConnection.rollback(conn);
             throw e;
         } finally {
-            connection.setAutoCommit(autoCommitStatus);
+            DatabaseConnection.closeConnection(conn);
         }
 
         return totalCreated;
@@ -322,11 +361,12 @@ public class HomeworkSubmissionDAO {
             return 0;
         }
 
-        boolean autoCommitStatus = connection.getAutoCommit();
+        Connection conn = null;
         int totalProcessed = 0;
 
         try {
-            connection.setAutoCommit(false);
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
 
             for (HomeworkSubmissionModel submission : submissions) {
                 // Make sure sessionId is set
@@ -339,28 +379,28 @@ public class HomeworkSubmissionDAO {
 
                 // Check if this is an existing or new submission
                 HomeworkSubmissionModel existingSubmission =
-                        getByStudentAndHomework(submission.getStudentId(), submission.getHomeworkId());
+                        getByStudentAndHomework(conn, submission.getStudentId(), submission.getHomeworkId());
 
                 if (existingSubmission == null) {
                     // This is a new submission
-                    if (create(submission)) {
+                    if (create(conn, submission)) {
                         totalProcessed++;
                     }
                 } else {
                     // Update existing submission
                     submission.setStudentSubmissionId(existingSubmission.getStudentSubmissionId());
-                    if (update(submission)) {
+                    if (update(conn, submission)) {
                         totalProcessed++;
                     }
                 }
             }
 
-            connection.commit();
+            DatabaseConnection.commit(conn);
         } catch (SQLException e) {
-            connection.rollback();
+            DatabaseConnection.rollback(conn);
             throw e;
         } finally {
-            connection.setAutoCommit(autoCommitStatus);
+            DatabaseConnection.closeConnection(conn);
         }
 
         return totalProcessed;
@@ -383,7 +423,8 @@ public class HomeworkSubmissionDAO {
                 "WHERE s.checked_in_session_id = ? AND s.homework_id = ? " +
                 "ORDER BY st.name";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, sessionId);
             stmt.setString(2, homeworkId);
 
@@ -424,7 +465,8 @@ public class HomeworkSubmissionDAO {
 
         String sql = "SELECT * FROM student_homework_submissions WHERE homework_id = ? ORDER BY checked_in_session_id, student_id";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, homeworkId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -454,7 +496,8 @@ public class HomeworkSubmissionDAO {
 
         String sql = "SELECT * FROM student_homework_submissions WHERE checked_in_session_id = ? ORDER BY homework_id, student_id";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, sessionId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -477,7 +520,8 @@ public class HomeworkSubmissionDAO {
     public boolean updateSubmissionStatus(String studentId, String homeworkId, boolean isSubmitted) throws SQLException {
         String sql = "UPDATE student_homework_submissions SET is_submitted = ?, submission_timestamp = ? WHERE student_id = ? AND homework_id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setBoolean(1, isSubmitted);
 
             if (isSubmitted) {
@@ -490,6 +534,9 @@ public class HomeworkSubmissionDAO {
             stmt.setString(4, homeworkId);
 
             int rowsAffected = stmt.executeUpdate();
+            if (rowsAffected > 0) {
+                invalidateReportSnapshots(conn, Collections.singletonList(homeworkId));
+            }
             return rowsAffected > 0;
         }
     }
@@ -514,7 +561,8 @@ public class HomeworkSubmissionDAO {
                 "WHERE shs.homework_id = ? " +
                 "ORDER BY s.name";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, homeworkId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -563,7 +611,8 @@ public class HomeworkSubmissionDAO {
                 "JOIN classes c ON s.class_id = c.class_id " +
                 "WHERE c.class_id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, classId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -577,130 +626,149 @@ public class HomeworkSubmissionDAO {
         return submissions;
     }
 
-    public void saveOrUpdateBatch(List<HomeworkSubmissionModel> submissions) throws SQLException {
-        if (submissions == null || submissions.isEmpty()) { // Thêm kiểm tra null cho submissions
-            return;
-        }
-
-        String checkExistingQuery = "SELECT student_submission_id FROM student_homework_submissions " +
-                "WHERE student_id = ? AND homework_id = ?";
+    /**
+     * Kết quả ghi của một bài nộp trong {@link #saveOrUpdateBatch(List)}.
+     */
+    public enum UpsertOutcome {
+        INSERTED,   // Bản ghi mới được tạo
+        UPDATED,    // Bản ghi đã tồn tại và có thay đổi
+        UNCHANGED   // Bản ghi đã tồn tại, dữ liệu không đổi
+    }
 
-        String updateQuery = "UPDATE student_homework_submissions SET " +
-                "is_submitted = ?, grade = ?, submission_timestamp = ?, " +
-                "checked_in_session_id = ?, evaluator_notes = ? " +
-                "WHERE student_submission_id = ?";
+    /**
+     * Lưu (thêm mới hoặc cập nhật) một lô bài nộp bằng một câu lệnh upsert theo lô,
+     * dựa trên khóa duy nhất (student_id, homework_id).
+     * Sau khi lưu, mỗi đối tượng trong {@code submissions} phản ánh đúng trạng thái trong DB,
+     * kể cả student_submission_id của bản ghi đã tồn tại, nên không cần đọc lại danh sách bài nộp.
+     *
+     * @param submissions Danh sách bài nộp (student_id và homework_id bắt buộc)
+     * @return Kết quả ghi của từng bài nộp, theo đúng thứ tự đầu vào
+     * @throws SQLException nếu có lỗi CSDL; transaction được rollback
+     */
+    public List<UpsertOutcome> saveOrUpdateBatch(List<HomeworkSubmissionModel> submissions) throws SQLException {
+        if (submissions == null || submissions.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-        String insertQuery = "INSERT INTO student_homework_submissions " +
+        String upsertQuery = "INSERT INTO student_homework_submissions " +
                 "(student_submission_id, student_id, homework_id, is_submitted, grade, " +
                 "submission_timestamp, checked_in_session_id, evaluator_notes) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE is_submitted = VALUES(is_submitted), grade = VALUES(grade), " +
+                "submission_timestamp = VALUES(submission_timestamp), " +
+                "checked_in_session_id = VALUES(checked_in_session_id), " +
+                // Màn hình điểm danh không sửa nhận xét: giữ nhận xét cũ khi lô không gửi kèm
+                "evaluator_notes = COALESCE(VALUES(evaluator_notes), evaluator_notes)";
+
+        // Gán ID mới cho các bài nộp chưa có; nếu bản ghi đã tồn tại, ID này bị bỏ qua và được thay bằng ID trong DB
+        List<String> proposedIds = new ArrayList<>(submissions.size());
+        for (HomeworkSubmissionModel submission : submissions) {
+            String id = submission.getStudentSubmissionId();
+            if (id == null || id.isEmpty()) {
+                id = IdGenerators.nextId();
+            }
+            proposedIds.add(id);
+        }
 
-        // Quản lý transaction và connection cẩn thận hơn
         Connection conn = null;
-        boolean autoCommitStatus = false;
-
         try {
             conn = DatabaseConnection.getConnection();
-            autoCommitStatus = conn.getAutoCommit(); // Lưu lại trạng thái auto-commit hiện tại
-            conn.setAutoCommit(false); // Bắt đầu transaction
-
-            try (PreparedStatement checkStmt = conn.prepareStatement(checkExistingQuery);
-                 PreparedStatement updateStmt = conn.prepareStatement(updateQuery);
-                 PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
-
-                for (HomeworkSubmissionModel submission : submissions) {
-                    String studentSubmissionId = submission.getStudentSubmissionId();
-                    boolean isNewRecord = false;
-
-                    // Nếu không có student_submission_id HOẶC nó rỗng, coi như có thể là bản ghi mới
-                    // hoặc cần kiểm tra sự tồn tại dựa trên student_id và homework_id
-                    if (studentSubmissionId == null || studentSubmissionId.isEmpty()) {
-                        isNewRecord = true; // Giả định là mới nếu không có ID, sẽ check lại bằng student_id và homework_id
-                    }
-
-                    // Kiểm tra xem bản ghi đã tồn tại chưa dựa trên student_id và homework_id
-                    checkStmt.setString(1, submission.getStudentId());
-                    checkStmt.setString(2, submission.getHomeworkId());
-
-                    ResultSet rs = checkStmt.executeQuery();
-                    boolean existsByNaturalKey = rs.next();
-                    String existingDbSubmissionId = null;
-                    if (existsByNaturalKey) {
-                        existingDbSubmissionId = rs.getString("student_submission_id");
-                    }
-                    rs.close();
-
-
-                    if (existsByNaturalKey) {
-                        // Cập nhật bản ghi hiện có
-                        // Sử dụng existingDbSubmissionId để đảm bảo cập nhật đúng bản ghi
-                        updateStmt.setBoolean(1, submission.isSubmitted());
-                        updateStmt.setDouble(2, submission.getGrade());
-                        updateStmt.setTimestamp(3, submission.getSubmissionTimestamp() != null ?
-                                Timestamp.valueOf(submission.getSubmissionTimestamp()) : null);
-                        updateStmt.setString(4, submission.getCheckedInSessionId());
-                        updateStmt.setString(5, submission.getEvaluatorNotes());
-                        updateStmt.setString(6, existingDbSubmissionId); // Quan trọng: Dùng ID từ DB
-                        updateStmt.addBatch();
-                    } else {
-                        // Thêm bản ghi mới
-                        // 🌟 Tự động tạo student_submission_id nếu nó chưa được cung cấp hoặc rỗng
-                        if (studentSubmissionId == null || studentSubmissionId.isEmpty()) {
-                            studentSubmissionId = UUID.randomUUID().toString();
-                        }
-                        // (Nếu submission object được dùng lại, cần set lại ID mới này vào nó
-                        //  để nếu có lỗi và retry, nó không tạo ID khác. Nhưng với batch thì ít khi.)
-                        // submission.setStudentSubmissionId(studentSubmissionId); // Tùy chọn: cập nhật lại model
-
-                        insertStmt.setString(1, studentSubmissionId); // Sử dụng ID đã có hoặc vừa tạo
-                        insertStmt.setString(2, submission.getStudentId());
-                        insertStmt.setString(3, submission.getHomeworkId());
-                        insertStmt.setBoolean(4, submission.isSubmitted());
-                        insertStmt.setDouble(5, submission.getGrade());
-                        insertStmt.setTimestamp(6, submission.getSubmissionTimestamp() != null ?
-                                Timestamp.valueOf(submission.getSubmissionTimestamp()) : null);
-                        insertStmt.setString(7, submission.getCheckedInSessionId());
-                        insertStmt.setString(8, submission.getEvaluatorNotes());
-                        insertStmt.addBatch();
-                    }
+            conn.setAutoCommit(false);
+
+            // Đọc khóa một lần trước khi ghi (khóa các dòng/khoảng khóa để không ai chen vào giữa):
+            // khóa chưa có -> bản ghi sẽ được thêm mới với ID đề xuất; khóa đã có -> giữ ID trong DB
+            Map<String, String> existingIds = findSubmissionIds(conn, submissions);
+
+            int[] results;
+            try (PreparedStatement upsertStmt = conn.prepareStatement(upsertQuery)) {
+                for (int i = 0; i < submissions.size(); i++) {
+                    HomeworkSubmissionModel submission = submissions.get(i);
+                    upsertStmt.setString(1, proposedIds.get(i));
+                    upsertStmt.setString(2, submission.getStudentId());
+                    upsertStmt.setString(3, submission.getHomeworkId());
+                    upsertStmt.setBoolean(4, submission.isSubmitted());
+                    upsertStmt.setDouble(5, submission.getGrade());
+                    upsertStmt.setTimestamp(6, submission.getSubmissionTimestamp() != null ?
+                            Timestamp.valueOf(submission.getSubmissionTimestamp()) : null);
+                    upsertStmt.setString(7, submission.getCheckedInSessionId());
+                    upsertStmt.setString(8, submission.getEvaluatorNotes());
+                    upsertStmt.addBatch();
                 }
+                results = upsertStmt.executeBatch();
+            }
 
-                // Thực thi các batch
-                updateStmt.executeBatch();
-                insertStmt.executeBatch();
-
-                conn.commit(); // Commit transaction nếu tất cả thành công
-
-            } catch (SQLException e) {
-                if (conn != null) {
-                    try {
-                        System.err.println("Transaction is being rolled back for saveOrUpdateBatch due to SQL error.");
-                        conn.rollback(); // Rollback nếu có lỗi trong quá trình xử lý batch
-                    } catch (SQLException ex) {
-                        System.err.println("Error rolling back transaction: " + ex.getMessage());
-                        // Ghi log lỗi rollback nếu cần
-                    }
+            Set<String> homeworkIds = new HashSet<>();
+            for (HomeworkSubmissionModel submission : submissions) {
+                homeworkIds.add(submission.getHomeworkId());
+            }
+            invalidateReportSnapshots(conn, homeworkIds);
+            DatabaseConnection.commit(conn);
+
+            List<UpsertOutcome> outcomes = new ArrayList<>(submissions.size());
+            for (int i = 0; i < submissions.size(); i++) {
+                HomeworkSubmissionModel submission = submissions.get(i);
+                String existingId = existingIds.get(naturalKey(submission.getStudentId(), submission.getHomeworkId()));
+                if (existingId == null) {
+                    submission.setStudentSubmissionId(proposedIds.get(i));
+                    outcomes.add(UpsertOutcome.INSERTED);
+                    continue;
+                }
+                submission.setStudentSubmissionId(existingId);
+                // Với bản ghi đã tồn tại, Connector/J trả về 2 khi có thay đổi; khi không đổi trả về 1
+                // (mặc định, CLIENT_FOUND_ROWS) hoặc 0 (useAffectedRows=true). Không rõ số dòng -> coi như đã cập nhật
+                if (results[i] == 2 || results[i] == Statement.SUCCESS_NO_INFO) {
+                    outcomes.add(UpsertOutcome.UPDATED);
+                } else {
+                    outcomes.add(UpsertOutcome.UNCHANGED);
                 }
-                throw e; // Ném lại ngoại lệ để lớp gọi xử lý
             }
+            return outcomes;
 
         } catch (SQLException e) {
-            // Lỗi khi lấy connection hoặc setAutoCommit
-            System.err.println("Database connection or transaction setup error in saveOrUpdateBatch: " + e.getMessage());
-            throw e; // Ném lại ngoại lệ
+            LOGGER.log(Level.SEVERE, "Transaction is being rolled back for saveOrUpdateBatch due to SQL error.", e);
+            DatabaseConnection.rollback(conn);
+            throw e; // Ném lại ngoại lệ để lớp gọi xử lý
         } finally {
             if (conn != null) {
                 try {
-                    conn.setAutoCommit(autoCommitStatus); // Khôi phục trạng thái auto-commit
-                    if (!conn.isClosed()) {
-                        conn.close(); // Đóng connection
-                    }
+                    conn.setAutoCommit(true);
+                    conn.close();
                 } catch (SQLException ex) {
-                    System.err.println("Error restoring auto-commit or closing connection: " + ex.getMessage());
-                    // Ghi log lỗi nếu cần
+                    LOGGER.log(Level.WARNING, "Error restoring auto-commit or closing connection.", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Đọc student_submission_id hiện tại của các bài nộp theo (student_id, homework_id) bằng một truy vấn.
+     * Dùng FOR UPDATE nên phải gọi trong transaction; các khóa đọc được giữ nguyên tới khi commit.
+     *
+     * @return Map từ khóa tự nhiên (xem {@link #naturalKey(String, String)}) sang student_submission_id
+     */
+    private Map<String, String> findSubmissionIds(Connection conn, List<HomeworkSubmissionModel> submissions) throws SQLException {
+        Map<String, String> ids = new HashMap<>();
+        String sql = "SELECT student_id, homework_id, student_submission_id FROM student_homework_submissions " +
+                "WHERE (student_id, homework_id) IN (" +
+                String.join(",", Collections.nCopies(submissions.size(), "(?, ?)")) + ") FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (HomeworkSubmissionModel submission : submissions) {
+                stmt.setString(index++, submission.getStudentId());
+                stmt.setString(index++, submission.getHomeworkId());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.put(naturalKey(rs.getString("student_id"), rs.getString("homework_id")),
+                            rs.getString("student_submission_id"));
                 }
             }
         }
+        return ids;
+    }
+
+    private static String naturalKey(String studentId, String homeworkId) {
+        return studentId + "|" + homeworkId;
     }
 
     /**
@@ -715,8 +783,8 @@ public class HomeworkSubmissionDAO {
         // Sắp xếp theo student_id để có thứ tự nhất quán
         String sql = "SELECT * FROM student_homework_submissions WHERE homework_id = ? ORDER BY student_id";
 
-        // Sử dụng this.connection đã được khởi tạo trong constructor
-        try (PreparedStatement stmt = this.connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, homeworkId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -725,7 +793,6 @@ public class HomeworkSubmissionDAO {
                 }
             }
         }
-        // Không đóng this.connection ở đây vì nó được quản lý ở mức DAO instance
         return submissions;
     }
 }
\ No newline at end of file
@@ -0,0 +1,467 @@
+package src.dao.Attendance;
+
+import src.utils.DatabaseConnection;
+
+import java.sql.*;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object for the student_metrics rollup tables.
+ * <p>
+ * student_metrics is an append-only time series: every save adds a point (punctuality, awareness, notes).
+ * Points are compacted into two rollups per student and course:
+ * <ul>
+ *   <li>student_metrics_daily - one row per day: count, sum, min, max and last value of each score, plus the last notes</li>
+ *   <li>student_metrics_monthly - one row per month, built from the daily rows</li>
+ * </ul>
+ * "Last" is the point with the greatest metric_seq, the insertion sequence assigned by the server (V017);
+ * metric_id is not used because legacy IDs are random and new ones depend on each client's clock.
+ * Averages and history charts read the rollups, so their cost depends on the number of days/months, not on how
+ * many points were saved. Writers call {@link #refresh(Connection, Collection)} with the days they touched, inside
+ * their own transaction; {@link #rebuildAll()} recomputes everything from student_metrics.
+ */
+public class StudentMetricsRollupDAO {
+    private static final Logger LOGGER = Logger.getLogger(StudentMetricsRollupDAO.class.getName());
+
+    private static final String DAILY_COLUMNS = "student_id, course_id, day, sample_count, " +
+            "punctuality_count, punctuality_sum, punctuality_min, punctuality_max, punctuality_last, " +
+            "awareness_count, awareness_sum, awareness_min, awareness_max, awareness_last, notes_last";
+
+    private static final String MONTHLY_COLUMNS = "student_id, course_id, month_start, sample_count, " +
+            "punctuality_count, punctuality_sum, punctuality_min, punctuality_max, punctuality_last, " +
+            "awareness_count, awareness_sum, awareness_min, awareness_max, awareness_last";
+
+    private static final String DAILY_AGGREGATES = "COUNT(*), " +
+            "COUNT(m.punctuality_score), SUM(m.punctuality_score), MIN(m.punctuality_score), MAX(m.punctuality_score), ";
+    private static final String DAILY_AGGREGATES_AWARENESS =
+            "COUNT(m.awareness_score), SUM(m.awareness_score), MIN(m.awareness_score), MAX(m.awareness_score), ";
+
+    private static final String MONTHLY_AGGREGATES = "SUM(d.sample_count), " +
+            "SUM(d.punctuality_count), SUM(d.punctuality_sum), MIN(d.punctuality_min), MAX(d.punctuality_max), ";
+    private static final String MONTHLY_AGGREGATES_AWARENESS =
+            "SUM(d.awareness_count), SUM(d.awareness_sum), MIN(d.awareness_min), MAX(d.awareness_max), ";
+
+    /**
+     * Fills student_metrics_daily from the whole student_metrics table (expects an empty rollup table).
+     */
+    private static final String DAILY_BACKFILL_SQL = "INSERT INTO student_metrics_daily (" + DAILY_COLUMNS + ") " +
+            "SELECT m.student_id, m.course_id, m.record_date, " + DAILY_AGGREGATES +
+            "(SELECT l.punctuality_score FROM student_metrics l WHERE l.student_id = m.student_id AND l.course_id = m.course_id " +
+            "AND l.record_date = m.record_date ORDER BY l.metric_seq DESC LIMIT 1), " +
+            DAILY_AGGREGATES_AWARENESS +
+            "(SELECT l.awareness_score FROM student_metrics l WHERE l.student_id = m.student_id AND l.course_id = m.course_id " +
+            "AND l.record_date = m.record_date ORDER BY l.metric_seq DESC LIMIT 1), " +
+            "(SELECT l.notes FROM student_metrics l WHERE l.student_id = m.student_id AND l.course_id = m.course_id " +
+            "AND l.record_date = m.record_date ORDER BY l.metric_seq DESC LIMIT 1) " +
+            "FROM student_metrics m WHERE m.record_date IS NOT NULL " +
+            "GROUP BY m.student_id, m.course_id, m.record_date";
+
+    /**
+     * Fills student_metrics_monthly from student_metrics_daily (expects an empty rollup table).
+     */
+    private static final String MONTHLY_BACKFILL_SQL = "INSERT INTO student_metrics_monthly (" + MONTHLY_COLUMNS + ") " +
+            "SELECT d.student_id, d.course_id, DATE_FORMAT(d.day, '%Y-%m-01'), " + MONTHLY_AGGREGATES +
+            "(SELECT l.punctuality_last FROM student_metrics_daily l WHERE l.student_id = d.student_id AND l.course_id = d.course_id " +
+            "AND DATE_FORMAT(l.day, '%Y-%m-01') = DATE_FORMAT(d.day, '%Y-%m-01') ORDER BY l.day DESC LIMIT 1), " +
+            MONTHLY_AGGREGATES_AWARENESS +
+            "(SELECT l.awareness_last FROM student_metrics_daily l WHERE l.student_id = d.student_id AND l.course_id = d.course_id " +
+            "AND DATE_FORMAT(l.day, '%Y-%m-01') = DATE_FORMAT(d.day, '%Y-%m-01') ORDER BY l.day DESC LIMIT 1) " +
+            "FROM student_metrics_daily d " +
+            "GROUP BY d.student_id, d.course_id, DATE_FORMAT(d.day, '%Y-%m-01')";
+
+    /**
+     * Identifies one day of metrics for a student in a course.
+     */
+    public static final class MetricKey {
+        private final String studentId;
+        private final String courseId;
+        private final LocalDate day;
+
+        public MetricKey(String studentId, String courseId, LocalDate day) {
+            this.studentId = studentId;
+            this.courseId = courseId;
+            this.day = day;
+        }
+
+        public String getStudentId() { return studentId; }
+        public String getCourseId() { return courseId; }
+        public LocalDate getDay() { return day; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MetricKey)) return false;
+            MetricKey other = (MetricKey) o;
+            return Objects.equals(studentId, other.studentId) && Objects.equals(courseId, other.courseId)
+                    && Objects.equals(day, other.day);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(studentId, courseId, day);
+        }
+    }
+
+    /**
+     * One day (or month) of rolled-up metrics.
+     */
+    public static final class MetricsRollup {
+        private final LocalDate periodStart;
+        private final int sampleCount;
+        private final Double punctualityAverage;
+        private final Double punctualityLast;
+        private final Double awarenessAverage;
+        private final Double awarenessLast;
+        private final String notesLast;
+
+        public MetricsRollup(LocalDate periodStart, int sampleCount, Double punctualityAverage, Double punctualityLast,
+                             Double awarenessAverage, Double awarenessLast, String notesLast) {
+            this.periodStart = periodStart;
+            this.sampleCount = sampleCount;
+            this.punctualityAverage = punctualityAverage;
+            this.punctualityLast = punctualityLast;
+            this.awarenessAverage = awarenessAverage;
+            this.awarenessLast = awarenessLast;
+            this.notesLast = notesLast;
+        }
+
+        public LocalDate getPeriodStart() { return periodStart; }
+        public int getSampleCount() { return sampleCount; }
+        public Double getPunctualityAverage() { return punctualityAverage; }
+        public Double getPunctualityLast() { return punctualityLast; }
+        public Double getAwarenessAverage() { return awarenessAverage; }
+        public Double getAwarenessLast() { return awarenessLast; }
+        public String getNotesLast() { return notesLast; }
+    }
+
+    public StudentMetricsRollupDAO() {
+    }
+
+    // --- Methods taking the caller's connection (used inside the writers' transactions) ---
+
+    /**
+     * Finds the days of the given student_metrics rows as they are currently stored.
+     *
+     * @param conn      the active database connection
+     * @param metricIds metric_id values
+     * @return Keys of the matching rows
+     * @throws SQLException if a database access error occurs
+     */
+    public Set<MetricKey> findKeysByMetricIds(Connection conn, Collection<String> metricIds) throws SQLException {
+        Set<MetricKey> keys = new HashSet<>();
+        if (metricIds.isEmpty()) {
+            return keys;
+        }
+        String sql = "SELECT DISTINCT student_id, course_id, record_date FROM student_metrics WHERE metric_id IN (" +
+                String.join(",", Collections.nCopies(metricIds.size(), "?")) + ") AND record_date IS NOT NULL";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (String metricId : metricIds) {
+                stmt.setString(index++, metricId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(new MetricKey(rs.getString("student_id"), rs.getString("course_id"),
+                            rs.getDate("record_date").toLocalDate()));
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Recomputes the daily rollups of the given days from student_metrics, then the monthly rollups of their months.
+     *
+     * @param conn the active database connection (expected to be in the caller's write transaction)
+     * @param keys Days that were written
+     * @throws SQLException if a database access error occurs
+     */
+    public void refresh(Connection conn, Collection<MetricKey> keys) throws SQLException {
+        Set<MetricKey> days = new HashSet<>();
+        Set<MetricKey> months = new HashSet<>();
+        for (MetricKey key : keys) {
+            if (key.getStudentId() == null || key.getCourseId() == null || key.getDay() == null) {
+                continue;
+            }
+            days.add(key);
+            months.add(new MetricKey(key.getStudentId(), key.getCourseId(), key.getDay().withDayOfMonth(1)));
+        }
+        if (days.isEmpty()) {
+            return;
+        }
+
+        String lastPointSql = "(SELECT l.%s FROM student_metrics l WHERE l.student_id = ? AND l.course_id = ? " +
+                "AND l.record_date = ? ORDER BY l.metric_seq DESC LIMIT 1)";
+        String dailyInsert = "INSERT INTO student_metrics_daily (" + DAILY_COLUMNS + ") " +
+                "SELECT m.student_id, m.course_id, m.record_date, " + DAILY_AGGREGATES +
+                String.format(lastPointSql, "punctuality_score") + ", " + DAILY_AGGREGATES_AWARENESS +
+                String.format(lastPointSql, "awareness_score") + ", " + String.format(lastPointSql, "notes") + " " +
+                "FROM student_metrics m WHERE m.student_id = ? AND m.course_id = ? AND m.record_date = ? " +
+                "GROUP BY m.student_id, m.course_id, m.record_date";
+
+        String lastDaySql = "(SELECT l.%s FROM student_metrics_daily l WHERE l.student_id = ? AND l.course_id = ? " +
+                "AND l.day BETWEEN ? AND ? ORDER BY l.day DESC LIMIT 1)";
+        String monthlyInsert = "INSERT INTO student_metrics_monthly (" + MONTHLY_COLUMNS + ") " +
+                "SELECT d.student_id, d.course_id, ?, " + MONTHLY_AGGREGATES +
+                String.format(lastDaySql, "punctuality_last") + ", " + MONTHLY_AGGREGATES_AWARENESS +
+                String.format(lastDaySql, "awareness_last") + " " +
+                "FROM student_metrics_daily d WHERE d.student_id = ? AND d.course_id = ? AND d.day BETWEEN ? AND ? " +
+                "GROUP BY d.student_id, d.course_id";
+
+        try (PreparedStatement deleteDaily = conn.prepareStatement(
+                "DELETE FROM student_metrics_daily WHERE student_id = ? AND course_id = ? AND day = ?");
+             PreparedStatement insertDaily = conn.prepareStatement(dailyInsert)) {
+            for (MetricKey key : days) {
+                Date day = Date.valueOf(key.getDay());
+                deleteDaily.setString(1, key.getStudentId());
+                deleteDaily.setString(2, key.getCourseId());
+                deleteDaily.setDate(3, day);
+                deleteDaily.addBatch();
+
+                int index = 1;
+                for (int i = 0; i < 4; i++) { // 3 "last" subqueries + the main WHERE
+                    insertDaily.setString(index++, key.getStudentId());
+                    insertDaily.setString(index++, key.getCourseId());
+                    insertDaily.setDate(index++, day);
+                }
+                insertDaily.addBatch();
+            }
+            deleteDaily.executeBatch();
+            insertDaily.executeBatch();
+        }
+
+        try (PreparedStatement deleteMonthly = conn.prepareStatement(
+                "DELETE FROM student_metrics_monthly WHERE student_id = ? AND course_id = ? AND month_start = ?");
+             PreparedStatement insertMonthly = conn.prepareStatement(monthlyInsert)) {
+            for (MetricKey key : months) {
+                Date monthStart = Date.valueOf(key.getDay());
+                Date monthEnd = Date.valueOf(key.getDay().withDayOfMonth(key.getDay().lengthOfMonth()));
+                deleteMonthly.setString(1, key.getStudentId());
+                deleteMonthly.setString(2, key.getCourseId());
+                deleteMonthly.setDate(3, monthStart);
+                deleteMonthly.addBatch();
+
+                int index = 1;
+                insertMonthly.setDate(index++, monthStart);
+                for (int i = 0; i < 3; i++) { // 2 "last" subqueries + the main WHERE
+                    insertMonthly.setString(index++, key.getStudentId());
+                    insertMonthly.setString(index++, key.getCourseId());
+                    insertMonthly.setDate(index++, monthStart);
+                    insertMonthly.setDate(index++, monthEnd);
+                }
+                insertMonthly.addBatch();
+            }
+            deleteMonthly.executeBatch();
+            insertMonthly.executeBatch();
+        }
+    }
+
+    // --- Public Wrapper Methods ---
+
+    /**
+     * Recomputes the rollups of the given days using a new connection.
+     * Errors are logged and not rethrown: the raw points are already saved and {@link #rebuildAll()} repairs the rollups.
+     *
+     * @param keys Days that were written
+     */
+    public void refresh(Collection<MetricKey> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            refresh(conn, keys);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not refresh student metrics rollups; they will need a rebuild.", e);
+        }
+    }
+
+    /**
+     * Recomputes the rollups of the days of the given student_metrics rows using a new connection.
+     *
+     * @param metricIds metric_id values that were written
+     */
+    public void refreshByMetricIds(Collection<String> metricIds) {
+        if (metricIds == null || metricIds.isEmpty()) {
+            return;
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            refresh(conn, findKeysByMetricIds(conn, metricIds));
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not refresh student metrics rollups; they will need a rebuild.", e);
+        }
+    }
+
+    /**
+     * Gets a student's average punctuality and awareness over all courses, from the monthly rollups.
+     *
+     * @param studentId Student ID
+     * @return {avgPunctuality, avgAwareness} (an element is null if there is no score), or null if the student has no metrics
+     * @throws SQLException if a database access error occurs
+     */
+    public Double[] getAverageScores(String studentId) throws SQLException {
+        String sql = "SELECT SUM(sample_count) AS samples, " +
+                "SUM(punctuality_sum) / NULLIF(SUM(punctuality_count), 0) AS avg_punctuality, " +
+                "SUM(awareness_sum) / NULLIF(SUM(awareness_count), 0) AS avg_awareness " +
+                "FROM student_metrics_monthly WHERE student_id = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, studentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getLong("samples") > 0) {
+                    return new Double[]{getNullableDouble(rs, "avg_punctuality"), getNullableDouble(rs, "avg_awareness")};
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets a student's daily metrics in a course, newest day first.
+     *
+     * @param studentId Student ID
+     * @param courseId  Course ID
+     * @return One rollup per day with metrics
+     * @throws SQLException if a database access error occurs
+     */
+    public List<MetricsRollup> getDailyHistory(String studentId, String courseId) throws SQLException {
+        String sql = "SELECT day, sample_count, punctuality_sum / NULLIF(punctuality_count, 0) AS punctuality_avg, " +
+                "punctuality_last, awareness_sum / NULLIF(awareness_count, 0) AS awareness_avg, awareness_last, notes_last " +
+                "FROM student_metrics_daily WHERE student_id = ? AND course_id = ? ORDER BY day DESC";
+        List<MetricsRollup> history = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, studentId);
+            stmt.setString(2, courseId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    history.add(mapDailyRollup(rs));
+                }
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Gets the latest day of metrics of every student in a course, in a single windowed query.
+     * Optional thresholds are applied in SQL to the last value of that day.
+     *
+     * @param courseId       Course ID
+     * @param minPunctuality Minimum last punctuality score, or null for no filter
+     * @param minAwareness   Minimum last awareness score, or null for no filter
+     * @return Latest daily rollup per student ID (students without matching metrics are absent)
+     * @throws SQLException if a database access error occurs
+     */
+    public Map<String, MetricsRollup> getLatestDailyByStudent(String courseId, Double minPunctuality,
+                                                              Double minAwareness) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT student_id, day, sample_count, punctuality_avg, punctuality_last, " +
+                "awareness_avg, awareness_last, notes_last FROM (" +
+                "SELECT d.student_id, d.day, d.sample_count, d.punctuality_sum / NULLIF(d.punctuality_count, 0) AS punctuality_avg, " +
+                "d.punctuality_last, d.awareness_sum / NULLIF(d.awareness_count, 0) AS awareness_avg, d.awareness_last, d.notes_last, " +
+                "ROW_NUMBER() OVER (PARTITION BY d.student_id ORDER BY d.day DESC) AS rn " +
+                "FROM student_metrics_daily d WHERE d.course_id = ?) latest WHERE rn = 1");
+        if (minPunctuality != null) {
+            sql.append(" AND punctuality_last >= ?");
+        }
+        if (minAwareness != null) {
+            sql.append(" AND awareness_last >= ?");
+        }
+
+        Map<String, MetricsRollup> latest = new LinkedHashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            stmt.setString(index++, courseId);
+            if (minPunctuality != null) {
+                stmt.setDouble(index++, minPunctuality);
+            }
+            if (minAwareness != null) {
+                stmt.setDouble(index++, minAwareness);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    latest.put(rs.getString("student_id"), mapDailyRollup(rs));
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Gets a student's monthly metrics in a course, newest month first (for long-range charts).
+     *
+     * @param studentId Student ID
+     * @param courseId  Course ID
+     * @return One rollup per month with metrics
+     * @throws SQLException if a database access error occurs
+     */
+    public List<MetricsRollup> getMonthlyHistory(String studentId, String courseId) throws SQLException {
+        String sql = "SELECT month_start, sample_count, punctuality_sum / NULLIF(punctuality_count, 0) AS punctuality_avg, " +
+                "punctuality_last, awareness_sum / NULLIF(awareness_count, 0) AS awareness_avg, awareness_last " +
+                "FROM student_metrics_monthly WHERE student_id = ? AND course_id = ? ORDER BY month_start DESC";
+        List<MetricsRollup> history = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, studentId);
+            stmt.setString(2, courseId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    history.add(new MetricsRollup(rs.getDate("month_start").toLocalDate(), rs.getInt("sample_count"),
+                            getNullableDouble(rs, "punctuality_avg"), getNullableDouble(rs, "punctuality_last"),
+                            getNullableDouble(rs, "awareness_avg"), getNullableDouble(rs, "awareness_last"),
+                            null));
+                }
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Rebuilds both rollup tables from student_metrics in one transaction.
+     *
+     * @throws SQLException if the rebuild fails; the previous rollups are kept
+     */
+    public void rebuildAll() throws SQLException {
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM student_metrics_monthly");
+                stmt.executeUpdate("DELETE FROM student_metrics_daily");
+                stmt.executeUpdate(DAILY_BACKFILL_SQL);
+                stmt.executeUpdate(MONTHLY_BACKFILL_SQL);
+            }
+            DatabaseConnection.commit(conn);
+            LOGGER.info("Rebuilt student metrics rollups.");
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error rebuilding student metrics rollups.", e);
+            DatabaseConnection.rollback(conn);
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    LOGGER.log(Level.SEVERE, "Error closing connection after rebuilding student metrics rollups.", e);
+                }
+            }
+        }
+    }
+
+    private static MetricsRollup mapDailyRollup(ResultSet rs) throws SQLException {
+        return new MetricsRollup(rs.getDate("day").toLocalDate(), rs.getInt("sample_count"),
+                getNullableDouble(rs, "punctuality_avg"), getNullableDouble(rs, "punctuality_last"),
+                getNullableDouble(rs, "awareness_avg"), getNullableDouble(rs, "awareness_last"),
+                rs.getString("notes_last"));
+    }
+
+    private static Double getNullableDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+}
@@ -1,9 +1,14 @@
 
 package src.dao.ClassSession;
 
+import src.dao.Attendance.HomeworkDAO;
 import src.dao.Classrooms.ClassroomDAO;
+import src.dao.Dashboard.CourseDistributionDAO;
 import src.dao.Holidays.HolidayDAO;
 import src.dao.Person.TeacherDAO;
+import src.dao.Report.ReportSnapshotDAO;
+import src.dao.Report.TeachingRollupDAO;
+import src.dao.Report.TeachingRollupDAO.TeachingKey;
 import src.dao.Schedule.ScheduleDAO;
 import src.model.ClassSession;
 import src.model.system.course.Course;
@@ -18,11 +23,20 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,9 +54,80 @@ public class ClassSessionDAO {
 
     private static final Logger LOGGER = Logger.getLogger(ClassSessionDAO.class.getName());
 
+    // Cache các giá trị phân biệt (giáo viên, phòng, tên khóa học) cho combo box lọc lịch học.
+    // Dùng static vì một số nơi tự tạo ClassSessionDAO riêng; mọi thao tác ghi đều xóa cache.
+    private static final long DIMENSION_CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final Map<String, DimensionEntry> DIMENSION_CACHE = new ConcurrentHashMap<>();
+    private static final AtomicLong WRITE_VERSION = new AtomicLong();
+
+    // class_sessions.teacher_id: dùng ID đã biết, nếu không có thì tra theo tên giáo viên (tham số: teacherId, teacherName)
+    private static final String TEACHER_ID_VALUE = "COALESCE(?, (SELECT MIN(t.id) FROM teachers t WHERE t.name = ?))";
+
+    private static final class DimensionEntry {
+        final List<String> values;
+        final long loadedAtMillis;
+
+        DimensionEntry(List<String> values) {
+            this.values = values;
+            this.loadedAtMillis = System.currentTimeMillis();
+        }
+    }
+
+    private TeachingRollupDAO teachingRollupDAO;
+    private CourseDistributionDAO courseDistributionDAO;
+
     public ClassSessionDAO() {
         // Constructor
     }
+
+    public void setTeachingRollupDAO(TeachingRollupDAO teachingRollupDAO) {
+        this.teachingRollupDAO = teachingRollupDAO;
+    }
+
+    public void setCourseDistributionDAO(CourseDistributionDAO courseDistributionDAO) {
+        this.courseDistributionDAO = courseDistributionDAO;
+    }
+
+    // Một số nơi tự tạo ClassSessionDAO mà không qua DaoManager
+    private TeachingRollupDAO teachingRollups() {
+        if (teachingRollupDAO == null) {
+            teachingRollupDAO = new TeachingRollupDAO();
+        }
+        return teachingRollupDAO;
+    }
+
+    private CourseDistributionDAO courseDistributions() {
+        if (courseDistributionDAO == null) {
+            courseDistributionDAO = new CourseDistributionDAO();
+        }
+        return courseDistributionDAO;
+    }
+
+    // Lỗi đọc hay cập nhật rollup được ném ra: giao dịch của người gọi bị rollback cùng với buổi học,
+    // nên rollup không bao giờ lệch khỏi class_sessions
+    private Set<TeachingKey> findTeachingKeys(Connection conn, Collection<String> sessionIds) throws SQLException {
+        return teachingRollups().findKeysBySessionIds(conn, sessionIds);
+    }
+
+    private Set<TeachingKey> findTeachingKeysByCourse(Connection conn, String courseId) throws SQLException {
+        return teachingRollups().findKeysByCourseId(conn, courseId);
+    }
+
+    private Set<String> findCourseIds(Connection conn, Collection<String> sessionIds) throws SQLException {
+        return courseDistributions().findCourseIdsBySessionIds(conn, sessionIds);
+    }
+
+    // Cập nhật rollup, số buổi học của các khóa học liên quan và xóa các snapshot báo cáo có kỳ chứa những ngày vừa thay đổi
+    private void refreshSessionAggregates(Connection conn, Set<TeachingKey> keys, Collection<String> courseIds)
+            throws SQLException {
+        teachingRollups().refresh(conn, keys);
+        courseDistributions().refresh(conn, courseIds);
+        Set<LocalDate> days = new HashSet<>();
+        for (TeachingKey key : keys) {
+            days.add(key.getDay());
+        }
+        ReportSnapshotDAO.invalidateDays(conn, days, ReportSnapshotDAO.ALL_TYPES);
+    }
     private boolean hasColumn(ResultSet rs, String columnName) throws SQLException {
         ResultSetMetaData rsmd = rs.getMetaData();
         int columns = rsmd.getColumnCount();
@@ -79,6 +164,7 @@ public class ClassSessionDAO {
 
         session.setRoom(rs.getString("room"));
         session.setTeacher(rs.getString("teacher_name"));
+        session.setTeacherId(rs.getString("teacher_id"));
         session.setSessionNumber(rs.getInt("session_number"));
         session.setSessionNotes(rs.getString("session_notes"));
 
@@ -155,10 +241,10 @@ public class ClassSessionDAO {
      * @throws SQLException If there's a database error
      */
     boolean internalCreate(Connection conn, ClassSession session) throws SQLException {
-        // Câu lệnh SQL này có 10 cột và 10 placeholder (đã bao gồm session_notes)
+        // Câu lệnh SQL này có 11 cột (đã bao gồm session_notes và teacher_id)
         String sql = "INSERT INTO class_sessions (session_id, course_id, course_name, " +
-                "start_time, session_date, end_time, room, teacher_name, session_number, session_notes) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"; // 10 placeholders
+                "start_time, session_date, end_time, room, teacher_name, session_number, session_notes, teacher_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, " + TEACHER_ID_VALUE + ")";
 
         if (session.getId() == null || session.getId().trim().isEmpty()) {
             session.setId("SESS_FALLBACK_" + UUID.randomUUID().toString());
@@ -203,8 +289,16 @@ public class ClassSessionDAO {
             } else {
                 stmt.setNull(paramIndex++, Types.VARCHAR); // Hoặc Types.LONGVARCHAR nếu session_notes là TEXT
             }
+            stmt.setString(paramIndex++, session.getTeacherId());
+            stmt.setString(paramIndex++, session.getTeacher());
 
-            return stmt.executeUpdate() > 0;
+            boolean changed = stmt.executeUpdate() > 0;
+            invalidateDimensionCache(conn);
+            if (changed) {
+                refreshSessionAggregates(conn, findTeachingKeys(conn, Collections.singleton(session.getId())),
+                        Collections.singleton(session.getCourseId()));
+            }
+            return changed;
         }
     }
 
@@ -219,9 +313,11 @@ public class ClassSessionDAO {
     boolean internalUpdate(Connection conn, ClassSession session) throws SQLException {
         String sql = "UPDATE class_sessions SET course_id = ?, course_name = ?, " +
                 "start_time = ?, session_date = ?, end_time = ?, room = ?, teacher_name = ?, " +
-                "session_number = ?, session_notes = ?" +
-                " WHERE session_id = ?"; // 9 fields để SET
+                "session_number = ?, session_notes = ?, teacher_id = " + TEACHER_ID_VALUE +
+                " WHERE session_id = ?"; // 10 fields để SET
 
+        Set<TeachingKey> teachingKeys = findTeachingKeys(conn, Collections.singleton(session.getId())); // Ngày/giáo viên cũ
+        Set<String> courseIds = findCourseIds(conn, Collections.singleton(session.getId())); // Khóa học cũ
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             int paramIndex = 1;
             stmt.setString(paramIndex++, session.getCourseId());
@@ -245,10 +341,19 @@ public class ClassSessionDAO {
             stmt.setString(paramIndex++, session.getTeacher());
             stmt.setInt(paramIndex++, session.getSessionNumber());
             stmt.setString(paramIndex++, session.getSessionNotes()); // session_notes
+            stmt.setString(paramIndex++, session.getTeacherId()); // teacher_id
+            stmt.setString(paramIndex++, session.getTeacher());   // tra teacher_id theo tên nếu chưa có
 
             stmt.setString(paramIndex++, session.getId()); // Cho WHERE clause
 
-            return stmt.executeUpdate() > 0;
+            boolean changed = stmt.executeUpdate() > 0;
+            invalidateDimensionCache(conn);
+            if (changed) {
+                teachingKeys.addAll(findTeachingKeys(conn, Collections.singleton(session.getId())));
+                courseIds.add(session.getCourseId());
+                refreshSessionAggregates(conn, teachingKeys, courseIds);
+            }
+            return changed;
         }
     }
 
@@ -272,8 +377,28 @@ public class ClassSessionDAO {
             HolidayDAO holidayDAO,
             ScheduleDAO scheduleDAO // Có thể là null nếu không dùng
     ) throws SQLException {
+        List<ClassSession> plannedSessions = planSessionsForCourse(course, classroomDAO, teacherDAO, holidayDAO);
+        internalCreateBatch(conn, plannedSessions);
+        if (!plannedSessions.isEmpty()) {
+            LOGGER.log(Level.INFO, "Đã tạo thành công {0} buổi học cho khóa {1} (mục tiêu: {2} buổi).",
+                    new Object[]{plannedSessions.size(), course.getCourseId(), course.getTotalSessions()});
+        }
+        return plannedSessions;
+    }
 
-        List<ClassSession> generatedSessions = new ArrayList<>();
+    /**
+     * Computes the session plan of a course (dates, times, room, teacher, session numbers) without writing anything.
+     * Holidays are skipped; generation stops after course.getTotalSessions() sessions or 3 years.
+     *
+     * @param course The course to plan sessions for
+     * @param classroomDAO DAO used to resolve the room name
+     * @param teacherDAO DAO used to resolve the teacher name when the course has no loaded Teacher
+     * @param holidayDAO Optional DAO for holiday checking
+     * @return Planned sessions ordered by session number (IDs follow the SESS_course_date_NNN convention)
+     */
+    public List<ClassSession> planSessionsForCourse(Course course, ClassroomDAO classroomDAO,
+                                                    TeacherDAO teacherDAO, HolidayDAO holidayDAO) {
+        List<ClassSession> plannedSessions = new ArrayList<>();
 
         // --- Bước 1: Kiểm tra tính hợp lệ của đối tượng Course (GIỮ NGUYÊN TỪ CODE BẠN CUNG CẤP) ---
         if (course == null || course.getCourseId() == null || course.getStartDate() == null ||
@@ -281,14 +406,14 @@ public class ClassSessionDAO {
                 course.getDaysOfWeekList() == null || course.getDaysOfWeekList().isEmpty()) {
             LOGGER.log(Level.WARNING, "Khóa học {0} thiếu các trường thông tin cần thiết. Không thể tạo buổi học.",
                     course.getCourseId() != null ? course.getCourseId() : "ID UNKNOWN"); //
-            return generatedSessions;
+            return plannedSessions;
         }
 
         int targetTotalSessions = course.getTotalSessions(); //
         if (targetTotalSessions <= 0) {
             LOGGER.log(Level.INFO, "Khóa học {0} có tổng số buổi học dự kiến là {1}. Sẽ không có buổi học nào được tạo.",
                     new Object[]{course.getCourseId(), targetTotalSessions}); //
-            return generatedSessions;
+            return plannedSessions;
         }
 
         // --- Bước 2: Lấy thông tin phòng học và giáo viên ---
@@ -307,9 +432,11 @@ public class ClassSessionDAO {
         }
 
         String actualTeacherName = "N/A";
+        String actualTeacherId = null; // teachers.id
         // Ưu tiên lấy thông tin Teacher từ đối tượng Course đã có (nếu teacher được load sẵn)
         if (course.getTeacher() != null && course.getTeacher().getName() != null && !course.getTeacher().getName().trim().isEmpty()) {
             actualTeacherName = course.getTeacher().getName();
+            actualTeacherId = course.getTeacher().getTeacherId();
         }
         // Nếu không có hoặc tên rỗng, thử tải bằng teacher_id từ Course và TeacherDAO
         else if (teacherDAO != null && course.getTeacherId() != null && !course.getTeacherId().trim().isEmpty()) {
@@ -318,6 +445,7 @@ public class ClassSessionDAO {
             Optional<Teacher> teacherOpt = teacherDAO.findById(course.getTeacherId());
             if (teacherOpt.isPresent()) {
                 actualTeacherName = teacherOpt.get().getName();
+                actualTeacherId = teacherOpt.get().getTeacherId();
             } else {
                 LOGGER.log(Level.WARNING, "Không tìm thấy giáo viên với (user) ID: {0} cho khóa học {1}",
                         new Object[]{course.getTeacherId(), course.getCourseId()});
@@ -346,78 +474,266 @@ public class ClassSessionDAO {
         // Dòng code gây lỗi của bạn giờ sẽ hoạt động
         if (scheduledDays.isEmpty()) { //
             LOGGER.log(Level.WARNING, "Không có ngày học hợp lệ nào được phân tích cho khóa học {0}. Sẽ không có buổi học nào được tạo.", course.getCourseId()); //
-            return generatedSessions;
+            return plannedSessions;
         }
 
-        // --- Bước 4: Lặp qua các ngày để tạo buổi học (LOGIC NÀY GIỮ NGUYÊN TỪ CODE BẠN CUNG CẤP) ---
-        LocalDate currentIterDate = course.getStartDate(); //
-        LocalTime sessionStartTimeOfDay = course.getCourseStartTime(); //
-        LocalTime sessionEndTimeOfDay = course.getCourseEndTime(); //
-        int successfullyGeneratedSessionCount = 0; //
+        // --- Bước 4: Lặp qua các ngày để lập kế hoạch buổi học ---
+        LocalDate currentIterDate = course.getStartDate();
+        LocalTime sessionStartTimeOfDay = course.getCourseStartTime();
+        LocalTime sessionEndTimeOfDay = course.getCourseEndTime();
+        int plannedSessionCount = 0;
 
-        LocalDate maxEndDateSafety = course.getStartDate().plusYears(3); //
+        LocalDate maxEndDateSafety = course.getStartDate().plusYears(3);
 
-        while (successfullyGeneratedSessionCount < targetTotalSessions && !currentIterDate.isAfter(maxEndDateSafety)) { //
-            if (scheduledDays.contains(currentIterDate.getDayOfWeek())) { //
-                boolean isHoliday = false;
-                if (holidayDAO != null) {
-                    isHoliday = holidayDAO.isHoliday(currentIterDate); //
-                }
+        while (plannedSessionCount < targetTotalSessions && !currentIterDate.isAfter(maxEndDateSafety)) {
+            if (scheduledDays.contains(currentIterDate.getDayOfWeek())) {
+                boolean isHoliday = holidayDAO != null && holidayDAO.isHoliday(currentIterDate);
 
-                if (!isHoliday) { //
-                    LocalDateTime actualSessionStartDateTime = LocalDateTime.of(currentIterDate, sessionStartTimeOfDay); //
-                    LocalDateTime actualSessionEndDateTime = LocalDateTime.of(currentIterDate, sessionEndTimeOfDay); //
-
-                    ClassSession newSession = new ClassSession(); //
+                if (!isHoliday) {
+                    ClassSession newSession = new ClassSession();
                     String generatedSessionId = "SESS_" +
                             course.getCourseId().replaceAll("[^a-zA-Z0-9]", "") + "_" +
                             currentIterDate.toString().replace("-", "") + "_" +
-                            String.format("%03d", (successfullyGeneratedSessionCount + 1)); //
+                            String.format("%03d", (plannedSessionCount + 1));
 
-                    newSession.setId(generatedSessionId); //
-                    newSession.setCourseId(course.getCourseId()); //
+                    newSession.setId(generatedSessionId);
+                    newSession.setCourseId(course.getCourseId());
                     newSession.setCourseName(course.getCourseName()); // Tên khóa học (cohort name nếu áp dụng)
-                    newSession.setStartTime(actualSessionStartDateTime); //
-                    newSession.setEndTime(actualSessionEndDateTime); //
-                    newSession.setRoom(actualRoomName); // Sử dụng tên phòng đã lấy được //
-                    newSession.setTeacher(actualTeacherName); // Sử dụng tên giáo viên đã lấy được //
-                    newSession.setSessionNumber(successfullyGeneratedSessionCount + 1); // SỐ BUỔI HỌC TUẦN TỰ //
-                    // newSession.setSessionNotes(...); // Nếu có
-
-                    boolean savedSuccessfully = internalCreate(conn, newSession); //
-                    if (savedSuccessfully) {
-                        generatedSessions.add(newSession); //
-                        successfullyGeneratedSessionCount++; //
-                    } else {
-                        LOGGER.log(Level.WARNING, "Không thể lưu buổi học: {0} cho khóa học {1}. "
-                                        + "Transaction nên được rollback bởi bên gọi.",
-                                new Object[]{newSession.getId(), course.getCourseId()}); //
-                        // Cân nhắc ném SQLException ở đây nếu việc này là nghiêm trọng
-                        // throw new SQLException("Không thể lưu buổi học đã tạo: " + newSession.getId());
-                    }
+                    newSession.setStartTime(LocalDateTime.of(currentIterDate, sessionStartTimeOfDay));
+                    newSession.setEndTime(LocalDateTime.of(currentIterDate, sessionEndTimeOfDay));
+                    newSession.setRoom(actualRoomName); // Sử dụng tên phòng đã lấy được
+                    newSession.setTeacher(actualTeacherName); // Sử dụng tên giáo viên đã lấy được
+                    newSession.setTeacherId(actualTeacherId);
+                    newSession.setSessionNumber(plannedSessionCount + 1); // SỐ BUỔI HỌC TUẦN TỰ
+                    plannedSessions.add(newSession);
+                    plannedSessionCount++;
                 } else {
                     LOGGER.log(Level.FINER, "Bỏ qua tạo buổi học cho khóa {0} vào ngày {1} vì là ngày nghỉ.",
-                            new Object[]{course.getCourseId(), currentIterDate}); //
+                            new Object[]{course.getCourseId(), currentIterDate});
                 }
             }
-            currentIterDate = currentIterDate.plusDays(1); //
+            currentIterDate = currentIterDate.plusDays(1);
+        }
+
+        if (plannedSessionCount < targetTotalSessions) {
+            LOGGER.log(Level.WARNING, "Số buổi học lập được ({0}) cho khóa {1} ít hơn số buổi dự kiến ({2}) " +
+                            "do đã đạt đến ngày giới hạn an toàn ({3}).",
+                    new Object[]{plannedSessionCount, course.getCourseId(), targetTotalSessions, maxEndDateSafety});
+        }
+        return plannedSessions;
+    }
+
+    /**
+     * Result of {@link #rescheduleCourse}: the final session plan and how many rows were touched.
+     */
+    public static class RescheduleResult {
+        private final List<ClassSession> sessions;
+        private final int inserted;
+        private final int updated;
+        private final int deleted;
+        private final int unchanged;
+
+        RescheduleResult(List<ClassSession> sessions, int inserted, int updated, int deleted, int unchanged) {
+            this.sessions = sessions;
+            this.inserted = inserted;
+            this.updated = updated;
+            this.deleted = deleted;
+            this.unchanged = unchanged;
+        }
+
+        /** Sessions of the course after rescheduling, ordered by session number. */
+        public List<ClassSession> getSessions() { return sessions; }
+        public int getInserted() { return inserted; }
+        public int getUpdated() { return updated; }
+        public int getDeleted() { return deleted; }
+        public int getUnchanged() { return unchanged; }
+
+        /** Date of the last session, or null if the course has no sessions. */
+        public LocalDate getLastSessionDate() {
+            return sessions.isEmpty() ? null : sessions.get(sessions.size() - 1).getDate();
+        }
+    }
 
-            if (currentIterDate.isAfter(maxEndDateSafety) && successfullyGeneratedSessionCount < targetTotalSessions) { //
-                LOGGER.log(Level.SEVERE, "Đã đạt đến ngày giới hạn an toàn ({0}) nhưng vẫn chưa tạo đủ số buổi học ({1}/{2}) cho khóa {3}. Dừng tạo.",
-                        new Object[]{maxEndDateSafety, successfullyGeneratedSessionCount, targetTotalSessions, course.getCourseId()}); //
-                break; // Thoát vòng lặp
+    /**
+     * Reschedules a course incrementally: computes the new session plan, diffs it against the existing
+     * class_sessions rows (matched by session number) and applies only the needed deletes, updates and inserts
+     * as batches on the given connection. Only sessions dated today or later take part in the diff: past sessions
+     * are kept as they are, no session is created or moved into the past, and past sessions beyond the new plan
+     * are not deleted. Sessions that are kept or moved keep their session_id and notes, so attendance and metrics
+     * that reference them stay attached; the placeholder homework of a moved session is retitled for its new date
+     * (see HomeworkDAO#moveSessionHomework) so it is found again instead of being recreated.
+     *
+     * @param conn Active database connection (the caller owns the transaction)
+     * @param course The course with its current schedule (start date, days, times, total sessions, room, teacher)
+     * @param classroomDAO DAO used to resolve the room name
+     * @param teacherDAO DAO used to resolve the teacher name
+     * @param holidayDAO Optional DAO for holiday checking
+     * @return The final plan and the number of inserted/updated/deleted/unchanged sessions
+     * @throws SQLException If there's a database error
+     */
+    public RescheduleResult rescheduleCourse(Connection conn, Course course, ClassroomDAO classroomDAO,
+                                             TeacherDAO teacherDAO, HolidayDAO holidayDAO) throws SQLException {
+        List<ClassSession> planned = planSessionsForCourse(course, classroomDAO, teacherDAO, holidayDAO);
+        Set<TeachingKey> teachingKeys = findTeachingKeysByCourse(conn, course.getCourseId());
+        LocalDate today = LocalDate.now();
+
+        // Buổi học hiện có theo số buổi; các bản ghi trùng số buổi (dữ liệu cũ) sẽ bị xóa nếu chưa diễn ra
+        Map<Integer, ClassSession> existingByNumber = new HashMap<>();
+        List<ClassSession> toDelete = new ArrayList<>();
+        for (ClassSession existing : internalFindByCourseId(conn, course.getCourseId())) {
+            ClassSession previous = existingByNumber.putIfAbsent(existing.getSessionNumber(), existing);
+            if (previous != null && !isPast(existing, today)) {
+                toDelete.add(existing);
             }
         }
 
-        if (successfullyGeneratedSessionCount < targetTotalSessions) { //
-            LOGGER.log(Level.WARNING, "Số buổi học thực tế được tạo ({0}) cho khóa {1} ít hơn số buổi dự kiến ({2}). " +
-                            "Điều này có thể do đã đạt đến ngày giới hạn an toàn hoặc có lỗi khác.",
-                    new Object[]{successfullyGeneratedSessionCount, course.getCourseId(), targetTotalSessions}); //
-        } else {
-            LOGGER.log(Level.INFO, "Đã tạo thành công {0} buổi học cho khóa {1} (mục tiêu: {2} buổi).",
-                    new Object[]{successfullyGeneratedSessionCount, course.getCourseId(), targetTotalSessions}); //
+        List<ClassSession> sessions = new ArrayList<>(); // Kế hoạch cuối cùng, theo số buổi
+        List<ClassSession> toUpdate = new ArrayList<>();
+        List<ClassSession> toInsert = new ArrayList<>();
+        List<HomeworkDAO.SessionDateChange> movedDates = new ArrayList<>();
+        int unchanged = 0;
+        for (ClassSession plannedSession : planned) {
+            ClassSession existing = existingByNumber.remove(plannedSession.getSessionNumber());
+            if (existing != null && (isPast(existing, today) || isPast(plannedSession, today))) {
+                // Buổi đã diễn ra được giữ nguyên; buổi sắp tới không bị dời về quá khứ
+                sessions.add(existing);
+                unchanged++;
+                continue;
+            }
+            if (existing == null) {
+                if (!isPast(plannedSession, today)) {
+                    toInsert.add(plannedSession);
+                    sessions.add(plannedSession);
+                }
+                continue;
+            }
+            // Giữ session_id và ghi chú của buổi học hiện có
+            plannedSession.setId(existing.getId());
+            plannedSession.setSessionNotes(existing.getSessionNotes());
+            sessions.add(plannedSession);
+            if (sameSchedule(existing, plannedSession)) {
+                unchanged++;
+                continue;
+            }
+            toUpdate.add(plannedSession);
+            if (!Objects.equals(existing.getDate(), plannedSession.getDate())) {
+                movedDates.add(new HomeworkDAO.SessionDateChange(existing.getId(), existing.getDate(),
+                        plannedSession.getDate()));
+            }
+        }
+        // Buổi học vượt quá kế hoạch mới; buổi đã diễn ra được giữ lại
+        for (ClassSession extra : existingByNumber.values()) {
+            if (isPast(extra, today)) {
+                sessions.add(extra);
+            } else {
+                toDelete.add(extra);
+            }
+        }
+        sessions.sort(Comparator.comparingInt(ClassSession::getSessionNumber));
+
+        // Xóa trước để ID của buổi học mới không trùng với bản ghi sắp bị xóa
+        if (!toDelete.isEmpty()) {
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM class_sessions WHERE session_id = ?")) {
+                for (ClassSession session : toDelete) {
+                    stmt.setString(1, session.getId());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+        if (!toUpdate.isEmpty()) {
+            String sql = "UPDATE class_sessions SET course_name = ?, start_time = ?, session_date = ?, end_time = ?, " +
+                    "room = ?, teacher_name = ?, teacher_id = " + TEACHER_ID_VALUE + " WHERE session_id = ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (ClassSession session : toUpdate) {
+                    stmt.setString(1, session.getCourseName());
+                    stmt.setTimestamp(2, Timestamp.valueOf(session.getStartTime()));
+                    stmt.setDate(3, Date.valueOf(session.getStartTime().toLocalDate()));
+                    stmt.setTimestamp(4, Timestamp.valueOf(session.getEndTime()));
+                    stmt.setString(5, session.getRoom());
+                    stmt.setString(6, session.getTeacher());
+                    stmt.setString(7, session.getTeacherId());
+                    stmt.setString(8, session.getTeacher());
+                    stmt.setString(9, session.getId());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            HomeworkDAO.moveSessionHomework(conn, movedDates);
+        }
+        insertBatch(conn, toInsert);
+        invalidateDimensionCache(conn);
+        if (!toDelete.isEmpty() || !toUpdate.isEmpty() || !toInsert.isEmpty()) {
+            teachingKeys.addAll(findTeachingKeysByCourse(conn, course.getCourseId()));
+            refreshSessionAggregates(conn, teachingKeys, Collections.singleton(course.getCourseId()));
+        }
+
+        LOGGER.log(Level.INFO, "Rescheduled course {0}: {1} inserted, {2} updated, {3} deleted, {4} unchanged.",
+                new Object[]{course.getCourseId(), toInsert.size(), toUpdate.size(), toDelete.size(), unchanged});
+        return new RescheduleResult(sessions, toInsert.size(), toUpdate.size(), toDelete.size(), unchanged);
+    }
+
+    private static boolean isPast(ClassSession session, LocalDate today) {
+        return session.getDate() != null && session.getDate().isBefore(today);
+    }
+
+    private static boolean sameSchedule(ClassSession a, ClassSession b) {
+        return Objects.equals(a.getStartTime(), b.getStartTime())
+                && Objects.equals(a.getEndTime(), b.getEndTime())
+                && Objects.equals(a.getRoom(), b.getRoom())
+                && Objects.equals(a.getTeacher(), b.getTeacher())
+                && Objects.equals(a.getTeacherId(), b.getTeacherId())
+                && Objects.equals(a.getCourseName(), b.getCourseName());
+    }
+
+    /**
+     * Inserts class sessions as one JDBC batch.
+     *
+     * @param conn Active database connection
+     * @param sessions Sessions to insert (IDs must already be set)
+     * @throws SQLException If there's a database error
+     */
+    void internalCreateBatch(Connection conn, List<ClassSession> sessions) throws SQLException {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        insertBatch(conn, sessions);
+        invalidateDimensionCache(conn);
+        List<String> sessionIds = new ArrayList<>();
+        Set<String> courseIds = new HashSet<>();
+        for (ClassSession session : sessions) {
+            sessionIds.add(session.getId());
+            courseIds.add(session.getCourseId());
+        }
+        refreshSessionAggregates(conn, findTeachingKeys(conn, sessionIds), courseIds);
+    }
+
+    private void insertBatch(Connection conn, List<ClassSession> sessions) throws SQLException {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO class_sessions (session_id, course_id, course_name, " +
+                "start_time, session_date, end_time, room, teacher_name, session_number, session_notes, teacher_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, " + TEACHER_ID_VALUE + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (ClassSession session : sessions) {
+                int paramIndex = 1;
+                stmt.setString(paramIndex++, session.getId());
+                stmt.setString(paramIndex++, session.getCourseId());
+                stmt.setString(paramIndex++, session.getCourseName());
+                stmt.setTimestamp(paramIndex++, Timestamp.valueOf(session.getStartTime()));
+                stmt.setDate(paramIndex++, Date.valueOf(session.getStartTime().toLocalDate()));
+                stmt.setTimestamp(paramIndex++, Timestamp.valueOf(session.getEndTime()));
+                stmt.setString(paramIndex++, session.getRoom());
+                stmt.setString(paramIndex++, session.getTeacher());
+                stmt.setInt(paramIndex++, session.getSessionNumber());
+                stmt.setString(paramIndex++, session.getSessionNotes());
+                stmt.setString(paramIndex++, session.getTeacherId());
+                stmt.setString(paramIndex++, session.getTeacher());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
         }
-        return generatedSessions;
     }
 
     /**
@@ -431,10 +747,15 @@ public class ClassSessionDAO {
     public int deleteFutureSessionsByCourseId(Connection conn, String courseId) throws SQLException {
         String sql = "DELETE FROM class_sessions WHERE course_id = ? AND start_time >= ?";
         int deletedRows = 0;
+        Set<TeachingKey> teachingKeys = findTeachingKeysByCourse(conn, courseId);
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, courseId);
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDate.now().atStartOfDay()));
             deletedRows = stmt.executeUpdate();
+            invalidateDimensionCache(conn);
+            if (deletedRows > 0) {
+                refreshSessionAggregates(conn, teachingKeys, Collections.singleton(courseId));
+            }
             LOGGER.log(Level.INFO, "Deleted {0} future sessions for course ID: {1}",
                     new Object[]{deletedRows, courseId});
         }
@@ -452,9 +773,14 @@ public class ClassSessionDAO {
     public int deleteAllSessionsByCourseId(Connection conn, String courseId) throws SQLException {
         String sql = "DELETE FROM class_sessions WHERE course_id = ?";
         int deletedRows = 0;
+        Set<TeachingKey> teachingKeys = findTeachingKeysByCourse(conn, courseId);
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, courseId);
             deletedRows = stmt.executeUpdate();
+            invalidateDimensionCache(conn);
+            if (deletedRows > 0) {
+                refreshSessionAggregates(conn, teachingKeys, Collections.singleton(courseId));
+            }
             LOGGER.log(Level.INFO, "Deleted {0} (all) sessions for course ID: {1}",
                     new Object[]{deletedRows, courseId});
         }
@@ -464,9 +790,9 @@ public class ClassSessionDAO {
     // Base SELECT statement for consistent column selection
     private String getBaseSelectClassSessionSQL() {
         // Các cột từ hình ảnh: session_id, session_date, start_time, end_time,
-        // teacher_name, course_name, room, course_id, session_number, session_notes
+        // teacher_name, course_name, room, course_id, session_number, session_notes, teacher_id
         return "SELECT session_id, course_id, course_name, " +
-                "start_time, end_time, room, teacher_name, " +
+                "start_time, end_time, room, teacher_name, teacher_id, " +
                 "session_number, session_date, session_notes" +
                 " FROM class_sessions";
     }
@@ -500,9 +826,16 @@ public class ClassSessionDAO {
 
     boolean internalDelete(Connection conn, String id) throws SQLException {
         String sql = "DELETE FROM class_sessions WHERE session_id = ?";
+        Set<TeachingKey> teachingKeys = findTeachingKeys(conn, Collections.singleton(id));
+        Set<String> courseIds = findCourseIds(conn, Collections.singleton(id));
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, id);
-            return stmt.executeUpdate() > 0;
+            boolean changed = stmt.executeUpdate() > 0;
+            invalidateDimensionCache(conn);
+            if (changed) {
+                refreshSessionAggregates(conn, teachingKeys, courseIds);
+            }
+            return changed;
         }
     }
 
@@ -623,6 +956,86 @@ public class ClassSessionDAO {
         }
     }
 
+    /**
+     * @return Distinct non-empty teacher names used by class sessions, sorted (cached)
+     */
+    public List<String> findDistinctTeacherNames() {
+        return findDistinctValues("teacher_name");
+    }
+
+    /**
+     * @return Distinct non-empty rooms used by class sessions, sorted (cached)
+     */
+    public List<String> findDistinctRooms() {
+        return findDistinctValues("room");
+    }
+
+    /**
+     * @return Distinct non-empty course names used by class sessions, sorted (cached)
+     */
+    public List<String> findDistinctCourseNames() {
+        return findDistinctValues("course_name");
+    }
+
+    /**
+     * Clears the cached teacher/room/course name lists. Called by every class_sessions write in this DAO
+     * and by CourseDAO when courses change.
+     */
+    public static void invalidateDimensionCache() {
+        WRITE_VERSION.incrementAndGet();
+        DIMENSION_CACHE.clear();
+    }
+
+    /**
+     * Invalidates the caches for a write made on the given connection: once now, and again after the transaction
+     * commits (see DatabaseConnection#afterCommit). A reader that ran between the two bumps may have cached
+     * the state from before the commit; the second bump discards it.
+     *
+     * @param conn Connection of the write
+     */
+    static void invalidateDimensionCache(Connection conn) {
+        invalidateDimensionCache();
+        DatabaseConnection.afterCommit(conn, ClassSessionDAO::invalidateDimensionCache);
+    }
+
+    /**
+     * @return Counter bumped by every invalidateDimensionCache() call, i.e. by every class_sessions or course write.
+     * Callers holding their own session caches compare it to detect stale data.
+     */
+    public static long getWriteVersion() {
+        return WRITE_VERSION.get();
+    }
+
+    // column luôn là hằng số nội bộ, không bao giờ lấy từ dữ liệu người dùng
+    private List<String> findDistinctValues(String column) {
+        DimensionEntry cached = DIMENSION_CACHE.get(column);
+        if (cached != null && System.currentTimeMillis() - cached.loadedAtMillis < DIMENSION_CACHE_TTL_MILLIS) {
+            return cached.values;
+        }
+
+        long version = WRITE_VERSION.get();
+        String sql = "SELECT DISTINCT " + column + " FROM class_sessions " +
+                "WHERE " + column + " IS NOT NULL AND " + column + " <> '' ORDER BY " + column;
+        List<String> values = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error finding distinct " + column + " values of class sessions", e);
+            return new ArrayList<>();
+        }
+
+        List<String> result = Collections.unmodifiableList(values);
+        // Không lưu nếu đã có thao tác ghi trong lúc truy vấn
+        if (WRITE_VERSION.get() == version) {
+            DIMENSION_CACHE.put(column, new DimensionEntry(result));
+        }
+        return result;
+    }
+
     public boolean save(ClassSession session) {
         if (session.getId() == null || session.getId().trim().isEmpty()) {
             session.setId("SESS_SAVE_" + UUID.randomUUID().toString());
@@ -634,9 +1047,9 @@ public class ClassSessionDAO {
             conn.setAutoCommit(false);
             boolean success = internalCreate(conn, session);
             if (success) {
-                conn.commit();
+                DatabaseConnection.commit(conn);
             } else {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
             }
             return success;
         } catch (SQLException e) {
@@ -655,9 +1068,9 @@ public class ClassSessionDAO {
             conn.setAutoCommit(false);
             boolean success = internalUpdate(conn, session);
             if (success) {
-                conn.commit();
+                DatabaseConnection.commit(conn);
             } else {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
             }
             return success;
         } catch (SQLException e) {
@@ -680,9 +1093,9 @@ public class ClassSessionDAO {
             conn.setAutoCommit(false);
             boolean success = internalDelete(conn, sessionId);
             if (success) {
-                conn.commit();
+                DatabaseConnection.commit(conn);
             } else {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
             }
             return success;
         } catch (SQLException e) {
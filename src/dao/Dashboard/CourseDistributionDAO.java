@@ -0,0 +1,179 @@
+package src.dao.Dashboard;
+
+import src.model.dashboard.DashboardSnapshot.CourseShare;
+import src.utils.DatabaseConnection;
+
+import java.sql.*;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object for course_session_counts, the number of class sessions per course shown by the dashboard's
+ * course distribution chart.
+ * <p>
+ * ClassSessionDAO calls {@link #refresh(Connection, Collection)} with the courses whose sessions it inserted,
+ * moved or deleted, inside its own transaction; each course is recounted from class_sessions (one indexed COUNT),
+ * so the summary cannot drift. {@link #rebuildAll()} recomputes everything.
+ * <p>
+ * The chart reads only the largest courses: {@link #TOP_COURSES_SELECT} returns at most topSlices + 1 rows with the
+ * totals over all courses on every row, and {@link #fold(ResultSet, int)} turns them into the visible slices, the
+ * courses beyond the first topSlices being summed into one "others" slice.
+ */
+public class CourseDistributionDAO {
+    private static final Logger LOGGER = Logger.getLogger(CourseDistributionDAO.class.getName());
+
+    /**
+     * Fills course_session_counts from the whole class_sessions table (expects an empty summary table).
+     */
+    private static final String BACKFILL_SQL = "INSERT INTO course_session_counts (course_id, session_count) " +
+            "SELECT course_id, COUNT(*) FROM class_sessions WHERE course_id IS NOT NULL GROUP BY course_id";
+
+    /**
+     * Largest courses first, with the number of courses and sessions of the whole distribution on each row.
+     * Courses that were deleted or have no sessions are left out. Needs a LIMIT (topSlices + 1) appended.
+     */
+    public static final String TOP_COURSES_SELECT = "SELECT c.course_name, s.session_count, " +
+            "totals.course_total, totals.session_total " +
+            "FROM course_session_counts s JOIN courses c ON c.course_id = s.course_id " +
+            "CROSS JOIN (SELECT COUNT(*) AS course_total, COALESCE(SUM(s2.session_count), 0) AS session_total " +
+            "FROM course_session_counts s2 JOIN courses c2 ON c2.course_id = s2.course_id " +
+            "WHERE s2.session_count > 0) totals " +
+            "WHERE s.session_count > 0 " +
+            "ORDER BY s.session_count DESC, c.course_name, c.course_id ";
+
+    private static final String RECOUNT_SQL = "INSERT INTO course_session_counts (course_id, session_count) " +
+            "SELECT ?, COUNT(*) FROM class_sessions WHERE course_id = ? " +
+            "ON DUPLICATE KEY UPDATE session_count = VALUES(session_count)";
+
+    public CourseDistributionDAO() {
+    }
+
+    // --- Methods taking the caller's connection (used inside ClassSessionDAO's transactions) ---
+
+    /**
+     * Finds the courses of the given class sessions as they are currently stored.
+     *
+     * @param conn       the active database connection
+     * @param sessionIds session_id values
+     * @return Course IDs of the matching sessions
+     * @throws SQLException if a database access error occurs
+     */
+    public Set<String> findCourseIdsBySessionIds(Connection conn, Collection<String> sessionIds) throws SQLException {
+        Set<String> courseIds = new HashSet<>();
+        if (sessionIds.isEmpty()) {
+            return courseIds;
+        }
+        String sql = "SELECT DISTINCT course_id FROM class_sessions WHERE session_id IN (" +
+                String.join(",", Collections.nCopies(sessionIds.size(), "?")) + ") AND course_id IS NOT NULL";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (String sessionId : sessionIds) {
+                stmt.setString(index++, sessionId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    courseIds.add(rs.getString("course_id"));
+                }
+            }
+        }
+        return courseIds;
+    }
+
+    /**
+     * Recounts the sessions of the given courses.
+     *
+     * @param conn      the active database connection (expected to be in the caller's write transaction)
+     * @param courseIds Courses whose sessions were written
+     * @throws SQLException if a database access error occurs
+     */
+    public void refresh(Connection conn, Collection<String> courseIds) throws SQLException {
+        Set<String> courses = new HashSet<>(courseIds);
+        courses.remove(null);
+        if (courses.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(RECOUNT_SQL)) {
+            for (String courseId : courses) {
+                stmt.setString(1, courseId);
+                stmt.setString(2, courseId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Reads the chart slices.
+     *
+     * @param conn      the active database connection
+     * @param topSlices Number of courses shown as their own slice
+     * @return The slices, largest first, with the "others" slice (if any) last
+     * @throws SQLException if a database access error occurs
+     */
+    public List<CourseShare> getTopCourses(Connection conn, int topSlices) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(TOP_COURSES_SELECT + "LIMIT ?")) {
+            stmt.setInt(1, topSlices + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return fold(rs, topSlices);
+            }
+        }
+    }
+
+    /**
+     * Turns the rows of {@link #TOP_COURSES_SELECT} into slices. With at most topSlices + 1 courses every course
+     * gets its own slice (an "others" slice of a single course would only hide its name); otherwise the first
+     * topSlices courses are kept and the rest is one slice computed from the totals.
+     *
+     * @param rs        rows of TOP_COURSES_SELECT limited to topSlices + 1
+     * @param topSlices Number of courses shown as their own slice
+     * @return The slices
+     * @throws SQLException if a database access error occurs
+     */
+    public static List<CourseShare> fold(ResultSet rs, int topSlices) throws SQLException {
+        List<CourseShare> slices = new ArrayList<>();
+        long courseTotal = 0;
+        long sessionTotal = 0;
+        long shownSessions = 0;
+        while (rs.next()) {
+            courseTotal = rs.getLong("course_total");
+            sessionTotal = rs.getLong("session_total");
+            int sessionCount = rs.getInt("session_count");
+            slices.add(new CourseShare(rs.getString("course_name"), sessionCount));
+            shownSessions += sessionCount;
+        }
+        if (courseTotal > slices.size()) {
+            CourseShare extra = slices.remove(slices.size() - 1);
+            shownSessions -= extra.getSessionCount();
+            slices.add(new CourseShare(null, (int) (sessionTotal - shownSessions), (int) (courseTotal - slices.size())));
+        }
+        return slices;
+    }
+
+    // --- Public Wrapper Methods ---
+
+    /**
+     * Recomputes the whole summary from class_sessions in one transaction.
+     *
+     * @return true if the rebuild succeeded
+     */
+    public boolean rebuildAll() {
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM course_session_counts");
+                stmt.executeUpdate(BACKFILL_SQL);
+            }
+            DatabaseConnection.commit(conn);
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error rebuilding course_session_counts.", e);
+            DatabaseConnection.rollback(conn);
+            return false;
+        } finally {
+            DatabaseConnection.closeConnection(conn);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package src.dao.Dashboard;
+
+import org.junit.jupiter.api.Test;
+import src.model.dashboard.DashboardSnapshot.CourseShare;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CourseDistributionDAOTest {
+
+    @Test
+    void everyCourseGetsItsOwnSliceWhenAllFit() throws SQLException {
+        // 3 courses in total, topSlices = 2: the query returns all 3, an "others" slice of one course is not used
+        List<CourseShare> slices = CourseDistributionDAO.fold(rows(3, 60,
+                "Toán", 30,
+                "Văn", 20,
+                "Anh", 10), 2);
+
+        assertEquals(3, slices.size());
+        assertEquals("Anh", slices.get(2).getCourseName());
+        assertEquals(10, slices.get(2).getSessionCount());
+        assertFalse(slices.get(2).isOthers());
+    }
+
+    @Test
+    void coursesBeyondTheTopSlicesAreFoldedFromTheTotals() throws SQLException {
+        // 5 courses / 100 sessions in total; the query returns topSlices + 1 = 3 rows
+        List<CourseShare> slices = CourseDistributionDAO.fold(rows(5, 100,
+                "Toán", 40,
+                "Văn", 30,
+                "Anh", 20), 2);
+
+        assertEquals(3, slices.size());
+        assertEquals("Toán", slices.get(0).getCourseName());
+        assertEquals("Văn", slices.get(1).getCourseName());
+        CourseShare others = slices.get(2);
+        assertTrue(others.isOthers());
+        assertNull(others.getCourseName());
+        assertEquals(30, others.getSessionCount());
+        assertEquals(3, others.getFoldedCourses());
+    }
+
+    @Test
+    void noCoursesGiveNoSlices() throws SQLException {
+        assertTrue(CourseDistributionDAO.fold(rows(0, 0), 5).isEmpty());
+    }
+
+    /**
+     * Rows of TOP_COURSES_SELECT: name/count pairs, each carrying the same totals.
+     */
+    private static ResultSet rows(long courseTotal, long sessionTotal, Object... nameCountPairs) {
+        int[] index = {-1};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++index[0] < nameCountPairs.length / 2;
+                        case "getLong":
+                            return "course_total".equals(args[0]) ? courseTotal : sessionTotal;
+                        case "getInt":
+                            return nameCountPairs[index[0] * 2 + 1];
+                        case "getString":
+                            return nameCountPairs[index[0] * 2];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -1,11 +1,10 @@
 package src.dao.Dashboard;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.scene.chart.PieChart;
 import src.model.ClassSession;
+import src.model.dashboard.DashboardSnapshot;
 import src.model.report.ReportModel;
 import src.model.system.schedule.ScheduleItem;
+import src.dao.Attendance.AttendanceCounterDAO;
 import src.utils.DatabaseConnection;
 import src.model.system.course.Course;
 
@@ -23,10 +22,53 @@ public class DashboardDAO {
 
     private static final Logger LOGGER = Logger.getLogger(DashboardDAO.class.getName());
 
+    // MySQL: PROCEDURE does not exist / wrong number of arguments (thủ tục của phiên bản cũ)
+    private static final int ER_SP_DOES_NOT_EXIST = 1305;
+    private static final int ER_SP_WRONG_NO_OF_ARGS = 1318;
+
+    private static final String TODAY_CLASSES_SELECT = "SELECT cs.session_id, cs.course_name, cs.teacher_name, cs.room, cs.session_date, " +
+            "cs.start_time, cs.end_time, cs.course_id as actual_course_id, cs.session_number " +
+            "FROM class_sessions cs " +
+            "WHERE cs.session_date = ?";
+
+    // Dependencies - set externally by DaoManager
+    private AttendanceCounterDAO counterDAO;
+    private CourseDistributionDAO courseDistributionDAO;
+
+    // Snapshot gần nhất, để màn hình tổng quan hiển thị ngay khi mở lại
+    private volatile DashboardSnapshot cachedSnapshot;
+    // false sau khi CALL báo thủ tục chưa tồn tại (migration V014 chưa chạy được): dùng các truy vấn riêng lẻ
+    private volatile boolean snapshotProcedureAvailable = true;
+
     public DashboardDAO() {
         LOGGER.info("DAO: DashboardDAO instance created.");
     }
 
+    /**
+     * Set AttendanceCounterDAO - used for dependency injection.
+     *
+     * @param counterDAO The AttendanceCounterDAO instance
+     */
+    public void setAttendanceCounterDAO(AttendanceCounterDAO counterDAO) {
+        this.counterDAO = counterDAO;
+    }
+
+    /**
+     * Set CourseDistributionDAO - used for dependency injection.
+     *
+     * @param courseDistributionDAO The CourseDistributionDAO instance
+     */
+    public void setCourseDistributionDAO(CourseDistributionDAO courseDistributionDAO) {
+        this.courseDistributionDAO = courseDistributionDAO;
+    }
+
+    private CourseDistributionDAO courseDistributions() {
+        if (courseDistributionDAO == null) {
+            courseDistributionDAO = new CourseDistributionDAO();
+        }
+        return courseDistributionDAO;
+    }
+
     public boolean addDashboardEvent(ScheduleItem scheduleItem) {
         String query = "INSERT INTO schedules (name, description, start_time, end_time, schedule_type) VALUES (?, ?, ?, ?, ?)";
         try (Connection conn = DatabaseConnection.getConnection();
@@ -44,44 +86,15 @@ public class DashboardDAO {
     }
 
     public List<ClassSession> getTodayClasses() {
-        String query = "SELECT cs.session_id, cs.course_name, cs.teacher_name, cs.room, cs.session_date, " +
-                "cs.start_time, cs.end_time, cs.course_id as actual_course_id, cs.session_number " +
-                "FROM class_sessions cs " +
-                "WHERE cs.session_date = ?";
-
         List<ClassSession> classes = new ArrayList<>();
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+             PreparedStatement stmt = conn.prepareStatement(TODAY_CLASSES_SELECT)) {
 
             stmt.setDate(1, java.sql.Date.valueOf(LocalDate.now()));
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    String sessionId = rs.getString("session_id");
-                    String courseNameFromSession = rs.getString("course_name");
-                    String teacherNameFromSession = rs.getString("teacher_name");
-                    String roomFromSession = rs.getString("room");
-                    Date dateDb = rs.getDate("session_date");
-                    LocalDate sessionDate = (dateDb != null) ? dateDb.toLocalDate() : null;
-                    Timestamp startTimeDbTs = rs.getTimestamp("start_time");
-                    LocalDateTime sessionStartTime = (startTimeDbTs != null) ? startTimeDbTs.toLocalDateTime() : null;
-                    Timestamp endTimeDbTs = rs.getTimestamp("end_time");
-                    LocalDateTime sessionEndTime = (endTimeDbTs != null) ? endTimeDbTs.toLocalDateTime() : null;
-                    String actualCourseId = rs.getString("actual_course_id");
-                    int sessionNumber = rs.getInt("session_number");
-
-                    Course courseForSession = new Course();
-                    courseForSession.setCourseId(actualCourseId);
-                    courseForSession.setCourseName(courseNameFromSession);
-
-
-                    ClassSession classSession = new ClassSession(sessionId, courseForSession, teacherNameFromSession, roomFromSession,
-                            sessionDate, sessionStartTime, sessionEndTime,
-                            actualCourseId, sessionNumber);
-                    classes.add(classSession);
-
-                    //DEBUG
-                    //System.out.println("Course_Name: "+ classSession.getCourse().getCourseName());
+                    classes.add(mapTodayClass(rs));
                 }
             }
         } catch (SQLException e) {
@@ -90,6 +103,164 @@ public class DashboardDAO {
         return classes;
     }
 
+    private ClassSession mapTodayClass(ResultSet rs) throws SQLException {
+        String sessionId = rs.getString("session_id");
+        String courseNameFromSession = rs.getString("course_name");
+        String teacherNameFromSession = rs.getString("teacher_name");
+        String roomFromSession = rs.getString("room");
+        Date dateDb = rs.getDate("session_date");
+        LocalDate sessionDate = (dateDb != null) ? dateDb.toLocalDate() : null;
+        Timestamp startTimeDbTs = rs.getTimestamp("start_time");
+        LocalDateTime sessionStartTime = (startTimeDbTs != null) ? startTimeDbTs.toLocalDateTime() : null;
+        Timestamp endTimeDbTs = rs.getTimestamp("end_time");
+        LocalDateTime sessionEndTime = (endTimeDbTs != null) ? endTimeDbTs.toLocalDateTime() : null;
+        String actualCourseId = rs.getString("actual_course_id");
+        int sessionNumber = rs.getInt("session_number");
+
+        Course courseForSession = new Course();
+        courseForSession.setCourseId(actualCourseId);
+        courseForSession.setCourseName(courseNameFromSession);
+
+        return new ClassSession(sessionId, courseForSession, teacherNameFromSession, roomFromSession,
+                sessionDate, sessionStartTime, sessionEndTime,
+                actualCourseId, sessionNumber);
+    }
+
+    /**
+     * @return The last snapshot loaded by {@link #loadSnapshot(int, int)}, or null before the first load
+     */
+    public DashboardSnapshot getCachedSnapshot() {
+        return cachedSnapshot;
+    }
+
+    /**
+     * Loads everything the dashboard shows in one round trip (one CALL of dashboard_snapshot on one connection)
+     * and keeps it as the cached snapshot. Falls back to the separate queries if the procedure is not available.
+     *
+     * @param upcomingLimit Maximum number of upcoming schedules
+     * @param topSlices     Number of courses shown as their own slice of the course distribution
+     * @return The new snapshot
+     */
+    public DashboardSnapshot loadSnapshot(int upcomingLimit, int topSlices) {
+        DashboardSnapshot snapshot = null;
+        if (snapshotProcedureAvailable) {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                snapshot = loadSnapshot(conn, LocalDate.now(), upcomingLimit, topSlices);
+            } catch (SQLException e) {
+                if (e.getErrorCode() == ER_SP_DOES_NOT_EXIST || e.getErrorCode() == ER_SP_WRONG_NO_OF_ARGS) {
+                    snapshotProcedureAvailable = false;
+                }
+                LOGGER.log(Level.WARNING, "Error calling dashboard_snapshot, using separate queries instead.", e);
+            }
+        }
+        if (snapshot == null) {
+            snapshot = loadSnapshotSeparately(upcomingLimit, topSlices);
+        }
+        cachedSnapshot = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Calls dashboard_snapshot (created by DatabaseMigrator V016) on the given connection. It returns four
+     * result sets: the statistics row, the largest courses (as {@link CourseDistributionDAO#TOP_COURSES_SELECT}),
+     * today's classes and the upcoming schedules.
+     *
+     * @param conn          Active database connection
+     * @param today         The day of "today's classes"; the homework percentage covers its month up to it
+     * @param upcomingLimit Maximum number of upcoming schedules
+     * @param topSlices     Number of courses shown as their own slice of the course distribution
+     * @return The snapshot
+     * @throws SQLException if the call fails
+     */
+    public DashboardSnapshot loadSnapshot(Connection conn, LocalDate today, int upcomingLimit, int topSlices)
+            throws SQLException {
+        int totalStudents = 0;
+        int totalCourses = 0;
+        double attendanceRate = 0.0;
+        double homeworkPercentage = 0.0;
+        List<DashboardSnapshot.CourseShare> distribution = new ArrayList<>();
+        List<ClassSession> todayClasses = new ArrayList<>();
+        List<ScheduleItem> upcoming = new ArrayList<>();
+
+        try (CallableStatement stmt = conn.prepareCall("{CALL dashboard_snapshot(?, ?, ?, ?)}")) {
+            stmt.setDate(1, java.sql.Date.valueOf(today));
+            stmt.setDate(2, java.sql.Date.valueOf(today.withDayOfMonth(1)));
+            stmt.setInt(3, upcomingLimit);
+            stmt.setInt(4, topSlices);
+
+            boolean hasResults = stmt.execute();
+            int resultIndex = 0;
+            while (hasResults || stmt.getUpdateCount() != -1) {
+                if (hasResults) {
+                    try (ResultSet rs = stmt.getResultSet()) {
+                        switch (resultIndex) {
+                            case 0:
+                                if (rs.next()) {
+                                    totalStudents = rs.getInt("total_students");
+                                    totalCourses = rs.getInt("total_courses");
+                                    attendanceRate = percentage(rs.getLong("present_count"), rs.getLong("attendance_count"));
+                                    homeworkPercentage = percentage(rs.getLong("homework_completed"), rs.getLong("homework_total"));
+                                }
+                                break;
+                            case 1:
+                                distribution = CourseDistributionDAO.fold(rs, topSlices);
+                                break;
+                            case 2:
+                                while (rs.next()) {
+                                    todayClasses.add(mapTodayClass(rs));
+                                }
+                                break;
+                            case 3:
+                                while (rs.next()) {
+                                    upcoming.add(mapScheduleItem(rs));
+                                }
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                    resultIndex++;
+                }
+                hasResults = stmt.getMoreResults();
+            }
+            if (resultIndex < 4) {
+                throw new SQLException("dashboard_snapshot returned " + resultIndex + " result sets, expected 4");
+            }
+        }
+        return new DashboardSnapshot(totalStudents, totalCourses, attendanceRate, homeworkPercentage,
+                distribution, todayClasses, upcoming, LocalDateTime.now());
+    }
+
+    /**
+     * Builds the snapshot from the separate queries (older schema without the procedure).
+     */
+    private DashboardSnapshot loadSnapshotSeparately(int upcomingLimit, int topSlices) {
+        LocalDate today = LocalDate.now();
+        List<DashboardSnapshot.CourseShare> distribution = getCourseDistribution(topSlices);
+        List<ScheduleItem> upcoming = new ArrayList<>();
+        for (Object[] row : getUpcomingSchedulesData(upcomingLimit)) {
+            if (row[3] != null && row[4] != null) {
+                upcoming.add(new ScheduleItem((String) row[0], (String) row[1], (String) row[2],
+                        (LocalDateTime) row[3], (LocalDateTime) row[4]));
+            }
+        }
+        return new DashboardSnapshot(getTotalStudents(), getTotalCourses(), getAttendanceRate(),
+                getHomeworkPercentage(today.withDayOfMonth(1), today), distribution, getTodayClasses(), upcoming,
+                LocalDateTime.now());
+    }
+
+    private ScheduleItem mapScheduleItem(ResultSet rs) throws SQLException {
+        Timestamp startTs = rs.getTimestamp("start_time");
+        Timestamp endTs = rs.getTimestamp("end_time");
+        LocalDateTime start = startTs != null ? startTs.toLocalDateTime() : LocalDateTime.now();
+        LocalDateTime end = endTs != null ? endTs.toLocalDateTime() : start;
+        return new ScheduleItem(rs.getString("id"), rs.getString("name"), rs.getString("description"), start, end);
+    }
+
+    private static double percentage(long part, long total) {
+        return total > 0 ? (double) part / total * 100.0 : 0.0;
+    }
+
     public int getTotalStudents() {
         // Giả sử bảng students có cột status để chỉ sinh viên đang hoạt động
         String query = "SELECT COUNT(*) FROM students WHERE status = 'active'";
@@ -125,7 +296,20 @@ public class DashboardDAO {
         return 0;
     }
 
+    /**
+     * Gets the overall attendance rate from the per-month attendance counters,
+     * falling back to a scan of the attendance table if the counters cannot be read.
+     *
+     * @return Attendance rate as a percentage (0-100)
+     */
     public double getAttendanceRate() {
+        if (counterDAO != null) {
+            try {
+                return counterDAO.getOverallAttendanceRate();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Error reading attendance counters, scanning attendance table instead.", e);
+            }
+        }
         String query = "SELECT " +
                 "SUM(CASE WHEN status = 'Có mặt' THEN 1 ELSE 0 END) AS present_count, " +
                 "COUNT(*) AS total_count FROM attendance";
@@ -303,26 +487,19 @@ public class DashboardDAO {
     // public List<String> getDistinctClassStatuses() { ... }
 
 
-    public ObservableList<PieChart.Data> getCourseDistribution() {
-        String query = "SELECT c.course_name, COUNT(cs.session_id) as session_count " +
-                "FROM courses c " +
-                "LEFT JOIN class_sessions cs ON c.course_id = cs.course_id " +
-                "GROUP BY c.course_name " +
-                "HAVING COUNT(cs.session_id) > 0";
-
-        ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList();
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            while (rs.next()) {
-                String courseName = rs.getString("course_name");
-                int sessionCount = rs.getInt("session_count");
-                pieChartData.add(new PieChart.Data(courseName, sessionCount));
-            }
+    /**
+     * Reads the course distribution chart slices from course_session_counts.
+     *
+     * @param topSlices Number of courses shown as their own slice; the others are folded into one slice
+     * @return The slices, largest first, or an empty list on error
+     */
+    public List<DashboardSnapshot.CourseShare> getCourseDistribution(int topSlices) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return courseDistributions().getTopCourses(conn, topSlices);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error getting course distribution data.", e);
+            return new ArrayList<>();
         }
-        return pieChartData;
     }
 
     public List<Object[]> getUpcomingSchedulesData(int limit) {
@@ -106,7 +106,7 @@ public class HolidayDAO {
 
             if (expiredHolidays.isEmpty()) {
                 LOGGER.log(Level.FINE, "No expired holidays found");
-                conn.commit();
+                DatabaseConnection.commit(conn);
                 lastExpiredCheck = today;
                 return;
             }
@@ -124,7 +124,7 @@ public class HolidayDAO {
                                     holiday.getStartDate() + " - " + holiday.getEndDate() + ")");
                 }
 
-                conn.commit();
+                DatabaseConnection.commit(conn);
                 LOGGER.log(Level.INFO, "Successfully removed " + deletedCount + " expired holidays");
             }
 
@@ -137,11 +137,7 @@ public class HolidayDAO {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error removing expired holidays", e);
             if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex) {
-                    LOGGER.log(Level.SEVERE, "Error rolling back transaction", ex);
-                }
+                DatabaseConnection.rollback(conn);
             }
         } finally {
             if (conn != null) {
@@ -405,9 +401,9 @@ public class HolidayDAO {
                                         " (ID: " + holiday.getId() + ", " +
                                         holiday.getStartDate() + " - " + holiday.getEndDate() + ")");
 
-                        conn.commit();
+                        DatabaseConnection.commit(conn);
                     } else {
-                        conn.rollback();
+                        DatabaseConnection.rollback(conn);
                         throw new SQLException("Creating holiday failed, no ID obtained.");
                     }
                 }
@@ -415,11 +411,7 @@ public class HolidayDAO {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error inserting holiday: " + holiday.getName(), e);
             if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex) {
-                    LOGGER.log(Level.SEVERE, "Error rolling back transaction", ex);
-                }
+                DatabaseConnection.rollback(conn);
             }
             return null;
         } finally {
@@ -458,9 +450,9 @@ public class HolidayDAO {
                                     " (ID: " + holiday.getId() + ", " +
                                     holiday.getStartDate() + " - " + holiday.getEndDate() + ")");
 
-                    conn.commit();
+                    DatabaseConnection.commit(conn);
                 } else {
-                    conn.rollback();
+                    DatabaseConnection.rollback(conn);
                     LOGGER.log(Level.WARNING, "Holiday with ID: " + holiday.getId() + " not found for update.");
                     return null;
                 }
@@ -468,11 +460,7 @@ public class HolidayDAO {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error updating holiday with ID: " + holiday.getId(), e);
             if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex) {
-                    LOGGER.log(Level.SEVERE, "Error rolling back transaction", ex);
-                }
+                DatabaseConnection.rollback(conn);
             }
             return null;
         } finally {
@@ -530,30 +518,26 @@ public class HolidayDAO {
                                 "Deleted holiday: " + holidayToDelete.getName() +
                                         " (ID: " + id + ")");
 
-                        conn.commit();
+                        DatabaseConnection.commit(conn);
 
                         // Clear caches after modifying data
                         clearAllCaches();
 
                         return true;
                     } else {
-                        conn.rollback();
+                        DatabaseConnection.rollback(conn);
                         return false;
                     }
                 }
             } else {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
                 LOGGER.log(Level.WARNING, "Holiday with ID: " + id + " not found for deletion.");
                 return false;
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error deleting holiday with ID: " + id, e);
             if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex) {
-                    LOGGER.log(Level.SEVERE, "Error rolling back transaction", ex);
-                }
+                DatabaseConnection.rollback(conn);
             }
             return false;
         } finally {
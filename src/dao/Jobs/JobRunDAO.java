@@ -0,0 +1,250 @@
+package src.dao.Jobs;
+
+import src.utils.DatabaseConnection;
+
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object for background job coordination: the single-runner lease (job_locks) and the run history
+ * (job_runs).
+ * <p>
+ * Every client of the center runs the same {@code JobScheduler}, so a job is guarded by a lease row per job name.
+ * {@link #tryAcquire(Connection, String, String, Duration)} takes the lease with one conditional UPDATE; the row
+ * lock of that UPDATE makes it atomic across clients, and an expired lease (a client that died mid-run) is taken
+ * over once {@code locked_until} has passed. Times use the database clock (NOW()) so that client clocks do not
+ * matter.
+ */
+public class JobRunDAO {
+    private static final Logger LOGGER = Logger.getLogger(JobRunDAO.class.getName());
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_SUCCEEDED = "SUCCEEDED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private static final int MAX_MESSAGE_LENGTH = 1000;
+
+    /**
+     * One row of job_runs.
+     */
+    public static final class JobRun {
+        private final long runId;
+        private final String jobName;
+        private final String owner;
+        private final int attempt;
+        private final LocalDateTime startedAt;
+        private final LocalDateTime finishedAt;
+        private final String status;
+        private final String message;
+
+        public JobRun(long runId, String jobName, String owner, int attempt, LocalDateTime startedAt,
+                      LocalDateTime finishedAt, String status, String message) {
+            this.runId = runId;
+            this.jobName = jobName;
+            this.owner = owner;
+            this.attempt = attempt;
+            this.startedAt = startedAt;
+            this.finishedAt = finishedAt;
+            this.status = status;
+            this.message = message;
+        }
+
+        public long getRunId() { return runId; }
+        public String getJobName() { return jobName; }
+        public String getOwner() { return owner; }
+        public int getAttempt() { return attempt; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+        public String getStatus() { return status; }
+        public String getMessage() { return message; }
+    }
+
+    public JobRunDAO() {
+    }
+
+    // --- Methods taking the caller's connection ---
+
+    /**
+     * Takes the lease of a job if it is free, expired or already held by the same owner.
+     *
+     * @param conn    the active database connection
+     * @param jobName Job name
+     * @param owner   Identifier of this client
+     * @param lease   How long the lease is valid without being released
+     * @return true if this owner now holds the lease
+     * @throws SQLException if a database access error occurs
+     */
+    public boolean tryAcquire(Connection conn, String jobName, String owner, Duration lease) throws SQLException {
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT IGNORE INTO job_locks (job_name, owner, locked_until) VALUES (?, '', '1970-01-02 00:00:00')")) {
+            insert.setString(1, jobName);
+            insert.executeUpdate();
+        }
+        try (PreparedStatement update = conn.prepareStatement(
+                "UPDATE job_locks SET owner = ?, locked_until = NOW() + INTERVAL ? SECOND " +
+                        "WHERE job_name = ? AND (locked_until < NOW() OR owner = ?)")) {
+            update.setString(1, owner);
+            update.setLong(2, Math.max(1, lease.getSeconds()));
+            update.setString(3, jobName);
+            update.setString(4, owner);
+            return update.executeUpdate() == 1;
+        }
+    }
+
+    /**
+     * Ends the lease early so that the next trigger (on any client) does not wait for it to expire.
+     *
+     * @param conn    the active database connection
+     * @param jobName Job name
+     * @param owner   Identifier of this client; a lease taken over by another client is left alone
+     * @throws SQLException if a database access error occurs
+     */
+    public void release(Connection conn, String jobName, String owner) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE job_locks SET locked_until = NOW() - INTERVAL 1 SECOND WHERE job_name = ? AND owner = ?")) {
+            stmt.setString(1, jobName);
+            stmt.setString(2, owner);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Records the start of a run.
+     *
+     * @return run_id of the new row
+     * @throws SQLException if a database access error occurs
+     */
+    public long startRun(Connection conn, String jobName, String owner, int attempt) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO job_runs (job_name, owner, attempt, started_at, status) VALUES (?, ?, ?, NOW(), ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, jobName);
+            stmt.setString(2, owner);
+            stmt.setInt(3, attempt);
+            stmt.setString(4, STATUS_RUNNING);
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    return keys.getLong(1);
+                }
+            }
+        }
+        throw new SQLException("No run_id generated for job " + jobName);
+    }
+
+    /**
+     * Records the outcome of a run.
+     *
+     * @throws SQLException if a database access error occurs
+     */
+    public void finishRun(Connection conn, long runId, String status, String message) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE job_runs SET finished_at = NOW(), status = ?, message = ? WHERE run_id = ?")) {
+            stmt.setString(1, status);
+            stmt.setString(2, message != null && message.length() > MAX_MESSAGE_LENGTH
+                    ? message.substring(0, MAX_MESSAGE_LENGTH) : message);
+            stmt.setLong(3, runId);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * @return Start time of the last successful run of the job (on any client), or null if it never succeeded
+     * @throws SQLException if a database access error occurs
+     */
+    public LocalDateTime getLastSuccess(Connection conn, String jobName) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT MAX(started_at) FROM job_runs WHERE job_name = ? AND status = ?")) {
+            stmt.setString(1, jobName);
+            stmt.setString(2, STATUS_SUCCEEDED);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getTimestamp(1) != null) {
+                    return rs.getTimestamp(1).toLocalDateTime();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param jobName Job name, or null for every job
+     * @param limit   Maximum number of runs
+     * @return The most recent runs, newest first
+     * @throws SQLException if a database access error occurs
+     */
+    public List<JobRun> getRecentRuns(Connection conn, String jobName, int limit) throws SQLException {
+        String sql = "SELECT run_id, job_name, owner, attempt, started_at, finished_at, status, message FROM job_runs " +
+                (jobName != null ? "WHERE job_name = ? " : "") + "ORDER BY started_at DESC, run_id DESC LIMIT ?";
+        List<JobRun> runs = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            if (jobName != null) {
+                stmt.setString(index++, jobName);
+            }
+            stmt.setInt(index, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp finished = rs.getTimestamp("finished_at");
+                    runs.add(new JobRun(rs.getLong("run_id"), rs.getString("job_name"), rs.getString("owner"),
+                            rs.getInt("attempt"), rs.getTimestamp("started_at").toLocalDateTime(),
+                            finished != null ? finished.toLocalDateTime() : null,
+                            rs.getString("status"), rs.getString("message")));
+                }
+            }
+        }
+        return runs;
+    }
+
+    // --- Public Wrapper Methods ---
+
+    public boolean tryAcquire(String jobName, String owner, Duration lease) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return tryAcquire(conn, jobName, owner, lease);
+        }
+    }
+
+    /**
+     * Errors are logged only: an unreleased lease simply expires.
+     */
+    public void release(String jobName, String owner) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            release(conn, jobName, owner);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not release job lock " + jobName + "; it expires on its own.", e);
+        }
+    }
+
+    public long startRun(String jobName, String owner, int attempt) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return startRun(conn, jobName, owner, attempt);
+        }
+    }
+
+    /**
+     * Errors are logged only; the run then stays RUNNING in the history.
+     */
+    public void finishRun(long runId, String status, String message) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            finishRun(conn, runId, status, message);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not record the outcome of job run " + runId, e);
+        }
+    }
+
+    public LocalDateTime getLastSuccess(String jobName) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getLastSuccess(conn, jobName);
+        }
+    }
+
+    public List<JobRun> getRecentRuns(String jobName, int limit) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getRecentRuns(conn, jobName, limit);
+        }
+    }
+}
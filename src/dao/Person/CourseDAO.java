@@ -2,19 +2,25 @@ package src.dao.Person;
 
 import src.dao.ClassSession.ClassSessionDAO;
 import src.dao.Notifications.RoomConflictException;
+import src.dao.Report.ReportSnapshotDAO;
 import src.model.system.course.Course;
+import src.model.system.course.CourseSummary;
 import src.model.person.Student;
 import src.model.person.Teacher;
 import src.utils.DatabaseConnection;
+import src.utils.IdGenerators;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -25,6 +31,9 @@ public class CourseDAO {
     private TeacherDAO teacherDAO;
     private static final Logger LOGGER = Logger.getLogger(CourseDAO.class.getName());
 
+    // Khóa học (tên, sĩ số) xuất hiện trong mọi kỳ của báo cáo lớp học
+    private static final List<String> CLASS_REPORT_ONLY = Collections.singletonList(ReportSnapshotDAO.CLASS_REPORT);
+
 
     public CourseDAO() {
         // Dependencies will be set by DaoManager
@@ -127,24 +136,49 @@ public class CourseDAO {
         return daysOfWeekList;
     }
     public List<Course> findCoursesEndingOnOrAfter(Connection conn, LocalDate date) throws SQLException {
-        List<Course> courses = new ArrayList<>();
-        // Câu SQL này sẽ lấy các khóa học có ngày kết thúc NULL (chưa xác định/đang diễn ra)
+        // Lấy các khóa học có ngày kết thúc NULL (chưa xác định/đang diễn ra)
         // HOẶC có ngày kết thúc lớn hơn hoặc bằng ngày được cung cấp.
-        String sql = "SELECT * FROM courses WHERE end_date IS NULL OR end_date >= ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setDate(1, java.sql.Date.valueOf(date)); // Sửa: Dùng java.sql.Date
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    // Giả sử bạn đã có phương thức extractCourseFromResultSet(Connection conn, ResultSet rs)
-                    // và nó xử lý đúng việc TeacherDAO có thể null hoặc cần được inject.
-                    courses.add(extractCourseFromResultSet(conn, rs));
-                }
-            }
+        try {
+            return loadCourses(conn, "c.end_date IS NULL OR c.end_date >= ?", java.sql.Date.valueOf(date));
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Lỗi khi tìm các khóa học kết thúc sau hoặc bằng ngày: " + date, e);
             throw e; // Ném lại lỗi để phương thức gọi có thể xử lý (ví dụ: rollback transaction)
         }
-        return courses;
+    }
+
+    /**
+     * Finds the courses whose schedule can have a session inside [start, end]: the course overlaps the
+     * period and meets on at least one weekday that occurs in it. Used to limit rescheduling after a
+     * holiday change to the courses it actually touches.
+     *
+     * @param conn Active database connection
+     * @param start First day of the period (inclusive)
+     * @param end Last day of the period (inclusive)
+     * @return Affected courses with teacher and schedule days loaded
+     * @throws SQLException If there's a database error
+     */
+    public List<Course> findCoursesAffectedByPeriod(Connection conn, LocalDate start, LocalDate end) throws SQLException {
+        // Các thứ trong tuần xuất hiện trong khoảng [start, end] (tối đa 7)
+        List<Object> params = new ArrayList<>();
+        params.add(Date.valueOf(start));
+        params.add(Date.valueOf(end));
+        StringBuilder dayPlaceholders = new StringBuilder();
+        for (LocalDate d = start; !d.isAfter(end) && params.size() < 9; d = d.plusDays(1)) {
+            dayPlaceholders.append(dayPlaceholders.length() == 0 ? "?" : ", ?");
+            params.add(d.getDayOfWeek().getValue());
+        }
+        if (dayPlaceholders.length() == 0) {
+            return new ArrayList<>();
+        }
+        String where = "(c.end_date IS NULL OR c.end_date >= ?) AND (c.start_date IS NULL OR c.start_date <= ?) " +
+                "AND EXISTS (SELECT 1 FROM coursescheduledays d2 WHERE d2.course_id = c.course_id " +
+                "AND d2.day_of_week_numeric IN (" + dayPlaceholders + "))";
+        try {
+            return loadCourses(conn, where, params.toArray());
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Lỗi khi tìm các khóa học bị ảnh hưởng bởi khoảng " + start + " - " + end, e);
+            throw e;
+        }
     }
 
     public boolean updateCourseEndDate(Connection conn, String courseId, LocalDate newEndDate) throws SQLException {
@@ -264,34 +298,82 @@ public class CourseDAO {
     }
 
     Course getById(Connection conn, String courseId) throws SQLException {
-        String sql = "SELECT course_id, course_name, subject, start_date, end_date, start_time, end_time, " +
-                "teacher_id, room_id, progress, total_sessions FROM courses WHERE course_id = ?"; // Added total_sessions, removed day_of_week
+        List<Course> courses = loadCourses(conn, "c.course_id = ?", courseId);
+        return courses.isEmpty() ? null : courses.get(0);
+    }
+
+    List<Course> getAll(Connection conn) throws SQLException {
+        return loadCourses(conn, null);
+    }
+
+    // Một truy vấn duy nhất cho khóa học + giáo viên + các ngày học (mỗi ngày học là một dòng)
+    private static final String JOINED_COURSE_SELECT = "SELECT c.course_id, c.course_name, c.subject, c.start_date, c.end_date, " +
+            "c.start_time, c.end_time, c.teacher_id, c.room_id, c.progress, c.total_sessions, " +
+            "t.id AS teacher_record_id, t.name AS teacher_name, t.gender AS teacher_gender, " +
+            "t.contact_number AS teacher_contact_number, t.birthday AS teacher_birthday, t.email AS teacher_email, " +
+            "d.day_of_week_numeric " +
+            "FROM courses c " +
+            "LEFT JOIN teachers t ON t.user_id = c.teacher_id " +
+            "LEFT JOIN coursescheduledays d ON d.course_id = c.course_id";
+
+    /**
+     * Nạp các khóa học (kèm giáo viên và ngày học) bằng một truy vấn JOIN rồi ghép đối tượng Course trong bộ nhớ,
+     * thay vì 2 truy vấn phụ cho mỗi khóa học.
+     *
+     * @param conn        kết nối đang dùng
+     * @param whereClause điều kiện trên bảng courses (alias c), hoặc null để lấy tất cả
+     * @param params      tham số cho điều kiện
+     * @return Danh sách khóa học theo thứ tự trả về của truy vấn
+     */
+    private List<Course> loadCourses(Connection conn, String whereClause, Object... params) throws SQLException {
+        String sql = JOINED_COURSE_SELECT + (whereClause != null ? " WHERE " + whereClause : "");
+        Map<String, Course> courses = new LinkedHashMap<>();
+        Map<String, List<String>> scheduleDays = new HashMap<>();
         try (PreparedStatement statement = conn.prepareStatement(sql)) {
-            statement.setString(1, courseId);
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
             try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    return extractCourseFromResultSet(conn, resultSet);
+                while (resultSet.next()) {
+                    String courseId = resultSet.getString("course_id");
+                    if (!courses.containsKey(courseId)) {
+                        courses.put(courseId, extractCourseColumns(resultSet, extractJoinedTeacher(resultSet), new ArrayList<>()));
+                        scheduleDays.put(courseId, new ArrayList<>());
+                    }
+                    int numericDay = resultSet.getInt("day_of_week_numeric");
+                    if (!resultSet.wasNull()) {
+                        String dayString = mapNumericDayToString(numericDay);
+                        if (dayString != null) {
+                            scheduleDays.get(courseId).add(dayString);
+                        }
+                    }
                 }
             }
         }
-        return null;
+        for (Course course : courses.values()) {
+            course.setDaysOfWeekList(scheduleDays.get(course.getCourseId()));
+        }
+        return new ArrayList<>(courses.values());
     }
 
-    List<Course> getAll(Connection conn) throws SQLException {
-        List<Course> courses = new ArrayList<>();
-        String sql = "SELECT course_id, course_name, subject, start_date, end_date, start_time, end_time, " +
-                "teacher_id, room_id, progress, total_sessions FROM courses"; // Added total_sessions, removed day_of_week
-        try (Statement statement = conn.createStatement();
-             ResultSet resultSet = statement.executeQuery(sql)) {
-            while (resultSet.next()) {
-                courses.add(extractCourseFromResultSet(conn, resultSet));
-            }
+    // Teacher từ các cột teacher_* của JOINED_COURSE_SELECT (null nếu khóa học chưa có giáo viên)
+    private Teacher extractJoinedTeacher(ResultSet resultSet) throws SQLException {
+        String teacherRecordId = resultSet.getString("teacher_record_id");
+        if (teacherRecordId == null) {
+            return null;
         }
-        return courses;
+        return new Teacher(
+                resultSet.getString("teacher_id"),
+                resultSet.getString("teacher_name"),
+                resultSet.getString("teacher_gender"),
+                resultSet.getString("teacher_contact_number"),
+                resultSet.getString("teacher_birthday"),
+                resultSet.getString("teacher_email"),
+                teacherRecordId
+        );
     }
 
-
-    public Course extractCourseFromResultSet(Connection conn, ResultSet resultSet) throws SQLException {
+    private Course extractCourseColumns(ResultSet resultSet, Teacher teacher, List<String> daysOfWeekList) throws SQLException {
         String courseId = resultSet.getString("course_id");
         String courseName = resultSet.getString("course_name");
         String subject = resultSet.getString("subject");
@@ -299,10 +381,97 @@ public class CourseDAO {
         LocalDate endDate = resultSet.getDate("end_date") != null ? resultSet.getDate("end_date").toLocalDate() : null;
         LocalTime startTime = resultSet.getTime("start_time") != null ? resultSet.getTime("start_time").toLocalTime() : null;
         LocalTime endTime = resultSet.getTime("end_time") != null ? resultSet.getTime("end_time").toLocalTime() : null;
-        String teacherId = resultSet.getString("teacher_id");
         String roomId = resultSet.getString("room_id");
         float progress = resultSet.getFloat("progress");
-        int totalSessions = resultSet.getInt("total_sessions"); // Read new field
+        int totalSessions = resultSet.getInt("total_sessions");
+
+        return new Course(courseId, courseName, subject, startDate, endDate,
+                startTime, endTime, daysOfWeekList, roomId,
+                teacher, totalSessions, progress);
+    }
+
+    /**
+     * Lấy danh sách tóm tắt của tất cả khóa học cho các màn hình danh sách (một truy vấn,
+     * chỉ lấy tên giáo viên thay vì đối tượng Teacher đầy đủ).
+     * Số buổi học hiện tại (MAX(session_number) của các buổi đến ngày asOfDate) và tiến độ theo buổi
+     * được tính trong cùng truy vấn bằng một subquery GROUP BY trên class_sessions.
+     */
+    List<CourseSummary> getAllSummaries(Connection conn, LocalDate asOfDate) throws SQLException {
+        List<CourseSummary> summaries = new ArrayList<>();
+        String sql = "SELECT c.course_id, c.course_name, c.subject, c.start_date, c.end_date, c.start_time, c.end_time, " +
+                "c.room_id, c.teacher_id, t.name AS teacher_name, c.progress, c.total_sessions, " +
+                "(SELECT GROUP_CONCAT(d.day_of_week_numeric ORDER BY d.day_of_week_numeric) " +
+                "FROM coursescheduledays d WHERE d.course_id = c.course_id) AS schedule_days, " +
+                "COALESCE(cs.current_session_number, 0) AS current_session_number, " +
+                "CASE WHEN c.total_sessions > 0 " +
+                "THEN LEAST(COALESCE(cs.current_session_number, 0), c.total_sessions) * 100.0 / c.total_sessions " +
+                "ELSE 0 END AS session_progress " +
+                "FROM courses c LEFT JOIN teachers t ON t.user_id = c.teacher_id " +
+                "LEFT JOIN (SELECT course_id, MAX(session_number) AS current_session_number " +
+                "FROM class_sessions WHERE session_date <= ? GROUP BY course_id) cs ON cs.course_id = c.course_id";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.setDate(1, Date.valueOf(asOfDate));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    List<String> daysOfWeekList = new ArrayList<>();
+                    String scheduleDays = resultSet.getString("schedule_days");
+                    if (scheduleDays != null && !scheduleDays.isEmpty()) {
+                        for (String numericDay : scheduleDays.split(",")) {
+                            String dayString = mapNumericDayToString(Integer.parseInt(numericDay.trim()));
+                            if (dayString != null) {
+                                daysOfWeekList.add(dayString);
+                            }
+                        }
+                    }
+                    summaries.add(new CourseSummary(
+                            resultSet.getString("course_id"),
+                            resultSet.getString("course_name"),
+                            resultSet.getString("subject"),
+                            resultSet.getDate("start_date") != null ? resultSet.getDate("start_date").toLocalDate() : null,
+                            resultSet.getDate("end_date") != null ? resultSet.getDate("end_date").toLocalDate() : null,
+                            resultSet.getTime("start_time") != null ? resultSet.getTime("start_time").toLocalTime() : null,
+                            resultSet.getTime("end_time") != null ? resultSet.getTime("end_time").toLocalTime() : null,
+                            daysOfWeekList,
+                            resultSet.getString("room_id"),
+                            resultSet.getString("teacher_id"),
+                            resultSet.getString("teacher_name"),
+                            resultSet.getInt("total_sessions"),
+                            resultSet.getFloat("progress"),
+                            resultSet.getInt("current_session_number"),
+                            resultSet.getFloat("session_progress")));
+                }
+            }
+        }
+        return summaries;
+    }
+
+    // Tiến độ theo ngày (giống Course.calculateProgressBasedOnDate) tính trong SQL; ? là ngày hiện tại
+    private static final String DATE_PROGRESS_EXPRESSION = "CASE " +
+            "WHEN start_date IS NULL OR end_date IS NULL OR start_date > end_date THEN 0 " +
+            "WHEN ? < start_date THEN 0 " +
+            "WHEN ? > end_date THEN 100 " +
+            "ELSE (DATEDIFF(?, start_date) + 1) * 100.0 / (DATEDIFF(end_date, start_date) + 1) END";
+
+    /**
+     * Cập nhật courses.progress theo ngày cho tất cả khóa học còn hoạt động bằng một câu UPDATE.
+     * Khóa học đã kết thúc và đã đạt 100% được bỏ qua.
+     */
+    int internalRefreshProgressForActiveCourses(Connection conn, LocalDate today) throws SQLException {
+        String sql = "UPDATE courses SET progress = " + DATE_PROGRESS_EXPRESSION + " " +
+                "WHERE end_date IS NULL OR end_date >= ? OR progress < 100";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            Date todaySql = Date.valueOf(today);
+            for (int i = 1; i <= 4; i++) {
+                statement.setDate(i, todaySql);
+            }
+            return statement.executeUpdate();
+        }
+    }
+
+
+    public Course extractCourseFromResultSet(Connection conn, ResultSet resultSet) throws SQLException {
+        String courseId = resultSet.getString("course_id");
+        String teacherId = resultSet.getString("teacher_id");
 
         Teacher teacher = null;
         if (teacherId != null && !teacherId.trim().isEmpty()) {
@@ -316,14 +485,9 @@ public class CourseDAO {
 
         List<String> daysOfWeekList = loadCourseScheduleDays(conn, courseId); // Load schedule days
 
-        // Use the comprehensive constructor from the updated Course class
-        Course course = new Course(courseId, courseName, subject, startDate, endDate,
-                startTime, endTime, daysOfWeekList, roomId,
-                teacher, totalSessions, progress);
-
         // Students are typically loaded separately or on-demand, not in this basic extraction
         // course.setStudents(getStudentsByCourseId(conn, courseId)); // Example if you want to load them here
-        return course;
+        return extractCourseColumns(resultSet, teacher, daysOfWeekList);
     }
 
     // --- Methods related to student enrollment (largely unchanged but ensure consistency) ---
@@ -345,12 +509,17 @@ public class CourseDAO {
         }
         String sql = "INSERT INTO enrollment (enrollment_id, student_id, course_id, enrollment_date, status) VALUES (?, ?, ?, ?, ?)";
         try (PreparedStatement statement = conn.prepareStatement(sql)) {
-            statement.setString(1, UUID.randomUUID().toString());
+            statement.setString(1, IdGenerators.nextId());
             statement.setString(2, studentId);
             statement.setString(3, courseId); // This is the course_id from courses table
             statement.setDate(4, Date.valueOf(LocalDate.now()));
             statement.setString(5, "Active");
-            return statement.executeUpdate() > 0;
+            boolean added = statement.executeUpdate() > 0;
+            if (added) {
+                // Sĩ số khóa học không gắn với ngày nên mọi snapshot báo cáo lớp học đều bị ảnh hưởng
+                ReportSnapshotDAO.invalidateAll(conn, CLASS_REPORT_ONLY);
+            }
+            return added;
         }
     }
 
@@ -398,6 +567,9 @@ public class CourseDAO {
             statement.setString(1, courseId); // courseId from 'courses' table
             statement.setString(2, studentId);
             int rowsAffected = statement.executeUpdate();
+            if (rowsAffected > 0) {
+                ReportSnapshotDAO.invalidateAll(conn, CLASS_REPORT_ONLY);
+            }
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("ERROR: Không thể xóa học viên " + studentId + " khỏi khóa học " + courseId);
@@ -410,52 +582,17 @@ public class CourseDAO {
     // --- Other find methods (need to update their SELECT queries) ---
 
     List<Course> getCoursesByTeacherId(Connection conn, String teacherId) throws SQLException {
-        List<Course> courses = new ArrayList<>();
-        String sql = "SELECT course_id, course_name, subject, start_date, end_date, " +
-                "start_time, end_time, teacher_id, room_id, progress, total_sessions FROM courses WHERE teacher_id = ?";
-        try (PreparedStatement statement = conn.prepareStatement(sql)) {
-            statement.setString(1, teacherId);
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    courses.add(extractCourseFromResultSet(conn, resultSet));
-                }
-            }
-        }
-        return courses;
+        return loadCourses(conn, "c.teacher_id = ?", teacherId);
     }
 
     List<Course> getCoursesByStudentId(Connection conn, String studentId) throws SQLException {
-        List<Course> courses = new ArrayList<>();
-        String sql = "SELECT c.course_id, c.course_name, c.subject, c.start_date, c.end_date, c.start_time, c.end_time, c.teacher_id, c.room_id, c.progress, c.total_sessions FROM courses c " +
-                "JOIN enrollment e ON c.course_id = e.course_id " +
-                "WHERE e.student_id = ?";
-        try (PreparedStatement statement = conn.prepareStatement(sql)) {
-            statement.setString(1, studentId);
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    courses.add(extractCourseFromResultSet(conn, resultSet));
-                }
-            }
-        }
-        return courses;
+        return loadCourses(conn, "c.course_id IN (SELECT e.course_id FROM enrollment e WHERE e.student_id = ?)", studentId);
     }
     // ... (searchCourses, getCoursesBySubject, etc. - all SELECTs need `total_sessions` and no `day_of_week`)
     // Example for searchCourses:
     List<Course> searchCourses(Connection conn, String searchTerm) throws SQLException {
-        List<Course> courses = new ArrayList<>();
-        String sql = "SELECT course_id, course_name, subject, start_date, end_date, " +
-                "start_time, end_time, teacher_id, room_id, progress, total_sessions FROM courses WHERE course_name LIKE ? OR subject LIKE ?";
-        try (PreparedStatement statement = conn.prepareStatement(sql)) {
-            String searchPattern = "%" + searchTerm + "%";
-            statement.setString(1, searchPattern);
-            statement.setString(2, searchPattern);
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    courses.add(extractCourseFromResultSet(conn, resultSet));
-                }
-            }
-        }
-        return courses;
+        String searchPattern = "%" + searchTerm + "%";
+        return loadCourses(conn, "c.course_name LIKE ? OR c.subject LIKE ?", searchPattern, searchPattern);
     }
 
     // The getStudentsByCourseId method's logic was a bit complex with actualClassIdForQuery
@@ -464,22 +601,8 @@ public class CourseDAO {
     // if enrollment.course_id was meant to be enrollment.course_id
     public List<Student> getStudentsByCourseId(Connection conn, String courseId) throws SQLException {
         checkStudentDAODependency();
-        List<Student> students = new ArrayList<>();
-        // Assuming enrollment table has a course_id column that refers to courses.course_id
-        String sql = "SELECT e.student_id FROM enrollment e WHERE e.course_id = ?";
-        try (PreparedStatement statement = conn.prepareStatement(sql)) {
-            statement.setString(1, courseId);
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    String studentId = resultSet.getString("student_id");
-                    Student student = this.studentDAO.getStudentById(conn, studentId);
-                    if (student != null) {
-                        students.add(student);
-                    }
-                }
-            }
-        }
-        return students;
+        // Một truy vấn JOIN enrollment -> students thay vì một truy vấn cho mỗi học sinh
+        return this.studentDAO.getStudentsByCourseId(conn, courseId);
     }
 
 
@@ -543,7 +666,7 @@ public class CourseDAO {
                         if (numericDay > 0) {
                             if (hasTimeConflictForRoomAndDay(conn, course.getRoomId(), numericDay,
                                     course.getCourseStartTime(), course.getCourseEndTime(), null)) { // null for excludingCourseId as it's a new course
-                                conn.rollback();
+                                DatabaseConnection.rollback(conn);
                                 DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
                                 String startTimeStr = course.getCourseStartTime().format(timeFormatter);
                                 String endTimeStr = course.getCourseEndTime().format(timeFormatter);
@@ -557,14 +680,16 @@ public class CourseDAO {
 
                 boolean success = internalInsert(conn, course);
                 if (success) {
-                    conn.commit();
+                    DatabaseConnection.commit(conn);
+                    ClassSessionDAO.invalidateDimensionCache();
+                    ReportSnapshotDAO.invalidateAll(CLASS_REPORT_ONLY);
                     return true;
                 } else {
-                    conn.rollback();
+                    DatabaseConnection.rollback(conn);
                     return false;
                 }
             } catch (SQLException | RoomConflictException e) {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
                 throw e; // Re-throw to be handled by caller
             }
         }
@@ -581,7 +706,7 @@ public class CourseDAO {
                         if (numericDay > 0) {
                             if (hasTimeConflictForRoomAndDay(conn, course.getRoomId(), numericDay,
                                     course.getCourseStartTime(), course.getCourseEndTime(), course.getCourseId())) {
-                                conn.rollback();
+                                DatabaseConnection.rollback(conn);
                                 DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
                                 String startTimeStr = course.getCourseStartTime().format(timeFormatter);
                                 String endTimeStr = course.getCourseEndTime().format(timeFormatter);
@@ -595,14 +720,16 @@ public class CourseDAO {
 
                 boolean success = internalUpdate(conn, course);
                 if (success) {
-                    conn.commit();
+                    DatabaseConnection.commit(conn);
+                    ClassSessionDAO.invalidateDimensionCache();
+                    ReportSnapshotDAO.invalidateAll(CLASS_REPORT_ONLY);
                     return true;
                 } else {
-                    conn.rollback();
+                    DatabaseConnection.rollback(conn);
                     return false;
                 }
             } catch (SQLException | RoomConflictException e) {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
                 throw e; // Re-throw
             }
         }
@@ -614,16 +741,18 @@ public class CourseDAO {
             conn.setAutoCommit(false);
             boolean success = internalDelete(conn, courseId);
             if (success) {
-                conn.commit();
+                DatabaseConnection.commit(conn);
+                ClassSessionDAO.invalidateDimensionCache();
+                ReportSnapshotDAO.invalidateAll(CLASS_REPORT_ONLY);
             } else {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
             }
             return success;
         } catch (SQLException e) {
             System.err.println("Error deleting course with ID: " + courseId + ": " + e.getMessage());
             e.printStackTrace();
             // Attempt to rollback on any exception during the delete process
-            try (Connection conn = DatabaseConnection.getConnection()) { if(conn != null && !conn.getAutoCommit()) conn.rollback(); } catch (SQLException ex) { ex.printStackTrace(); }
+            try (Connection conn = DatabaseConnection.getConnection()) { if(conn != null && !conn.getAutoCommit()) DatabaseConnection.rollback(conn); } catch (SQLException ex) { ex.printStackTrace(); }
             return false;
         }
     }
@@ -650,6 +779,25 @@ public class CourseDAO {
     }
 
 
+    /**
+     * Danh sách tóm tắt khóa học cho các màn hình danh sách (không nạp đối tượng Teacher đầy đủ).
+     */
+    public List<CourseSummary> findAllSummaries() {
+        return findAllSummaries(LocalDate.now());
+    }
+
+    /**
+     * Danh sách tóm tắt khóa học, với số buổi học hiện tại và tiến độ tính đến ngày asOfDate.
+     */
+    public List<CourseSummary> findAllSummaries(LocalDate asOfDate) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getAllSummaries(conn, asOfDate);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error loading course summaries", e);
+            return new ArrayList<>();
+        }
+    }
+
     // --- Other find methods (public wrappers) ---
     // (findCoursesByTeacherId, findCoursesByStudentId, search, findCoursesBySubject etc. are mostly wrappers)
     // They will benefit from the updated getAll/getById and extractCourseFromResultSet
@@ -693,26 +841,40 @@ public class CourseDAO {
             return false;
         }
     }
+    /**
+     * Cập nhật tiến độ theo ngày cho tất cả khóa học còn hoạt động (một câu UPDATE thay vì từng khóa học).
+     *
+     * @return Số khóa học được cập nhật, hoặc -1 nếu có lỗi
+     */
+    public int refreshProgressForActiveCourses() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return internalRefreshProgressForActiveCourses(conn, LocalDate.now());
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error refreshing progress for active courses", e);
+            return -1;
+        }
+    }
+
     public boolean updateProgressBasedOnDate(String courseId) {
         try (Connection conn = DatabaseConnection.getConnection()) {
             conn.setAutoCommit(false); // Manage transaction
             Course course = getById(conn, courseId); // Fetches course with schedule days
             if (course == null) {
                 System.err.println("Error updating progress: Course with ID " + courseId + " not found.");
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
                 return false;
             }
             // calculateProgressBasedOnDate should use course.getDaysOfWeekList() or total_sessions if appropriate
             // The current Course.calculateProgressBasedOnDate() uses date range only, which might be fine.
             float calculatedProgress = (float) course.calculateProgressBasedOnDate();
             boolean success = internalUpdateProgress(conn, courseId, calculatedProgress);
-            if (success) conn.commit();
-            else conn.rollback();
+            if (success) DatabaseConnection.commit(conn);
+            else DatabaseConnection.rollback(conn);
             return success;
         } catch (SQLException | IllegalStateException e) {
             System.err.println("Error updating progress for course ID: " + courseId + ": " + e.getMessage());
             e.printStackTrace();
-            try (Connection conn = DatabaseConnection.getConnection()) { if(conn != null && !conn.getAutoCommit()) conn.rollback(); } catch (SQLException ex) { ex.printStackTrace(); }
+            try (Connection conn = DatabaseConnection.getConnection()) { if(conn != null && !conn.getAutoCommit()) DatabaseConnection.rollback(conn); } catch (SQLException ex) { ex.printStackTrace(); }
             return false;
         }
     }
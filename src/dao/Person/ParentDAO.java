@@ -383,9 +383,9 @@ public class ParentDAO {
             conn.setAutoCommit(false);
             boolean success = internalInsert(conn, parent);
             if (success) {
-                conn.commit();
+                DatabaseConnection.commit(conn);
             } else {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
             }
             return success;
         } catch (SQLException e) {
@@ -406,9 +406,9 @@ public class ParentDAO {
             conn.setAutoCommit(false);
             boolean success = internalUpdate(conn, parent);
             if (success) {
-                conn.commit();
+                DatabaseConnection.commit(conn);
             } else {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
             }
             return success;
         } catch (SQLException e) {
@@ -429,9 +429,9 @@ public class ParentDAO {
             conn.setAutoCommit(false);
             boolean success = internalDelete(conn, id);
             if (success) {
-                conn.commit();
+                DatabaseConnection.commit(conn);
             } else {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
             }
             return success;
         } catch (SQLException e) {
@@ -1,6 +1,8 @@
 
 package src.dao.Person;
 
+import src.dao.Attendance.StudentMetricsRollupDAO;
+import src.dao.Report.ReportSnapshotDAO;
 import src.model.attendance.HomeworkSubmissionModel;
 import src.model.attendance.StudentAttendanceData;
 import src.model.person.Student;
@@ -8,13 +10,18 @@ import src.model.system.course.Course;
 
 
 import src.utils.DatabaseConnection;
+import src.utils.IdGenerators;
 
 import java.time.LocalDate;
-import java.util.UUID;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -28,6 +35,7 @@ public class StudentDAO {
     private static final Logger LOGGER = Logger.getLogger(StudentDAO.class.getName());
 
     private CourseDAO courseDAO; // This will be injected
+    private StudentMetricsRollupDAO studentMetricsRollupDAO; // This will be injected
 
     /**
      * Constructor. Dependencies are not initialized here; they must be set externally.
@@ -44,6 +52,26 @@ public class StudentDAO {
         this.courseDAO = courseDAO;
     }
 
+    /**
+     * Set StudentMetricsRollupDAO - used for dependency injection.
+     *
+     * @param studentMetricsRollupDAO The StudentMetricsRollupDAO instance
+     */
+    public void setStudentMetricsRollupDAO(StudentMetricsRollupDAO studentMetricsRollupDAO) {
+        this.studentMetricsRollupDAO = studentMetricsRollupDAO;
+    }
+
+    /**
+     * Rollup DAO của student_metrics. Một số màn hình tạo StudentDAO trực tiếp (không qua DaoManager),
+     * khi đó dùng một instance mới (StudentMetricsRollupDAO không giữ trạng thái).
+     */
+    private StudentMetricsRollupDAO metricsRollups() {
+        if (studentMetricsRollupDAO == null) {
+            studentMetricsRollupDAO = new StudentMetricsRollupDAO();
+        }
+        return studentMetricsRollupDAO;
+    }
+
     /**
      * Insert a new student into the database. Manages its own connection and transaction.
      * Related entities (Parent, Courses) must be linked separately *after* the student is inserted,
@@ -80,9 +108,9 @@ public class StudentDAO {
                         }
                     }
                 }
-                conn.commit(); // Commit transaction
+                DatabaseConnection.commit(conn); // Commit transaction
             } else {
-                conn.rollback(); // Rollback if insertion failed
+                DatabaseConnection.rollback(conn); // Rollback if insertion failed
             }
 
             return rowsInserted > 0;
@@ -125,10 +153,10 @@ public class StudentDAO {
                 userStmt.executeUpdate(); // No need for rollback handling here
             }
 
-            conn.commit(); // Commit transaction
+            DatabaseConnection.commit(conn); // Commit transaction
             return true;
         } catch (SQLException e) {
-            if (conn != null) conn.rollback(); // Rollback transaction if something breaks
+            if (conn != null) DatabaseConnection.rollback(conn); // Rollback transaction if something breaks
             throw e; // Rethrow for upstream handling
         } finally {
             if (conn != null) {
@@ -171,7 +199,7 @@ public class StudentDAO {
             // Kiểm tra xem sinh viên có tồn tại không
             if (!rs.next()) {
                 System.err.println("Không tìm thấy sinh viên với ID: " + studentId);
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
                 return false;
             }
 
@@ -181,7 +209,7 @@ public class StudentDAO {
             // Kiểm tra xem user_id có hợp lệ không
             if (userId == null) {
                 System.err.println("Sinh viên có ID " + studentId + " không có user_id hợp lệ");
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
                 return false;
             }
 
@@ -189,6 +217,8 @@ public class StudentDAO {
             deleteEnrollmentsStmt = conn.prepareStatement(deleteEnrollmentsSql);
             deleteEnrollmentsStmt.setString(1, studentId);
             deleteEnrollmentsStmt.executeUpdate(); // Không cần kiểm tra số hàng bị xóa ở đây, có thể không có enrollment nào
+            // Sĩ số khóa học không gắn với ngày nên mọi snapshot báo cáo lớp học đều bị ảnh hưởng
+            ReportSnapshotDAO.invalidateAll(conn, Collections.singletonList(ReportSnapshotDAO.CLASS_REPORT));
 
             // Bước 3: Xóa bản ghi student
             deleteStudentStmt = conn.prepareStatement(deleteStudentSql);
@@ -197,7 +227,7 @@ public class StudentDAO {
 
             if (studentRowsDeleted == 0) {
                 System.err.println("Không thể xóa sinh viên với ID: " + studentId + " (có thể đã bị xóa hoặc không tồn tại sau khi xóa enrollment).");
-                conn.rollback(); // Rollback nếu không xóa được student (ví dụ: student không tồn tại)
+                DatabaseConnection.rollback(conn); // Rollback nếu không xóa được student (ví dụ: student không tồn tại)
                 return false;
             }
 
@@ -211,22 +241,18 @@ public class StudentDAO {
                 // Quyết định rollback hay không ở đây tùy thuộc vào logic nghiệp vụ.
                 // Nếu việc student bị xóa mà user không bị xóa là chấp nhận được thì có thể commit.
                 // Tuy nhiên, để nhất quán, nên rollback.
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
                 return false;
             }
 
             // Xác nhận giao dịch nếu tất cả các bước đều thành công
-            conn.commit();
+            DatabaseConnection.commit(conn);
             System.out.println("Đã xóa thành công sinh viên (ID: " + studentId + "), các enrollment liên quan, và người dùng liên kết (ID: " + userId + ")");
             return true;
 
         } catch (SQLException e) {
             if (conn != null) {
-                try {
-                    conn.rollback(); // Hoàn tác giao dịch nếu có lỗi
-                } catch (SQLException ex) {
-                    System.err.println("Lỗi khi hoàn tác giao dịch: " + ex.getMessage());
-                }
+                DatabaseConnection.rollback(conn); // Hoàn tác giao dịch nếu có lỗi
             }
             System.err.println("Lỗi khi xóa sinh viên và người dùng: " + e.getMessage());
             throw e;
@@ -433,12 +459,16 @@ public class StudentDAO {
 
         String sql = "INSERT INTO enrollment (enrollment_id, student_id, course_id, enrollment_date, status) VALUES (?, ?, ?, ?, ?)";
         try (PreparedStatement statement = conn.prepareStatement(sql)) {
-            statement.setString(1, UUID.randomUUID().toString());
+            statement.setString(1, IdGenerators.nextId());
             statement.setString(2, studentId);
             statement.setString(3, courseId);
             statement.setDate(4, java.sql.Date.valueOf(LocalDate.now()));
             statement.setString(5, "ENROLLED");
-            return statement.executeUpdate() > 0;
+            boolean enrolled = statement.executeUpdate() > 0;
+            if (enrolled) {
+                ReportSnapshotDAO.invalidateAll(conn, Collections.singletonList(ReportSnapshotDAO.CLASS_REPORT));
+            }
+            return enrolled;
         }
     }
 
@@ -639,31 +669,135 @@ public class StudentDAO {
             return students;
         }
 
-        String sql = "SELECT s.id AS s_id, s.name AS s_name, s.gender AS s_gender, " +
-                "s.contact_number AS s_contact_number, s.birthday AS s_birthday, s.email AS s_email, " +
-                "s.Parent_Name AS s_parent_name, s.Parent_PhoneNumber AS s_parent_phone_number " +
-                // Thêm các cột khác từ bảng students với alias "s_" nếu extractStudentFromResultSet cần
-                // Ví dụ: ", s.user_id AS s_user_id, s.address AS s_address, s.status AS s_status "
-                "FROM students s " +
-                "JOIN enrollment e ON s.id = e.student_id " +
-                "WHERE e.course_id = ?";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            students = getStudentsByCourseId(conn, courseIdToFilter);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error finding students by course ID (via enrollment): " + courseIdToFilter, e);
+        }
+        return students;
+    }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement statement = conn.prepareStatement(sql)) {
+    // Cột của students (alias "s_") dùng bởi extractStudentFromResultSet
+    private static final String STUDENT_SELECT_COLUMNS = "s.id AS s_id, s.name AS s_name, s.gender AS s_gender, " +
+            "s.contact_number AS s_contact_number, s.birthday AS s_birthday, s.email AS s_email, " +
+            "s.Parent_Name AS s_parent_name, s.Parent_PhoneNumber AS s_parent_phone_number ";
 
-            statement.setString(1, courseIdToFilter);
+    /**
+     * Get the roster of a course with one query joining enrollment to students, using an existing connection.
+     *
+     * @param conn the active database connection
+     * @param courseId the course ID
+     * @return Students enrolled in the course, ordered by name
+     * @throws SQLException if a database access error occurs
+     */
+    public List<Student> getStudentsByCourseId(Connection conn, String courseId) throws SQLException {
+        List<Student> students = new ArrayList<>();
+        String sql = "SELECT " + STUDENT_SELECT_COLUMNS +
+                "FROM enrollment e " +
+                "JOIN students s ON s.id = e.student_id " +
+                "WHERE e.course_id = ? " +
+                "ORDER BY s.name, s.id";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.setString(1, courseId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    students.add(extractStudentFromResultSet(resultSet));
+                }
+            }
+        }
+        return students;
+    }
+
+    // Điều kiện chung: học sinh chưa ghi danh vào khóa học (anti-join) + tìm kiếm theo tên/mã/SĐT
+    private static String notEnrolledCondition(String searchTerm) {
+        String condition = "NOT EXISTS (SELECT 1 FROM enrollment e WHERE e.student_id = s.id AND e.course_id = ?)";
+        if (searchTerm != null && !searchTerm.trim().isEmpty()) {
+            condition += " AND (s.name LIKE ? OR s.id LIKE ? OR s.contact_number LIKE ?)";
+        }
+        return condition;
+    }
+
+    private static int bindNotEnrolledParams(PreparedStatement statement, String courseId, String searchTerm) throws SQLException {
+        int index = 1;
+        statement.setString(index++, courseId);
+        if (searchTerm != null && !searchTerm.trim().isEmpty()) {
+            String pattern = "%" + searchTerm.trim() + "%";
+            statement.setString(index++, pattern);
+            statement.setString(index++, pattern);
+            statement.setString(index++, pattern);
+        }
+        return index;
+    }
 
+    /**
+     * Find students who are not yet enrolled in a course (anti-join on enrollment), one page at a time.
+     *
+     * @param conn the active database connection
+     * @param courseId the course ID
+     * @param searchTerm optional filter on name, ID or contact number (null or blank for none)
+     * @param offset number of rows to skip
+     * @param limit maximum number of rows to return
+     * @return One page of students, ordered by name
+     * @throws SQLException if a database access error occurs
+     */
+    public List<Student> findStudentsNotEnrolledInCourse(Connection conn, String courseId, String searchTerm,
+                                                         int offset, int limit) throws SQLException {
+        List<Student> students = new ArrayList<>();
+        String sql = "SELECT " + STUDENT_SELECT_COLUMNS +
+                "FROM students s WHERE " + notEnrolledCondition(searchTerm) +
+                " ORDER BY s.name, s.id LIMIT ? OFFSET ?";
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            int index = bindNotEnrolledParams(statement, courseId, searchTerm);
+            statement.setInt(index++, limit);
+            statement.setInt(index, offset);
             try (ResultSet resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
                     students.add(extractStudentFromResultSet(resultSet));
                 }
             }
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error finding students by course ID (via enrollment): " + courseIdToFilter, e);
         }
         return students;
     }
 
+    /**
+     * Find students who are not yet enrolled in a course, one page at a time. Manages its own connection.
+     *
+     * @param courseId the course ID
+     * @param searchTerm optional filter on name, ID or contact number (null or blank for none)
+     * @param offset number of rows to skip
+     * @param limit maximum number of rows to return
+     * @return One page of students, ordered by name (empty on error)
+     */
+    public List<Student> findStudentsNotEnrolledInCourse(String courseId, String searchTerm, int offset, int limit) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return findStudentsNotEnrolledInCourse(conn, courseId, searchTerm, offset, limit);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error finding students not enrolled in course: " + courseId, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Count students who are not yet enrolled in a course (same filter as findStudentsNotEnrolledInCourse).
+     *
+     * @param courseId the course ID
+     * @param searchTerm optional filter on name, ID or contact number (null or blank for none)
+     * @return Number of matching students (0 on error)
+     */
+    public int countStudentsNotEnrolledInCourse(String courseId, String searchTerm) {
+        String sql = "SELECT COUNT(*) FROM students s WHERE " + notEnrolledCondition(searchTerm);
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement statement = conn.prepareStatement(sql)) {
+            bindNotEnrolledParams(statement, courseId, searchTerm);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error counting students not enrolled in course: " + courseId, e);
+            return 0;
+        }
+    }
+
     public boolean createStudentAndUserTransaction(Student student, String address) throws SQLException {
         Connection conn = null;
         String generatedUserId = null; // ID cho bảng users
@@ -685,7 +819,7 @@ public class StudentDAO {
             conn.setAutoCommit(false); // Bắt đầu transaction
 
             // 1. Thêm vào bảng 'users'
-            generatedUserId = UUID.randomUUID().toString(); // Tạo ID duy nhất cho user
+            generatedUserId = IdGenerators.nextId(); // Tạo ID duy nhất cho user
             try (PreparedStatement userStmt = conn.prepareStatement(userInsertSql)) {
                 userStmt.setString(1, generatedUserId);
                 userStmt.setString(2, student.getName());
@@ -704,7 +838,7 @@ public class StudentDAO {
 
                 int userRowsInserted = userStmt.executeUpdate();
                 if (userRowsInserted == 0) {
-                    conn.rollback();
+                    DatabaseConnection.rollback(conn);
                     System.err.println("Thất bại khi tạo bản ghi user cho sinh viên: " + student.getName());
                     return false;
                 }
@@ -712,7 +846,7 @@ public class StudentDAO {
 
             // 2. Thêm vào bảng 'students'
             if (student.getId() == null || student.getId().trim().isEmpty()) {
-                conn.rollback();
+                DatabaseConnection.rollback(conn);
                 System.err.println("Thiếu ID sinh viên. Không thể thêm vào bảng students.");
                 throw new SQLException("ID sinh viên là bắt buộc để thêm bản ghi sinh viên.");
             }
@@ -744,7 +878,7 @@ public class StudentDAO {
 
                 int studentRowsInserted = studentStmt.executeUpdate();
                 if (studentRowsInserted == 0) {
-                    conn.rollback();
+                    DatabaseConnection.rollback(conn);
                     System.err.println("Thất bại khi tạo bản ghi student cho: " + student.getName());
                     return false;
                 }
@@ -759,22 +893,18 @@ public class StudentDAO {
                 for (Course course : student.getCurrentCourses()) {
                     // Giả sử bạn có phương thức enrollStudentInCourse(Connection conn, String studentId, String courseId)
                     if (!enrollStudentInCourse(conn, student.getId(), course.getCourseId())) {
-                        conn.rollback();
+                        DatabaseConnection.rollback(conn);
                         System.err.println("Thất bại khi đăng ký sinh viên " + student.getId() + " vào khóa học " + course.getCourseId());
                         return false;
                     }
                 }
             }
 
-            conn.commit(); // Commit transaction nếu tất cả thành công
+            DatabaseConnection.commit(conn); // Commit transaction nếu tất cả thành công
             return true;
         } catch (SQLException e) {
             if (conn != null) {
-                try {
-                    conn.rollback(); // Rollback nếu có lỗi SQL
-                } catch (SQLException ex) {
-                    System.err.println("Lỗi trong quá trình rollback database: " + ex.getMessage());
-                }
+                DatabaseConnection.rollback(conn); // Rollback nếu có lỗi SQL
             }
             System.err.println("Giao dịch database thất bại khi tạo student và user: " + e.getMessage());
             e.printStackTrace();
@@ -800,9 +930,11 @@ public class StudentDAO {
      * @return True nếu tìm thấy và cập nhật điểm, false nếu ngược lại
      */
     public boolean populateStudentMetrics(StudentAttendanceData attendanceData, String classId) {
-        String sql = "SELECT punctuality_score, awareness_score FROM student_metrics " +
+        // Giá trị cuối cùng của ngày gần nhất, đọc từ rollup theo ngày
+        String sql = "SELECT punctuality_last AS punctuality_score, awareness_last AS awareness_score " +
+                "FROM student_metrics_daily " +
                 "WHERE student_id = ? AND course_id = ? " +
-                "ORDER BY record_date DESC LIMIT 1";
+                "ORDER BY day DESC LIMIT 1";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement statement = conn.prepareStatement(sql)) {
@@ -829,15 +961,68 @@ public class StudentDAO {
     }
 
     /**
-     * Cập nhật điểm cho danh sách học sinh trong một lớp cụ thể.
+     * Cập nhật điểm cho danh sách học sinh trong một lớp cụ thể (một truy vấn cho cả lớp).
      *
      * @param attendanceDataList Danh sách đối tượng StudentAttendanceData cần cập nhật
      * @param classId ID của lớp học
      */
     public void populateMetricsForStudentList(List<StudentAttendanceData> attendanceDataList, String classId) {
-        for (StudentAttendanceData data : attendanceDataList) {
-            populateStudentMetrics(data, classId);
+        if (attendanceDataList == null || attendanceDataList.isEmpty()) {
+            return;
         }
+        try {
+            Map<String, StudentMetricsRollupDAO.MetricsRollup> latest =
+                    metricsRollups().getLatestDailyByStudent(classId, null, null);
+            for (StudentAttendanceData data : attendanceDataList) {
+                StudentMetricsRollupDAO.MetricsRollup metrics = latest.get(data.getStudent().getId());
+                if (metrics != null) {
+                    applyLatestMetrics(data, metrics);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Lỗi khi lấy thông tin điểm cho các học sinh trong lớp " + classId, e);
+        }
+    }
+
+    /**
+     * Lấy điểm mới nhất của các học sinh trong một lớp bằng một truy vấn, với ngưỡng lọc được áp dụng trong SQL.
+     *
+     * @param students Danh sách học sinh
+     * @param classId ID của lớp học
+     * @param minPunctuality Điểm đúng giờ tối thiểu (<= 0 để không áp dụng bộ lọc)
+     * @param minDiligence Điểm chuyên cần tối thiểu (<= 0 để không áp dụng bộ lọc)
+     * @return Map studentId -> StudentAttendanceData với điểm mới nhất, theo thứ tự của danh sách học sinh;
+     *         chỉ chứa học sinh có dữ liệu điểm đạt ngưỡng
+     */
+    public Map<String, StudentAttendanceData> findLatestMetricsByStudent(List<Student> students, String classId,
+                                                                        int minPunctuality, int minDiligence) {
+        Map<String, StudentAttendanceData> result = new LinkedHashMap<>();
+        if (students == null || students.isEmpty()) {
+            return result;
+        }
+        try {
+            // Điểm hiển thị là Math.round(giá trị), nên round(x) >= n tương đương x >= n - 0.5
+            Map<String, StudentMetricsRollupDAO.MetricsRollup> latest = metricsRollups().getLatestDailyByStudent(classId,
+                    minPunctuality > 0 ? minPunctuality - 0.5 : null,
+                    minDiligence > 0 ? minDiligence - 0.5 : null);
+            for (Student student : students) {
+                StudentMetricsRollupDAO.MetricsRollup metrics = latest.get(student.getId());
+                if (metrics != null) {
+                    StudentAttendanceData data = new StudentAttendanceData(student);
+                    applyLatestMetrics(data, metrics);
+                    result.put(student.getId(), data);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Lỗi khi lấy thông tin điểm mới nhất cho lớp " + classId, e);
+        }
+        return result;
+    }
+
+    private static void applyLatestMetrics(StudentAttendanceData data, StudentMetricsRollupDAO.MetricsRollup metrics) {
+        data.setPunctualityRating(metrics.getPunctualityLast() != null ? (int) Math.round(metrics.getPunctualityLast()) : 0);
+        data.setDiligenceRating(metrics.getAwarenessLast() != null ? (int) Math.round(metrics.getAwarenessLast()) : 0);
+        data.setStudentSessionNotes(metrics.getNotesLast());
     }
 
     /**
@@ -854,27 +1039,40 @@ public class StudentDAO {
                 "awareness_score, punctuality_score, notes) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement statement = conn.prepareStatement(sql)) {
-
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false); // Bản ghi và rollup được ghi cùng một transaction
             // Tạo ID duy nhất cho bản ghi metric
-            String metricId = UUID.randomUUID().toString();
-
-            statement.setString(1, metricId);
-            statement.setString(2, attendanceData.getStudent().getId());
-            statement.setString(3, classId);
-            statement.setDate(4, java.sql.Date.valueOf(java.time.LocalDate.now()));
-            statement.setDouble(5, attendanceData.getDiligenceRating()); // Awareness score tương ứng với diligence
-            statement.setDouble(6, attendanceData.getPunctualityRating());
-            statement.setString(7, notes != null ? notes : attendanceData.getStudentSessionNotes());
-
-            int rowsInserted = statement.executeUpdate();
+            String metricId = IdGenerators.nextId();
+            LocalDate recordDate = LocalDate.now();
+            int rowsInserted;
+            try (PreparedStatement statement = conn.prepareStatement(sql)) {
+
+                statement.setString(1, metricId);
+                statement.setString(2, attendanceData.getStudent().getId());
+                statement.setString(3, classId);
+                statement.setDate(4, java.sql.Date.valueOf(recordDate));
+                statement.setDouble(5, attendanceData.getDiligenceRating()); // Awareness score tương ứng với diligence
+                statement.setDouble(6, attendanceData.getPunctualityRating());
+                statement.setString(7, notes != null ? notes : attendanceData.getStudentSessionNotes());
+
+                rowsInserted = statement.executeUpdate();
+            }
+            if (rowsInserted > 0) {
+                refreshMetricsRollups(conn, Collections.singleton(new StudentMetricsRollupDAO.MetricKey(
+                        attendanceData.getStudent().getId(), classId, recordDate)), null);
+            }
+            DatabaseConnection.commit(conn);
             return rowsInserted > 0;
 
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Lỗi khi lưu thông tin điểm cho học sinh " +
                     attendanceData.getStudent().getId(), e);
+            DatabaseConnection.rollback(conn);
             return false;
+        } finally {
+            DatabaseConnection.closeConnection(conn);
         }
     }
 
@@ -890,21 +1088,51 @@ public class StudentDAO {
         String sql = "UPDATE student_metrics SET awareness_score = ?, punctuality_score = ?, " +
                 "notes = ? WHERE metric_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement statement = conn.prepareStatement(sql)) {
-
-            statement.setDouble(1, attendanceData.getDiligenceRating()); // Awareness score tương ứng với diligence
-            statement.setDouble(2, attendanceData.getPunctualityRating());
-            statement.setString(3, notes != null ? notes : attendanceData.getStudentSessionNotes());
-            statement.setString(4, metricId);
-
-            int rowsUpdated = statement.executeUpdate();
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false); // Bản ghi và rollup được ghi cùng một transaction
+            int rowsUpdated;
+            try (PreparedStatement statement = conn.prepareStatement(sql)) {
+                statement.setDouble(1, attendanceData.getDiligenceRating()); // Awareness score tương ứng với diligence
+                statement.setDouble(2, attendanceData.getPunctualityRating());
+                statement.setString(3, notes != null ? notes : attendanceData.getStudentSessionNotes());
+                statement.setString(4, metricId);
+
+                rowsUpdated = statement.executeUpdate();
+            }
+            if (rowsUpdated > 0) {
+                refreshMetricsRollups(conn, Collections.emptySet(), metricId);
+            }
+            DatabaseConnection.commit(conn);
             return rowsUpdated > 0;
 
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Lỗi khi cập nhật thông tin điểm với ID " + metricId, e);
+            DatabaseConnection.rollback(conn);
             return false;
+        } finally {
+            DatabaseConnection.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Cập nhật rollup của student_metrics sau khi ghi, trong cùng transaction với bản ghi.
+     * Lỗi được ném lại để transaction rollback, tránh rollup lệch với dữ liệu gốc.
+     */
+    private void refreshMetricsRollups(Connection conn, Set<StudentMetricsRollupDAO.MetricKey> keys, String metricId) throws SQLException {
+        StudentMetricsRollupDAO rollups = metricsRollups();
+        Set<StudentMetricsRollupDAO.MetricKey> touched = new HashSet<>(keys);
+        if (metricId != null) {
+            touched.addAll(rollups.findKeysByMetricIds(conn, Collections.singleton(metricId)));
+        }
+        rollups.refresh(conn, touched);
+
+        Set<LocalDate> days = new HashSet<>();
+        for (StudentMetricsRollupDAO.MetricKey key : touched) {
+            days.add(key.getDay());
         }
+        ReportSnapshotDAO.invalidateDays(conn, days, Collections.singletonList(ReportSnapshotDAO.CLASS_REPORT));
     }
 
     /**
@@ -920,18 +1148,17 @@ public class StudentDAO {
                                                                int minPunctuality, int minDiligence) {
         List<StudentAttendanceData> filteredData = new ArrayList<>();
 
-        for (Student student : students) {
-            StudentAttendanceData data = new StudentAttendanceData(student);
-
-            // Cập nhật với thông tin điểm mới nhất
-            populateStudentMetrics(data, classId);
-
-            // Áp dụng bộ lọc
-            boolean matchesPunctuality = (minPunctuality == -1) || (data.getPunctualityRating() >= minPunctuality);
-            boolean matchesDiligence = (minDiligence == -1) || (data.getDiligenceRating() >= minDiligence);
+        // Điểm mặc định là 0, nên ngưỡng <= 0 luôn thỏa: chỉ lọc trong SQL khi ngưỡng > 0
+        boolean filtering = minPunctuality > 0 || minDiligence > 0;
+        Map<String, StudentAttendanceData> latest = findLatestMetricsByStudent(students, classId,
+                minPunctuality, minDiligence);
 
-            if (matchesPunctuality && matchesDiligence) {
+        for (Student student : students) {
+            StudentAttendanceData data = latest.get(student.getId());
+            if (data != null) {
                 filteredData.add(data);
+            } else if (!filtering) {
+                filteredData.add(new StudentAttendanceData(student));
             }
         }
 
@@ -945,35 +1172,20 @@ public class StudentDAO {
      * @return Đối tượng StudentAttendanceData với điểm trung bình
      */
     public StudentAttendanceData getAverageStudentMetrics(String studentId) {
-        String sql = "SELECT AVG(punctuality_score) as avg_punctuality, " +
-                "AVG(awareness_score) as avg_awareness " +
-                "FROM student_metrics WHERE student_id = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement statement = conn.prepareStatement(sql)) {
-
-            statement.setString(1, studentId);
-
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    // Lấy học sinh bằng ID
-                    return findById(studentId)
-                            .map(student -> {
-                                StudentAttendanceData data = new StudentAttendanceData(student);
-                                try {
-                                    int avgPunctuality = (int) Math.round(resultSet.getDouble("avg_punctuality"));
-                                    int avgAwareness = (int) Math.round(resultSet.getDouble("avg_awareness"));
-
-                                    data.setPunctualityRating(avgPunctuality);
-                                    data.setDiligenceRating(avgAwareness);
-                                } catch (SQLException e) {
-                                    LOGGER.log(Level.SEVERE, "Lỗi khi đọc dữ liệu từ ResultSet", e);
-                                }
-                                return data;
-                            })
-                            .orElse(null);
-                }
+        try {
+            // SUM(sum) / SUM(count) trên rollup theo tháng, không quét toàn bộ student_metrics
+            Double[] averages = metricsRollups().getAverageScores(studentId);
+            if (averages == null) {
+                return null;
             }
+            return findById(studentId)
+                    .map(student -> {
+                        StudentAttendanceData data = new StudentAttendanceData(student);
+                        data.setPunctualityRating(averages[0] != null ? (int) Math.round(averages[0]) : 0);
+                        data.setDiligenceRating(averages[1] != null ? (int) Math.round(averages[1]) : 0);
+                        return data;
+                    })
+                    .orElse(null);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Lỗi khi lấy điểm trung bình cho học sinh " + studentId, e);
         }
@@ -998,27 +1210,12 @@ public class StudentDAO {
         }
 
         Student student = studentOptional.get();
-        String sql = "SELECT student_id, record_date, awareness_score, punctuality_score, notes " +
-                "FROM student_metrics " +
-                "WHERE student_id = ? AND course_id = ? " +
-                "ORDER BY record_date DESC";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement statement = conn.prepareStatement(sql)) {
-
-            statement.setString(1, studentId);
-            statement.setString(2, classId);
-
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    StudentAttendanceData data = new StudentAttendanceData(student);
-
-                    data.setPunctualityRating((int) Math.round(resultSet.getDouble("punctuality_score")));
-                    data.setDiligenceRating((int) Math.round(resultSet.getDouble("awareness_score")));
-                    data.setStudentSessionNotes(resultSet.getString("notes"));
-
-                    metricsHistory.add(data);
-                }
+        try {
+            // Một điểm mỗi ngày (giá trị cuối cùng trong ngày), đọc từ rollup theo ngày
+            for (StudentMetricsRollupDAO.MetricsRollup day : metricsRollups().getDailyHistory(studentId, classId)) {
+                StudentAttendanceData data = new StudentAttendanceData(student);
+                applyLatestMetrics(data, day);
+                metricsHistory.add(data);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Lỗi khi lấy lịch sử điểm cho học sinh " +
@@ -1,5 +1,6 @@
 package src.dao.Person;
 
+import src.dao.Report.ReportSnapshotDAO;
 import src.model.person.Teacher;
 import src.utils.DatabaseConnection; // Still needed for the public wrapper methods
 import src.model.person.Student; // Added import just in case for future dependencies or in extract method
@@ -436,9 +437,11 @@ public class TeacherDAO {
             conn.setAutoCommit(false); // Start transaction
             boolean success = internalInsert(conn, teacher);
             if (success) {
-                conn.commit(); // Commit if successful
+                // Danh sách giáo viên (tên) xuất hiện trong mọi kỳ của thống kê giảng dạy
+                ReportSnapshotDAO.invalidateAll(conn, ReportSnapshotDAO.TEACHER_REPORT_TYPES);
+                DatabaseConnection.commit(conn); // Commit if successful
             } else {
-                conn.rollback(); // Rollback if failed
+                DatabaseConnection.rollback(conn); // Rollback if failed
             }
             return success;
         } catch (SQLException e) {
@@ -459,9 +462,11 @@ public class TeacherDAO {
             conn.setAutoCommit(false); // Start transaction
             boolean success = internalUpdate(conn, teacher);
             if (success) {
-                conn.commit(); // Commit if successful
+                // Danh sách giáo viên (tên) xuất hiện trong mọi kỳ của thống kê giảng dạy
+                ReportSnapshotDAO.invalidateAll(conn, ReportSnapshotDAO.TEACHER_REPORT_TYPES);
+                DatabaseConnection.commit(conn); // Commit if successful
             } else {
-                conn.rollback(); // Rollback if failed
+                DatabaseConnection.rollback(conn); // Rollback if failed
             }
             return success;
         } catch (SQLException e) {
@@ -484,9 +489,11 @@ public class TeacherDAO {
             // Gọi internalDelete, truyền teacherRecordId (chính là teachers.id)
             boolean success = internalDelete(conn, id);
             if (success) {
-                conn.commit(); // Commit if successful
+                // Danh sách giáo viên (tên) xuất hiện trong mọi kỳ của thống kê giảng dạy
+                ReportSnapshotDAO.invalidateAll(conn, ReportSnapshotDAO.TEACHER_REPORT_TYPES);
+                DatabaseConnection.commit(conn); // Commit if successful
             } else {
-                conn.rollback(); // Rollback if failed
+                DatabaseConnection.rollback(conn); // Rollback if failed
             }
             return success;
         } catch (SQLException e) {
@@ -0,0 +1,135 @@
+package src.dao.Report;
+
+import src.model.attendance.StudentAttendanceData;
+import src.model.details.DetailsModel;
+import src.model.details.DetailsModel.StudentGradeModel;
+import src.model.person.Student;
+import src.model.report.ReportCardData;
+import src.utils.DatabaseConnection;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data Access Object for per-student report cards.
+ * <p>
+ * One query per course reads the roster together with the course grade (details), the attendance counts
+ * (attendance_monthly_counters), the punctuality / awareness averages (student_metrics_monthly) and the homework
+ * results, each pre-aggregated per student in a derived table. A bulk run therefore costs one query per course.
+ */
+public class ReportCardDAO {
+
+    private static final String REPORT_CARD_QUERY = "SELECT s.id, s.name, s.gender, s.contact_number, s.birthday, s.email, " +
+            "COALESCE(ac.present, 0) AS present, COALESCE(ac.excused, 0) AS excused, " +
+            "COALESCE(ac.unexcused, 0) AS unexcused, COALESCE(ac.total, 0) AS total, " +
+            "mm.punctuality_avg, mm.awareness_avg, hw.avg_grade AS homework_avg, " +
+            "COALESCE(hw.submitted, 0) AS submitted, COALESCE(hw.assigned, 0) AS assigned, " +
+            "dg.avg_grade AS course_grade, COALESCE(dg.grade_count, 0) AS grade_count " +
+            "FROM enrollment e JOIN students s ON s.id = e.student_id " +
+            "LEFT JOIN (SELECT student_id, SUM(present_count) AS present, SUM(excused_count) AS excused, " +
+            "SUM(unexcused_count) AS unexcused, SUM(total_count) AS total " +
+            "FROM attendance_monthly_counters WHERE course_id = ? GROUP BY student_id) ac ON ac.student_id = s.id " +
+            "LEFT JOIN (SELECT student_id, SUM(punctuality_sum) / NULLIF(SUM(punctuality_count), 0) AS punctuality_avg, " +
+            "SUM(awareness_sum) / NULLIF(SUM(awareness_count), 0) AS awareness_avg " +
+            "FROM student_metrics_monthly WHERE course_id = ? GROUP BY student_id) mm ON mm.student_id = s.id " +
+            "LEFT JOIN (SELECT shs.student_id, AVG(CASE WHEN shs.is_submitted = 1 THEN shs.grade END) AS avg_grade, " +
+            "SUM(CASE WHEN shs.is_submitted = 1 THEN 1 ELSE 0 END) AS submitted, COUNT(*) AS assigned " +
+            "FROM student_homework_submissions shs JOIN homework h ON h.homework_id = shs.homework_id " +
+            "WHERE h.course_id = ? GROUP BY shs.student_id) hw ON hw.student_id = s.id " +
+            "LEFT JOIN (SELECT d.student_id, AVG(d.grade) AS avg_grade, COUNT(d.grade) AS grade_count " +
+            "FROM details d WHERE d.course_name = ? GROUP BY d.student_id) dg ON dg.student_id = s.id " +
+            "WHERE e.course_id = ? " +
+            "ORDER BY s.name, s.id";
+
+    public ReportCardDAO() {
+    }
+
+    // --- Methods taking the caller's connection ---
+
+    /**
+     * Lists the courses that report cards are printed for.
+     *
+     * @param conn the active database connection
+     * @return course_id -> course_name, ordered by name
+     * @throws SQLException if a database access error occurs
+     */
+    public Map<String, String> getCourses(Connection conn) throws SQLException {
+        Map<String, String> courses = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT course_id, course_name FROM courses ORDER BY course_name, course_id");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                courses.put(rs.getString("course_id"), rs.getString("course_name"));
+            }
+        }
+        return courses;
+    }
+
+    /**
+     * Reads the report cards of every student enrolled in a course.
+     *
+     * @param conn       the active database connection
+     * @param courseId   Course ID
+     * @param courseName Course name (grades in details are keyed by course name)
+     * @return Report cards ordered by student name
+     * @throws SQLException if a database access error occurs
+     */
+    public List<ReportCardData> getReportCards(Connection conn, String courseId, String courseName) throws SQLException {
+        List<ReportCardData> cards = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(REPORT_CARD_QUERY)) {
+            stmt.setString(1, courseId);
+            stmt.setString(2, courseId);
+            stmt.setString(3, courseId);
+            stmt.setString(4, courseName);
+            stmt.setString(5, courseId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                int stt = 1;
+                while (rs.next()) {
+                    cards.add(extractReportCard(rs, stt++));
+                }
+            }
+        }
+        return cards;
+    }
+
+    private ReportCardData extractReportCard(ResultSet rs, int stt) throws SQLException {
+        Student student = new Student(rs.getString("id"), rs.getString("name"), rs.getString("gender"),
+                rs.getString("contact_number"), rs.getString("birthday"), rs.getString("email"));
+
+        StudentGradeModel grade = null;
+        int gradeCount = rs.getInt("grade_count");
+        if (gradeCount > 0) {
+            double courseGrade = rs.getDouble("course_grade");
+            grade = new StudentGradeModel(stt, student.getName(), student.getId(), courseGrade,
+                    DetailsModel.determineGradeLevel(courseGrade), courseGrade >= 5.0,
+                    "Điểm trung bình của " + gradeCount + " buổi");
+        }
+
+        StudentAttendanceData metrics = new StudentAttendanceData(student);
+        metrics.setPunctualityRating((int) Math.round(rs.getDouble("punctuality_avg")));
+        metrics.setDiligenceRating((int) Math.round(rs.getDouble("awareness_avg")));
+        metrics.setHomeworkGrade(rs.getDouble("homework_avg"));
+        metrics.updateFinalScore();
+
+        return new ReportCardData(grade, metrics, rs.getString("birthday"),
+                rs.getInt("present"), rs.getInt("excused"), rs.getInt("unexcused"), rs.getInt("total"),
+                rs.getInt("submitted"), rs.getInt("assigned"));
+    }
+
+    // --- Public Wrapper Methods ---
+
+    public Map<String, String> getCourses() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getCourses(conn);
+        }
+    }
+
+    public List<ReportCardData> getReportCards(String courseId, String courseName) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getReportCards(conn, courseId, courseName);
+        }
+    }
+}
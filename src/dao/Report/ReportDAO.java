@@ -7,9 +7,11 @@ import java.sql.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -55,12 +57,52 @@ public class ReportDAO {
         }
     }
 
+    private ReportSnapshotDAO reportSnapshotDAO;
+
     public ReportDAO() {
         LOGGER.info("DAO: ReportDAO instance created.");
     }
 
+    public void setReportSnapshotDAO(ReportSnapshotDAO reportSnapshotDAO) {
+        this.reportSnapshotDAO = reportSnapshotDAO;
+    }
+
+    private ReportSnapshotDAO snapshots() {
+        if (reportSnapshotDAO == null) {
+            reportSnapshotDAO = new ReportSnapshotDAO();
+        }
+        return reportSnapshotDAO;
+    }
+
+    /**
+     * Per-course aggregate behind the class report. Parameters: (from, to) for class_sessions.session_date,
+     * homework.assigned_date and student_metrics.record_date, as ISO date strings. Also streamed by
+     * {@link ReportExportDAO#classReport(LocalDate, LocalDate)}.
+     * Không có điều kiện WHERE c.status.
+     */
+    static final String CLASS_REPORT_QUERY = "SELECT c.course_id, c.course_name, " +
+            "COUNT(DISTINCT cs.session_id) as sessions_held_in_period, " +
+            "c.total_sessions as course_total_sessions_planned, " +
+            "SUM(CASE WHEN a.present = 1 THEN 1 ELSE 0 END) as present_instances_count, " +
+            "COUNT(DISTINCT h.homework_id) as distinct_homework_items_assigned, " + // Số bài tập lớn (assignments) được giao
+            "SUM(CASE WHEN shs.is_submitted = 1 THEN 1 ELSE 0 END) as total_submission_instances, " + // Tổng số lượt nộp bài
+            "AVG(sm.awareness_score) as avg_awareness_score, " +
+            "AVG(sm.punctuality_score) as avg_punctuality_score, " +
+            "AVG(h.score) as avg_homework_grade_overall, " +
+            "COUNT(DISTINCT e.student_id) as enrolled_student_count " +
+            "FROM courses c " +
+            "LEFT JOIN class_sessions cs ON c.course_id = cs.course_id AND cs.session_date BETWEEN ? AND ? " +
+            "LEFT JOIN attendance a ON cs.session_id = a.session_id " +
+            "LEFT JOIN homework h ON c.course_id = h.course_id AND h.assigned_date BETWEEN ? AND ? " +
+            "LEFT JOIN student_homework_submissions shs ON h.homework_id = shs.homework_id " +
+            "LEFT JOIN student_metrics sm ON c.course_id = sm.course_id AND sm.record_date BETWEEN ? AND ? " +
+            "LEFT JOIN enrollment e ON c.course_id = e.course_id " +
+            "GROUP BY c.course_id, c.course_name, c.total_sessions " +
+            "ORDER BY c.course_name";
+
     /**
      * Retrieves class report data from the database for a given date range.
+     * Ranges that ended before the current month are read from (and saved to) report_snapshots.
      *
      * @param fromDate Starting date for the report period
      * @param toDate   Ending date for the report period
@@ -76,32 +118,49 @@ public class ReportDAO {
             return reportData;
         }
 
+        boolean closed = ReportSnapshotDAO.isClosed(toDate);
+        if (closed) {
+            Optional<List<String[]>> snapshot = snapshots().find(ReportSnapshotDAO.CLASS_REPORT, fromDate, toDate, "");
+            if (snapshot.isPresent()) {
+                for (String[] row : snapshot.get()) {
+                    reportData.add(new ClassReportData(Integer.parseInt(row[0]), row[1], row[2], row[3],
+                            Double.parseDouble(row[4]), Double.parseDouble(row[5]), row[6]));
+                }
+                LOGGER.info("DAO: getClassReportData served " + reportData.size() + " records from snapshot.");
+                return reportData;
+            }
+        }
+        long generation = closed ? snapshots().generation() : -1; // Đọc trước khi tính báo cáo
+
+        try {
+            reportData = queryClassReportData(fromDate, toDate);
+            if (closed) {
+                List<String[]> rows = new ArrayList<>();
+                for (ClassReportData data : reportData) {
+                    rows.add(new String[]{String.valueOf(data.getStt()), data.getClassName(), data.getAttendance(),
+                            data.getHomework(), String.valueOf(data.getAwareness()),
+                            String.valueOf(data.getPunctuality()), data.getHomeworkScore()});
+                }
+                snapshots().save(ReportSnapshotDAO.CLASS_REPORT, fromDate, toDate, "", rows, generation);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "DAO: SQLException retrieving class report data.", e);
+            e.printStackTrace();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "DAO: Unexpected Exception retrieving class report data.", e);
+            e.printStackTrace();
+        }
+
+        LOGGER.info("DAO: getClassReportData finished. Returning " + reportData.size() + " records.");
+        return reportData;
+    }
+
+    private List<ClassReportData> queryClassReportData(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        List<ClassReportData> reportData = new ArrayList<>();
         String fromDateStr = fromDate.format(DateTimeFormatter.ISO_LOCAL_DATE);
         String toDateStr = toDate.format(DateTimeFormatter.ISO_LOCAL_DATE);
         // LOGGER.info("DAO: Formatted fromDateStr: " + fromDateStr + ", toDateStr: " + toDateStr); // Log này có thể không cần thiết mỗi lần chạy
 
-        StringBuilder queryBuilder = new StringBuilder();
-        // Đổi tên alias cho các cột count để rõ ràng hơn trong SQL và khi đọc ResultSet
-        queryBuilder.append("SELECT c.course_id, c.course_name, ")
-                .append("COUNT(DISTINCT cs.session_id) as sessions_held_in_period, ")
-                .append("c.total_sessions as course_total_sessions_planned, ")
-                .append("SUM(CASE WHEN a.present = 1 THEN 1 ELSE 0 END) as present_instances_count, ")
-                // .append("COUNT(DISTINCT a.attendance_id) as total_attendance_records, ") // Có thể không cần nếu logic chính dựa trên present_instances_count
-                .append("COUNT(DISTINCT h.homework_id) as distinct_homework_items_assigned, ") // Số bài tập lớn (assignments) được giao
-                .append("SUM(CASE WHEN shs.is_submitted = 1 THEN 1 ELSE 0 END) as total_submission_instances, ") // Tổng số lượt nộp bài
-                .append("AVG(sm.awareness_score) as avg_awareness_score, ")
-                .append("AVG(sm.punctuality_score) as avg_punctuality_score, ")
-                .append("AVG(h.score) as avg_homework_grade_overall, ")
-                .append("COUNT(DISTINCT e.student_id) as enrolled_student_count ")
-                .append("FROM courses c ")
-                .append("LEFT JOIN class_sessions cs ON c.course_id = cs.course_id AND cs.session_date BETWEEN ? AND ? ")
-                .append("LEFT JOIN attendance a ON cs.session_id = a.session_id ")
-                .append("LEFT JOIN homework h ON c.course_id = h.course_id AND h.assigned_date BETWEEN ? AND ? ")
-                .append("LEFT JOIN student_homework_submissions shs ON h.homework_id = shs.homework_id ")
-                .append("LEFT JOIN student_metrics sm ON c.course_id = sm.course_id AND sm.record_date BETWEEN ? AND ? ")
-                .append("LEFT JOIN enrollment e ON c.course_id = e.course_id ");
-        // KHÔNG CÓ ĐIỀU KIỆN WHERE c.status
-
         List<Object> parameters = new ArrayList<>();
         parameters.add(fromDateStr); // cho cs.session_date
         parameters.add(toDateStr);
@@ -110,10 +169,7 @@ public class ReportDAO {
         parameters.add(fromDateStr); // cho sm.record_date
         parameters.add(toDateStr);
 
-        queryBuilder.append("GROUP BY c.course_id, c.course_name, c.total_sessions ")
-                .append("ORDER BY c.course_name");
-
-        String query = queryBuilder.toString();
+        String query = CLASS_REPORT_QUERY;
         //LOGGER.info("DAO: SQL Query: " + query); // Có thể comment lại nếu quá dài
         //LOGGER.info("DAO: Query parameters: " + parameters);
 
@@ -173,15 +229,7 @@ public class ReportDAO {
                     LOGGER.info("DAO: getClassReportData - ResultSet was empty. No data rows found for the given criteria.");
                 }
             }
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "DAO: SQLException retrieving class report data.", e);
-            e.printStackTrace();
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "DAO: Unexpected Exception retrieving class report data.", e);
-            e.printStackTrace();
         }
-
-        LOGGER.info("DAO: getClassReportData finished. Returning " + reportData.size() + " records.");
         return reportData;
     }
 
@@ -267,6 +315,16 @@ public class ReportDAO {
      * @throws SQLException Nếu có lỗi truy vấn.
      */
     public OverallHomeworkStats getOverallHomeworkSubmissionStats(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        boolean closed = ReportSnapshotDAO.isClosed(toDate);
+        if (closed) {
+            Optional<List<String[]>> snapshot = snapshots().find(ReportSnapshotDAO.HOMEWORK_SCORE, fromDate, toDate, "");
+            if (snapshot.isPresent() && !snapshot.get().isEmpty()) {
+                String[] row = snapshot.get().get(0);
+                return new OverallHomeworkStats(Double.parseDouble(row[0]), Integer.parseInt(row[1]));
+            }
+        }
+        long generation = closed ? snapshots().generation() : -1; // Đọc trước khi tính báo cáo
+
         double totalSumOfGrades = 0;
         int countOfGradedSubmissions = 0;
 
@@ -301,6 +359,10 @@ public class ReportDAO {
         }
         LOGGER.info(String.format("DAO: OverallHomeworkStats - Sum: %.2f, Count: %d for dates %s to %s",
                 totalSumOfGrades, countOfGradedSubmissions, fromDate, toDate));
+        if (closed) {
+            snapshots().save(ReportSnapshotDAO.HOMEWORK_SCORE, fromDate, toDate, "", Collections.singletonList(
+                    new String[]{String.valueOf(totalSumOfGrades), String.valueOf(countOfGradedSubmissions)}), generation);
+        }
         return new OverallHomeworkStats(totalSumOfGrades, countOfGradedSubmissions);
     }
 
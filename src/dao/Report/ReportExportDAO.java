@@ -0,0 +1,260 @@
+package src.dao.Report;
+
+import src.utils.DatabaseConnection;
+
+import java.io.IOException;
+import java.sql.*;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object that streams report rows to an export file.
+ * <p>
+ * Each export is described by an {@link ExportQuery} (column titles, a COUNT query for progress and the row
+ * query). {@link #stream(ExportQuery, RowHandler)} reads the rows with a MySQL streaming result set
+ * (forward-only, read-only, fetch size {@link Integer#MIN_VALUE}), so the driver hands over one row at a time and
+ * neither the DAO nor the driver holds the whole result. JDBC date/time values are converted to java.time.
+ */
+public class ReportExportDAO {
+    private static final Logger LOGGER = Logger.getLogger(ReportExportDAO.class.getName());
+
+    /**
+     * Receives the exported rows one by one.
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void accept(Object[] row) throws IOException;
+    }
+
+    /**
+     * Description of one export: titles, progress count query and row query with their parameters.
+     */
+    public static final class ExportQuery {
+        private final String name;
+        private final String title;
+        private final List<String> columns;
+        private final String countSql;
+        private final String selectSql;
+        private final List<Object> params;
+
+        public ExportQuery(String name, String title, List<String> columns, String countSql, String selectSql,
+                           List<Object> params) {
+            this.name = name;
+            this.title = title;
+            this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+            this.countSql = countSql;
+            this.selectSql = selectSql;
+            this.params = Collections.unmodifiableList(new ArrayList<>(params));
+        }
+
+        /** Short name used for file names and export_logs */
+        public String getName() { return name; }
+        /** Human-readable title (printed on PDF pages) */
+        public String getTitle() { return title; }
+        public List<String> getColumns() { return columns; }
+        public String getCountSql() { return countSql; }
+        public String getSelectSql() { return selectSql; }
+        public List<Object> getParams() { return params; }
+    }
+
+    // --- Export definitions ---
+
+    /**
+     * Class report (one row per course), same aggregate as the report screen.
+     */
+    public static ExportQuery classReport(LocalDate fromDate, LocalDate toDate) {
+        String from = fromDate.format(DateTimeFormatter.ISO_LOCAL_DATE);
+        String to = toDate.format(DateTimeFormatter.ISO_LOCAL_DATE);
+        String sql = "SELECT r.course_id, r.course_name, r.enrolled_student_count, r.sessions_held_in_period, " +
+                "r.course_total_sessions_planned, r.present_instances_count, r.distinct_homework_items_assigned, " +
+                "r.total_submission_instances, r.avg_homework_grade_overall, r.avg_awareness_score, r.avg_punctuality_score " +
+                "FROM (" + ReportDAO.CLASS_REPORT_QUERY + ") r";
+        return new ExportQuery("bao-cao-lop", "Báo cáo lớp học " + period(fromDate, toDate),
+                Arrays.asList("Mã lớp", "Tên lớp", "Số học viên", "Số buổi đã học", "Tổng số buổi", "Lượt có mặt",
+                        "Số bài tập", "Lượt nộp bài", "Điểm bài tập TB", "Điểm ý thức TB", "Điểm đúng giờ TB"),
+                "SELECT COUNT(*) FROM courses",
+                sql,
+                Arrays.asList(from, to, from, to, from, to));
+    }
+
+    /**
+     * Teaching statistics per teacher and day, read from the teacher_daily_teaching rollup.
+     *
+     * @param dbStatus class_sessions.status value to keep, or null for every status
+     */
+    public static ExportQuery teachingStatistics(LocalDate fromDate, LocalDate toDate, String dbStatus) {
+        String where = "WHERE r.day BETWEEN ? AND ? " + (dbStatus != null ? "AND r.status = ? " : "");
+        List<Object> params = new ArrayList<>(Arrays.asList(fromDate, toDate));
+        if (dbStatus != null) {
+            params.add(dbStatus);
+        }
+        String from = "FROM teachers t JOIN teacher_daily_teaching r ON r.teacher_id = t.id " + where;
+        return new ExportQuery("thong-ke-giang-day", "Thống kê giảng dạy " + period(fromDate, toDate),
+                Arrays.asList("Mã giáo viên", "Họ tên", "Ngày", "Số buổi", "Số giờ"),
+                "SELECT COUNT(*) FROM (SELECT 1 " + from + "GROUP BY t.id, r.day) x",
+                "SELECT t.id, t.name, r.day, SUM(r.session_count), SUM(r.whole_hours) " + from +
+                        "GROUP BY t.id, t.name, r.day ORDER BY t.name, r.day",
+                params);
+    }
+
+    /**
+     * Every student with contact and parent information.
+     */
+    public static ExportQuery studentList() {
+        return new ExportQuery("danh-sach-hoc-vien", "Danh sách học viên",
+                Arrays.asList("Mã học viên", "Họ tên", "Giới tính", "Ngày sinh", "Số điện thoại", "Email",
+                        "Phụ huynh", "SĐT phụ huynh"),
+                "SELECT COUNT(*) FROM students",
+                "SELECT s.id, s.name, s.gender, s.birthday, s.contact_number, s.email, s.Parent_Name, s.Parent_PhoneNumber " +
+                        "FROM students s ORDER BY s.name, s.id",
+                Collections.emptyList());
+    }
+
+    /**
+     * Attendance records of every session held in the date range.
+     */
+    public static ExportQuery attendanceHistory(LocalDate fromDate, LocalDate toDate) {
+        return attendanceHistory(fromDate, toDate, null);
+    }
+
+    /**
+     * Attendance records of the sessions held in the date range, ordered by session.
+     *
+     * @param courseId course to keep, or null for every course
+     */
+    public static ExportQuery attendanceHistory(LocalDate fromDate, LocalDate toDate, String courseId) {
+        String from = "FROM attendance a JOIN class_sessions cs ON cs.session_id = a.session_id " +
+                "LEFT JOIN students s ON s.id = a.student_id " +
+                "WHERE cs.session_date BETWEEN ? AND ? " + (courseId != null ? "AND cs.course_id = ? " : "");
+        List<Object> params = new ArrayList<>(Arrays.asList(fromDate, toDate));
+        if (courseId != null) {
+            params.add(courseId);
+        }
+        return new ExportQuery("lich-su-diem-danh", "Lịch sử điểm danh " + period(fromDate, toDate),
+                Arrays.asList("Ngày", "Mã lớp", "Tên lớp", "Buổi", "Mã học viên", "Họ tên", "Có mặt", "Có phép",
+                        "Trạng thái", "Giờ điểm danh", "Ghi chú"),
+                "SELECT COUNT(*) " + from,
+                "SELECT cs.session_date, cs.course_id, cs.course_name, cs.session_number, a.student_id, s.name, " +
+                        "CASE WHEN a.present = 1 THEN 'Có mặt' ELSE 'Vắng' END, " +
+                        "CASE WHEN a.has_permission = 1 THEN 'Có phép' ELSE '' END, " +
+                        "a.status, a.check_in_time, a.notes " + from +
+                        "ORDER BY cs.session_date, cs.course_id, cs.session_id, s.name",
+                params);
+    }
+
+    private static String period(LocalDate fromDate, LocalDate toDate) {
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+        return "(" + fromDate.format(format) + " - " + toDate.format(format) + ")";
+    }
+
+    public ReportExportDAO() {
+    }
+
+    // --- Methods taking the caller's connection ---
+
+    /**
+     * Counts the rows an export will produce (used for progress only).
+     *
+     * @param conn  the active database connection
+     * @param query export definition
+     * @return Number of rows
+     * @throws SQLException if a database access error occurs
+     */
+    long count(Connection conn, ExportQuery query) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(query.getCountSql())) {
+            // Truy vấn đếm dùng cùng tham số với truy vấn dữ liệu (đếm lớp không có tham số)
+            if (query.getCountSql().indexOf('?') >= 0) {
+                setParams(stmt, query.getParams());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }
+    }
+
+    /**
+     * Streams the rows of an export to the handler.
+     *
+     * @param conn    a connection used only by this call until it returns
+     * @param query   export definition
+     * @param handler receives each row; an exception from it stops the export
+     * @return Number of rows handed to the handler
+     * @throws SQLException if a database access error occurs
+     * @throws IOException  if the handler fails to write a row
+     */
+    long stream(Connection conn, ExportQuery query, RowHandler handler) throws SQLException, IOException {
+        long rows = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(query.getSelectSql(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            setParams(stmt, query.getParams());
+            try (ResultSet rs = stmt.executeQuery()) {
+                int columnCount = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    Object[] row = new Object[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        row[i] = toExportValue(rs.getObject(i + 1));
+                    }
+                    handler.accept(row);
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void setParams(PreparedStatement stmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            Object param = params.get(i);
+            if (param instanceof LocalDate) {
+                stmt.setDate(i + 1, Date.valueOf((LocalDate) param));
+            } else {
+                stmt.setObject(i + 1, param);
+            }
+        }
+    }
+
+    private static Object toExportValue(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).toLocalDate();
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime();
+        }
+        if (value instanceof Time) {
+            return ((Time) value).toLocalTime();
+        }
+        return value;
+    }
+
+    // --- Public Wrapper Methods ---
+
+    /**
+     * Counts the rows of an export using a new connection.
+     *
+     * @return Number of rows, or -1 if the count failed (progress is then indeterminate)
+     */
+    public long count(ExportQuery query) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return count(conn, query);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not count rows of export " + query.getName(), e);
+            return -1L;
+        }
+    }
+
+    /**
+     * Streams the rows of an export using a new connection.
+     *
+     * @see #stream(Connection, ExportQuery, RowHandler)
+     */
+    public long stream(ExportQuery query, RowHandler handler) throws SQLException, IOException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return stream(conn, query, handler);
+        }
+    }
+}
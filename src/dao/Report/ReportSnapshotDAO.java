@@ -0,0 +1,413 @@
+package src.dao.Report;
+
+import src.utils.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object for the report_snapshots table.
+ * <p>
+ * Stores the computed rows of a report for a closed period (one that ended before the current month), keyed by
+ * report type, period and filter. Closed periods are read back from here instead of being recomputed from the raw
+ * tables; the open period is always computed live.
+ * <p>
+ * Writers that change data of a past day call one of the static {@code invalidate...} methods inside their own
+ * transaction; only the snapshots whose period covers that day are dropped and get recomputed on the next read.
+ * The methods are static because several writers are created outside DaoManager.
+ * <p>
+ * The drop happens after the writer commits (see DatabaseConnection#afterCommit): it first bumps the generation
+ * counter in report_snapshot_generation, then deletes the snapshots. A reader takes {@link #generation()} before
+ * computing a report and {@link #save} stores the result only if the generation has not moved since, so a report
+ * computed from data that a concurrent writer was replacing is never stored.
+ */
+public class ReportSnapshotDAO {
+    private static final Logger LOGGER = Logger.getLogger(ReportSnapshotDAO.class.getName());
+
+    // Report types
+    public static final String CLASS_REPORT = "CLASS_REPORT";
+    public static final String HOMEWORK_SCORE = "HOMEWORK_SCORE";
+    public static final String TEACHER_MONTHLY = "TEACHER_MONTHLY";
+    public static final String TEACHER_QUARTERLY = "TEACHER_QUARTERLY";
+    public static final String TEACHER_YEARLY = "TEACHER_YEARLY";
+    public static final String TEACHER_YEARLY_SUMMARY = "TEACHER_YEARLY_SUMMARY";
+
+    // Báo cáo lớp học phụ thuộc vào buổi học, điểm danh, bài tập và điểm đánh giá học viên
+    public static final List<String> CLASS_REPORT_TYPES = Collections.unmodifiableList(
+            Arrays.asList(CLASS_REPORT, HOMEWORK_SCORE));
+    public static final List<String> TEACHER_REPORT_TYPES = Collections.unmodifiableList(
+            Arrays.asList(TEACHER_MONTHLY, TEACHER_QUARTERLY, TEACHER_YEARLY, TEACHER_YEARLY_SUMMARY));
+    public static final List<String> ALL_TYPES = Collections.unmodifiableList(
+            Arrays.asList(CLASS_REPORT, HOMEWORK_SCORE,
+                    TEACHER_MONTHLY, TEACHER_QUARTERLY, TEACHER_YEARLY, TEACHER_YEARLY_SUMMARY));
+
+    public ReportSnapshotDAO() {
+    }
+
+    /**
+     * A period is closed once it ended before the first day of the current month.
+     *
+     * @param periodEnd Last day of the period (inclusive)
+     * @return true if snapshots may be stored and read for the period
+     */
+    public static boolean isClosed(LocalDate periodEnd) {
+        return periodEnd != null && periodEnd.isBefore(LocalDate.now().withDayOfMonth(1));
+    }
+
+    // --- Snapshot reads and writes ---
+
+    /**
+     * Reads the invalidation generation. Call it before computing a report that will be passed to {@link #save}.
+     *
+     * @return The current generation, or -1 if it could not be read (save then stores nothing)
+     */
+    public long generation() {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT generation FROM report_snapshot_generation WHERE id = 1");
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not read the report snapshot generation.", e);
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the stored rows of a report.
+     *
+     * @param type        Report type
+     * @param periodStart First day of the period
+     * @param periodEnd   Last day of the period
+     * @param filterKey   Filter the report was computed with ("" for none)
+     * @return The stored rows, or empty if there is no snapshot (or it could not be read)
+     */
+    public Optional<List<String[]>> find(String type, LocalDate periodStart, LocalDate periodEnd, String filterKey) {
+        String sql = "SELECT payload FROM report_snapshots " +
+                "WHERE report_type = ? AND period_start = ? AND period_end = ? AND filter_key = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, type);
+            stmt.setDate(2, Date.valueOf(periodStart));
+            stmt.setDate(3, Date.valueOf(periodEnd));
+            stmt.setString(4, filterKey != null ? filterKey : "");
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(decode(rs.getString("payload")));
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not read report snapshot " + type + " " + periodStart + ".." + periodEnd, e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Stores (or replaces) the rows of a report for a closed period. Open periods are ignored, and so is a report
+     * computed while snapshots were being invalidated (the generation moved since it was read).
+     *
+     * @param type        Report type
+     * @param periodStart First day of the period
+     * @param periodEnd   Last day of the period
+     * @param filterKey   Filter the report was computed with ("" for none)
+     * @param rows        Report rows, one String[] per row
+     * @param generation  {@link #generation()} read before the report was computed
+     */
+    public void save(String type, LocalDate periodStart, LocalDate periodEnd, String filterKey, List<String[]> rows,
+                     long generation) {
+        if (!isClosed(periodEnd) || generation < 0) {
+            return;
+        }
+        // Chỉ ghi khi chưa có lần invalidate nào kể từ lúc đọc generation (kiểm tra và ghi trong cùng một lệnh)
+        String sql = "INSERT INTO report_snapshots (report_type, period_start, period_end, filter_key, payload) " +
+                "SELECT ?, ?, ?, ?, ? FROM report_snapshot_generation WHERE id = 1 AND generation = ? " +
+                "ON DUPLICATE KEY UPDATE payload = VALUES(payload), created_at = CURRENT_TIMESTAMP";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, type);
+            stmt.setDate(2, Date.valueOf(periodStart));
+            stmt.setDate(3, Date.valueOf(periodEnd));
+            stmt.setString(4, filterKey != null ? filterKey : "");
+            stmt.setString(5, encode(rows));
+            stmt.setLong(6, generation);
+            if (stmt.executeUpdate() == 0) {
+                LOGGER.log(Level.FINE, "Report snapshot {0} {1}..{2} not saved: invalidated while it was computed.",
+                        new Object[]{type, periodStart, periodEnd});
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not save report snapshot " + type + " " + periodStart + ".." + periodEnd, e);
+        }
+    }
+
+    // --- Invalidation (static, taking the writer's connection) ---
+
+    /**
+     * Drops the snapshots of the given types whose period covers one of the days, once the writer's transaction
+     * has committed.
+     *
+     * @param conn  the writer's connection
+     * @param days  Days whose data changed
+     * @param types Report types that depend on the changed data
+     */
+    public static void invalidateDays(Connection conn, Collection<LocalDate> days, Collection<String> types) {
+        Set<LocalDate> distinctDays = new HashSet<>();
+        for (LocalDate day : days) {
+            if (day != null && isClosed(day)) {
+                distinctDays.add(day);
+            }
+        }
+        if (distinctDays.isEmpty() || types.isEmpty()) {
+            return;
+        }
+        List<String> typeList = new ArrayList<>(types);
+        DatabaseConnection.afterCommit(conn, () -> deleteDays(distinctDays, typeList));
+    }
+
+    private static void deleteDays(Set<LocalDate> days, List<String> types) {
+        String sql = "DELETE FROM report_snapshots WHERE report_type IN (" + placeholders(types.size()) + ") " +
+                "AND period_start <= ? AND period_end >= ?";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            bumpGeneration(conn);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (LocalDate day : days) {
+                    int index = setTypes(stmt, types);
+                    stmt.setDate(index++, Date.valueOf(day));
+                    stmt.setDate(index, Date.valueOf(day));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not invalidate report snapshots for days " + days, e);
+        }
+    }
+
+    // Chạy trước khi xóa snapshot: báo cáo nào đang được tính sẽ không được lưu đè lên.
+    // Lỗi chỉ được ghi log để việc xóa snapshot vẫn diễn ra.
+    private static void bumpGeneration(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE report_snapshot_generation SET generation = generation + 1 WHERE id = 1")) {
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not bump the report snapshot generation.", e);
+        }
+    }
+
+    /**
+     * Drops the snapshots of the given types whose period covers the date of one of the class sessions.
+     *
+     * @param conn       the writer's connection
+     * @param sessionIds session_id values whose data changed
+     * @param types      Report types that depend on the changed data
+     */
+    public static void invalidateSessions(Connection conn, Collection<String> sessionIds, Collection<String> types) {
+        invalidateByDateQuery(conn, "SELECT DISTINCT session_date FROM class_sessions WHERE session_id IN ",
+                sessionIds, types);
+    }
+
+    /**
+     * Drops the snapshots of the given types whose period covers the session date of one of the attendance rows.
+     * Call it before deleting (or moving) the rows, while they still point at their session.
+     *
+     * @param conn          the writer's connection
+     * @param attendanceIds attendance_id values about to change
+     * @param types         Report types that depend on the changed data
+     */
+    public static void invalidateAttendance(Connection conn, Collection<String> attendanceIds, Collection<String> types) {
+        invalidateByDateQuery(conn, "SELECT DISTINCT cs.session_date FROM attendance a " +
+                "JOIN class_sessions cs ON cs.session_id = a.session_id WHERE a.attendance_id IN ", attendanceIds, types);
+    }
+
+    /**
+     * Drops the snapshots of the given types whose period covers the assigned date of one of the homework items.
+     *
+     * @param conn        the writer's connection
+     * @param homeworkIds homework_id values whose data (or submissions) changed
+     * @param types       Report types that depend on the changed data
+     */
+    public static void invalidateHomework(Connection conn, Collection<String> homeworkIds, Collection<String> types) {
+        invalidateByDateQuery(conn, "SELECT DISTINCT assigned_date FROM homework WHERE homework_id IN ",
+                homeworkIds, types);
+    }
+
+    /**
+     * Drops every snapshot of the given types, for changes without a date (course or teacher names, enrollment),
+     * once the writer's transaction has committed.
+     *
+     * @param conn  the writer's connection
+     * @param types Report types that depend on the changed data
+     */
+    public static void invalidateAll(Connection conn, Collection<String> types) {
+        if (types.isEmpty()) {
+            return;
+        }
+        List<String> typeList = new ArrayList<>(types);
+        DatabaseConnection.afterCommit(conn, () -> invalidateAll(typeList));
+    }
+
+    /**
+     * Drops every snapshot of the given types now, on a connection of its own (for callers that already committed).
+     */
+    public static void invalidateAll(Collection<String> types) {
+        if (types.isEmpty()) {
+            return;
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            bumpGeneration(conn);
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "DELETE FROM report_snapshots WHERE report_type IN (" + placeholders(types.size()) + ")")) {
+                setTypes(stmt, types);
+                stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not invalidate report snapshots of types " + types, e);
+        }
+    }
+
+    /**
+     * Same as {@link #invalidateHomework(Connection, Collection, Collection)} on a connection of its own.
+     */
+    public static void invalidateHomework(Collection<String> homeworkIds, Collection<String> types) {
+        if (homeworkIds.isEmpty()) {
+            return;
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            invalidateHomework(conn, homeworkIds, types);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not invalidate report snapshots of homework " + homeworkIds, e);
+        }
+    }
+
+    private static void invalidateByDateQuery(Connection conn, String dateQuery, Collection<String> ids,
+                                              Collection<String> types) {
+        Set<String> distinctIds = new HashSet<>();
+        for (String id : ids) {
+            if (id != null && !id.trim().isEmpty()) {
+                distinctIds.add(id);
+            }
+        }
+        if (distinctIds.isEmpty() || types.isEmpty()) {
+            return;
+        }
+        List<LocalDate> days = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(dateQuery + "(" + placeholders(distinctIds.size()) + ")")) {
+            int index = 1;
+            for (String id : distinctIds) {
+                stmt.setString(index++, id);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Date day = rs.getDate(1);
+                    if (day != null) {
+                        days.add(day.toLocalDate());
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not read the dates of changed rows; invalidating all " + types, e);
+            invalidateAll(conn, types);
+            return;
+        }
+        invalidateDays(conn, days, types);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static int setTypes(PreparedStatement stmt, Collection<String> types) throws SQLException {
+        int index = 1;
+        for (String type : types) {
+            stmt.setString(index++, type);
+        }
+        return index;
+    }
+
+    // --- Payload encoding: one line per row, tab-separated fields, backslash escapes ---
+
+    static String encode(List<String[]> rows) {
+        StringBuilder sb = new StringBuilder();
+        for (String[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    sb.append('\t');
+                }
+                String value = row[i];
+                if (value == null) {
+                    sb.append("\\0");
+                    continue;
+                }
+                for (int j = 0; j < value.length(); j++) {
+                    char c = value.charAt(j);
+                    switch (c) {
+                        case '\\': sb.append("\\\\"); break;
+                        case '\t': sb.append("\\t"); break;
+                        case '\n': sb.append("\\n"); break;
+                        case '\r': sb.append("\\r"); break;
+                        default: sb.append(c);
+                    }
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    static List<String[]> decode(String payload) {
+        List<String[]> rows = new ArrayList<>();
+        if (payload == null || payload.isEmpty()) {
+            return rows;
+        }
+        for (String line : payload.split("\n", -1)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\t", -1);
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = unescape(fields[i]);
+            }
+            rows.add(fields);
+        }
+        return rows;
+    }
+
+    private static String unescape(String field) {
+        if ("\\0".equals(field)) {
+            return null;
+        }
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder sb = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 1 < field.length()) {
+                char next = field.charAt(++i);
+                switch (next) {
+                    case 't': sb.append('\t'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    default: sb.append(next);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -3,6 +3,7 @@ package src.dao.Report;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import src.model.teaching.monthly.MonthlyTeachingStatisticsModel.TeacherMonthlyStatistics; // Make sure this import is correct
+import src.model.teaching.TeachingStatisticsFilter;
 import src.utils.DatabaseConnection; // Assuming DatabaseConnection is in src.utils package
 
 import java.sql.Connection;
@@ -11,8 +12,12 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,6 +26,8 @@ public class TeacherMonthlyStatisticsDAO {
 
     private static final Logger LOGGER = Logger.getLogger(TeacherMonthlyStatisticsDAO.class.getName());
 
+    private ReportSnapshotDAO reportSnapshotDAO;
+
     /**
      * Constructor.
      */
@@ -28,38 +35,128 @@ public class TeacherMonthlyStatisticsDAO {
         // Constructor is empty if no dependencies are injected
     }
 
+    public void setReportSnapshotDAO(ReportSnapshotDAO reportSnapshotDAO) {
+        this.reportSnapshotDAO = reportSnapshotDAO;
+    }
+
+    private ReportSnapshotDAO snapshots() {
+        if (reportSnapshotDAO == null) {
+            reportSnapshotDAO = new ReportSnapshotDAO();
+        }
+        return reportSnapshotDAO;
+    }
+
     /**
      * Fetches monthly teaching statistics for all teachers within a date range.
      * Assumes fromDate and toDate are calculated to represent the start and end
      * of the desired period (e.g., start and end of a month).
+     * When the range covers whole months, every month that ended before the current one is read from
+     * report_snapshots (computed and saved on first use); only the remaining open months are queried.
      * @param fromDate The start date of the range (inclusive).
      * @param toDate The end date of the range (inclusive).
      * @param status The status to filter by ("Tất cả" for all, or specific status).
      * @return An ObservableList of TeacherMonthlyStatistics, or an empty list if none found or an error occurs.
      */
     public ObservableList<TeacherMonthlyStatistics> getTeachingStatistics(LocalDate fromDate, LocalDate toDate, String status) { // Removed throws SQLException
-        ObservableList<TeacherMonthlyStatistics> statistics = FXCollections.observableArrayList();
-
         if (fromDate == null || toDate == null) {
             LOGGER.log(Level.WARNING, "Attempted to fetch monthly teaching statistics with null date range. fromDate: " + fromDate + ", toDate: " + toDate);
-            return statistics; // Return empty list for invalid date range
+            return FXCollections.observableArrayList(); // Return empty list for invalid date range
+        }
+
+        try {
+            boolean wholeMonths = fromDate.getDayOfMonth() == 1
+                    && toDate.equals(YearMonth.from(toDate).atEndOfMonth()) && !toDate.isBefore(fromDate);
+            if (!wholeMonths) {
+                return FXCollections.observableArrayList(queryStatistics(fromDate, toDate, status));
+            }
+
+            List<List<TeacherMonthlyStatistics>> parts = new ArrayList<>();
+            YearMonth month = YearMonth.from(fromDate);
+            YearMonth lastMonth = YearMonth.from(toDate);
+            while (!month.isAfter(lastMonth) && ReportSnapshotDAO.isClosed(month.atEndOfMonth())) {
+                parts.add(closedMonthStatistics(month, status));
+                month = month.plusMonths(1);
+            }
+            if (!month.isAfter(lastMonth)) {
+                // Các tháng còn mở (tháng hiện tại trở đi) luôn được tính trực tiếp trong một truy vấn
+                parts.add(queryStatistics(month.atDay(1), toDate, status));
+            }
+            return parts.size() == 1 ? FXCollections.observableArrayList(parts.get(0)) : merge(parts);
+
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error fetching monthly teaching statistics.", e);
+            // Return empty list on error
+            return FXCollections.observableArrayList();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Unexpected error fetching monthly teaching statistics.", e);
+            // Return empty list on error
+            return FXCollections.observableArrayList();
+        }
+    }
+
+    private List<TeacherMonthlyStatistics> closedMonthStatistics(YearMonth month, String status) throws SQLException {
+        LocalDate monthStart = month.atDay(1);
+        LocalDate monthEnd = month.atEndOfMonth();
+        String filterKey = statusFilterKey(status);
+
+        Optional<List<String[]>> snapshot = snapshots().find(ReportSnapshotDAO.TEACHER_MONTHLY, monthStart, monthEnd, filterKey);
+        List<TeacherMonthlyStatistics> statistics = new ArrayList<>();
+        if (snapshot.isPresent()) {
+            int stt = 1;
+            for (String[] row : snapshot.get()) {
+                statistics.add(new TeacherMonthlyStatistics(stt++, row[0], row[1],
+                        Integer.parseInt(row[2]), Double.parseDouble(row[3])));
+            }
+            return statistics;
+        }
+
+        long generation = snapshots().generation(); // Đọc trước khi tính báo cáo
+        statistics = queryStatistics(monthStart, monthEnd, status);
+        List<String[]> rows = new ArrayList<>();
+        for (TeacherMonthlyStatistics stats : statistics) {
+            rows.add(new String[]{stats.getTeacherId(), stats.getTeacherName(),
+                    String.valueOf(stats.getSessions()), String.valueOf(stats.getHours())});
         }
+        snapshots().save(ReportSnapshotDAO.TEACHER_MONTHLY, monthStart, monthEnd, filterKey, rows, generation);
+        return statistics;
+    }
+
+    // Cộng dồn số buổi và số giờ của từng giáo viên qua các tháng, giữ thứ tự xuất hiện (theo tên)
+    private ObservableList<TeacherMonthlyStatistics> merge(List<List<TeacherMonthlyStatistics>> parts) {
+        Map<String, TeacherMonthlyStatistics> totals = new LinkedHashMap<>();
+        for (List<TeacherMonthlyStatistics> part : parts) {
+            for (TeacherMonthlyStatistics stats : part) {
+                TeacherMonthlyStatistics previous = totals.get(stats.getTeacherId());
+                if (previous == null) {
+                    totals.put(stats.getTeacherId(), stats);
+                } else {
+                    totals.put(stats.getTeacherId(), new TeacherMonthlyStatistics(0, stats.getTeacherId(),
+                            stats.getTeacherName(), previous.getSessions() + stats.getSessions(),
+                            previous.getHours() + stats.getHours()));
+                }
+            }
+        }
+        ObservableList<TeacherMonthlyStatistics> statistics = FXCollections.observableArrayList();
+        int stt = 1;
+        for (TeacherMonthlyStatistics stats : totals.values()) {
+            statistics.add(new TeacherMonthlyStatistics(stt++, stats.getTeacherId(), stats.getTeacherName(),
+                    stats.getSessions(), stats.getHours()));
+        }
+        return statistics;
+    }
+
+    private List<TeacherMonthlyStatistics> queryStatistics(LocalDate fromDate, LocalDate toDate, String status) throws SQLException {
+        List<TeacherMonthlyStatistics> statistics = new ArrayList<>();
 
         // Build the query with correct table names, join condition, and duration calculation
         StringBuilder queryBuilder = new StringBuilder();
         queryBuilder.append("SELECT t.id AS teacher_id, t.name AS teacher_name, "); // Select id and name from teachers
-        queryBuilder.append("COUNT(cs.session_id) as session_count, "); // Use class_sessions
-        // Calculate duration from start_time and end_time.
-        // IMPORTANT: ADJUST THE DURATION CALCULATION BASED ON YOUR DATABASE SYSTEM
-        // Example for MySQL: TIMESTAMPDIFF(MINUTE, cs.start_time, cs.end_time) / 60.0
-        // Example for PostgreSQL: EXTRACT(EPOCH FROM (cs.end_time - cs.start_time)) / 3600.0
-        // Using ChronoUnit.MINUTES in Java after fetching might be more portable
-        // but aggregating in SQL is usually more efficient.
-        // Assuming MySQL and calculating in hours as a DOUBLE:
-        queryBuilder.append("COALESCE(SUM(TIMESTAMPDIFF(MINUTE, cs.start_time, cs.end_time) / 60.0), 0.0) AS total_hours "); // Calculate duration in hours, use COALESCE for teachers with no sessions
+        queryBuilder.append("COALESCE(SUM(r.session_count), 0) as session_count, "); // Read the teacher_daily_teaching rollup
+        // total_minutes is the summed TIMESTAMPDIFF(MINUTE, start_time, end_time) of the teacher's sessions that day
+        queryBuilder.append("COALESCE(SUM(r.total_minutes) / 60.0, 0.0) AS total_hours "); // Duration in hours, use COALESCE for teachers with no sessions
         queryBuilder.append("FROM teachers t ");
-        queryBuilder.append("LEFT JOIN class_sessions cs ON t.name = cs.teacher_name "); // Correct join condition based on schema
-        queryBuilder.append("AND cs.session_date BETWEEN ? AND ? "); // Filter by date range in the JOIN clause for LEFT JOIN to work correctly
+        queryBuilder.append("LEFT JOIN teacher_daily_teaching r ON r.teacher_id = t.id "); // Join on teacher ID (primary key teacher_id, day, status)
+        queryBuilder.append("AND r.day BETWEEN ? AND ? "); // Filter by date range in the JOIN clause for LEFT JOIN to work correctly
 
         List<Object> params = new ArrayList<>();
         params.add(Date.valueOf(fromDate)); // Convert LocalDate to java.sql.Date
@@ -67,9 +164,9 @@ public class TeacherMonthlyStatisticsDAO {
 
         // Add status filter if not "Tất cả"
         if (status != null && !status.equals("Tất cả")) {
-            String dbStatus = mapStatusToDbValue(status);
+            String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
             if (dbStatus != null) {
-                queryBuilder.append("AND cs.status = ? "); // Assuming status column in class_sessions
+                queryBuilder.append("AND r.status = ? "); // Rollup rows are kept per class_sessions.status
                 params.add(dbStatus);
             } else {
                 LOGGER.log(Level.WARNING, "Attempted to filter by unmapped status: " + status);
@@ -122,37 +219,17 @@ public class TeacherMonthlyStatisticsDAO {
             // so no need for a separate query to fetch all teachers if the initial result is empty.
             // The original code's logic to fetch all teachers if `statistics.isEmpty()`
             // was necessary due to the JOIN, but LEFT JOIN makes it unnecessary.
-
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error fetching monthly teaching statistics.", e);
-            // Return empty list on error
-            return FXCollections.observableArrayList();
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Unexpected error fetching monthly teaching statistics.", e);
-            // Return empty list on error
-            return FXCollections.observableArrayList();
         }
 
         return statistics;
     }
 
-    /**
-     * Convert UI status labels to database values.
-     * Adjust these mappings if your database uses different values.
-     * @param uiStatus The status string from the UI.
-     * @return The corresponding database value, or null if not mapped.
-     */
-    private String mapStatusToDbValue(String uiStatus) {
-        switch (uiStatus) {
-            case "Đã duyệt":
-                return "approved"; // Assuming 'approved' in DB
-            case "Chưa duyệt":
-                return "pending"; // Assuming 'pending' in DB
-            case "Từ chối":
-                return "rejected"; // Assuming 'rejected' in DB
-            default:
-                LOGGER.log(Level.WARNING, "Unmapped status received: " + uiStatus);
-                return null;
+    // Giá trị lọc trạng thái dùng làm khóa snapshot ("" khi không lọc, giống truy vấn)
+    private String statusFilterKey(String status) {
+        if (status == null || status.equals("Tất cả")) {
+            return "";
         }
+        String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
+        return dbStatus != null ? dbStatus : "";
     }
 }
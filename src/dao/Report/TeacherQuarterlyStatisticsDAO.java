@@ -3,7 +3,12 @@ package src.dao.Report;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import src.model.teaching.quarterly.TeacherQuarterlyStatisticsModel;
+import src.model.teaching.TeachingStatisticsFilter;
 import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import src.utils.DatabaseConnection;
 
 import java.util.logging.Level;
@@ -13,6 +18,8 @@ public class TeacherQuarterlyStatisticsDAO {
 
     private static final Logger LOGGER = Logger.getLogger(TeacherQuarterlyStatisticsDAO.class.getName());
 
+    private ReportSnapshotDAO reportSnapshotDAO;
+
     /**
      * Constructor.
      */
@@ -20,11 +27,23 @@ public class TeacherQuarterlyStatisticsDAO {
         // Constructor is empty if no dependencies are injected
     }
 
+    public void setReportSnapshotDAO(ReportSnapshotDAO reportSnapshotDAO) {
+        this.reportSnapshotDAO = reportSnapshotDAO;
+    }
+
+    private ReportSnapshotDAO snapshots() {
+        if (reportSnapshotDAO == null) {
+            reportSnapshotDAO = new ReportSnapshotDAO();
+        }
+        return reportSnapshotDAO;
+    }
+
     /**
      * Gets teacher statistics data for a specific year and status.
      * Retrieves data for all four quarters of the specified year and the annual total.
      * Sessions are counted by the number of entries, and hours are calculated
      * from the duration between start_time and end_time.
+     * Years before the current one are read from (and saved to) report_snapshots.
      *
      * @param year the year to retrieve statistics for
      * @param status the approval status to filter by ("Tất cả" for all statuses)
@@ -33,6 +52,27 @@ public class TeacherQuarterlyStatisticsDAO {
     public ObservableList<TeacherQuarterlyStatisticsModel> getTeacherStatistics(
             int year, String status) {
 
+        LocalDate yearStart = LocalDate.of(year, 1, 1);
+        LocalDate yearEnd = LocalDate.of(year, 12, 31);
+        String filterKey = statusFilterKey(status);
+        boolean closed = ReportSnapshotDAO.isClosed(yearEnd);
+        if (closed) {
+            Optional<List<String[]>> snapshot = snapshots().find(ReportSnapshotDAO.TEACHER_QUARTERLY, yearStart, yearEnd, filterKey);
+            if (snapshot.isPresent()) {
+                ObservableList<TeacherQuarterlyStatisticsModel> statistics = FXCollections.observableArrayList();
+                int stt = 1;
+                for (String[] row : snapshot.get()) {
+                    statistics.add(new TeacherQuarterlyStatisticsModel(stt++, row[0],
+                            Integer.parseInt(row[1]), Double.parseDouble(row[2]),
+                            Integer.parseInt(row[3]), Double.parseDouble(row[4]),
+                            Integer.parseInt(row[5]), Double.parseDouble(row[6]),
+                            Integer.parseInt(row[7]), Double.parseDouble(row[8])));
+                }
+                return statistics;
+            }
+        }
+        long generation = closed ? snapshots().generation() : -1; // Đọc trước khi tính báo cáo
+
         ObservableList<TeacherQuarterlyStatisticsModel> statistics = FXCollections.observableArrayList();
         String query = buildStatisticsQuery(status);
 
@@ -79,14 +119,34 @@ public class TeacherQuarterlyStatisticsDAO {
             return FXCollections.observableArrayList();
         }
 
+        if (closed) {
+            List<String[]> rows = new ArrayList<>();
+            for (TeacherQuarterlyStatisticsModel model : statistics) {
+                rows.add(new String[]{model.getTeacherName(),
+                        String.valueOf(model.getQ1Sessions()), String.valueOf(model.getQ1Hours()),
+                        String.valueOf(model.getQ2Sessions()), String.valueOf(model.getQ2Hours()),
+                        String.valueOf(model.getQ3Sessions()), String.valueOf(model.getQ3Hours()),
+                        String.valueOf(model.getQ4Sessions()), String.valueOf(model.getQ4Hours())});
+            }
+            snapshots().save(ReportSnapshotDAO.TEACHER_QUARTERLY, yearStart, yearEnd, filterKey, rows, generation);
+        }
         return statistics;
     }
 
+    // Giá trị lọc trạng thái dùng làm khóa snapshot ("" khi không lọc, giống truy vấn)
+    private String statusFilterKey(String status) {
+        if (status == null || status.equals("Tất cả") || status.trim().isEmpty()) {
+            return "";
+        }
+        String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
+        return dbStatus != null ? dbStatus : "";
+    }
+
     /**
      * Builds the SQL query for retrieving teacher quarterly and annual statistics.
-     * Calculates the quarter from the session_date column, sessions by counting rows,
-     * and hours from the time difference between start_time and end_time.
-     * Joins teachers and class_sessions on teacher name.
+     * Reads the teacher_daily_teaching rollup: the quarter comes from the day column,
+     * sessions and hours from the per-day session_count and total_minutes.
+     * Joins teachers and the rollup on teacher ID.
      *
      * @param status the approval status filter ("Tất cả" for all statuses)
      * @return the SQL query string
@@ -98,18 +158,18 @@ public class TeacherQuarterlyStatisticsDAO {
         query.append("SELECT t.id AS teacher_id, t.name AS teacher_name, ");
 
         // Aggregate sessions and hours for each quarter of the specified year
-        // Calculate quarter from session_date: CEIL(MONTH(date) / 3.0)
-        // Sessions are counted by summing 1 for each session within the condition
-        // Hours are calculated by summing the time difference in minutes, divided by 60
+        // Calculate quarter from the rollup day: CEIL(MONTH(date) / 3.0)
+        // Sessions are the summed daily session counts within the condition
+        // Hours are the summed daily teaching minutes, divided by 60
         // Use COALESCE to return 0 if there are no sessions for a given quarter/year
-        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(cs.session_date) / 3.0) = 1 THEN 1 ELSE 0 END), 0) AS q1_sessions, ");
-        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(cs.session_date) / 3.0) = 1 THEN TIMESTAMPDIFF(MINUTE, cs.start_time, cs.end_time) / 60.0 ELSE 0 END), 0.0) AS q1_hours, ");
-        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(cs.session_date) / 3.0) = 2 THEN 1 ELSE 0 END), 0) AS q2_sessions, ");
-        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(cs.session_date) / 3.0) = 2 THEN TIMESTAMPDIFF(MINUTE, cs.start_time, cs.end_time) / 60.0 ELSE 0 END), 0.0) AS q2_hours, ");
-        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(cs.session_date) / 3.0) = 3 THEN 1 ELSE 0 END), 0) AS q3_sessions, ");
-        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(cs.session_date) / 3.0) = 3 THEN TIMESTAMPDIFF(MINUTE, cs.start_time, cs.end_time) / 60.0 ELSE 0 END), 0.0) AS q3_hours, ");
-        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(cs.session_date) / 3.0) = 4 THEN 1 ELSE 0 END), 0) AS q4_sessions, ");
-        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(cs.session_date) / 3.0) = 4 THEN TIMESTAMPDIFF(MINUTE, cs.start_time, cs.end_time) / 60.0 ELSE 0 END), 0.0) AS q4_hours ");
+        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(r.day) / 3.0) = 1 THEN r.session_count ELSE 0 END), 0) AS q1_sessions, ");
+        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(r.day) / 3.0) = 1 THEN r.total_minutes ELSE 0 END) / 60.0, 0.0) AS q1_hours, ");
+        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(r.day) / 3.0) = 2 THEN r.session_count ELSE 0 END), 0) AS q2_sessions, ");
+        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(r.day) / 3.0) = 2 THEN r.total_minutes ELSE 0 END) / 60.0, 0.0) AS q2_hours, ");
+        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(r.day) / 3.0) = 3 THEN r.session_count ELSE 0 END), 0) AS q3_sessions, ");
+        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(r.day) / 3.0) = 3 THEN r.total_minutes ELSE 0 END) / 60.0, 0.0) AS q3_hours, ");
+        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(r.day) / 3.0) = 4 THEN r.session_count ELSE 0 END), 0) AS q4_sessions, ");
+        query.append("COALESCE(SUM(CASE WHEN CEIL(MONTH(r.day) / 3.0) = 4 THEN r.total_minutes ELSE 0 END) / 60.0, 0.0) AS q4_hours ");
 
         // Note: Annual totals are implicitly the sum of quarterly totals, so they are not strictly needed in the SELECT list
         // unless you explicitly want to select them calculated this way.
@@ -118,15 +178,15 @@ public class TeacherQuarterlyStatisticsDAO {
 
         query.append("FROM teachers t ");
         // Use LEFT JOIN to include teachers even if they have no sessions in the specified year/status
-        // Filter by the year derived from session_date in the JOIN condition
-        query.append("LEFT JOIN class_sessions cs ON t.name = cs.teacher_name AND YEAR(cs.session_date) = ? ");
+        // Filter by the year as a day range so the rollup's (teacher_id, day, status) key can be used
+        query.append("LEFT JOIN teacher_daily_teaching r ON r.teacher_id = t.id AND r.day >= ? AND r.day < ? ");
 
 
         // Add status filter if not "Tất cả" - applied within the JOIN condition
         if (status != null && !status.equals("Tất cả") && !status.trim().isEmpty()) {
-            String dbStatus = mapStatusToDbValue(status);
+            String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
             if (dbStatus != null) {
-                query.append("AND cs.status = ? "); // Assuming 'status' is the column name
+                query.append("AND r.status = ? "); // Rollup rows are kept per session status
             } else {
                 LOGGER.log(Level.WARNING, "Unmapped status '" + status + "' encountered during query building.");
                 // Decide how to handle unmapped status. Proceeding without filter here.
@@ -153,36 +213,17 @@ public class TeacherQuarterlyStatisticsDAO {
     private void setStatisticsQueryParameters(PreparedStatement pstmt, int year, String status) throws SQLException {
         int paramIndex = 1;
 
-        // Set the year parameter in the LEFT JOIN condition
-        pstmt.setInt(paramIndex++, year);
+        // Set the year range in the LEFT JOIN condition
+        pstmt.setDate(paramIndex++, Date.valueOf(LocalDate.of(year, 1, 1)));
+        pstmt.setDate(paramIndex++, Date.valueOf(LocalDate.of(year + 1, 1, 1)));
 
         // Set status parameter if it's not "Tất cả" (1 time if applicable)
         if (status != null && !status.equals("Tất cả") && !status.trim().isEmpty()) {
-            String dbStatus = mapStatusToDbValue(status);
+            String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
             if (dbStatus != null) {
                 pstmt.setString(paramIndex++, dbStatus);
             }
             // If dbStatus is null, no parameter is set for the status filter
         }
     }
-
-    /**
-     * Convert UI status labels to database values.
-     * Adjust these mappings if your database uses different values.
-     * @param uiStatus The status string from the UI.
-     * @return The corresponding database value, or null if not mapped.
-     */
-    private String mapStatusToDbValue(String uiStatus) {
-        switch (uiStatus) {
-            case "Đã duyệt":
-                return "approved"; // Assuming 'approved' in DB
-            case "Chưa duyệt":
-                return "pending"; // Assuming 'pending' in DB
-            case "Từ chối":
-                return "rejected"; // Assuming 'rejected' in DB
-            default:
-                LOGGER.log(Level.WARNING, "Unmapped status received: " + uiStatus);
-                return null;
-        }
-    }
 }
@@ -1,9 +1,15 @@
 package src.dao.Report;
 
 import java.sql.Connection;
+import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -11,12 +17,15 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import src.model.teaching.yearly.TeacherYearlyStatisticsModel;
 import src.model.teaching.yearly.StatisticsSummaryModel;
+import src.model.teaching.TeachingStatisticsFilter;
 import src.utils.DatabaseConnection; // Assuming this class handles database connection
 
 public class TeacherYearlyStatisticsDAO {
 
     private static final Logger LOGGER = Logger.getLogger(TeacherYearlyStatisticsDAO.class.getName());
 
+    private ReportSnapshotDAO reportSnapshotDAO;
+
     /**
      * Constructor.
      */
@@ -24,14 +33,45 @@ public class TeacherYearlyStatisticsDAO {
         // Constructor is empty if no dependencies are injected
     }
 
+    public void setReportSnapshotDAO(ReportSnapshotDAO reportSnapshotDAO) {
+        this.reportSnapshotDAO = reportSnapshotDAO;
+    }
+
+    private ReportSnapshotDAO snapshots() {
+        if (reportSnapshotDAO == null) {
+            reportSnapshotDAO = new ReportSnapshotDAO();
+        }
+        return reportSnapshotDAO;
+    }
+
     /**
-     * Get yearly teaching statistics for a specific year and approval status
+     * Get yearly teaching statistics for a specific year and approval status.
+     * Years before the current one are read from (and saved to) report_snapshots.
      *
      * @param year Year for statistics
      * @param status Approval status filter ("Tất cả", "Đã duyệt", "Chưa duyệt", "Từ chối")
      * @return Observable list of teacher statistics models, or an empty list if none found or an error occurs.
      */
     public ObservableList<TeacherYearlyStatisticsModel> getYearlyStatistics(int year, String status) {
+        LocalDate yearStart = LocalDate.of(year, 1, 1);
+        LocalDate yearEnd = LocalDate.of(year, 12, 31);
+        String filterKey = statusFilterKey(status);
+        boolean closed = ReportSnapshotDAO.isClosed(yearEnd);
+        if (closed) {
+            Optional<List<String[]>> snapshot = snapshots().find(ReportSnapshotDAO.TEACHER_YEARLY, yearStart, yearEnd, filterKey);
+            if (snapshot.isPresent()) {
+                ObservableList<TeacherYearlyStatisticsModel> statistics = FXCollections.observableArrayList();
+                int stt = 1;
+                for (String[] row : snapshot.get()) {
+                    int sessions = Integer.parseInt(row[1]);
+                    double hours = Double.parseDouble(row[2]);
+                    statistics.add(new TeacherYearlyStatisticsModel(stt++, row[0], sessions, hours, sessions, hours));
+                }
+                return statistics;
+            }
+        }
+        long generation = closed ? snapshots().generation() : -1; // Đọc trước khi tính báo cáo
+
         ObservableList<TeacherYearlyStatisticsModel> statistics = FXCollections.observableArrayList();
         String query = buildTeacherStatisticsQuery(status);
 
@@ -71,17 +111,40 @@ public class TeacherYearlyStatisticsDAO {
             return FXCollections.observableArrayList();
         }
 
+        if (closed) {
+            List<String[]> rows = new ArrayList<>();
+            for (TeacherYearlyStatisticsModel model : statistics) {
+                rows.add(new String[]{model.getTeacherName(),
+                        String.valueOf(model.getYearSessions()), String.valueOf(model.getYearHours())});
+            }
+            snapshots().save(ReportSnapshotDAO.TEACHER_YEARLY, yearStart, yearEnd, filterKey, rows, generation);
+        }
         return statistics;
     }
 
     /**
-     * Calculate summary statistics for all teachers within a specific year
+     * Calculate summary statistics for all teachers within a specific year.
+     * Years before the current one are read from (and saved to) report_snapshots.
      *
      * @param year Year for statistics
      * @param status Approval status filter ("Tất cả", "Đã duyệt", "Chưa duyệt", "Từ chối")
      * @return Statistics summary model with totals, or a default empty summary on error or no data.
      */
     public StatisticsSummaryModel calculateSummaryStatistics(int year, String status) {
+        LocalDate yearStart = LocalDate.of(year, 1, 1);
+        LocalDate yearEnd = LocalDate.of(year, 12, 31);
+        String filterKey = statusFilterKey(status);
+        boolean closed = ReportSnapshotDAO.isClosed(yearEnd);
+        if (closed) {
+            Optional<List<String[]>> snapshot = snapshots().find(ReportSnapshotDAO.TEACHER_YEARLY_SUMMARY, yearStart, yearEnd, filterKey);
+            if (snapshot.isPresent() && !snapshot.get().isEmpty()) {
+                int totalSessions = Integer.parseInt(snapshot.get().get(0)[0]);
+                double totalHours = Double.parseDouble(snapshot.get().get(0)[1]);
+                return new StatisticsSummaryModel(totalSessions, totalHours, totalSessions, totalHours);
+            }
+        }
+        long generation = closed ? snapshots().generation() : -1; // Đọc trước khi tính báo cáo
+
         StatisticsSummaryModel summary = new StatisticsSummaryModel(0, 0.0, 0, 0.0); // Default empty summary
         String query = buildSummaryQuery(status);
 
@@ -116,12 +179,26 @@ public class TeacherYearlyStatisticsDAO {
             return new StatisticsSummaryModel(0, 0.0, 0, 0.0);
         }
 
+        if (closed) {
+            snapshots().save(ReportSnapshotDAO.TEACHER_YEARLY_SUMMARY, yearStart, yearEnd, filterKey,
+                    Collections.singletonList(new String[]{
+                            String.valueOf(summary.getTotalSessions()), String.valueOf(summary.getTotalHours())}), generation);
+        }
         return summary;
     }
 
+    // Giá trị lọc trạng thái dùng làm khóa snapshot ("" khi không lọc, giống truy vấn)
+    private String statusFilterKey(String status) {
+        if (status == null || status.equals("Tất cả") || status.trim().isEmpty()) {
+            return "";
+        }
+        String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
+        return dbStatus != null ? dbStatus : "";
+    }
+
     /**
      * Builds the SQL query for retrieving teacher yearly statistics for a single year
-     * using the `teachers` and `class_sessions` tables.
+     * using the `teachers` table and the `teacher_daily_teaching` rollup.
      *
      * @param status the approval status filter ("Tất cả" for all statuses)
      * @return the SQL query string
@@ -132,25 +209,23 @@ public class TeacherYearlyStatisticsDAO {
         // Use t.id as well in GROUP BY if it's the primary key and name might not be unique
         query.append("SELECT t.id AS teacher_id, t.name AS teacher_name, ");
 
-        // Calculate yearly sessions by counting rows for the specified year
-        // Use COALESCE to return 0 if there are no sessions for a given teacher/year/status
-        query.append("COALESCE(SUM(CASE WHEN YEAR(cs.session_date) = ? THEN 1 ELSE 0 END), 0) AS yearly_sessions, ");
-        // Calculate yearly hours by summing the time difference in minutes, divided by 60, for the specified year
+        // The JOIN only keeps sessions of the specified year, so every joined row counts
         // Use COALESCE to return 0.0 if there are no sessions for a given teacher/year/status
-        query.append("COALESCE(SUM(CASE WHEN YEAR(cs.session_date) = ? THEN TIMESTAMPDIFF(MINUTE, cs.start_time, cs.end_time) / 60.0 ELSE 0 END), 0.0) AS yearly_hours ");
+        query.append("COALESCE(SUM(r.session_count), 0) AS yearly_sessions, ");
+        query.append("COALESCE(SUM(r.total_minutes) / 60.0, 0.0) AS yearly_hours ");
 
         query.append("FROM teachers t ");
         // Use LEFT JOIN to include teachers even if they have no sessions in the specified year/status
-        // Join on teacher name as used in the previous query structure
-        // Filter by year within the LEFT JOIN condition
-        query.append("LEFT JOIN class_sessions cs ON t.name = cs.teacher_name AND YEAR(cs.session_date) = ? ");
+        // Join on teacher ID and filter by the year as a session_date range within the LEFT JOIN condition
+        // so the rollup's (teacher_id, day, status) key can be used
+        query.append("LEFT JOIN teacher_daily_teaching r ON r.teacher_id = t.id AND r.day >= ? AND r.day < ? ");
 
 
         // Add status filter if applicable - applied within the JOIN condition
         if (status != null && !status.equals("Tất cả") && !status.trim().isEmpty()) {
-            String dbStatus = mapStatusToDbValue(status);
+            String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
             if (dbStatus != null) {
-                query.append("AND cs.status = ? "); // Assuming 'status' is the column name
+                query.append("AND r.status = ? "); // Rollup rows are kept per session status
             } else {
                 LOGGER.log(Level.WARNING, "Unmapped status '" + status + "' encountered during teacher statistics query building.");
                 // Decide how to handle unmapped status. Proceeding without filter here.
@@ -178,16 +253,13 @@ public class TeacherYearlyStatisticsDAO {
     private void setTeacherStatisticsQueryParameters(PreparedStatement pstmt, int year, String status) throws SQLException {
         int paramIndex = 1;
 
-        // Set year parameter for SUM CASE statements (2 times)
-        pstmt.setInt(paramIndex++, year); // yearly_sessions year
-        pstmt.setInt(paramIndex++, year); // yearly_hours year
-
-        // Set year parameter in the LEFT JOIN condition (1 time)
-        pstmt.setInt(paramIndex++, year);
+        // Set the year range in the LEFT JOIN condition
+        pstmt.setDate(paramIndex++, Date.valueOf(LocalDate.of(year, 1, 1)));
+        pstmt.setDate(paramIndex++, Date.valueOf(LocalDate.of(year + 1, 1, 1)));
 
         // Add status filter parameter if not "Tất cả"
         if (status != null && !status.equals("Tất cả") && !status.trim().isEmpty()) {
-            String dbStatus = mapStatusToDbValue(status);
+            String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
             if (dbStatus != null) {
                 pstmt.setString(paramIndex++, dbStatus);
             }
@@ -198,7 +270,7 @@ public class TeacherYearlyStatisticsDAO {
 
     /**
      * Builds the SQL query for retrieving the overall yearly statistics summary for a single year
-     * using the `class_sessions` table.
+     * using the `teacher_daily_teaching` rollup (including sessions without a teacher).
      *
      * @param status the approval status filter ("Tất cả" for all statuses)
      * @return the SQL query string
@@ -208,19 +280,19 @@ public class TeacherYearlyStatisticsDAO {
         query.append("SELECT ");
         // Calculate total sessions and hours for the specified year across all teachers
         // Use COALESCE to return 0 if there are no sessions for the year/status
-        query.append("COALESCE(SUM(CASE WHEN YEAR(cs.session_date) = ? THEN 1 ELSE 0 END), 0) AS total_sessions, ");
-        query.append("COALESCE(SUM(CASE WHEN YEAR(cs.session_date) = ? THEN TIMESTAMPDIFF(MINUTE, cs.start_time, cs.end_time) / 60.0 ELSE 0 END), 0.0) AS total_hours ");
+        query.append("COALESCE(SUM(r.session_count), 0) AS total_sessions, ");
+        query.append("COALESCE(SUM(r.total_minutes) / 60.0, 0.0) AS total_hours ");
 
-        query.append("FROM class_sessions cs ");
-        // Filter by the specified year
-        query.append("WHERE YEAR(cs.session_date) = ? ");
+        query.append("FROM teacher_daily_teaching r ");
+        // Filter by the specified year as a range on the rollup day
+        query.append("WHERE r.day >= ? AND r.day < ? ");
 
 
         // Add status filter if applicable
         if (status != null && !status.equals("Tất cả") && !status.trim().isEmpty()) {
-            String dbStatus = mapStatusToDbValue(status);
+            String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
             if (dbStatus != null) {
-                query.append("AND cs.status = ? "); // Assuming 'status' is the column name
+                query.append("AND r.status = ? "); // Rollup rows are kept per session status
             } else {
                 LOGGER.log(Level.WARNING, "Unmapped status '" + status + "' encountered during summary query building.");
                 // Decide how to handle unmapped status. Proceeding without filter here.
@@ -241,40 +313,17 @@ public class TeacherYearlyStatisticsDAO {
     private void setSummaryQueryParameters(PreparedStatement pstmt, int year, String status) throws SQLException {
         int paramIndex = 1;
 
-        // Set year parameter for SUM CASE statements (2 times)
-        pstmt.setInt(paramIndex++, year); // total_sessions year
-        pstmt.setInt(paramIndex++, year); // total_hours year
-
-        // Set year parameter in the WHERE clause (1 time)
-        pstmt.setInt(paramIndex++, year);
+        // Set the year range in the WHERE clause
+        pstmt.setDate(paramIndex++, Date.valueOf(LocalDate.of(year, 1, 1)));
+        pstmt.setDate(paramIndex++, Date.valueOf(LocalDate.of(year + 1, 1, 1)));
 
         // Add status filter parameter if not "Tất cả"
         if (status != null && !status.equals("Tất cả") && !status.trim().isEmpty()) {
-            String dbStatus = mapStatusToDbValue(status);
+            String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
             if (dbStatus != null) {
                 pstmt.setString(paramIndex++, dbStatus);
             }
             // If dbStatus is null, no parameter is set for the status filter
         }
     }
-
-    /**
-     * Convert UI status labels to database values.
-     * Adjust these mappings if your database uses different values.
-     * @param uiStatus The status string from the UI.
-     * @return The corresponding database value, or null if not mapped.
-     */
-    private String mapStatusToDbValue(String uiStatus) {
-        switch (uiStatus) {
-            case "Đã duyệt":
-                return "approved"; // Assuming 'approved' in DB
-            case "Chưa duyệt":
-                return "pending"; // Assuming 'pending' in DB
-            case "Từ chối":
-                return "rejected"; // Assuming 'rejected' in DB
-            default:
-                LOGGER.log(Level.WARNING, "Unmapped status received: " + uiStatus);
-                return null;
-        }
-    }
 }
@@ -0,0 +1,223 @@
+package src.dao.Report;
+
+import src.model.teaching.TeachingStatisticsFilter;
+import src.model.teaching.cube.CubeResult;
+import src.model.teaching.cube.TeachingCube;
+import src.utils.DatabaseConnection;
+
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object that loads and refreshes the in-memory {@link TeachingCube}.
+ * <p>
+ * The first query loads every class session, its attendance counts and the enrollment per course (three
+ * queries). Later queries refresh the cube at most every {@link #REFRESH_INTERVAL_MS} ms, incrementally: sessions and
+ * attendance rows whose updated_at (V012 / V013) is at or after the previous refresh are re-read, and the
+ * enrollment counts (one row per course) are reloaded. The watermark is the database time at the start of the previous
+ * refresh minus {@link #WATERMARK_OVERLAP_MS}, so rows written by transactions that were still open at that moment
+ * (their updated_at is older than their commit) are re-read; re-reading a row is harmless. Deletions leave no timestamp behind, so the refresh
+ * compares the session and attendance totals with the database and rebuilds the cube when they differ.
+ * A rebuild fills a new cube and swaps it in, so queries never see a half-loaded cube.
+ */
+public class TeachingCubeDAO {
+    private static final Logger LOGGER = Logger.getLogger(TeachingCubeDAO.class.getName());
+
+    static final long REFRESH_INTERVAL_MS = 30_000;
+    static final long WATERMARK_OVERLAP_MS = 60_000;
+
+    private static final String ATTENDANCE_SELECT = "SELECT a.session_id, COUNT(*) AS records, " +
+            "SUM(CASE WHEN a.present = TRUE THEN 1 ELSE 0 END) AS present_count, " +
+            "SUM(CASE WHEN a.present = FALSE AND a.has_permission = TRUE THEN 1 ELSE 0 END) AS excused_count, " +
+            "SUM(CASE WHEN a.present = FALSE AND a.has_permission = FALSE THEN 1 ELSE 0 END) AS unexcused_count " +
+            "FROM attendance a ";
+
+    private final Object refreshLock = new Object();
+    private volatile TeachingCube cube;
+    private Timestamp watermark;     // thời điểm (theo đồng hồ CSDL) bắt đầu lần làm mới trước, trừ khoảng chồng lấn
+    private long lastRefreshMillis;
+
+    public TeachingCubeDAO() {
+    }
+
+    /**
+     * Runs an ad-hoc query on the cube, loading or refreshing it first if needed.
+     *
+     * @param filter period, status, dimension filters and group-by dimensions
+     * @return The aggregated rows
+     * @throws SQLException if the cube cannot be loaded
+     */
+    public CubeResult query(TeachingStatisticsFilter filter) throws SQLException {
+        return getCube().query(filter);
+    }
+
+    /**
+     * @return The cube, refreshed if the last refresh is older than the refresh interval
+     * @throws SQLException if the cube has never been loaded and loading fails
+     */
+    public TeachingCube getCube() throws SQLException {
+        synchronized (refreshLock) {
+            if (cube == null || System.currentTimeMillis() - lastRefreshMillis >= REFRESH_INTERVAL_MS) {
+                try (Connection conn = DatabaseConnection.getConnection()) {
+                    refresh(conn);
+                } catch (SQLException e) {
+                    if (cube == null) {
+                        throw e;
+                    }
+                    // Giữ dữ liệu cũ: vẫn trả lời được truy vấn khi CSDL tạm thời lỗi
+                    LOGGER.log(Level.WARNING, "Could not refresh the teaching cube; serving the previous data.", e);
+                }
+            }
+            return cube;
+        }
+    }
+
+    /**
+     * Drops the cube; the next query loads it again from scratch.
+     */
+    public void invalidate() {
+        synchronized (refreshLock) {
+            cube = null;
+            watermark = null;
+        }
+    }
+
+    // --- Methods taking the caller's connection (called with refreshLock held) ---
+
+    /**
+     * Loads the cube on first use, otherwise applies the changes since the previous refresh.
+     *
+     * @param conn the active database connection
+     * @throws SQLException if a database access error occurs
+     */
+    void refresh(Connection conn) throws SQLException {
+        Timestamp now = databaseNow(conn);
+        long started = System.nanoTime();
+        if (cube == null || watermark == null) {
+            TeachingCube fresh = new TeachingCube();
+            loadAll(conn, fresh);
+            cube = fresh;
+            LOGGER.info("Teaching cube loaded: " + fresh.getSessionCount() + " sessions in " +
+                    (System.nanoTime() - started) / 1_000_000 + " ms");
+        } else {
+            int changed = applyChanges(conn, cube, watermark);
+            if (!matchesDatabase(conn, cube)) {
+                // Có bản ghi bị xóa: dựng lại toàn bộ
+                TeachingCube fresh = new TeachingCube();
+                loadAll(conn, fresh);
+                cube = fresh;
+                LOGGER.info("Teaching cube rebuilt after deletions: " + fresh.getSessionCount() + " sessions");
+            } else if (changed > 0) {
+                LOGGER.fine("Teaching cube refreshed: " + changed + " changed rows in " +
+                        (System.nanoTime() - started) / 1_000_000 + " ms");
+            }
+        }
+        watermark = new Timestamp(now.getTime() - WATERMARK_OVERLAP_MS);
+        lastRefreshMillis = System.currentTimeMillis();
+    }
+
+    private void loadAll(Connection conn, TeachingCube target) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sessionSelect(conn))) {
+            readSessions(stmt, target);
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(ATTENDANCE_SELECT + "GROUP BY a.session_id")) {
+            readAttendance(stmt, target);
+        }
+        target.setEnrollment(loadEnrollment(conn));
+    }
+
+    /**
+     * @return Number of session and attendance aggregate rows re-read
+     */
+    private int applyChanges(Connection conn, TeachingCube target, Timestamp since) throws SQLException {
+        int changed;
+        try (PreparedStatement stmt = conn.prepareStatement(sessionSelect(conn) + " AND cs.updated_at >= ?")) {
+            stmt.setTimestamp(1, since);
+            changed = readSessions(stmt, target);
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(ATTENDANCE_SELECT +
+                "WHERE a.session_id IN (SELECT DISTINCT session_id FROM attendance WHERE updated_at >= ?) " +
+                "GROUP BY a.session_id")) {
+            stmt.setTimestamp(1, since);
+            changed += readAttendance(stmt, target);
+        }
+        target.setEnrollment(loadEnrollment(conn));
+        return changed;
+    }
+
+    /**
+     * Sessions with a teaching date; status is '' when class_sessions has no status column (as in the teaching rollup).
+     */
+    private static String sessionSelect(Connection conn) throws SQLException {
+        return "SELECT cs.session_id, cs.course_id, cs.course_name, cs.teacher_id, " +
+                "COALESCE(t.name, cs.teacher_name) AS teacher_name, cs.room, " +
+                TeachingRollupDAO.sessionStatusExpression(conn) + " AS status, cs.session_date, " +
+                "COALESCE(TIMESTAMPDIFF(MINUTE, cs.start_time, cs.end_time), 0) AS minutes, " +
+                "COALESCE(TIMESTAMPDIFF(HOUR, cs.start_time, cs.end_time), 0) AS whole_hours " +
+                "FROM class_sessions cs LEFT JOIN teachers t ON t.id = cs.teacher_id " +
+                "WHERE cs.session_date IS NOT NULL";
+    }
+
+    private int readSessions(PreparedStatement stmt, TeachingCube target) throws SQLException {
+        int count = 0;
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                target.upsertSession(rs.getString("session_id"), rs.getString("course_id"), rs.getString("course_name"),
+                        rs.getString("teacher_id"), rs.getString("teacher_name"), rs.getString("room"),
+                        rs.getString("status"), rs.getDate("session_date").toLocalDate(),
+                        rs.getInt("minutes"), rs.getInt("whole_hours"));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int readAttendance(PreparedStatement stmt, TeachingCube target) throws SQLException {
+        int count = 0;
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                target.setAttendance(rs.getString("session_id"), rs.getInt("records"), rs.getInt("present_count"),
+                        rs.getInt("excused_count"), rs.getInt("unexcused_count"));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Map<String, Integer> loadEnrollment(Connection conn) throws SQLException {
+        Map<String, Integer> enrolled = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT course_id, COUNT(*) AS students FROM enrollment GROUP BY course_id");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                enrolled.put(rs.getString("course_id"), rs.getInt("students"));
+            }
+        }
+        return enrolled;
+    }
+
+    /**
+     * Compares the number of sessions and of attendance records (of those sessions) with the database.
+     */
+    private boolean matchesDatabase(Connection conn, TeachingCube target) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT (SELECT COUNT(*) FROM class_sessions WHERE session_date IS NOT NULL) AS sessions, " +
+                        "(SELECT COUNT(*) FROM attendance a JOIN class_sessions cs ON cs.session_id = a.session_id " +
+                        "WHERE cs.session_date IS NOT NULL) AS records");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() && rs.getLong("sessions") == target.getSessionCount()
+                    && rs.getLong("records") == target.getAttendanceRecordCount();
+        }
+    }
+
+    private Timestamp databaseNow(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT NOW()");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package src.dao.Report;
+
+import src.utils.DatabaseConnection;
+
+import java.sql.*;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object for the teacher_daily_teaching rollup.
+ * <p>
+ * One row per teacher, day and session status with the number of sessions, the teaching minutes, the whole
+ * hours (sum of TIMESTAMPDIFF(HOUR) per session, as the daily statistics screen always showed) and the number of
+ * distinct courses taught that day. Sessions without a teacher_id are kept under teacher_id '' so that overall
+ * totals still include them. class_sessions.status is optional in this schema: without the column every session
+ * is counted under status '' (see {@link #hasSessionStatusColumn(Connection)}).
+ * <p>
+ * The monthly, quarterly and yearly teacher statistics read this table with plain date ranges, so their cost
+ * depends on teachers x days instead of the number of class_sessions rows. ClassSessionDAO calls
+ * {@link #refresh(Connection, Collection)} with the (teacher, day) pairs it touched, inside its own transaction;
+ * {@link #rebuildAll()} recomputes everything from class_sessions.
+ */
+public class TeachingRollupDAO {
+    private static final Logger LOGGER = Logger.getLogger(TeachingRollupDAO.class.getName());
+
+    private static final String COLUMNS = "teacher_id, day, status, session_count, total_minutes, whole_hours, course_count";
+
+    // Cached result of hasSessionStatusColumn; null until first checked
+    private static volatile Boolean sessionStatusColumn;
+
+    /**
+     * Identifies one day of teaching for a teacher ('' for sessions without a teacher).
+     */
+    public static final class TeachingKey {
+        private final String teacherId;
+        private final LocalDate day;
+
+        public TeachingKey(String teacherId, LocalDate day) {
+            this.teacherId = teacherId != null ? teacherId : "";
+            this.day = day;
+        }
+
+        public String getTeacherId() { return teacherId; }
+        public LocalDate getDay() { return day; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TeachingKey)) return false;
+            TeachingKey other = (TeachingKey) o;
+            return teacherId.equals(other.teacherId) && Objects.equals(day, other.day);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(teacherId, day);
+        }
+    }
+
+    public TeachingRollupDAO() {
+    }
+
+    /**
+     * Checks once whether class_sessions has a status column (older schemas do not).
+     *
+     * @param conn the active database connection
+     * @return true if class_sessions.status exists
+     * @throws SQLException if information_schema cannot be read
+     */
+    public static boolean hasSessionStatusColumn(Connection conn) throws SQLException {
+        Boolean present = sessionStatusColumn;
+        if (present == null) {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'class_sessions' AND COLUMN_NAME = 'status'");
+                 ResultSet rs = stmt.executeQuery()) {
+                present = rs.next() && rs.getInt(1) > 0;
+            }
+            sessionStatusColumn = present;
+        }
+        return present;
+    }
+
+    /**
+     * @param conn the active database connection
+     * @return SQL expression of a session's status: COALESCE(cs.status, ''), or '' when the column does not exist
+     * @throws SQLException if information_schema cannot be read
+     */
+    public static String sessionStatusExpression(Connection conn) throws SQLException {
+        return hasSessionStatusColumn(conn) ? "COALESCE(cs.status, '')" : "''";
+    }
+
+    private static String aggregateSelect(String status) {
+        return "SELECT COALESCE(cs.teacher_id, ''), cs.session_date, " + status + ", " +
+                "COUNT(*), COALESCE(SUM(TIMESTAMPDIFF(MINUTE, cs.start_time, cs.end_time)), 0), " +
+                "COALESCE(SUM(TIMESTAMPDIFF(HOUR, cs.start_time, cs.end_time)), 0), COUNT(DISTINCT cs.course_id) " +
+                "FROM class_sessions cs ";
+    }
+
+    private static String aggregateGroupBy(String status) {
+        return "GROUP BY COALESCE(cs.teacher_id, ''), cs.session_date, " + status;
+    }
+
+    // --- Methods taking the caller's connection (used inside ClassSessionDAO's transactions) ---
+
+    /**
+     * Finds the (teacher, day) pairs of the given class sessions as they are currently stored.
+     *
+     * @param conn       the active database connection
+     * @param sessionIds session_id values
+     * @return Keys of the matching sessions
+     * @throws SQLException if a database access error occurs
+     */
+    public Set<TeachingKey> findKeysBySessionIds(Connection conn, Collection<String> sessionIds) throws SQLException {
+        Set<TeachingKey> keys = new HashSet<>();
+        if (sessionIds.isEmpty()) {
+            return keys;
+        }
+        String sql = "SELECT DISTINCT teacher_id, session_date FROM class_sessions WHERE session_id IN (" +
+                String.join(",", Collections.nCopies(sessionIds.size(), "?")) + ") AND session_date IS NOT NULL";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (String sessionId : sessionIds) {
+                stmt.setString(index++, sessionId);
+            }
+            readKeys(stmt, keys);
+        }
+        return keys;
+    }
+
+    /**
+     * Finds the (teacher, day) pairs of every session of a course.
+     *
+     * @param conn     the active database connection
+     * @param courseId Course ID
+     * @return Keys of the course's sessions
+     * @throws SQLException if a database access error occurs
+     */
+    public Set<TeachingKey> findKeysByCourseId(Connection conn, String courseId) throws SQLException {
+        Set<TeachingKey> keys = new HashSet<>();
+        String sql = "SELECT DISTINCT teacher_id, session_date FROM class_sessions " +
+                "WHERE course_id = ? AND session_date IS NOT NULL";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, courseId);
+            readKeys(stmt, keys);
+        }
+        return keys;
+    }
+
+    private void readKeys(PreparedStatement stmt, Set<TeachingKey> keys) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                keys.add(new TeachingKey(rs.getString("teacher_id"), rs.getDate("session_date").toLocalDate()));
+            }
+        }
+    }
+
+    /**
+     * Recomputes the rollup rows (all statuses) of the given teacher days from class_sessions.
+     *
+     * @param conn the active database connection (expected to be in the caller's write transaction)
+     * @param keys Teacher days whose sessions were written
+     * @throws SQLException if a database access error occurs
+     */
+    public void refresh(Connection conn, Collection<TeachingKey> keys) throws SQLException {
+        Set<TeachingKey> days = new HashSet<>();
+        for (TeachingKey key : keys) {
+            if (key.getDay() != null) {
+                days.add(key);
+            }
+        }
+        if (days.isEmpty()) {
+            return;
+        }
+
+        // teacher_id '' gom các buổi học chưa có giáo viên (teacher_id NULL)
+        String status = sessionStatusExpression(conn);
+        String insertSql = "INSERT INTO teacher_daily_teaching (" + COLUMNS + ") " + aggregateSelect(status) +
+                "WHERE (cs.teacher_id = ? OR (? = '' AND cs.teacher_id IS NULL)) AND cs.session_date = ? " +
+                aggregateGroupBy(status);
+        try (PreparedStatement delete = conn.prepareStatement(
+                "DELETE FROM teacher_daily_teaching WHERE teacher_id = ? AND day = ?");
+             PreparedStatement insert = conn.prepareStatement(insertSql)) {
+            for (TeachingKey key : days) {
+                Date day = Date.valueOf(key.getDay());
+                delete.setString(1, key.getTeacherId());
+                delete.setDate(2, day);
+                delete.addBatch();
+
+                insert.setString(1, key.getTeacherId());
+                insert.setString(2, key.getTeacherId());
+                insert.setDate(3, day);
+                insert.addBatch();
+            }
+            delete.executeBatch();
+            insert.executeBatch();
+        }
+    }
+
+    // --- Public Wrapper Methods ---
+
+    /**
+     * Recomputes the whole rollup from class_sessions in one transaction.
+     *
+     * @return true if the rebuild succeeded
+     */
+    public boolean rebuildAll() {
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+            // Fills teacher_daily_teaching from the whole class_sessions table
+            String status = sessionStatusExpression(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM teacher_daily_teaching");
+                stmt.executeUpdate("INSERT INTO teacher_daily_teaching (" + COLUMNS + ") " + aggregateSelect(status) +
+                        "WHERE cs.session_date IS NOT NULL " + aggregateGroupBy(status));
+            }
+            DatabaseConnection.commit(conn);
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error rebuilding teacher_daily_teaching.", e);
+            DatabaseConnection.rollback(conn);
+            return false;
+        } finally {
+            DatabaseConnection.closeConnection(conn);
+        }
+    }
+}
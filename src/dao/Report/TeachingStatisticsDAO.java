@@ -3,6 +3,7 @@ package src.dao.Report;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import src.model.teaching.TeacherStatisticsModel;
+import src.model.teaching.TeachingStatisticsFilter;
 import src.utils.DatabaseConnection;
 
 import java.sql.*;
@@ -40,20 +41,20 @@ public class TeachingStatisticsDAO {
 
         StringBuilder queryBuilder = new StringBuilder(
                 "SELECT t.id AS teacher_id, t.name AS teacher_name, " +
-                        "cs.session_date, COUNT(cs.session_id) AS session_count, " +
-                        // Using TIMESTAMPDIFF(HOUR, ...) which may need adjustment based on your specific SQL database
-                        "SUM(TIMESTAMPDIFF(HOUR, cs.start_time, cs.end_time)) AS total_hours " +
+                        "r.day AS session_date, SUM(r.session_count) AS session_count, " +
+                        // whole_hours = SUM(TIMESTAMPDIFF(HOUR, start_time, end_time)) per teacher/day/status
+                        "SUM(r.whole_hours) AS total_hours " +
                         "FROM teachers t " +
-                        "JOIN class_sessions cs ON t.name = cs.teacher_name " +
-                        "WHERE cs.session_date BETWEEN ? AND ? ");
+                        "JOIN teacher_daily_teaching r ON r.teacher_id = t.id " +
+                        "WHERE r.day BETWEEN ? AND ? ");
 
         List<Object> params = new ArrayList<>();
         params.add(fromDate);
         params.add(toDate);
 
         if (status != null && !status.equals("Tất cả")) {
-            queryBuilder.append("AND cs.status = ? ");
-            String statusValue = mapStatusToDbValue(status);
+            queryBuilder.append("AND r.status = ? ");
+            String statusValue = TeachingStatisticsFilter.toDbStatus(status);
             if (statusValue != null) {
                 params.add(statusValue);
             } else {
@@ -64,8 +65,8 @@ public class TeachingStatisticsDAO {
             }
         }
 
-        queryBuilder.append("GROUP BY t.id, t.name, cs.session_date ");
-        queryBuilder.append("ORDER BY t.name, cs.session_date");
+        queryBuilder.append("GROUP BY t.id, t.name, r.day ");
+        queryBuilder.append("ORDER BY t.name, r.day");
 
         // DatabaseConnection.executeQuery should handle resource closing internally based on typical implementations.
         // If it doesn't, this needs further adjustment to wrap in a try-with-resources.
@@ -121,100 +122,45 @@ public class TeachingStatisticsDAO {
     }
 
     /**
-     * Calculates the total teaching hours for each teacher from class sessions
-     * and updates the teaching_hour column in the teachers table.
-     * This method calculates total hours across all sessions, regardless of date range or status.
+     * Calculates the total teaching hours for each teacher from the teacher_daily_teaching rollup
+     * and updates the teaching_hour column in the teachers table with one set-based UPDATE ... JOIN.
+     * This method calculates total hours across all sessions, regardless of date range or status;
+     * teachers without any session get 0.
+     * Run nightly by JobScheduler (see NightlyJobs).
+     *
+     * @return Number of teacher rows updated
+     * @throws SQLException if a database access error occurs
      */
-    public void calculateAndSaveTotalTeachingHours() {
-        String selectHoursQuery =
-                "SELECT t.id AS teacher_id, SUM(TIMESTAMPDIFF(HOUR, cs.start_time, cs.end_time)) AS total_hours " +
-                        "FROM teachers t " +
-                        "JOIN class_sessions cs ON t.name = cs.teacher_name " +
-                        "GROUP BY t.id";
-
-        String updateTeacherQuery = "UPDATE teachers SET teaching_hour = ? WHERE id = ?";
-
-        // Use try-with-resources for Connection, PreparedStatement, and ResultSet
-        try (Connection conn = DatabaseConnection.getConnection()) { // Assuming DatabaseConnection provides a connection that needs explicit closing
-            conn.setAutoCommit(false); // Start transaction
-
-            try (PreparedStatement selectStmt = conn.prepareStatement(selectHoursQuery);
-                 ResultSet rs = selectStmt.executeQuery();
-                 PreparedStatement updateStmt = conn.prepareStatement(updateTeacherQuery)) {
-
-                while (rs.next()) {
-                    String teacherId = rs.getString("teacher_id");
-                    double totalHours = rs.getObject("total_hours") != null ? rs.getDouble("total_hours") : 0.0;
-
-                    updateStmt.setDouble(1, totalHours);
-                    updateStmt.setString(2, teacherId);
-
-                    updateStmt.executeUpdate(); // Execute update for each teacher
-                }
-
-                conn.commit(); // Commit transaction on success
-                LOGGER.log(Level.INFO, "Successfully calculated and saved total teaching hours for all teachers.");
-
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "SQL Error calculating or saving total teaching hours. Attempting rollback.", e);
-                if (conn != null) {
-                    try {
-                        conn.rollback(); // Rollback on error
-                        LOGGER.log(Level.INFO, "Rollback successful.");
-                    } catch (SQLException rbex) {
-                        LOGGER.log(Level.SEVERE, "Error during rollback.", rbex);
-                    }
-                }
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Unexpected error calculating or saving total teaching hours. Attempting rollback.", e);
-                if (conn != null) {
-                    try {
-                        conn.rollback(); // Rollback on error
-                        LOGGER.log(Level.INFO, "Rollback successful.");
-                    } catch (SQLException rbex) {
-                        LOGGER.log(Level.SEVERE, "Error during rollback.", rbex);
-                    }
-                }
-            } finally {
-                // Restore auto-commit
-                if (conn != null) {
-                    try {
-                        conn.setAutoCommit(true);
-                    } catch (SQLException e) {
-                        LOGGER.log(Level.SEVERE, "Error restoring auto-commit after calculateAndSaveTotalTeachingHours.", e);
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error getting database connection for calculateAndSaveTotalTeachingHours.", e);
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Unexpected error getting database connection for calculateAndSaveTotalTeachingHours.", e);
+    public int calculateAndSaveTotalTeachingHours() throws SQLException {
+        String updateQuery =
+                "UPDATE teachers t " +
+                        "LEFT JOIN (SELECT teacher_id, SUM(whole_hours) AS total_hours " +
+                        "FROM teacher_daily_teaching GROUP BY teacher_id) r ON r.teacher_id = t.id " +
+                        "SET t.teaching_hour = COALESCE(r.total_hours, 0)";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(updateQuery)) {
+            int updated = stmt.executeUpdate();
+            LOGGER.log(Level.INFO, "Saved total teaching hours for all teachers (" + updated + " rows updated).");
+            return updated;
         }
     }
 
-
     /**
-     * Convert UI status labels to database values
-     * Assumes status column exists in class_sessions and stores these values.
-     * @param uiStatus The status string from the UI.
-     * @return The corresponding database value, or null if not mapped.
+     * Describes the teaching statistics export (per teacher and day) for the given filter.
+     * The rows are streamed by {@link ReportExportDAO} into the export file.
+     * @param fromDate The start date of the range (inclusive).
+     * @param toDate The end date of the range (inclusive).
+     * @param status The status filter ("Tất cả" for all).
+     * @return The export definition.
      */
-    private String mapStatusToDbValue(String uiStatus) {
-        switch (uiStatus) {
-            case "Đã duyệt":
-                return "approved";
-            case "Chưa duyệt":
-                return "pending";
-            case "Từ chối":
-                return "rejected";
-            default:
-                LOGGER.log(Level.WARNING, "Unmapped status received: " + uiStatus);
-                return null;
-        }
+    public ReportExportDAO.ExportQuery getExportQuery(LocalDate fromDate, LocalDate toDate, String status) {
+        String dbStatus = status == null || status.equals("Tất cả") ? null : TeachingStatisticsFilter.toDbStatus(status);
+        return ReportExportDAO.teachingStatistics(fromDate, toDate, dbStatus);
     }
 
     /**
-     * Export statistics to Excel
+     * Records an Excel export of the statistics in export_logs (the file itself is written by ExportTask).
      * Logs the action. Assumes user_id = 1 is a placeholder.
      * @param fromDate The start date of the range.
      * @param toDate The end date of the range.
@@ -226,7 +172,7 @@ public class TeachingStatisticsDAO {
                 "VALUES (?, ?, ?, ?, ?)";
 
         int userId = 1; // Assuming user_id is 1 for now - replace with actual user ID
-        String dbStatus = mapStatusToDbValue(status);
+        String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
 
         // Assuming DatabaseConnection.executeUpdate handles resource closing internally
         try {
@@ -243,7 +189,7 @@ public class TeachingStatisticsDAO {
     }
 
     /**
-     * Export statistics to PDF
+     * Records a PDF export of the statistics in export_logs (the file itself is written by ExportTask).
      * Logs the action. Assumes user_id = 1 is a placeholder.
      * @param fromDate The start date of the range.
      * @param toDate The end date of the range.
@@ -255,7 +201,7 @@ public class TeachingStatisticsDAO {
                 "VALUES (?, ?, ?, ?, ?)";
 
         int userId = 1; // Assuming user_id is 1 for now - replace with actual user ID
-        String dbStatus = mapStatusToDbValue(status);
+        String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
 
         // Assuming DatabaseConnection.executeUpdate handles resource closing internally
         try {
@@ -272,7 +218,7 @@ public class TeachingStatisticsDAO {
     }
 
     /**
-     * Log print requests
+     * Records a print request in export_logs (the PDF is rendered and sent to the printer by ExportTask).
      * Logs the action. Assumes user_id = 1 is a placeholder.
      * @param fromDate The start date of the range.
      * @param toDate The end date of the range.
@@ -284,7 +230,7 @@ public class TeachingStatisticsDAO {
                 "VALUES (?, ?, ?, ?, ?)";
 
         int userId = 1; // Assuming user_id is 1 for now - replace with actual user ID
-        String dbStatus = mapStatusToDbValue(status);
+        String dbStatus = TeachingStatisticsFilter.toDbStatus(status);
 
         // Assuming DatabaseConnection.executeUpdate handles resource closing internally
         try {
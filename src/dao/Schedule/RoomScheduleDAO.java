@@ -189,22 +189,22 @@ public class RoomScheduleDAO {
                         int resultRoomSchedule = stmtRoomSchedule.executeUpdate();
 
                         if (resultRoomSchedule > 0) {
-                            connection.commit();
+                            DatabaseConnection.commit(connection);
                             return true;
                         } else {
                             LOGGER.log(Level.SEVERE, "Inserting into room_schedules failed for ID: " + roomSchedule.getId() + ", rolling back.");
-                            connection.rollback();
+                            DatabaseConnection.rollback(connection);
                             return false;
                         }
                     }
                 } else {
                     LOGGER.log(Level.SEVERE, "Inserting into schedules failed for ID: " + roomSchedule.getId() + ", rolling back.");
-                    connection.rollback();
+                    DatabaseConnection.rollback(connection);
                     return false;
                 }
             } catch (SQLException e) {
                 LOGGER.log(Level.SEVERE, "SQL Error during saving room schedule with ID: " + roomSchedule.getId(), e);
-                connection.rollback();
+                DatabaseConnection.rollback(connection);
                 return false;
             }
         } catch (SQLException e) {
@@ -213,7 +213,7 @@ public class RoomScheduleDAO {
             if (connection != null) {
                 try {
                     if (!connection.getAutoCommit()) { // Chỉ rollback nếu transaction đang được quản lý thủ công
-                        connection.rollback();
+                        DatabaseConnection.rollback(connection);
                     }
                 } catch (SQLException ex) {
                     LOGGER.log(Level.SEVERE, "Error rolling back transaction on outer catch.", ex);
@@ -225,7 +225,7 @@ public class RoomScheduleDAO {
             if (connection != null) {
                 try {
                     if (!connection.getAutoCommit()) {
-                        connection.rollback();
+                        DatabaseConnection.rollback(connection);
                     }
                 } catch (SQLException ex) {
                     LOGGER.log(Level.SEVERE, "Error rolling back transaction on outer unexpected error catch.", ex);
@@ -284,26 +284,26 @@ public class RoomScheduleDAO {
                     // Hoặc, nếu bạn muốn chỉ commit khi cả hai đều có result > 0 (nghĩa là cả hai đều thực sự update rows)
                     // thì giữ nguyên: if (resultSchedule > 0 && resultRoomSchedule > 0)
                     // Để an toàn hơn, có thể chỉ cần không có lỗi là commit, vì update không thay đổi row cũng không phải là lỗi
-                    connection.commit();
+                    DatabaseConnection.commit(connection);
                     return true; // Giả sử thành công nếu không có exception
 
                 } catch (SQLException e) {
                     LOGGER.log(Level.SEVERE, "SQL Error updating room_schedules for ID: " + roomSchedule.getId(), e);
-                    connection.rollback();
+                    DatabaseConnection.rollback(connection);
                     return false;
                 }
             } catch (SQLException e) {
                 LOGGER.log(Level.SEVERE, "SQL Error updating schedules for ID: " + roomSchedule.getId(), e);
-                connection.rollback();
+                DatabaseConnection.rollback(connection);
                 return false;
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Database connection or transaction error during updating room schedule.", e);
-            if (connection != null) { try { if (!connection.getAutoCommit()) connection.rollback(); } catch (SQLException ex) { LOGGER.log(Level.SEVERE, "Error rolling back.", ex); }}
+            if (connection != null) { try { if (!connection.getAutoCommit()) DatabaseConnection.rollback(connection); } catch (SQLException ex) { LOGGER.log(Level.SEVERE, "Error rolling back.", ex); }}
             return false;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unexpected error updating room schedule.", e);
-            if (connection != null) { try { if (!connection.getAutoCommit()) connection.rollback(); } catch (SQLException ex) { LOGGER.log(Level.SEVERE, "Error rolling back.", ex); }}
+            if (connection != null) { try { if (!connection.getAutoCommit()) DatabaseConnection.rollback(connection); } catch (SQLException ex) { LOGGER.log(Level.SEVERE, "Error rolling back.", ex); }}
             return false;
         }
         finally {
@@ -337,24 +337,24 @@ public class RoomScheduleDAO {
                 stmtSchedule.setString(1, id);
                 int resultSchedule = stmtSchedule.executeUpdate();
                 if (resultSchedule > 0) { // Chỉ thành công nếu bảng chính có dòng bị xóa
-                    connection.commit();
+                    DatabaseConnection.commit(connection);
                     return true;
                 } else {
                     // Nếu không có gì trong schedules (ví dụ ID sai hoặc type sai), rollback
                     // Hoặc nếu việc không tìm thấy bản ghi để xóa không được coi là lỗi, thì có thể commit.
                     // Hiện tại, coi như phải xóa được từ bảng 'schedules' mới là thành công.
                     LOGGER.log(Level.WARNING, "Deleting from schedules failed or ID not found: " + id + ", rolling back.");
-                    connection.rollback();
+                    DatabaseConnection.rollback(connection);
                     return false;
                 }
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "SQL Error deleting room schedule ID: " + id, e);
-            if (connection != null) { try { if (!connection.getAutoCommit()) connection.rollback(); } catch (SQLException ex) { LOGGER.log(Level.SEVERE, "Error rolling back.", ex); }}
+            if (connection != null) { try { if (!connection.getAutoCommit()) DatabaseConnection.rollback(connection); } catch (SQLException ex) { LOGGER.log(Level.SEVERE, "Error rolling back.", ex); }}
             return false;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unexpected error deleting room schedule.", e);
-            if (connection != null) { try { if (!connection.getAutoCommit()) connection.rollback(); } catch (SQLException ex) { LOGGER.log(Level.SEVERE, "Error rolling back.", ex); }}
+            if (connection != null) { try { if (!connection.getAutoCommit()) DatabaseConnection.rollback(connection); } catch (SQLException ex) { LOGGER.log(Level.SEVERE, "Error rolling back.", ex); }}
             return false;
         } finally {
             if (connection != null) { try { connection.setAutoCommit(true); connection.close(); } catch (SQLException e) { LOGGER.log(Level.SEVERE, "Error restoring/closing conn.", e); }}
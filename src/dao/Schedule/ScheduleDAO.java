@@ -265,34 +265,26 @@ public class ScheduleDAO {
                     }
                 } else {
                     LOGGER.log(Level.SEVERE, "Attempted to save schedule of unknown type: " + schedule.getClass().getName());
-                    connection.rollback(); // Rollback if type is unknown before any DML
+                    DatabaseConnection.rollback(connection); // Rollback if type is unknown before any DML
                     return false;
                 }
 
                 if (subclassSaveSuccess) {
-                    connection.commit();
+                    DatabaseConnection.commit(connection);
                     return true;
                 } else {
                     LOGGER.log(Level.SEVERE, "Subclass save failed for schedule ID: " + schedule.getId() + " (Type: " + scheduleTypeForDb + "). Rolling back.");
-                    connection.rollback();
+                    DatabaseConnection.rollback(connection);
                     return false;
                 }
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "SQL Error saving schedule ID: " + schedule.getId(), e);
-            try {
-                if (connection != null) connection.rollback();
-            } catch (SQLException ex) {
-                LOGGER.log(Level.SEVERE, "Error during rollback for schedule ID: " + schedule.getId(), ex);
-            }
+            if (connection != null) DatabaseConnection.rollback(connection);
             return false;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unexpected error saving schedule ID: " + schedule.getId(), e);
-            try {
-                if (connection != null) connection.rollback();
-            } catch (SQLException ex) {
-                LOGGER.log(Level.SEVERE, "Error during rollback for schedule ID: " + schedule.getId(), ex);
-            }
+            if (connection != null) DatabaseConnection.rollback(connection);
             return false;
         } finally {
             try {
@@ -373,31 +365,23 @@ public class ScheduleDAO {
 
 
             if (baseUpdateSuccess && subclassUpdateSuccess) {
-                connection.commit();
+                DatabaseConnection.commit(connection);
                 return true;
             } else {
                 // If baseUpdateSuccess is false, it means the schedule ID might not exist in `schedules` table, or no base fields changed.
                 // If subclassUpdateSuccess is false, it means subclass update failed or affected 0 rows critically.
                 LOGGER.log(Level.WARNING, "Update failed or resulted in no changes for schedule ID: " + schedule.getId() + ". Base success: " + baseUpdateSuccess + ", Subclass success: " + subclassUpdateSuccess + ". Rolling back.");
-                connection.rollback();
+                DatabaseConnection.rollback(connection);
                 return false; // False if base OR subclass update explicitly failed or if base not found
             }
 
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "SQL Error updating schedule ID: " + schedule.getId(), e);
-            try {
-                if (connection != null) connection.rollback();
-            } catch (SQLException ex) {
-                LOGGER.log(Level.SEVERE, "Error during rollback for schedule ID: " + schedule.getId(), ex);
-            }
+            if (connection != null) DatabaseConnection.rollback(connection);
             return false;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unexpected error updating schedule ID: " + schedule.getId(), e);
-            try {
-                if (connection != null) connection.rollback();
-            } catch (SQLException ex) {
-                LOGGER.log(Level.SEVERE, "Error during rollback for schedule ID: " + schedule.getId(), ex);
-            }
+            if (connection != null) DatabaseConnection.rollback(connection);
             return false;
         } finally {
             try {
@@ -492,31 +476,23 @@ public class ScheduleDAO {
                 baseStmt.setString(1, id);
                 int result = baseStmt.executeUpdate();
                 if (result > 0) {
-                    connection.commit();
+                    DatabaseConnection.commit(connection);
                     return true;
                 } else {
                     // Should not happen if ID was found by typeQuery, implies an issue.
                     LOGGER.log(Level.SEVERE, "Failed to delete base schedule for ID: " + id + " after subclass delete attempt. Rolling back.");
-                    connection.rollback();
+                    DatabaseConnection.rollback(connection);
                     return false;
                 }
             }
 
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "SQL Error deleting schedule ID: " + id, e);
-            try {
-                if (connection != null) connection.rollback();
-            } catch (SQLException ex) {
-                LOGGER.log(Level.SEVERE, "Error during rollback for schedule ID: " + id, ex);
-            }
+            if (connection != null) DatabaseConnection.rollback(connection);
             return false;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unexpected error deleting schedule ID: " + id, e);
-            try {
-                if (connection != null) connection.rollback();
-            } catch (SQLException ex) {
-                LOGGER.log(Level.SEVERE, "Error during rollback for schedule ID: " + id, ex);
-            }
+            if (connection != null) DatabaseConnection.rollback(connection);
             return false;
         } finally {
             try {
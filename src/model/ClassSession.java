@@ -22,6 +22,7 @@ public class ClassSession {
     private String courseName; // Name of the Class/Cohort, denormalized from classes.class_name
 
     private String teacherName; // Denormalized teacher name, from teachers.name
+    private String teacherId;   // Foreign key to teachers.id (class_sessions.teacher_id)
     private String roomName;    // Denormalized room name/identifier, from rooms.room_name (maps to 'room' column)
 
     private LocalDate sessionDate; // The specific date of the session
@@ -158,9 +159,21 @@ public class ClassSession {
     }
 
     public void setTeacher(String teacherName) {
+        // Đổi tên giáo viên thì ID cũ không còn đúng; DAO sẽ tra lại ID theo tên khi lưu
+        if (!Objects.equals(this.teacherName, teacherName)) {
+            this.teacherId = null;
+        }
         this.teacherName = teacherName;
     }
 
+    public String getTeacherId() {
+        return teacherId;
+    }
+
+    public void setTeacherId(String teacherId) {
+        this.teacherId = teacherId;
+    }
+
     public String getRoom() {
         return roomName;
     }
@@ -406,6 +419,7 @@ public class ClassSession {
         copy.setCourseId(this.courseId);
         copy.setCourseName(this.courseName); // Copies the cohort name
         copy.setTeacher(this.teacherName);
+        copy.setTeacherId(this.teacherId);
         copy.setRoom(this.roomName);
         copy.setSessionNotes(this.sessionNotes);
         // Use the public setDate to ensure consistent date part updates for startTime/endTime
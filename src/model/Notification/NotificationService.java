@@ -2,6 +2,7 @@
 package src.model.Notification;
 
 import src.dao.Notifications.NotificationDAO; // Import DAO
+import src.utils.IdGenerators;
 
 import java.util.List;
 // import java.util.stream.Collectors; // Không còn cần thiết nếu DAO trả về đúng danh sách
@@ -17,8 +18,8 @@ public class NotificationService {
 
     // Tạo và gửi thông báo đến Admins (lưu vào DB)
     public void sendNotificationToAdmins(String message, String senderId) {
-        // Tạo ID duy nhất cho thông báo. Có thể xem xét dùng UUID nếu muốn chuẩn hơn.
-        String notificationId = "NOTIF-" + System.currentTimeMillis();
+        // Tạo ID duy nhất, tăng dần theo thời gian cho thông báo
+        String notificationId = IdGenerators.nextId();
 
         // Sử dụng constructor chính để tạo đối tượng Notification mới
         Notification notification = new Notification(
@@ -0,0 +1,299 @@
+package src.model.attendance;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ma trận điểm danh của một khóa học (học viên × buổi học) được lưu dưới dạng bitset.
+ * Mỗi học viên có các bitset present / excused / called / recorded, bit thứ i ứng với buổi học thứ i
+ * (theo thứ tự của danh sách buổi học truyền vào).
+ *
+ * Ma trận được AttendanceDAO nạp một lần cho cả khóa học và được chính DAO cập nhật tại chỗ sau mỗi lần lưu
+ * điểm danh (kể cả từ hàng đợi write-behind), nên các thống kê như tỷ lệ có mặt, chuỗi buổi liên tiếp hay
+ * số buổi vắng đều chỉ là phép toán trên bit. Các phương thức được đồng bộ vì việc cập nhật có thể chạy
+ * trên luồng nền trong khi giao diện đang đọc.
+ */
+public class CourseAttendanceMatrix {
+
+    private final String courseId;
+    private final String[] studentIds;
+    private final String[] sessionIds;
+    private final Map<String, Integer> studentIndex;
+    private final Map<String, Integer> sessionIndex;
+
+    private final BitSet[] present;
+    private final BitSet[] excused;
+    private final BitSet[] called;
+    private final BitSet[] recorded;
+
+    /**
+     * Tạo ma trận rỗng cho khóa học.
+     *
+     * @param courseId   ID của khóa học
+     * @param studentIds Danh sách ID học viên (thứ tự dòng)
+     * @param sessionIds Danh sách ID buổi học theo thứ tự thời gian (thứ tự cột)
+     */
+    public CourseAttendanceMatrix(String courseId, List<String> studentIds, List<String> sessionIds) {
+        this.courseId = courseId;
+        this.studentIds = studentIds.toArray(new String[0]);
+        this.sessionIds = sessionIds.toArray(new String[0]);
+        this.studentIndex = indexOf(this.studentIds);
+        this.sessionIndex = indexOf(this.sessionIds);
+
+        int studentCount = this.studentIds.length;
+        int sessionCount = this.sessionIds.length;
+        this.present = newBitSets(studentCount, sessionCount);
+        this.excused = newBitSets(studentCount, sessionCount);
+        this.called = newBitSets(studentCount, sessionCount);
+        this.recorded = newBitSets(studentCount, sessionCount);
+    }
+
+    private static Map<String, Integer> indexOf(String[] ids) {
+        Map<String, Integer> index = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            index.put(ids[i], i);
+        }
+        return index;
+    }
+
+    private static BitSet[] newBitSets(int count, int bits) {
+        BitSet[] sets = new BitSet[count];
+        for (int i = 0; i < count; i++) {
+            sets[i] = new BitSet(bits);
+        }
+        return sets;
+    }
+
+    public String getCourseId() {
+        return courseId;
+    }
+
+    public int getStudentCount() {
+        return studentIds.length;
+    }
+
+    public int getSessionCount() {
+        return sessionIds.length;
+    }
+
+    public List<String> getStudentIds() {
+        return Collections.unmodifiableList(Arrays.asList(studentIds));
+    }
+
+    public List<String> getSessionIds() {
+        return Collections.unmodifiableList(Arrays.asList(sessionIds));
+    }
+
+    public boolean containsStudent(String studentId) {
+        return studentIndex.containsKey(studentId);
+    }
+
+    public boolean containsSession(String sessionId) {
+        return sessionIndex.containsKey(sessionId);
+    }
+
+    private int studentRow(String studentId) {
+        Integer row = studentIndex.get(studentId);
+        return row != null ? row : -1;
+    }
+
+    private int sessionColumn(String sessionId) {
+        Integer column = sessionIndex.get(sessionId);
+        return column != null ? column : -1;
+    }
+
+    // --- Cập nhật tại chỗ ---
+
+    /**
+     * Ghi nhận trạng thái điểm danh của một học viên trong một buổi học.
+     *
+     * @return true nếu ô tồn tại trong ma trận và đã được cập nhật
+     */
+    public synchronized boolean setAttendance(String studentId, String sessionId, boolean isPresent, boolean hasPermission, boolean isCalled) {
+        int row = studentRow(studentId);
+        int column = sessionColumn(sessionId);
+        if (row < 0 || column < 0) {
+            return false;
+        }
+        recorded[row].set(column);
+        present[row].set(column, isPresent);
+        excused[row].set(column, !isPresent && hasPermission);
+        called[row].set(column, isCalled);
+        return true;
+    }
+
+    /**
+     * Ghi nhận trạng thái điểm danh từ một bản ghi Attendance.
+     */
+    public boolean setAttendance(Attendance attendance) {
+        return setAttendance(attendance.getStudentId(), attendance.getSessionId(),
+                attendance.isPresent(), attendance.hasPermission(), attendance.isCalled());
+    }
+
+    /**
+     * Xóa trạng thái điểm danh của một ô (ví dụ khi bản ghi bị xóa).
+     */
+    public synchronized void clearAttendance(String studentId, String sessionId) {
+        int row = studentRow(studentId);
+        int column = sessionColumn(sessionId);
+        if (row < 0 || column < 0) {
+            return;
+        }
+        recorded[row].clear(column);
+        present[row].clear(column);
+        excused[row].clear(column);
+        called[row].clear(column);
+    }
+
+    // --- Truy vấn từng ô ---
+
+    public synchronized boolean isRecorded(String studentId, String sessionId) {
+        int row = studentRow(studentId);
+        int column = sessionColumn(sessionId);
+        return row >= 0 && column >= 0 && recorded[row].get(column);
+    }
+
+    public synchronized boolean isPresent(String studentId, String sessionId) {
+        int row = studentRow(studentId);
+        int column = sessionColumn(sessionId);
+        return row >= 0 && column >= 0 && present[row].get(column);
+    }
+
+    public synchronized boolean isExcused(String studentId, String sessionId) {
+        int row = studentRow(studentId);
+        int column = sessionColumn(sessionId);
+        return row >= 0 && column >= 0 && excused[row].get(column);
+    }
+
+    public synchronized boolean isCalled(String studentId, String sessionId) {
+        int row = studentRow(studentId);
+        int column = sessionColumn(sessionId);
+        return row >= 0 && column >= 0 && called[row].get(column);
+    }
+
+    // --- Thống kê theo học viên (phép toán bit) ---
+
+    /**
+     * Số buổi đã được điểm danh của học viên.
+     */
+    public synchronized int getRecordedCount(String studentId) {
+        int row = studentRow(studentId);
+        return row >= 0 ? recorded[row].cardinality() : 0;
+    }
+
+    public synchronized int getPresentCount(String studentId) {
+        int row = studentRow(studentId);
+        return row >= 0 ? present[row].cardinality() : 0;
+    }
+
+    /**
+     * Số buổi vắng (đã điểm danh nhưng không có mặt), gồm cả có phép và không phép.
+     */
+    public synchronized int getAbsenceCount(String studentId) {
+        int row = studentRow(studentId);
+        if (row < 0) {
+            return 0;
+        }
+        BitSet absent = (BitSet) recorded[row].clone();
+        absent.andNot(present[row]);
+        return absent.cardinality();
+    }
+
+    public synchronized int getExcusedAbsenceCount(String studentId) {
+        int row = studentRow(studentId);
+        return row >= 0 ? excused[row].cardinality() : 0;
+    }
+
+    public synchronized int getUnexcusedAbsenceCount(String studentId) {
+        return getAbsenceCount(studentId) - getExcusedAbsenceCount(studentId);
+    }
+
+    /**
+     * Số buổi vắng chưa được gọi điện thông báo.
+     */
+    public synchronized int getUncalledAbsenceCount(String studentId) {
+        int row = studentRow(studentId);
+        if (row < 0) {
+            return 0;
+        }
+        BitSet uncalled = (BitSet) recorded[row].clone();
+        uncalled.andNot(present[row]);
+        uncalled.andNot(called[row]);
+        return uncalled.cardinality();
+    }
+
+    /**
+     * Tỷ lệ có mặt trên số buổi đã điểm danh (0.0 - 1.0).
+     */
+    public synchronized double getAttendanceRate(String studentId) {
+        int recordedCount = getRecordedCount(studentId);
+        return recordedCount > 0 ? (double) getPresentCount(studentId) / recordedCount : 0.0;
+    }
+
+    /**
+     * Số buổi có mặt liên tiếp tính ngược từ buổi đã điểm danh gần nhất.
+     */
+    public synchronized int getCurrentPresentStreak(String studentId) {
+        int row = studentRow(studentId);
+        if (row < 0) {
+            return 0;
+        }
+        int last = recorded[row].previousSetBit(sessionIds.length - 1);
+        if (last < 0 || !present[row].get(last)) {
+            return 0;
+        }
+        // Buổi vắng gần nhất trước đó (bit đã điểm danh nhưng không có mặt)
+        BitSet absent = (BitSet) recorded[row].clone();
+        absent.andNot(present[row]);
+        int lastAbsent = absent.previousSetBit(last);
+        BitSet streak = present[row].get(lastAbsent + 1, last + 1);
+        return streak.cardinality();
+    }
+
+    /**
+     * Chuỗi buổi có mặt liên tiếp dài nhất của học viên.
+     * Chuỗi bị ngắt bởi buổi vắng đã điểm danh; buổi chưa điểm danh được bỏ qua.
+     */
+    public synchronized int getLongestPresentStreak(String studentId) {
+        int row = studentRow(studentId);
+        if (row < 0) {
+            return 0;
+        }
+        BitSet absent = (BitSet) recorded[row].clone();
+        absent.andNot(present[row]);
+
+        int longest = 0;
+        int from = 0;
+        while (from < sessionIds.length) {
+            int nextAbsent = absent.nextSetBit(from);
+            int to = nextAbsent >= 0 ? nextAbsent : sessionIds.length;
+            longest = Math.max(longest, present[row].get(from, to).cardinality());
+            if (nextAbsent < 0) {
+                break;
+            }
+            from = nextAbsent + 1;
+        }
+        return longest;
+    }
+
+    /**
+     * Số học viên có mặt trong một buổi học.
+     */
+    public synchronized int getPresentCountForSession(String sessionId) {
+        int column = sessionColumn(sessionId);
+        if (column < 0) {
+            return 0;
+        }
+        int count = 0;
+        for (BitSet row : present) {
+            if (row.get(column)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,117 @@
+package src.model.dashboard;
+
+import src.model.ClassSession;
+import src.model.system.schedule.ScheduleItem;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything the dashboard shows, read at one moment (see DashboardDAO#loadSnapshot).
+ * Immutable, so it can be built on a background thread and handed to the FX thread as is.
+ */
+public final class DashboardSnapshot {
+
+    /**
+     * A slice of the course distribution chart: the sessions of one course, or of the courses folded into
+     * the "others" slice.
+     */
+    public static final class CourseShare {
+        private final String courseName;
+        private final int sessionCount;
+        private final int foldedCourses;
+
+        public CourseShare(String courseName, int sessionCount) {
+            this(courseName, sessionCount, 0);
+        }
+
+        /**
+         * @param courseName    Course name, null for the "others" slice
+         * @param sessionCount  Number of sessions
+         * @param foldedCourses Number of courses in the "others" slice, 0 for a single course
+         */
+        public CourseShare(String courseName, int sessionCount, int foldedCourses) {
+            this.courseName = courseName;
+            this.sessionCount = sessionCount;
+            this.foldedCourses = foldedCourses;
+        }
+
+        public String getCourseName() {
+            return courseName;
+        }
+
+        public int getSessionCount() {
+            return sessionCount;
+        }
+
+        public int getFoldedCourses() {
+            return foldedCourses;
+        }
+
+        public boolean isOthers() {
+            return foldedCourses > 0;
+        }
+    }
+
+    private final int totalStudents;
+    private final int totalCourses;
+    private final double attendanceRate;
+    private final double homeworkPercentage;
+    private final List<CourseShare> courseDistribution;
+    private final List<ClassSession> todayClasses;
+    private final List<ScheduleItem> upcomingSchedules;
+    private final LocalDateTime loadedAt;
+
+    public DashboardSnapshot(int totalStudents, int totalCourses, double attendanceRate, double homeworkPercentage,
+                             List<CourseShare> courseDistribution, List<ClassSession> todayClasses,
+                             List<ScheduleItem> upcomingSchedules, LocalDateTime loadedAt) {
+        this.totalStudents = totalStudents;
+        this.totalCourses = totalCourses;
+        this.attendanceRate = attendanceRate;
+        this.homeworkPercentage = homeworkPercentage;
+        this.courseDistribution = Collections.unmodifiableList(new ArrayList<>(courseDistribution));
+        this.todayClasses = Collections.unmodifiableList(new ArrayList<>(todayClasses));
+        this.upcomingSchedules = Collections.unmodifiableList(new ArrayList<>(upcomingSchedules));
+        this.loadedAt = loadedAt;
+    }
+
+    public int getTotalStudents() {
+        return totalStudents;
+    }
+
+    public int getTotalCourses() {
+        return totalCourses;
+    }
+
+    /**
+     * @return Overall attendance rate as a percentage (0-100)
+     */
+    public double getAttendanceRate() {
+        return attendanceRate;
+    }
+
+    /**
+     * @return Completed homework of the current month as a percentage (0-100)
+     */
+    public double getHomeworkPercentage() {
+        return homeworkPercentage;
+    }
+
+    public List<CourseShare> getCourseDistribution() {
+        return courseDistribution;
+    }
+
+    public List<ClassSession> getTodayClasses() {
+        return todayClasses;
+    }
+
+    public List<ScheduleItem> getUpcomingSchedules() {
+        return upcomingSchedules;
+    }
+
+    public LocalDateTime getLoadedAt() {
+        return loadedAt;
+    }
+}
@@ -0,0 +1,53 @@
+package src.model.report;
+
+import src.model.attendance.StudentAttendanceData;
+import src.model.details.DetailsModel.StudentGradeModel;
+
+/**
+ * One student's report card for a course: the course grade (as on the details screen), the attendance counts
+ * and the session metrics (as on the attendance screen), aggregated over the whole course.
+ */
+public class ReportCardData {
+    private final StudentGradeModel grade;          // null nếu học viên chưa có điểm nào
+    private final StudentAttendanceData metrics;
+    private final String birthday;
+    private final int presentCount;
+    private final int excusedCount;
+    private final int unexcusedCount;
+    private final int totalCount;
+    private final int submittedHomework;
+    private final int assignedHomework;
+
+    public ReportCardData(StudentGradeModel grade, StudentAttendanceData metrics, String birthday,
+                          int presentCount, int excusedCount, int unexcusedCount, int totalCount,
+                          int submittedHomework, int assignedHomework) {
+        this.grade = grade;
+        this.metrics = metrics;
+        this.birthday = birthday;
+        this.presentCount = presentCount;
+        this.excusedCount = excusedCount;
+        this.unexcusedCount = unexcusedCount;
+        this.totalCount = totalCount;
+        this.submittedHomework = submittedHomework;
+        this.assignedHomework = assignedHomework;
+    }
+
+    public StudentGradeModel getGrade() { return grade; }
+    public StudentAttendanceData getMetrics() { return metrics; }
+    public String getStudentId() { return metrics.getStudent().getId(); }
+    public String getStudentName() { return metrics.getStudent().getName(); }
+    public String getBirthday() { return birthday; }
+    public int getPresentCount() { return presentCount; }
+    public int getExcusedCount() { return excusedCount; }
+    public int getUnexcusedCount() { return unexcusedCount; }
+    public int getTotalCount() { return totalCount; }
+    public int getSubmittedHomework() { return submittedHomework; }
+    public int getAssignedHomework() { return assignedHomework; }
+
+    /**
+     * @return Share of recorded sessions the student attended, in percent (0 if none were recorded)
+     */
+    public double getAttendanceRate() {
+        return totalCount > 0 ? presentCount * 100.0 / totalCount : 0.0;
+    }
+}
@@ -2,14 +2,20 @@ package src.model.report;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.logging.Logger;
 
 import src.dao.Report.ReportDAO;
 import src.utils.DaoManager; // THÊM IMPORT CHO DAO MANAGER
+import src.utils.QueryFanOut;
 
 public class ReportModel {
+    private static final Logger LOGGER = Logger.getLogger(ReportModel.class.getName());
+    private static final Duration QUERY_TIMEOUT = Duration.ofSeconds(15);
+
     // Data containers
     private double attendancePercentage = 0;
     private double homeworkPercentage = 0;
@@ -38,24 +44,29 @@ public class ReportModel {
     public void loadReportData(LocalDate fromDate, LocalDate toDate) {
         classReportData.clear();
         this.trueOverallAverageHomeworkScore = 0.0;
-        try {
-            List<ClassReportData> rawData = reportDAO.getClassReportData(fromDate, toDate);
+        // Hai truy vấn độc lập: chạy song song, mỗi truy vấn có timeout riêng; phần nào lỗi thì hiển thị phần còn lại
+        try (QueryFanOut fanOut = new QueryFanOut(QUERY_TIMEOUT)) {
+            QueryFanOut.Subtask<List<ClassReportData>> classReport = fanOut.fork("classReportData",
+                    () -> reportDAO.getClassReportData(fromDate, toDate));
+            QueryFanOut.Subtask<ReportDAO.OverallHomeworkStats> homeworkStats = fanOut.fork("overallHomeworkStats",
+                    () -> reportDAO.getOverallHomeworkSubmissionStats(fromDate, toDate));
+            fanOut.join();
+
+            List<ClassReportData> rawData = classReport.orElse(null);
             if (rawData != null) {
                 classReportData.addAll(rawData);
             }
 
-            ReportDAO.OverallHomeworkStats overallStats = reportDAO.getOverallHomeworkSubmissionStats(fromDate, toDate);
-            if (overallStats.countOfGradedSubmissions > 0) {
+            ReportDAO.OverallHomeworkStats overallStats = homeworkStats.orElse(null);
+            if (overallStats != null && overallStats.countOfGradedSubmissions > 0) {
                 this.trueOverallAverageHomeworkScore = overallStats.sumOfGrades / overallStats.countOfGradedSubmissions;
             } else {
                 this.trueOverallAverageHomeworkScore = 0.0; // Hoặc Double.NaN nếu bạn muốn biểu thị "không có dữ liệu"
             }
 
-        } catch (Exception e) {
-            System.err.println("Error loading report data from DAO: " + e.getMessage());
-            e.printStackTrace();
-            // Consider throwing a custom exception for the Controller to handle
-            // Reset các giá trị nếu có lỗi
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warning("Loading report data was interrupted.");
             classReportData.clear();
             this.trueOverallAverageHomeworkScore = 0.0;
         }
@@ -0,0 +1,124 @@
+package src.model.system.course;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lightweight, read-only view of a course for list screens.
+ * Carries the teacher's ID and name instead of a full Teacher object.
+ */
+public class CourseSummary {
+    private final String courseId;
+    private final String courseName;
+    private final String subject;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final LocalTime startTime;
+    private final LocalTime endTime;
+    private final List<String> daysOfWeekList; // "Mon", "Wed", ...
+    private final String roomId;
+    private final String teacherId;
+    private final String teacherName;
+    private final int totalSessions;
+    private final float progress;
+    private final int currentSessionNumber; // MAX(session_number) của các buổi đã diễn ra
+    private final float sessionProgress;    // min(currentSessionNumber, totalSessions) / totalSessions * 100
+
+    public CourseSummary(String courseId, String courseName, String subject, LocalDate startDate, LocalDate endDate,
+                         LocalTime startTime, LocalTime endTime, List<String> daysOfWeekList, String roomId,
+                         String teacherId, String teacherName, int totalSessions, float progress,
+                         int currentSessionNumber, float sessionProgress) {
+        this.courseId = courseId;
+        this.courseName = courseName;
+        this.subject = subject;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.daysOfWeekList = daysOfWeekList != null ? new ArrayList<>(daysOfWeekList) : new ArrayList<>();
+        this.roomId = roomId;
+        this.teacherId = teacherId;
+        this.teacherName = teacherName;
+        this.totalSessions = totalSessions;
+        this.progress = progress;
+        this.currentSessionNumber = currentSessionNumber;
+        this.sessionProgress = sessionProgress;
+    }
+
+    public String getCourseId() {
+        return courseId;
+    }
+
+    public String getCourseName() {
+        return courseName;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public LocalTime getCourseStartTime() {
+        return startTime;
+    }
+
+    public LocalTime getCourseEndTime() {
+        return endTime;
+    }
+
+    public List<String> getDaysOfWeekList() {
+        return new ArrayList<>(daysOfWeekList);
+    }
+
+    public String getDaysOfWeekAsString() {
+        return String.join(",", daysOfWeekList);
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public String getTeacherId() {
+        return teacherId;
+    }
+
+    public String getTeacherName() {
+        return teacherName;
+    }
+
+    public int getTotalSessions() {
+        return totalSessions;
+    }
+
+    public float getProgress() {
+        return progress;
+    }
+
+    public int getCurrentSessionNumber() {
+        return currentSessionNumber;
+    }
+
+    public float getSessionProgress() {
+        return sessionProgress;
+    }
+
+    @Override
+    public String toString() {
+        return "CourseSummary{" +
+                "ID='" + courseId + '\'' +
+                ", Name='" + courseName + '\'' +
+                ", Days: " + getDaysOfWeekAsString() +
+                ", RoomID: " + (roomId != null ? roomId : "N/A") +
+                ", Teacher: " + (teacherName != null ? teacherName : "N/A") +
+                '}';
+    }
+}
@@ -1,14 +1,32 @@
 package src.model.teaching;
 
+import src.model.teaching.cube.CubeDimension;
+
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Filter of the teaching statistics screens.
+ * <p>
+ * Besides the period and status used by the statistics DAOs, it carries the group-by dimensions and the dimension
+ * filters of an ad-hoc query on the in-memory teaching cube (TeachingCubeDAO), so a new slice such as
+ * room x weekday is just a different filter.
+ */
 public class TeachingStatisticsFilter {
     private String periodType;
     private LocalDate fromDate;
     private LocalDate toDate;
     private String status;
+    private final List<CubeDimension> groupBy = new ArrayList<>();
+    private final Map<CubeDimension, Set<String>> dimensionFilters = new EnumMap<>(CubeDimension.class);
 
     public static final List<String> STATUS_OPTIONS = Arrays.asList("Tất cả", "Đã duyệt", "Chưa duyệt", "Từ chối");
 
@@ -50,4 +68,59 @@ public class TeachingStatisticsFilter {
     public void setStatus(String status) {
         this.status = status;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return Dimensions to group by, in order (empty for a single total)
+     */
+    public List<CubeDimension> getGroupBy() {
+        return Collections.unmodifiableList(groupBy);
+    }
+
+    public void setGroupBy(CubeDimension... dimensions) {
+        groupBy.clear();
+        for (CubeDimension dimension : dimensions) {
+            if (!groupBy.contains(dimension)) {
+                groupBy.add(dimension);
+            }
+        }
+    }
+
+    /**
+     * @return Allowed keys per filtered dimension (see {@link CubeDimension} for the key format)
+     */
+    public Map<CubeDimension, Set<String>> getDimensionFilters() {
+        return Collections.unmodifiableMap(dimensionFilters);
+    }
+
+    /**
+     * Restricts a dimension to the given keys; null or empty removes the restriction.
+     */
+    public void setDimensionFilter(CubeDimension dimension, Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            dimensionFilters.remove(dimension);
+        } else {
+            dimensionFilters.put(dimension, Collections.unmodifiableSet(new LinkedHashSet<>(keys)));
+        }
+    }
+
+    /**
+     * Converts a status label of {@link #STATUS_OPTIONS} to the value stored in class_sessions.status.
+     *
+     * @return The database value, or null for "Tất cả" (no filter) and unknown labels
+     */
+    public static String toDbStatus(String uiStatus) {
+        if (uiStatus == null) {
+            return null;
+        }
+        switch (uiStatus) {
+            case "Đã duyệt":
+                return "approved";
+            case "Chưa duyệt":
+                return "pending";
+            case "Từ chối":
+                return "rejected";
+            default:
+                return null;
+        }
+    }
+}
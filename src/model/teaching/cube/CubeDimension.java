@@ -0,0 +1,30 @@
+package src.model.teaching.cube;
+
+/**
+ * Dimensions of the {@link TeachingCube}. Keys used in filters and results:
+ * <ul>
+ *   <li>TEACHER: teacher ID ('' for sessions without a teacher), COURSE: course ID, ROOM: room, STATUS: session status</li>
+ *   <li>YEAR: "2025", QUARTER: "2025-Q1", MONTH: "2025-01", WEEKDAY: "1" (Monday) to "7" (Sunday), DAY: "2025-01-31"</li>
+ * </ul>
+ */
+public enum CubeDimension {
+    TEACHER("Giáo viên"),
+    COURSE("Lớp học"),
+    ROOM("Phòng"),
+    STATUS("Trạng thái"),
+    YEAR("Năm"),
+    QUARTER("Quý"),
+    MONTH("Tháng"),
+    WEEKDAY("Thứ"),
+    DAY("Ngày");
+
+    private final String label;
+
+    CubeDimension(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
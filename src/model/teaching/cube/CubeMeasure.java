@@ -0,0 +1,26 @@
+package src.model.teaching.cube;
+
+/**
+ * Additive measures of the {@link TeachingCube}, summed over the sessions of each group.
+ */
+public enum CubeMeasure {
+    SESSIONS("Số buổi"),
+    MINUTES("Số phút"),
+    WHOLE_HOURS("Số giờ"),
+    ATTENDANCE_RECORDS("Lượt điểm danh"),
+    PRESENT("Có mặt"),
+    EXCUSED("Vắng có phép"),
+    UNEXCUSED("Vắng không phép"),
+    /** Students enrolled in the session's course, i.e. expected attendances. */
+    EXPECTED_ATTENDANCE("Lượt dự kiến");
+
+    private final String label;
+
+    CubeMeasure(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,110 @@
+package src.model.teaching.cube;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a {@link TeachingCube} query: one row per combination of the group-by dimensions, plus the grand total.
+ */
+public class CubeResult {
+
+    /**
+     * One group: its dimension keys / display labels (in group-by order) and the summed measures.
+     */
+    public static final class Row {
+        private final String[] keys;
+        private final String[] labels;
+        private final long[] measures;
+
+        Row(String[] keys, String[] labels, long[] measures) {
+            this.keys = keys;
+            this.labels = labels;
+            this.measures = measures;
+        }
+
+        public String getKey(int dimension) { return keys[dimension]; }
+        public String getLabel(int dimension) { return labels[dimension]; }
+
+        public long get(CubeMeasure measure) {
+            return measures[measure.ordinal()];
+        }
+
+        /**
+         * @return Teaching time in hours (from minutes)
+         */
+        public double getHours() {
+            return get(CubeMeasure.MINUTES) / 60.0;
+        }
+
+        /**
+         * @return Present / attendance records in percent, 0 when nothing was recorded
+         */
+        public double getAttendanceRate() {
+            long records = get(CubeMeasure.ATTENDANCE_RECORDS);
+            return records > 0 ? get(CubeMeasure.PRESENT) * 100.0 / records : 0.0;
+        }
+    }
+
+    private final List<CubeDimension> dimensions;
+    private final List<Row> rows;
+    private final Row total;
+
+    CubeResult(List<CubeDimension> dimensions, List<Row> rows) {
+        this.dimensions = Collections.unmodifiableList(new ArrayList<>(dimensions));
+        this.rows = Collections.unmodifiableList(rows);
+        long[] sums = new long[CubeMeasure.values().length];
+        for (Row row : rows) {
+            for (int m = 0; m < sums.length; m++) {
+                sums[m] += row.measures[m];
+            }
+        }
+        this.total = new Row(new String[0], new String[0], sums);
+    }
+
+    public List<CubeDimension> getDimensions() {
+        return dimensions;
+    }
+
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    public Row getTotal() {
+        return total;
+    }
+
+    /**
+     * Rolls the result up to a subset of its dimensions without going back to the cube.
+     *
+     * @param keep dimensions to keep (each must be a dimension of this result)
+     * @return Result grouped by the kept dimensions, in the order of the first occurrence of each group
+     */
+    public CubeResult rollUp(CubeDimension... keep) {
+        int[] positions = new int[keep.length];
+        for (int i = 0; i < keep.length; i++) {
+            positions[i] = dimensions.indexOf(keep[i]);
+            if (positions[i] < 0) {
+                throw new IllegalArgumentException("Dimension " + keep[i] + " is not part of this result");
+            }
+        }
+        Map<List<String>, Row> groups = new LinkedHashMap<>();
+        for (Row row : rows) {
+            String[] keys = new String[keep.length];
+            String[] labels = new String[keep.length];
+            for (int i = 0; i < keep.length; i++) {
+                keys[i] = row.keys[positions[i]];
+                labels[i] = row.labels[positions[i]];
+            }
+            Row group = groups.computeIfAbsent(Arrays.asList(keys),
+                    k -> new Row(keys, labels, new long[CubeMeasure.values().length]));
+            for (int m = 0; m < group.measures.length; m++) {
+                group.measures[m] += row.measures[m];
+            }
+        }
+        return new CubeResult(Arrays.asList(keep), new ArrayList<>(groups.values()));
+    }
+}
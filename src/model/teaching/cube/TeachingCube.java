@@ -0,0 +1,496 @@
+package src.model.teaching.cube;
+
+import src.model.teaching.TeachingStatisticsFilter;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Columnar in-memory cube of class sessions for ad-hoc teaching and class analytics.
+ * <p>
+ * One row per class session, stored column by column in primitive arrays. Teacher, course, room and status are
+ * dictionary-encoded (int codes); the day, the month (year * 12 + month - 1) and the weekday are stored as numbers
+ * so that the time dimensions need no date arithmetic at query time. Measures are the session's duration and its
+ * attendance counts; enrollment is kept per course and turned into expected attendances while aggregating.
+ * <p>
+ * {@link #query(TeachingStatisticsFilter)} scans the columns once, filtering by date range, status and any
+ * dimension filters and grouping by the filter's group-by dimensions, which takes milliseconds for hundreds of
+ * thousands of sessions. Rows are updated in place by session ID ({@link #upsertSession}, {@link #setAttendance},
+ * {@link #removeSession}), so TeachingCubeDAO can apply only what changed since its last refresh. Reads and
+ * updates are guarded by a read/write lock.
+ */
+public class TeachingCube {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MEASURES = CubeMeasure.values().length;
+    // Số khóa nhóm tối đa dùng mảng slot trực tiếp thay cho HashMap
+    private static final int DENSE_KEY_LIMIT = 1 << 22;
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final String[] WEEKDAY_LABELS = {"Thứ 2", "Thứ 3", "Thứ 4", "Thứ 5", "Thứ 6", "Thứ 7", "Chủ nhật"};
+
+    /**
+     * String &lt;-&gt; dense int code, with a display label per code.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> keys = new ArrayList<>();
+        private final List<String> labels = new ArrayList<>();
+
+        int encode(String key, String label) {
+            String k = key != null ? key : "";
+            Integer code = codes.get(k);
+            if (code == null) {
+                code = keys.size();
+                codes.put(k, code);
+                keys.add(k);
+                labels.add(label != null && !label.isEmpty() ? label : k);
+            } else if (label != null && !label.isEmpty()) {
+                labels.set(code, label); // tên mới nhất (vd. giáo viên đổi tên)
+            }
+            return code;
+        }
+
+        int codeOf(String key) {
+            Integer code = codes.get(key != null ? key : "");
+            return code != null ? code : -1;
+        }
+
+        int size() { return keys.size(); }
+        String key(int code) { return keys.get(code); }
+        String label(int code) { return labels.get(code); }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Dictionary teachers = new Dictionary();
+    private final Dictionary courses = new Dictionary();
+    private final Dictionary rooms = new Dictionary();
+    private final Dictionary statuses = new Dictionary();
+    private int[] enrolledByCourse = new int[0];
+
+    private final Map<String, Integer> rowBySession = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private int size;
+    private int[] teacher = new int[INITIAL_CAPACITY];
+    private int[] course = new int[INITIAL_CAPACITY];
+    private int[] room = new int[INITIAL_CAPACITY];
+    private int[] status = new int[INITIAL_CAPACITY];
+    private int[] day = new int[INITIAL_CAPACITY];      // epoch day
+    private int[] month = new int[INITIAL_CAPACITY];    // year * 12 + month - 1
+    private byte[] weekday = new byte[INITIAL_CAPACITY]; // 0 = thứ 2 .. 6 = chủ nhật
+    private int[] minutes = new int[INITIAL_CAPACITY];
+    private int[] wholeHours = new int[INITIAL_CAPACITY];
+    private int[] attendanceRecords = new int[INITIAL_CAPACITY];
+    private int[] present = new int[INITIAL_CAPACITY];
+    private int[] excused = new int[INITIAL_CAPACITY];
+    private int[] unexcused = new int[INITIAL_CAPACITY];
+
+    private long totalAttendanceRecords;
+
+    // --- Updates ---
+
+    /**
+     * Adds a session or replaces its dimensions and duration; its attendance counts are kept.
+     *
+     * @return true if the session was new
+     */
+    public boolean upsertSession(String sessionId, String courseId, String courseName, String teacherId, String teacherName,
+                                 String roomName, String sessionStatus, LocalDate date, int sessionMinutes, int sessionWholeHours) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowBySession.get(sessionId);
+            boolean added = row == null;
+            if (added) {
+                ensureCapacity(size + 1);
+                row = size++;
+                rowBySession.put(sessionId, row);
+            }
+            teacher[row] = teachers.encode(teacherId, teacherName);
+            course[row] = courses.encode(courseId, courseName);
+            room[row] = rooms.encode(roomName, roomName);
+            status[row] = statuses.encode(sessionStatus, sessionStatus);
+            day[row] = (int) date.toEpochDay();
+            month[row] = date.getYear() * 12 + date.getMonthValue() - 1;
+            weekday[row] = (byte) (date.getDayOfWeek().getValue() - 1);
+            minutes[row] = sessionMinutes;
+            wholeHours[row] = sessionWholeHours;
+            return added;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a session (its row is kept as a tombstone until the cube is rebuilt).
+     *
+     * @return true if the session was in the cube
+     */
+    public boolean removeSession(String sessionId) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowBySession.remove(sessionId);
+            if (row == null) {
+                return false;
+            }
+            deleted.set(row);
+            totalAttendanceRecords -= attendanceRecords[row];
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the attendance counts of a session. Unknown sessions are ignored.
+     */
+    public void setAttendance(String sessionId, int records, int presentCount, int excusedCount, int unexcusedCount) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowBySession.get(sessionId);
+            if (row == null) {
+                return;
+            }
+            totalAttendanceRecords += records - attendanceRecords[row];
+            attendanceRecords[row] = records;
+            present[row] = presentCount;
+            excused[row] = excusedCount;
+            unexcused[row] = unexcusedCount;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the number of enrolled students of every course (courses not in the map have none).
+     */
+    public void setEnrollment(Map<String, Integer> enrolledByCourseId) {
+        lock.writeLock().lock();
+        try {
+            int[] enrolled = new int[Math.max(courses.size(), 1)];
+            for (Map.Entry<String, Integer> entry : enrolledByCourseId.entrySet()) {
+                int code = courses.codeOf(entry.getKey());
+                if (code >= 0) {
+                    enrolled[code] = entry.getValue();
+                }
+            }
+            enrolledByCourse = enrolled;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of sessions in the cube
+     */
+    public int getSessionCount() {
+        lock.readLock().lock();
+        try {
+            return rowBySession.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of attendance records summed over the sessions in the cube
+     */
+    public long getAttendanceRecordCount() {
+        lock.readLock().lock();
+        try {
+            return totalAttendanceRecords;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Queries ---
+
+    /**
+     * Aggregates the sessions selected by the filter.
+     * <p>
+     * Uses the filter's date range (inclusive, null for open), its status, its dimension filters (keys as described
+     * in {@link CubeDimension}) and its group-by dimensions (none gives a single total row).
+     *
+     * @throws IllegalArgumentException if the group-by combination has too many distinct values to be keyed
+     */
+    public CubeResult query(TeachingStatisticsFilter filter) {
+        List<CubeDimension> groupBy = new ArrayList<>(filter.getGroupBy());
+        lock.readLock().lock();
+        try {
+            int fromDay = filter.getFromDate() != null ? (int) filter.getFromDate().toEpochDay() : Integer.MIN_VALUE;
+            int toDay = filter.getToDate() != null ? (int) filter.getToDate().toEpochDay() : Integer.MAX_VALUE;
+            int statusCode = -2; // không lọc
+            String dbStatus = TeachingStatisticsFilter.toDbStatus(filter.getStatus());
+            if (dbStatus != null) {
+                statusCode = statuses.codeOf(dbStatus);
+                if (statusCode < 0) {
+                    return new CubeResult(groupBy, new ArrayList<>());
+                }
+            }
+
+            List<CubeDimension> filteredDimensions = new ArrayList<>();
+            List<BitSet> allowedCodes = new ArrayList<>();
+            for (Map.Entry<CubeDimension, Set<String>> entry : filter.getDimensionFilters().entrySet()) {
+                filteredDimensions.add(entry.getKey());
+                allowedCodes.add(codesOf(entry.getKey(), entry.getValue()));
+            }
+
+            // Khóa nhóm: số hỗn hợp của các mã chiều (trừ đi mã nhỏ nhất của chiều thời gian)
+            int[] base = new int[groupBy.size()];
+            long[] radix = new long[groupBy.size()];
+            long keySpace = 1;
+            for (int i = 0; i < radix.length; i++) {
+                int[] range = codeRange(groupBy.get(i));
+                base[i] = range[0];
+                radix[i] = range[1] - range[0] + 1L;
+                try {
+                    keySpace = Math.multiplyExact(keySpace, radix[i]);
+                } catch (ArithmeticException e) {
+                    throw new IllegalArgumentException("Too many group-by dimensions: " + groupBy, e);
+                }
+            }
+
+            // Không gian khóa nhỏ: mảng slot -> nhóm, tránh boxing Long trên mỗi dòng
+            int[] slots = keySpace <= DENSE_KEY_LIMIT ? new int[(int) keySpace] : null;
+            Map<Long, Integer> sparseSlots = slots == null ? new HashMap<>() : null;
+            List<long[]> groupSums = new ArrayList<>();
+            List<int[]> groupCodes = new ArrayList<>();
+            int[] enrolled = enrolledByCourse;
+            rows:
+            for (int row = 0; row < size; row++) {
+                if (deleted.get(row) || day[row] < fromDay || day[row] > toDay
+                        || (statusCode != -2 && status[row] != statusCode)) {
+                    continue;
+                }
+                for (int f = 0; f < filteredDimensions.size(); f++) {
+                    if (!allowedCodes.get(f).get(code(filteredDimensions.get(f), row))) {
+                        continue rows;
+                    }
+                }
+                long key = 0;
+                for (int i = 0; i < radix.length; i++) {
+                    key = key * radix[i] + (code(groupBy.get(i), row) - base[i]);
+                }
+                int group;
+                if (slots != null) {
+                    group = slots[(int) key] - 1;
+                } else {
+                    Integer known = sparseSlots.get(key);
+                    group = known != null ? known : -1;
+                }
+                if (group < 0) {
+                    group = groupSums.size();
+                    groupSums.add(new long[MEASURES]);
+                    int[] codes = new int[radix.length];
+                    for (int i = 0; i < codes.length; i++) {
+                        codes[i] = code(groupBy.get(i), row);
+                    }
+                    groupCodes.add(codes);
+                    if (slots != null) {
+                        slots[(int) key] = group + 1;
+                    } else {
+                        sparseSlots.put(key, group);
+                    }
+                }
+                long[] sums = groupSums.get(group);
+                sums[CubeMeasure.SESSIONS.ordinal()]++;
+                sums[CubeMeasure.MINUTES.ordinal()] += minutes[row];
+                sums[CubeMeasure.WHOLE_HOURS.ordinal()] += wholeHours[row];
+                sums[CubeMeasure.ATTENDANCE_RECORDS.ordinal()] += attendanceRecords[row];
+                sums[CubeMeasure.PRESENT.ordinal()] += present[row];
+                sums[CubeMeasure.EXCUSED.ordinal()] += excused[row];
+                sums[CubeMeasure.UNEXCUSED.ordinal()] += unexcused[row];
+                sums[CubeMeasure.EXPECTED_ATTENDANCE.ordinal()] += course[row] < enrolled.length ? enrolled[course[row]] : 0;
+            }
+
+            Integer[] ordered = new Integer[groupSums.size()];
+            for (int g = 0; g < ordered.length; g++) {
+                ordered[g] = g;
+            }
+            Arrays.sort(ordered, groupOrder(groupBy, groupCodes));
+            List<CubeResult.Row> result = new ArrayList<>(ordered.length);
+            for (int g : ordered) {
+                int[] codes = groupCodes.get(g);
+                String[] keys = new String[codes.length];
+                String[] labels = new String[codes.length];
+                for (int i = 0; i < codes.length; i++) {
+                    keys[i] = keyOf(groupBy.get(i), codes[i]);
+                    labels[i] = labelOf(groupBy.get(i), codes[i]);
+                }
+                result.add(new CubeResult.Row(keys, labels, groupSums.get(g)));
+            }
+            return new CubeResult(groupBy, result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Dimension codes ---
+
+    private int code(CubeDimension dimension, int row) {
+        switch (dimension) {
+            case TEACHER: return teacher[row];
+            case COURSE: return course[row];
+            case ROOM: return room[row];
+            case STATUS: return status[row];
+            case YEAR: return month[row] / 12;
+            case QUARTER: return (month[row] / 12) * 4 + (month[row] % 12) / 3;
+            case MONTH: return month[row];
+            case WEEKDAY: return weekday[row];
+            case DAY: return day[row];
+            default: throw new IllegalArgumentException("Unknown dimension " + dimension);
+        }
+    }
+
+    /**
+     * @return {min, max} of the codes a dimension can take in the cube
+     */
+    private int[] codeRange(CubeDimension dimension) {
+        switch (dimension) {
+            case TEACHER: return new int[]{0, Math.max(0, teachers.size() - 1)};
+            case COURSE: return new int[]{0, Math.max(0, courses.size() - 1)};
+            case ROOM: return new int[]{0, Math.max(0, rooms.size() - 1)};
+            case STATUS: return new int[]{0, Math.max(0, statuses.size() - 1)};
+            case WEEKDAY: return new int[]{0, 6};
+            default:
+                if (size == 0) {
+                    return new int[]{0, 0};
+                }
+                int min = Integer.MAX_VALUE;
+                int max = Integer.MIN_VALUE;
+                for (int row = 0; row < size; row++) {
+                    int code = code(dimension, row);
+                    min = Math.min(min, code);
+                    max = Math.max(max, code);
+                }
+                return new int[]{min, max};
+        }
+    }
+
+    private String keyOf(CubeDimension dimension, int code) {
+        switch (dimension) {
+            case TEACHER: return teachers.key(code);
+            case COURSE: return courses.key(code);
+            case ROOM: return rooms.key(code);
+            case STATUS: return statuses.key(code);
+            case YEAR: return String.valueOf(code);
+            case QUARTER: return (code / 4) + "-Q" + (code % 4 + 1);
+            case MONTH: return String.format(Locale.ROOT, "%d-%02d", code / 12, code % 12 + 1);
+            case WEEKDAY: return String.valueOf(code + 1);
+            case DAY: return LocalDate.ofEpochDay(code).toString();
+            default: throw new IllegalArgumentException("Unknown dimension " + dimension);
+        }
+    }
+
+    private String labelOf(CubeDimension dimension, int code) {
+        switch (dimension) {
+            case TEACHER: return teachers.label(code);
+            case COURSE: return courses.label(code);
+            case ROOM: return rooms.label(code);
+            case STATUS: return statuses.label(code);
+            case QUARTER: return "Q" + (code % 4 + 1) + "/" + (code / 4);
+            case MONTH: return String.format(Locale.ROOT, "%02d/%d", code % 12 + 1, code / 12);
+            case WEEKDAY: return WEEKDAY_LABELS[code];
+            case DAY: return LocalDate.ofEpochDay(code).format(DAY_LABEL);
+            default: return keyOf(dimension, code);
+        }
+    }
+
+    /**
+     * Translates filter keys into the codes they select; unknown or malformed keys select nothing.
+     */
+    private BitSet codesOf(CubeDimension dimension, Set<String> keys) {
+        BitSet codes = new BitSet();
+        for (String key : keys) {
+            try {
+                switch (dimension) {
+                    case TEACHER: setIfKnown(codes, teachers.codeOf(key)); break;
+                    case COURSE: setIfKnown(codes, courses.codeOf(key)); break;
+                    case ROOM: setIfKnown(codes, rooms.codeOf(key)); break;
+                    case STATUS: setIfKnown(codes, statuses.codeOf(key)); break;
+                    case YEAR: codes.set(Integer.parseInt(key)); break;
+                    case QUARTER: {
+                        String[] parts = key.split("-Q");
+                        codes.set(Integer.parseInt(parts[0]) * 4 + Integer.parseInt(parts[1]) - 1);
+                        break;
+                    }
+                    case MONTH: {
+                        String[] parts = key.split("-");
+                        codes.set(Integer.parseInt(parts[0]) * 12 + Integer.parseInt(parts[1]) - 1);
+                        break;
+                    }
+                    case WEEKDAY: codes.set(DayOfWeek.of(Integer.parseInt(key)).getValue() - 1); break;
+                    case DAY: codes.set((int) LocalDate.parse(key).toEpochDay()); break;
+                    default: break;
+                }
+            } catch (RuntimeException e) {
+                // Khóa không hợp lệ: không chọn giá trị nào
+            }
+        }
+        return codes;
+    }
+
+    private static void setIfKnown(BitSet codes, int code) {
+        if (code >= 0) {
+            codes.set(code);
+        }
+    }
+
+    /**
+     * Time dimensions sort chronologically, the others by label.
+     */
+    private Comparator<Integer> groupOrder(List<CubeDimension> groupBy, List<int[]> groupCodes) {
+        return (a, b) -> {
+            for (int i = 0; i < groupBy.size(); i++) {
+                CubeDimension dimension = groupBy.get(i);
+                int ca = groupCodes.get(a)[i];
+                int cb = groupCodes.get(b)[i];
+                int cmp;
+                switch (dimension) {
+                    case TEACHER:
+                    case COURSE:
+                    case ROOM:
+                    case STATUS:
+                        cmp = labelOf(dimension, ca).compareToIgnoreCase(labelOf(dimension, cb));
+                        break;
+                    default:
+                        cmp = Integer.compare(ca, cb);
+                }
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= day.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, day.length * 2);
+        teacher = Arrays.copyOf(teacher, newCapacity);
+        course = Arrays.copyOf(course, newCapacity);
+        room = Arrays.copyOf(room, newCapacity);
+        status = Arrays.copyOf(status, newCapacity);
+        day = Arrays.copyOf(day, newCapacity);
+        month = Arrays.copyOf(month, newCapacity);
+        weekday = Arrays.copyOf(weekday, newCapacity);
+        minutes = Arrays.copyOf(minutes, newCapacity);
+        wholeHours = Arrays.copyOf(wholeHours, newCapacity);
+        attendanceRecords = Arrays.copyOf(attendanceRecords, newCapacity);
+        present = Arrays.copyOf(present, newCapacity);
+        excused = Arrays.copyOf(excused, newCapacity);
+        unexcused = Arrays.copyOf(unexcused, newCapacity);
+    }
+}
@@ -0,0 +1,149 @@
+package src.model.teaching.cube;
+
+import org.junit.jupiter.api.Test;
+import src.model.teaching.TeachingStatisticsFilter;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TeachingCubeTest {
+
+    // 2026-10-19 is a Monday
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 19);
+
+    private static TeachingCube sampleCube() {
+        TeachingCube cube = new TeachingCube();
+        cube.upsertSession("S1", "C1", "Toán", "T1", "Bình", "P101", "approved", MONDAY, 90, 1);
+        cube.upsertSession("S2", "C1", "Toán", "T1", "Bình", "P101", "approved", MONDAY.plusDays(2), 90, 1);
+        cube.upsertSession("S3", "C2", "Văn", "T2", "An", "P102", "pending", MONDAY.plusDays(7), 60, 1);
+        cube.upsertSession("S4", "C2", "Văn", "T2", "An", "P101", "approved", MONDAY.plusMonths(1), 120, 2);
+        cube.setAttendance("S1", 10, 8, 1, 1);
+        cube.setAttendance("S2", 10, 9, 1, 0);
+        cube.setAttendance("S3", 5, 5, 0, 0);
+        cube.setAttendance("S4", 5, 3, 0, 2);
+        Map<String, Integer> enrollment = new HashMap<>();
+        enrollment.put("C1", 10);
+        enrollment.put("C2", 5);
+        cube.setEnrollment(enrollment);
+        return cube;
+    }
+
+    private static TeachingStatisticsFilter allTime(CubeDimension... groupBy) {
+        TeachingStatisticsFilter filter = new TeachingStatisticsFilter();
+        filter.setFromDate(null);
+        filter.setToDate(null);
+        filter.setGroupBy(groupBy);
+        return filter;
+    }
+
+    @Test
+    void groupsAndSumsMeasuresOrderedByLabel() {
+        CubeResult result = sampleCube().query(allTime(CubeDimension.TEACHER));
+
+        List<CubeResult.Row> rows = result.getRows();
+        assertEquals(2, rows.size());
+        // "An" sorts before "Bình"
+        assertEquals("T2", rows.get(0).getKey(0));
+        assertEquals("An", rows.get(0).getLabel(0));
+        assertEquals(2, rows.get(0).get(CubeMeasure.SESSIONS));
+        assertEquals(180, rows.get(0).get(CubeMeasure.MINUTES));
+        assertEquals(3, rows.get(0).get(CubeMeasure.WHOLE_HOURS));
+        assertEquals(8, rows.get(0).get(CubeMeasure.PRESENT));
+        assertEquals(2, rows.get(0).get(CubeMeasure.UNEXCUSED));
+        assertEquals(10, rows.get(0).get(CubeMeasure.EXPECTED_ATTENDANCE));
+
+        CubeResult.Row binh = rows.get(1);
+        assertEquals(3.0, binh.getHours(), 1e-9);
+        assertEquals(85.0, binh.getAttendanceRate(), 1e-9);
+        assertEquals(20, binh.get(CubeMeasure.EXPECTED_ATTENDANCE));
+
+        assertEquals(4, result.getTotal().get(CubeMeasure.SESSIONS));
+        assertEquals(30, result.getTotal().get(CubeMeasure.ATTENDANCE_RECORDS));
+    }
+
+    @Test
+    void timeDimensionsUseTheDocumentedKeysAndSortChronologically() {
+        CubeResult result = sampleCube().query(allTime(CubeDimension.MONTH, CubeDimension.WEEKDAY));
+
+        List<CubeResult.Row> rows = result.getRows();
+        assertEquals(3, rows.size());
+        assertEquals(Arrays.asList("2026-10", "1"), Arrays.asList(rows.get(0).getKey(0), rows.get(0).getKey(1)));
+        assertEquals(Arrays.asList("2026-10", "3"), Arrays.asList(rows.get(1).getKey(0), rows.get(1).getKey(1)));
+        assertEquals(Arrays.asList("2026-11", "4"), Arrays.asList(rows.get(2).getKey(0), rows.get(2).getKey(1)));
+        assertEquals("10/2026", rows.get(0).getLabel(0));
+        assertEquals("Thứ 2", rows.get(0).getLabel(1));
+        // Mondays of October: S1 and S3
+        assertEquals(2, rows.get(0).get(CubeMeasure.SESSIONS));
+    }
+
+    @Test
+    void filtersByDateRangeStatusAndDimensionKeys() {
+        TeachingCube cube = sampleCube();
+
+        TeachingStatisticsFilter range = allTime();
+        range.setFromDate(MONDAY.plusDays(1));
+        range.setToDate(MONDAY.plusDays(7));
+        assertEquals(2, cube.query(range).getTotal().get(CubeMeasure.SESSIONS));
+
+        TeachingStatisticsFilter approved = allTime();
+        approved.setStatus("Đã duyệt");
+        assertEquals(3, cube.query(approved).getTotal().get(CubeMeasure.SESSIONS));
+
+        TeachingStatisticsFilter rejected = allTime(CubeDimension.TEACHER);
+        rejected.setStatus("Từ chối");
+        assertTrue(cube.query(rejected).getRows().isEmpty());
+
+        TeachingStatisticsFilter room = allTime(CubeDimension.COURSE);
+        room.setDimensionFilter(CubeDimension.ROOM, Collections.singletonList("P101"));
+        room.setDimensionFilter(CubeDimension.QUARTER, Collections.singletonList("2026-Q4"));
+        List<CubeResult.Row> rows = cube.query(room).getRows();
+        assertEquals(2, rows.size());
+        assertEquals(2, rows.get(0).get(CubeMeasure.SESSIONS)); // Toán
+        assertEquals(1, rows.get(1).get(CubeMeasure.SESSIONS)); // Văn, only S4 is in P101
+
+        TeachingStatisticsFilter malformed = allTime();
+        malformed.setDimensionFilter(CubeDimension.DAY, Collections.singletonList("not a day"));
+        assertEquals(0, cube.query(malformed).getTotal().get(CubeMeasure.SESSIONS));
+    }
+
+    @Test
+    void upsertKeepsAttendanceAndRemoveDropsTheSession() {
+        TeachingCube cube = sampleCube();
+
+        assertFalse(cube.upsertSession("S1", "C1", "Toán", "T2", "An", "P101", "approved", MONDAY, 90, 1));
+        assertEquals(4, cube.getSessionCount());
+        CubeResult byTeacher = cube.query(allTime(CubeDimension.TEACHER));
+        assertEquals(3, byTeacher.getRows().get(0).get(CubeMeasure.SESSIONS));
+        assertEquals(16, byTeacher.getRows().get(0).get(CubeMeasure.PRESENT));
+
+        assertTrue(cube.removeSession("S1"));
+        assertFalse(cube.removeSession("S1"));
+        assertEquals(3, cube.getSessionCount());
+        assertEquals(20, cube.getAttendanceRecordCount());
+        assertEquals(3, cube.query(allTime()).getTotal().get(CubeMeasure.SESSIONS));
+    }
+
+    @Test
+    void rollUpMatchesAQueryOnFewerDimensions() {
+        TeachingCube cube = sampleCube();
+
+        CubeResult rolled = cube.query(allTime(CubeDimension.COURSE, CubeDimension.MONTH)).rollUp(CubeDimension.COURSE);
+        CubeResult direct = cube.query(allTime(CubeDimension.COURSE));
+
+        assertEquals(direct.getRows().size(), rolled.getRows().size());
+        for (int i = 0; i < direct.getRows().size(); i++) {
+            assertEquals(direct.getRows().get(i).getKey(0), rolled.getRows().get(i).getKey(0));
+            for (CubeMeasure measure : CubeMeasure.values()) {
+                assertEquals(direct.getRows().get(i).get(measure), rolled.getRows().get(i).get(measure));
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package src.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CronExpressionTest {
+
+    @Test
+    void nextIsStrictlyAfterTheGivenTime() {
+        CronExpression daily = CronExpression.parse("30 2 * * *");
+
+        assertEquals(LocalDateTime.of(2026, 10, 19, 2, 30), daily.next(LocalDateTime.of(2026, 10, 19, 1, 0)));
+        assertEquals(LocalDateTime.of(2026, 10, 20, 2, 30), daily.next(LocalDateTime.of(2026, 10, 19, 2, 30)));
+        assertEquals(LocalDateTime.of(2026, 10, 20, 2, 30), daily.next(LocalDateTime.of(2026, 10, 19, 2, 30, 59)));
+    }
+
+    @Test
+    void stepsRangesAndLists() {
+        assertEquals(LocalDateTime.of(2026, 10, 19, 10, 15),
+                CronExpression.parse("*/15 * * * *").next(LocalDateTime.of(2026, 10, 19, 10, 7)));
+        // 9-17/4 = 9, 13, 17
+        assertEquals(LocalDateTime.of(2026, 10, 19, 17, 0),
+                CronExpression.parse("0 9-17/4 * * *").next(LocalDateTime.of(2026, 10, 19, 13, 0)));
+        assertEquals(LocalDateTime.of(2026, 10, 19, 9, 0),
+                CronExpression.parse("0 9-17/4 * * *").next(LocalDateTime.of(2026, 10, 19, 0, 0)));
+        assertEquals(LocalDateTime.of(2026, 11, 15, 0, 0),
+                CronExpression.parse("0 0 1,15 * *").next(LocalDateTime.of(2026, 11, 1, 0, 0)));
+    }
+
+    @Test
+    void rollsOverToTheNextMonthAndYear() {
+        assertEquals(LocalDateTime.of(2026, 11, 1, 3, 0),
+                CronExpression.parse("0 3 1 * *").next(LocalDateTime.of(2026, 10, 19, 0, 0)));
+        assertEquals(LocalDateTime.of(2027, 1, 1, 0, 0),
+                CronExpression.parse("0 0 1 1 *").next(LocalDateTime.of(2026, 10, 19, 0, 0)));
+    }
+
+    @Test
+    void dayOfMonthOrDayOfWeekWhenBothAreRestricted() {
+        // 20th of the month or any Friday; 2026-10-19 is a Monday
+        CronExpression expression = CronExpression.parse("0 0 20 * 5");
+
+        LocalDateTime first = expression.next(LocalDateTime.of(2026, 10, 19, 0, 0));
+        assertEquals(LocalDateTime.of(2026, 10, 20, 0, 0), first);
+        assertEquals(LocalDateTime.of(2026, 10, 23, 0, 0), expression.next(first));
+    }
+
+    @Test
+    void sundayIsBothZeroAndSeven() {
+        LocalDateTime monday = LocalDateTime.of(2026, 10, 19, 12, 0);
+        LocalDateTime sunday = LocalDateTime.of(2026, 10, 25, 0, 0);
+
+        assertEquals(sunday, CronExpression.parse("0 0 * * 0").next(monday));
+        assertEquals(sunday, CronExpression.parse("0 0 * * 7").next(monday));
+    }
+
+    @Test
+    void expressionThatNeverMatchesReturnsNull() {
+        assertNull(CronExpression.parse("0 0 30 2 *").next(LocalDateTime.of(2026, 10, 19, 0, 0)));
+    }
+
+    @Test
+    void malformedExpressionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("* * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("60 * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("0 0 0 * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("5-1 * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("a * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.parse("*/0 * * * *"));
+    }
+}
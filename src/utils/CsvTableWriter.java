@@ -0,0 +1,76 @@
+package src.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * RFC 4180 CSV writer. The file starts with a UTF-8 BOM so that Excel opens Vietnamese text correctly.
+ * Text that a spreadsheet would read as a formula (starting with =, +, -, @, tab or carriage return) is written
+ * with a leading apostrophe; numbers are written as they are.
+ */
+public class CsvTableWriter implements TableWriter {
+    private final BufferedWriter out;
+
+    public CsvTableWriter(Path target) throws IOException {
+        this.out = Files.newBufferedWriter(target, StandardCharsets.UTF_8);
+        out.write('\uFEFF');
+    }
+
+    @Override
+    public void writeHeader(List<String> columns) throws IOException {
+        writeRow(columns.toArray());
+    }
+
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            if (values[i] instanceof Number) {
+                writeField(values[i].toString());
+            } else if (values[i] != null) {
+                writeField(neutralizeFormula(values[i].toString()));
+            }
+        }
+        out.write("\r\n");
+    }
+
+    static String neutralizeFormula(String value) {
+        if (value.isEmpty()) {
+            return value;
+        }
+        switch (value.charAt(0)) {
+            case '=':
+            case '+':
+            case '-':
+            case '@':
+            case '\t':
+            case '\r':
+                return "'" + value;
+            default:
+                return value;
+        }
+    }
+
+    private void writeField(String value) throws IOException {
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,51 @@
+package src.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvTableWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void neutralizesTextThatASpreadsheetWouldEvaluate() {
+        assertEquals("'=SUM(A1:A9)", CsvTableWriter.neutralizeFormula("=SUM(A1:A9)"));
+        assertEquals("'+84 912 345 678", CsvTableWriter.neutralizeFormula("+84 912 345 678"));
+        assertEquals("'-2+3", CsvTableWriter.neutralizeFormula("-2+3"));
+        assertEquals("'@cmd", CsvTableWriter.neutralizeFormula("@cmd"));
+        assertEquals("'\t=1", CsvTableWriter.neutralizeFormula("\t=1"));
+        assertEquals("'\r=1", CsvTableWriter.neutralizeFormula("\r=1"));
+    }
+
+    @Test
+    void leavesOrdinaryTextUnchanged() {
+        assertEquals("", CsvTableWriter.neutralizeFormula(""));
+        assertEquals("Nguyễn Văn A", CsvTableWriter.neutralizeFormula("Nguyễn Văn A"));
+        assertEquals("a=b", CsvTableWriter.neutralizeFormula("a=b"));
+        assertEquals(" =1", CsvTableWriter.neutralizeFormula(" =1"));
+    }
+
+    @Test
+    void writesBomQuotesFieldsAndKeepsNumbersAsTheyAre() throws Exception {
+        Path file = dir.resolve("out.csv");
+        try (CsvTableWriter writer = new CsvTableWriter(file)) {
+            writer.writeHeader(Arrays.asList("Tên", "Điểm", "Ghi chú"));
+            writer.writeRow(new Object[]{"Trần, B", -5, "nói \"chào\""});
+            writer.writeRow(new Object[]{"=HYPERLINK(\"x\")", 7.5, null});
+        }
+
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+
+        assertEquals("\uFEFFTên,Điểm,Ghi chú\r\n" +
+                "\"Trần, B\",-5,\"nói \"\"chào\"\"\"\r\n" +
+                "\"'=HYPERLINK(\"\"x\"\")\",7.5,\r\n", content);
+    }
+}
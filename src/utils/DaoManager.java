@@ -1,14 +1,19 @@
 package src.utils;
 
 import src.dao.Attendance.AbsenceRecordDAO;
+import src.dao.Attendance.AttendanceCounterDAO;
 import src.dao.Attendance.AttendanceDAO;
+import src.dao.Attendance.AttendanceWriteBehindQueue;
 import src.dao.Attendance.HomeworkDAO;
 import src.dao.Attendance.HomeworkSubmissionDAO;
+import src.dao.Attendance.StudentMetricsRollupDAO;
 import src.dao.ClassSession.ClassSessionDAO;
 import src.dao.Classrooms.ClassroomDAO;
+import src.dao.Dashboard.CourseDistributionDAO;
 import src.dao.Dashboard.DashboardDAO;
 import src.dao.Details.DetailsDAO;
 import src.dao.Holidays.HolidayDAO;
+import src.dao.Jobs.JobRunDAO;
 import src.dao.Person.CourseDAO;
 import src.dao.Person.ParentDAO;
 import src.dao.Person.StudentDAO;
@@ -17,6 +22,10 @@ import src.dao.Report.*;
 import src.dao.Schedule.RoomScheduleDAO;
 import src.dao.Schedule.ScheduleDAO;
 
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 // Existing DAO imports
 // Add the new DAO import
 
@@ -29,6 +38,8 @@ import src.dao.Schedule.ScheduleDAO;
  */
 public class DaoManager {
 
+    private static final Logger LOGGER = Logger.getLogger(DaoManager.class.getName());
+
     private static volatile DaoManager instance; // Use volatile for thread safety
 
     // Existing DAO instance variables
@@ -36,6 +47,10 @@ public class DaoManager {
     private ParentDAO parentDAO;
     private CourseDAO courseDAO;
     private AttendanceDAO attendanceDAO;
+    private AttendanceCounterDAO attendanceCounterDAO;
+    private StudentMetricsRollupDAO studentMetricsRollupDAO;
+    private TeachingRollupDAO teachingRollupDAO;
+    private CourseDistributionDAO courseDistributionDAO;
     private TeacherDAO teacherDAO;
     private AbsenceRecordDAO absenceRecordDAO;
     private ClassSessionDAO classSessionDAO;
@@ -44,6 +59,10 @@ public class DaoManager {
     private DetailsDAO detailsDAO;
     private HolidayDAO holidayDAO;
     private ReportDAO reportDAO;
+    private ReportSnapshotDAO reportSnapshotDAO;
+    private ReportExportDAO reportExportDAO;
+    private ReportCardDAO reportCardDAO;
+    private TeachingCubeDAO teachingCubeDAO;
     private RoomScheduleDAO roomScheduleDAO;
     private ScheduleDAO scheduleDAO;
     private TeachingStatisticsDAO teachingStatisticsDAO;
@@ -55,11 +74,21 @@ public class DaoManager {
     // Add the new DAO instance variable
     private HomeworkSubmissionDAO homeworkSubmissionDAO;
 
+    // Write-behind queue for attendance / homework-check saves (null if the local journal cannot be opened)
+    private AttendanceWriteBehindQueue attendanceWriteBehindQueue;
+
+    // Off-peak background jobs (see NightlyJobs), coordinated between clients through job_locks
+    private JobRunDAO jobRunDAO;
+    private JobScheduler jobScheduler;
+
     /**
      * Private constructor to prevent direct instantiation.
      * Initializes and wires the DAO dependencies.
      */
     private DaoManager() {
+        // Bring the schema up to date before any DAO runs queries against it
+        DatabaseMigrator.migrate();
+
         // Create instances of all DAOs
         try {
             // Existing DAO instances
@@ -67,6 +96,10 @@ public class DaoManager {
             parentDAO = new ParentDAO();
             courseDAO = new CourseDAO();
             attendanceDAO = new AttendanceDAO();
+            attendanceCounterDAO = new AttendanceCounterDAO();
+            studentMetricsRollupDAO = new StudentMetricsRollupDAO();
+            teachingRollupDAO = new TeachingRollupDAO();
+            courseDistributionDAO = new CourseDistributionDAO();
             teacherDAO = new TeacherDAO();
             absenceRecordDAO = new AbsenceRecordDAO();
             classSessionDAO = new ClassSessionDAO();
@@ -75,6 +108,10 @@ public class DaoManager {
             detailsDAO = new DetailsDAO();
             holidayDAO = new HolidayDAO();
             reportDAO = new ReportDAO();
+            reportSnapshotDAO = new ReportSnapshotDAO();
+            reportExportDAO = new ReportExportDAO();
+            reportCardDAO = new ReportCardDAO();
+            teachingCubeDAO = new TeachingCubeDAO();
             roomScheduleDAO = new RoomScheduleDAO();
             scheduleDAO = new ScheduleDAO();
             teachingStatisticsDAO = new TeachingStatisticsDAO();
@@ -83,9 +120,10 @@ public class DaoManager {
             teacherYearlyStatisticsDAO = new TeacherYearlyStatisticsDAO();
             homeworkDAO = new HomeworkDAO();
             homeworkSubmissionDAO = new HomeworkSubmissionDAO();
+            jobRunDAO = new JobRunDAO();
 
         } catch (Exception e) {
-            // Handle the SQLException that might be thrown by the HomeworkSubmissionDAO constructor
+            // Handle any exception thrown while constructing the DAOs
             e.printStackTrace();
             throw new RuntimeException("Failed to initialize DAOs: " + e.getMessage());
         }
@@ -101,10 +139,43 @@ public class DaoManager {
 
         attendanceDAO.setStudentDAO(studentDAO);
         attendanceDAO.setClassSessionDAO(classSessionDAO);
+        attendanceDAO.setAttendanceCounterDAO(attendanceCounterDAO);
+
+        absenceRecordDAO.setAttendanceCounterDAO(attendanceCounterDAO);
+        dashboardDAO.setAttendanceCounterDAO(attendanceCounterDAO);
+        dashboardDAO.setCourseDistributionDAO(courseDistributionDAO);
+
+        studentDAO.setStudentMetricsRollupDAO(studentMetricsRollupDAO);
+        homeworkDAO.setStudentMetricsRollupDAO(studentMetricsRollupDAO);
+
+        classSessionDAO.setTeachingRollupDAO(teachingRollupDAO);
+        classSessionDAO.setCourseDistributionDAO(courseDistributionDAO);
+
+        reportDAO.setReportSnapshotDAO(reportSnapshotDAO);
+        teacherMonthlyStatisticsDAO.setReportSnapshotDAO(reportSnapshotDAO);
+        teacherQuarterlyStatisticsDAO.setReportSnapshotDAO(reportSnapshotDAO);
+        teacherYearlyStatisticsDAO.setReportSnapshotDAO(reportSnapshotDAO);
 
         teacherDAO.setCourseDAO(courseDAO);
 
         roomScheduleDAO.setCourseDAO(courseDAO);
+
+        try {
+            WriteBehindJournal journal = new WriteBehindJournal(WriteBehindJournal.defaultPath("attendance-journal.log"));
+            WriteBehindJournal deadLetters = new WriteBehindJournal(WriteBehindJournal.defaultPath("attendance-dead-letter.log"));
+            attendanceWriteBehindQueue = new AttendanceWriteBehindQueue(journal, deadLetters, attendanceDAO, homeworkSubmissionDAO);
+            attendanceWriteBehindQueue.start();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Could not open attendance journal. Attendance saves will be written directly to the database.", e);
+            attendanceWriteBehindQueue = null;
+        }
+
+        jobScheduler = new JobScheduler(jobRunDAO);
+        NightlyJobs.register(jobScheduler, courseDAO, teachingStatisticsDAO, reportDAO,
+                teacherMonthlyStatisticsDAO, teacherQuarterlyStatisticsDAO, teacherYearlyStatisticsDAO,
+                attendanceCounterDAO, studentMetricsRollupDAO, teachingRollupDAO, courseDistributionDAO);
+        jobScheduler.start();
+
         // Wiring any dependencies needed for HomeworkSubmissionDAO
         // If HomeworkSubmissionDAO needs dependencies on other DAOs, set them here
         // For example:
@@ -130,6 +201,26 @@ public class DaoManager {
         return instance;
     }
 
+    /**
+     * Stops background workers owned by the DAO layer. Called when the application exits.
+     */
+    public void shutdown() {
+        if (jobScheduler != null) {
+            jobScheduler.shutdown();
+        }
+        if (attendanceWriteBehindQueue != null) {
+            attendanceWriteBehindQueue.shutdown();
+        }
+    }
+
+    /**
+     * Get the write-behind queue for attendance and homework-check saves.
+     * @return The queue, or null if the local journal is unavailable
+     */
+    public AttendanceWriteBehindQueue getAttendanceWriteBehindQueue() {
+        return attendanceWriteBehindQueue;
+    }
+
     // Existing DAO getters...
 
     /**
@@ -157,6 +248,22 @@ public class DaoManager {
         return attendanceDAO;
     }
 
+    public AttendanceCounterDAO getAttendanceCounterDAO() {
+        return attendanceCounterDAO;
+    }
+
+    public StudentMetricsRollupDAO getStudentMetricsRollupDAO() {
+        return studentMetricsRollupDAO;
+    }
+
+    public TeachingRollupDAO getTeachingRollupDAO() {
+        return teachingRollupDAO;
+    }
+
+    public CourseDistributionDAO getCourseDistributionDAO() {
+        return courseDistributionDAO;
+    }
+
     public TeacherDAO getTeacherDAO() {
         return teacherDAO;
     }
@@ -189,6 +296,30 @@ public class DaoManager {
         return reportDAO;
     }
 
+    public ReportSnapshotDAO getReportSnapshotDAO() {
+        return reportSnapshotDAO;
+    }
+
+    public ReportExportDAO getReportExportDAO() {
+        return reportExportDAO;
+    }
+
+    public ReportCardDAO getReportCardDAO() {
+        return reportCardDAO;
+    }
+
+    public TeachingCubeDAO getTeachingCubeDAO() {
+        return teachingCubeDAO;
+    }
+
+    public JobRunDAO getJobRunDAO() {
+        return jobRunDAO;
+    }
+
+    public JobScheduler getJobScheduler() {
+        return jobScheduler;
+    }
+
     public RoomScheduleDAO getRoomScheduleDAO() {
         return roomScheduleDAO;
     }
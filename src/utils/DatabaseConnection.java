@@ -6,6 +6,11 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.ResultSet;
 import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger; // Import Logger
 
@@ -18,6 +23,10 @@ public class DatabaseConnection {
     // Logger for this class
     private static final Logger LOGGER = Logger.getLogger(DatabaseConnection.class.getName());
 
+    // Actions waiting for the open transaction of each connection to commit (see afterCommit)
+    private static final Map<Connection, List<Runnable>> AFTER_COMMIT =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     public static Connection getConnection() throws SQLException {
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
@@ -33,6 +42,57 @@ public class DatabaseConnection {
         }
     }
 
+    /**
+     * Runs an action once the current transaction of the connection is committed, e.g. to invalidate a cache that
+     * readers on other connections must not refill from the uncommitted state. Without an open transaction
+     * (auto-commit on) the action runs immediately. The transaction has to be committed through
+     * {@link #commit(Connection)}; {@link #rollback(Connection)} discards the pending actions.
+     *
+     * @param conn   The connection whose transaction the action waits for
+     * @param action Action to run after the commit; should be idempotent and must not throw
+     */
+    public static void afterCommit(Connection conn, Runnable action) {
+        boolean inTransaction;
+        try {
+            inTransaction = conn != null && !conn.getAutoCommit();
+        } catch (SQLException e) {
+            inTransaction = false;
+        }
+        if (!inTransaction) {
+            runSafely(action);
+            return;
+        }
+        AFTER_COMMIT.computeIfAbsent(conn, c -> new ArrayList<>()).add(action);
+    }
+
+    /**
+     * Commits the connection's transaction, then runs the actions registered with {@link #afterCommit}.
+     *
+     * @param conn The connection to commit
+     * @throws SQLException if the commit fails (the pending actions are kept until rollback or close)
+     */
+    public static void commit(Connection conn) throws SQLException {
+        conn.commit();
+        runPending(conn);
+    }
+
+    private static void runPending(Connection conn) {
+        List<Runnable> actions = AFTER_COMMIT.remove(conn);
+        if (actions != null) {
+            for (Runnable action : actions) {
+                runSafely(action);
+            }
+        }
+    }
+
+    private static void runSafely(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "After-commit action failed.", e);
+        }
+    }
+
     /**
      * Attempts to roll back the given database connection.
      * This method should be called in a catch block when a transaction fails.
@@ -41,6 +101,7 @@ public class DatabaseConnection {
      */
     public static void rollback(Connection conn) {
         if (conn != null) {
+            AFTER_COMMIT.remove(conn);
             try {
                 LOGGER.log(Level.INFO, "Attempting to rollback transaction.");
                 conn.rollback();
@@ -64,6 +125,9 @@ public class DatabaseConnection {
      */
     public static void closeConnection(Connection connToClose) { // Removed @Deprecated for now, as DAO uses it.
         if (connToClose != null) {
+            // Actions left by a transaction that was neither committed through commit() nor rolled back still run:
+            // they only invalidate caches, so running one too many is harmless, missing one is not.
+            runPending(connToClose);
             try {
                 if (!connToClose.isClosed()) {
                     // LOGGER.log(Level.INFO, "Closing database connection."); // Optional
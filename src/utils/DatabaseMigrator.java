@@ -0,0 +1,547 @@
+package src.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies versioned schema changes (indexes, new tables, backfills) to the database.
+ * Each migration runs once; applied versions are recorded in the schema_migrations table.
+ * Migrations are applied in the order they are registered. A failed migration is logged and stops the run:
+ * it and every later migration are retried on the next start, so no migration runs on top of one that failed.
+ * Statements that depend on each other belong in the same migration.
+ * <p>
+ * MySQL commits DDL implicitly, so a migration that failed halfway is re-run from its first statement. Every
+ * statement must therefore be safe to run again: CREATE ... IF NOT EXISTS, deletes before backfills, and schema
+ * changes MySQL cannot guard itself (ADD COLUMN, ADD KEY, MODIFY) wrapped in a {@link Step} that checks
+ * information_schema first.
+ */
+public class DatabaseMigrator {
+
+    private static final Logger LOGGER = Logger.getLogger(DatabaseMigrator.class.getName());
+
+    /**
+     * One statement of a migration, optionally guarded by a condition query that returns a single number:
+     * the statement runs only when the number is non-zero.
+     */
+    public static class Step {
+        private final String condition;
+        private final String sql;
+
+        private Step(String condition, String sql) {
+            this.condition = condition;
+            this.sql = sql;
+        }
+
+        /** A statement that always runs (it must be idempotent by itself). */
+        public static Step always(String sql) {
+            return new Step(null, sql);
+        }
+
+        /** A statement that runs only if the column does not exist yet (e.g. ALTER TABLE ... ADD COLUMN). */
+        public static Step ifColumnMissing(String table, String column, String sql) {
+            return new Step("SELECT COUNT(*) = 0 FROM information_schema.COLUMNS " +
+                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "' AND COLUMN_NAME = '" + column + "'", sql);
+        }
+
+        /** A statement that runs only if the column exists (e.g. a backfill reading an optional column). */
+        public static Step ifColumnExists(String table, String column, String sql) {
+            return new Step("SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "' AND COLUMN_NAME = '" + column + "'", sql);
+        }
+
+        /** A statement that runs only if the index does not exist yet (e.g. ALTER TABLE ... ADD KEY). */
+        public static Step ifIndexMissing(String table, String index, String sql) {
+            return new Step("SELECT COUNT(*) = 0 FROM information_schema.STATISTICS " +
+                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "' AND INDEX_NAME = '" + index + "'", sql);
+        }
+
+        /** A statement that runs only if the (existing) column does not use the given collation yet. */
+        public static Step ifCollationDiffers(String table, String column, String collation, String sql) {
+            return new Step("SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "' AND COLUMN_NAME = '" + column + "' " +
+                    "AND (COLLATION_NAME IS NULL OR COLLATION_NAME <> '" + collation + "')", sql);
+        }
+
+        /** @return Condition query, or null if the statement always runs */
+        public String getCondition() { return condition; }
+        public String getSql() { return sql; }
+    }
+
+    /**
+     * A single versioned migration made of one or more SQL statements.
+     */
+    public static class Migration {
+        private final String version;
+        private final String description;
+        private final List<Step> steps;
+
+        public Migration(String version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            List<Step> unguarded = new ArrayList<>();
+            for (String sql : statements) {
+                unguarded.add(Step.always(sql));
+            }
+            this.steps = Collections.unmodifiableList(unguarded);
+        }
+
+        public Migration(String version, String description, Step... steps) {
+            this.version = version;
+            this.description = description;
+            this.steps = Collections.unmodifiableList(Arrays.asList(steps));
+        }
+
+        public String getVersion() { return version; }
+        public String getDescription() { return description; }
+        public List<Step> getSteps() { return steps; }
+    }
+
+    private static final List<Migration> MIGRATIONS = new ArrayList<>();
+
+    static {
+        // Write-behind queue: attendance upserts are keyed on (student_id, session_id) so that
+        // a replayed journal entry never creates a second row for the same student and session.
+        // Existing duplicates are collapsed first, keeping the most recently recorded row (then the smallest ID).
+        MIGRATIONS.add(new Migration("V001_attendance_student_session_unique",
+                "Unique key on attendance (student_id, session_id)",
+                Step.always("DELETE a1 FROM attendance a1 " +
+                        "JOIN attendance a2 ON a1.student_id = a2.student_id AND a1.session_id = a2.session_id " +
+                        "AND (COALESCE(a1.record_time, '1000-01-01') < COALESCE(a2.record_time, '1000-01-01') " +
+                        "OR (COALESCE(a1.record_time, '1000-01-01') = COALESCE(a2.record_time, '1000-01-01') " +
+                        "AND a1.attendance_id > a2.attendance_id))"),
+                Step.ifIndexMissing("attendance", "uk_attendance_student_session",
+                        "ALTER TABLE attendance ADD UNIQUE KEY uk_attendance_student_session (student_id, session_id)")));
+
+        // Per-student, per-course, per-month attendance counters maintained by AttendanceDAO / AbsenceRecordDAO writes.
+        MIGRATIONS.add(new Migration("V002_attendance_monthly_counters",
+                "Attendance counters per student, course and month",
+                "CREATE TABLE IF NOT EXISTS attendance_monthly_counters (" +
+                        "student_id VARCHAR(50) NOT NULL, " +
+                        "course_id VARCHAR(50) NOT NULL DEFAULT '', " +
+                        "month_start DATE NOT NULL, " +
+                        "present_count INT NOT NULL DEFAULT 0, " +
+                        "excused_count INT NOT NULL DEFAULT 0, " +
+                        "unexcused_count INT NOT NULL DEFAULT 0, " +
+                        "status_present_count INT NOT NULL DEFAULT 0, " +
+                        "total_count INT NOT NULL DEFAULT 0, " +
+                        "PRIMARY KEY (student_id, course_id, month_start), " +
+                        "KEY idx_attendance_counters_month (month_start))",
+                "DELETE FROM attendance_monthly_counters",
+                "INSERT INTO attendance_monthly_counters (student_id, course_id, month_start, present_count, " +
+                        "excused_count, unexcused_count, status_present_count, total_count) " +
+                        "SELECT a.student_id, COALESCE(cs.course_id, ''), " +
+                        "COALESCE(DATE_FORMAT(a.absence_date, '%Y-%m-01'), '1000-01-01'), " +
+                        "SUM(CASE WHEN a.present = TRUE THEN 1 ELSE 0 END), " +
+                        "SUM(CASE WHEN a.present = FALSE AND a.has_permission = TRUE THEN 1 ELSE 0 END), " +
+                        "SUM(CASE WHEN a.present = FALSE AND a.has_permission = FALSE THEN 1 ELSE 0 END), " +
+                        "SUM(CASE WHEN a.status = 'Có mặt' THEN 1 ELSE 0 END), " +
+                        "COUNT(*) " +
+                        "FROM attendance a LEFT JOIN class_sessions cs ON cs.session_id = a.session_id " +
+                        "GROUP BY a.student_id, COALESCE(cs.course_id, ''), " +
+                        "COALESCE(DATE_FORMAT(a.absence_date, '%Y-%m-01'), '1000-01-01')"));
+
+        // HomeworkSubmissionDAO.saveOrUpdateBatch upserts on (student_id, homework_id).
+        // Older duplicate rows (from concurrent saves) are collapsed first, keeping the smallest submission ID.
+        MIGRATIONS.add(new Migration("V003_homework_submission_student_homework_unique",
+                "Unique key on student_homework_submissions (student_id, homework_id)",
+                Step.always("DELETE s1 FROM student_homework_submissions s1 " +
+                        "JOIN student_homework_submissions s2 ON s1.student_id = s2.student_id " +
+                        "AND s1.homework_id = s2.homework_id AND s1.student_submission_id > s2.student_submission_id"),
+                Step.ifIndexMissing("student_homework_submissions", "uk_homework_submission_student_homework",
+                        "ALTER TABLE student_homework_submissions " +
+                                "ADD UNIQUE KEY uk_homework_submission_student_homework (student_id, homework_id)")));
+
+        // HomeworkDAO.getOrCreateHomeworkForSession relies on this key to make get-or-create atomic.
+        // Duplicates (from concurrent get-or-create) are merged into the smallest homework ID first: their
+        // submissions are moved over unless the student already has one there, the rest is deleted.
+        String homeworkKeepers = "(SELECT assigned_in_session_id, title, MIN(homework_id) AS keep_id FROM homework " +
+                "WHERE assigned_in_session_id IS NOT NULL GROUP BY assigned_in_session_id, title HAVING COUNT(*) > 1) k " +
+                "ON k.assigned_in_session_id = h.assigned_in_session_id AND k.title = h.title ";
+        MIGRATIONS.add(new Migration("V004_homework_session_title_unique",
+                "Unique key on homework (assigned_in_session_id, title)",
+                Step.always("UPDATE IGNORE student_homework_submissions s " +
+                        "JOIN homework h ON h.homework_id = s.homework_id JOIN " + homeworkKeepers +
+                        "SET s.homework_id = k.keep_id WHERE s.homework_id <> k.keep_id"),
+                Step.always("DELETE s FROM student_homework_submissions s " +
+                        "JOIN homework h ON h.homework_id = s.homework_id JOIN " + homeworkKeepers +
+                        "WHERE s.homework_id <> k.keep_id"),
+                Step.always("DELETE h1 FROM homework h1 " +
+                        "JOIN homework h2 ON h1.assigned_in_session_id = h2.assigned_in_session_id " +
+                        "AND h1.title = h2.title AND h1.homework_id > h2.homework_id"),
+                Step.ifIndexMissing("homework", "uk_homework_session_title",
+                        "ALTER TABLE homework ADD UNIQUE KEY uk_homework_session_title (assigned_in_session_id, title)")));
+
+        // Keys of write-heavy tables now come from IdGenerators (time-ordered UUIDv7 strings).
+        // Storing them as ASCII with a binary collation makes each key 1 byte per character instead of up to 4,
+        // which shrinks the primary key and every secondary index that carries it.
+        // Columns already converted, and tables this installation does not have, are skipped.
+        String[][] idColumns = {
+                {"attendance", "attendance_id"},
+                {"student_metrics", "metric_id"},
+                {"student_homework_submissions", "student_submission_id"},
+                {"notifications", "notification_id"},
+                {"enrollment", "enrollment_id"}
+        };
+        for (String[] idColumn : idColumns) {
+            MIGRATIONS.add(new Migration("V005_" + idColumn[0] + "_ascii_id",
+                    "ASCII primary key column on " + idColumn[0],
+                    Step.ifCollationDiffers(idColumn[0], idColumn[1], "ascii_bin",
+                            "ALTER TABLE " + idColumn[0] + " MODIFY " + idColumn[1] +
+                                    " VARCHAR(50) CHARACTER SET ascii COLLATE ascii_bin NOT NULL")));
+        }
+
+        // student_metrics is an append-only series; averages and history charts read these rollups
+        // (maintained by StudentMetricsRollupDAO on every metrics write).
+        String rollupColumns = "sample_count INT NOT NULL DEFAULT 0, " +
+                "punctuality_count INT NOT NULL DEFAULT 0, " +
+                "punctuality_sum DOUBLE NULL, " +
+                "punctuality_min DOUBLE NULL, " +
+                "punctuality_max DOUBLE NULL, " +
+                "punctuality_last DOUBLE NULL, " +
+                "awareness_count INT NOT NULL DEFAULT 0, " +
+                "awareness_sum DOUBLE NULL, " +
+                "awareness_min DOUBLE NULL, " +
+                "awareness_max DOUBLE NULL, " +
+                "awareness_last DOUBLE NULL, ";
+        MIGRATIONS.add(new Migration("V006_student_metrics_rollups",
+                "Daily and monthly rollups of student_metrics",
+                "CREATE TABLE IF NOT EXISTS student_metrics_daily (" +
+                        "student_id VARCHAR(50) NOT NULL, " +
+                        "course_id VARCHAR(50) NOT NULL, " +
+                        "day DATE NOT NULL, " +
+                        rollupColumns +
+                        "notes_last TEXT NULL, " +
+                        "PRIMARY KEY (student_id, course_id, day))",
+                "CREATE TABLE IF NOT EXISTS student_metrics_monthly (" +
+                        "student_id VARCHAR(50) NOT NULL, " +
+                        "course_id VARCHAR(50) NOT NULL, " +
+                        "month_start DATE NOT NULL, " +
+                        rollupColumns +
+                        "PRIMARY KEY (student_id, course_id, month_start))",
+                "DELETE FROM student_metrics_monthly",
+                "DELETE FROM student_metrics_daily",
+                "INSERT INTO student_metrics_daily (student_id, course_id, day, sample_count, " +
+                        "punctuality_count, punctuality_sum, punctuality_min, punctuality_max, punctuality_last, " +
+                        "awareness_count, awareness_sum, awareness_min, awareness_max, awareness_last, notes_last) " +
+                        "SELECT m.student_id, m.course_id, m.record_date, COUNT(*), " +
+                        "COUNT(m.punctuality_score), SUM(m.punctuality_score), MIN(m.punctuality_score), MAX(m.punctuality_score), " +
+                        "(SELECT l.punctuality_score FROM student_metrics l WHERE l.student_id = m.student_id AND l.course_id = m.course_id " +
+                        "AND l.record_date = m.record_date ORDER BY l.metric_id DESC LIMIT 1), " +
+                        "COUNT(m.awareness_score), SUM(m.awareness_score), MIN(m.awareness_score), MAX(m.awareness_score), " +
+                        "(SELECT l.awareness_score FROM student_metrics l WHERE l.student_id = m.student_id AND l.course_id = m.course_id " +
+                        "AND l.record_date = m.record_date ORDER BY l.metric_id DESC LIMIT 1), " +
+                        "(SELECT l.notes FROM student_metrics l WHERE l.student_id = m.student_id AND l.course_id = m.course_id " +
+                        "AND l.record_date = m.record_date ORDER BY l.metric_id DESC LIMIT 1) " +
+                        "FROM student_metrics m WHERE m.record_date IS NOT NULL " +
+                        "GROUP BY m.student_id, m.course_id, m.record_date",
+                "INSERT INTO student_metrics_monthly (student_id, course_id, month_start, sample_count, " +
+                        "punctuality_count, punctuality_sum, punctuality_min, punctuality_max, punctuality_last, " +
+                        "awareness_count, awareness_sum, awareness_min, awareness_max, awareness_last) " +
+                        "SELECT d.student_id, d.course_id, DATE_FORMAT(d.day, '%Y-%m-01'), SUM(d.sample_count), " +
+                        "SUM(d.punctuality_count), SUM(d.punctuality_sum), MIN(d.punctuality_min), MAX(d.punctuality_max), " +
+                        "(SELECT l.punctuality_last FROM student_metrics_daily l WHERE l.student_id = d.student_id AND l.course_id = d.course_id " +
+                        "AND DATE_FORMAT(l.day, '%Y-%m-01') = DATE_FORMAT(d.day, '%Y-%m-01') ORDER BY l.day DESC LIMIT 1), " +
+                        "SUM(d.awareness_count), SUM(d.awareness_sum), MIN(d.awareness_min), MAX(d.awareness_max), " +
+                        "(SELECT l.awareness_last FROM student_metrics_daily l WHERE l.student_id = d.student_id AND l.course_id = d.course_id " +
+                        "AND DATE_FORMAT(l.day, '%Y-%m-01') = DATE_FORMAT(d.day, '%Y-%m-01') ORDER BY l.day DESC LIMIT 1) " +
+                        "FROM student_metrics_daily d " +
+                        "GROUP BY d.student_id, d.course_id, DATE_FORMAT(d.day, '%Y-%m-01')"));
+
+        // ClassSessionDAO.findDistinctTeacherNames / Rooms / CourseNames read these indexes instead of the whole table.
+        MIGRATIONS.add(new Migration("V007_class_sessions_dimension_indexes",
+                "Indexes on class_sessions teacher_name, room and course_name",
+                Step.ifIndexMissing("class_sessions", "idx_class_sessions_teacher_name",
+                        "ALTER TABLE class_sessions ADD KEY idx_class_sessions_teacher_name (teacher_name)"),
+                Step.ifIndexMissing("class_sessions", "idx_class_sessions_room",
+                        "ALTER TABLE class_sessions ADD KEY idx_class_sessions_room (room)"),
+                Step.ifIndexMissing("class_sessions", "idx_class_sessions_course_name",
+                        "ALTER TABLE class_sessions ADD KEY idx_class_sessions_course_name (course_name)")));
+
+        // Teaching statistics join teachers to class_sessions on teacher ID instead of the denormalized name.
+        // Backfill matches the stored teacher_name first (what the old joins used), then falls back to the course's teacher.
+        MIGRATIONS.add(new Migration("V008_class_sessions_teacher_id",
+                "teacher_id on class_sessions, backfilled and indexed with session_date",
+                Step.ifColumnMissing("class_sessions", "teacher_id",
+                        "ALTER TABLE class_sessions ADD COLUMN teacher_id VARCHAR(50) NULL"),
+                Step.always("UPDATE class_sessions cs " +
+                        "JOIN (SELECT name, MIN(id) AS id FROM teachers GROUP BY name) t ON t.name = cs.teacher_name " +
+                        "SET cs.teacher_id = t.id"),
+                Step.always("UPDATE class_sessions cs " +
+                        "JOIN courses c ON c.course_id = cs.course_id " +
+                        "JOIN teachers t ON t.user_id = c.teacher_id " +
+                        "SET cs.teacher_id = t.id WHERE cs.teacher_id IS NULL"),
+                Step.ifIndexMissing("class_sessions", "idx_class_sessions_teacher_date",
+                        "ALTER TABLE class_sessions ADD KEY idx_class_sessions_teacher_date (teacher_id, session_date)")));
+
+        // Teacher x day x status rollup maintained by ClassSessionDAO writes; read by all teaching statistics.
+        // class_sessions.status is optional: without it every session is counted under status ''.
+        String teachingBackfill = "INSERT INTO teacher_daily_teaching (teacher_id, day, status, session_count, " +
+                "total_minutes, whole_hours, course_count) " +
+                "SELECT COALESCE(cs.teacher_id, ''), cs.session_date, %1$s, " +
+                "COUNT(*), COALESCE(SUM(TIMESTAMPDIFF(MINUTE, cs.start_time, cs.end_time)), 0), " +
+                "COALESCE(SUM(TIMESTAMPDIFF(HOUR, cs.start_time, cs.end_time)), 0), COUNT(DISTINCT cs.course_id) " +
+                "FROM class_sessions cs WHERE cs.session_date IS NOT NULL " +
+                "GROUP BY COALESCE(cs.teacher_id, ''), cs.session_date, %1$s";
+        MIGRATIONS.add(new Migration("V009_teacher_daily_teaching",
+                "Teaching rollup per teacher, day and session status",
+                Step.always("CREATE TABLE IF NOT EXISTS teacher_daily_teaching (" +
+                        "teacher_id VARCHAR(50) NOT NULL DEFAULT '', " +
+                        "day DATE NOT NULL, " +
+                        "status VARCHAR(50) NOT NULL DEFAULT '', " +
+                        "session_count INT NOT NULL DEFAULT 0, " +
+                        "total_minutes BIGINT NOT NULL DEFAULT 0, " +
+                        "whole_hours BIGINT NOT NULL DEFAULT 0, " +
+                        "course_count INT NOT NULL DEFAULT 0, " +
+                        "PRIMARY KEY (teacher_id, day, status), " +
+                        "KEY idx_teacher_daily_teaching_day (day))"),
+                Step.always("DELETE FROM teacher_daily_teaching"),
+                Step.ifColumnExists("class_sessions", "status",
+                        String.format(teachingBackfill, "COALESCE(cs.status, '')")),
+                Step.ifColumnMissing("class_sessions", "status",
+                        String.format(teachingBackfill, "''"))));
+
+        // Computed report rows of closed periods; see ReportSnapshotDAO.
+        MIGRATIONS.add(new Migration("V010_report_snapshots",
+                "Snapshots of report results for closed periods",
+                "CREATE TABLE IF NOT EXISTS report_snapshots (" +
+                        "report_type VARCHAR(50) NOT NULL, " +
+                        "period_start DATE NOT NULL, " +
+                        "period_end DATE NOT NULL, " +
+                        "filter_key VARCHAR(100) NOT NULL DEFAULT '', " +
+                        "payload MEDIUMTEXT NOT NULL, " +
+                        "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                        "PRIMARY KEY (report_type, period_start, period_end, filter_key), " +
+                        "KEY idx_report_snapshots_period (period_start, period_end))"));
+
+        // Single-runner leases and run history of the background jobs; see JobRunDAO and JobScheduler.
+        MIGRATIONS.add(new Migration("V011_job_scheduler",
+                "Job locks and job run history",
+                "CREATE TABLE IF NOT EXISTS job_locks (" +
+                        "job_name VARCHAR(100) NOT NULL PRIMARY KEY, " +
+                        "owner VARCHAR(150) NOT NULL DEFAULT '', " +
+                        "locked_until DATETIME NOT NULL)",
+                "CREATE TABLE IF NOT EXISTS job_runs (" +
+                        "run_id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+                        "job_name VARCHAR(100) NOT NULL, " +
+                        "owner VARCHAR(150) NOT NULL, " +
+                        "attempt INT NOT NULL DEFAULT 1, " +
+                        "started_at DATETIME NOT NULL, " +
+                        "finished_at DATETIME NULL, " +
+                        "status VARCHAR(20) NOT NULL, " +
+                        "message VARCHAR(1000) NULL, " +
+                        "KEY idx_job_runs_job_started (job_name, started_at))"));
+
+        // Change timestamps read by TeachingCubeDAO to refresh the in-memory cube incrementally.
+        MIGRATIONS.add(new Migration("V012_class_sessions_updated_at",
+                "updated_at on class_sessions",
+                Step.ifColumnMissing("class_sessions", "updated_at", "ALTER TABLE class_sessions " +
+                        "ADD COLUMN updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
+                        "ADD KEY idx_class_sessions_updated_at (updated_at)")));
+        MIGRATIONS.add(new Migration("V013_attendance_updated_at",
+                "updated_at on attendance",
+                Step.ifColumnMissing("attendance", "updated_at", "ALTER TABLE attendance " +
+                        "ADD COLUMN updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
+                        "ADD KEY idx_attendance_updated_at (updated_at)")));
+
+        // One-call dashboard data; see DashboardDAO.loadSnapshot.
+        // The totals and the sessions / schedules result sets are shared by V014 and V016.
+        String dashboardTotalsSelect = "SELECT (SELECT COUNT(*) FROM students WHERE status = 'active') AS total_students, " +
+                "(SELECT COUNT(*) FROM courses) AS total_courses, " +
+                "(SELECT COALESCE(SUM(status_present_count), 0) FROM attendance_monthly_counters) AS present_count, " +
+                "(SELECT COALESCE(SUM(total_count), 0) FROM attendance_monthly_counters) AS attendance_count, " +
+                "(SELECT COALESCE(SUM(CASE WHEN h.status = 'completed' THEN 1 ELSE 0 END), 0) FROM homework h " +
+                "WHERE h.assigned_date BETWEEN p_month_start AND p_today) AS homework_completed, " +
+                "(SELECT COUNT(*) FROM homework h WHERE h.assigned_date BETWEEN p_month_start AND p_today) AS homework_total; ";
+        String dashboardScheduleSelects = "SELECT cs.session_id, cs.course_name, cs.teacher_name, cs.room, cs.session_date, " +
+                "cs.start_time, cs.end_time, cs.course_id AS actual_course_id, cs.session_number " +
+                "FROM class_sessions cs WHERE cs.session_date = p_today; " +
+                "SELECT id, name, description, start_time, end_time, schedule_type FROM schedules " +
+                "WHERE start_time >= CURRENT_TIMESTAMP ORDER BY start_time ASC LIMIT p_upcoming_limit; ";
+        MIGRATIONS.add(new Migration("V014_dashboard_snapshot_procedure",
+                "dashboard_snapshot stored procedure",
+                "DROP PROCEDURE IF EXISTS dashboard_snapshot",
+                "CREATE PROCEDURE dashboard_snapshot(IN p_today DATE, IN p_month_start DATE, IN p_upcoming_limit INT) " +
+                        "BEGIN " +
+                        dashboardTotalsSelect +
+                        "SELECT c.course_name, COUNT(cs.session_id) AS session_count " +
+                        "FROM courses c JOIN class_sessions cs ON c.course_id = cs.course_id GROUP BY c.course_name; " +
+                        dashboardScheduleSelects +
+                        "END"));
+
+        // Sessions per course for the dashboard chart, maintained by ClassSessionDAO writes; see CourseDistributionDAO.
+        MIGRATIONS.add(new Migration("V015_course_session_counts",
+                "Number of class sessions per course",
+                "CREATE TABLE IF NOT EXISTS course_session_counts (" +
+                        "course_id VARCHAR(50) NOT NULL PRIMARY KEY, " +
+                        "session_count INT NOT NULL DEFAULT 0)",
+                "DELETE FROM course_session_counts",
+                "INSERT INTO course_session_counts (course_id, session_count) " +
+                        "SELECT course_id, COUNT(*) FROM class_sessions WHERE course_id IS NOT NULL GROUP BY course_id"));
+        MIGRATIONS.add(new Migration("V016_dashboard_snapshot_top_courses",
+                "dashboard_snapshot reads the top courses from course_session_counts",
+                "DROP PROCEDURE IF EXISTS dashboard_snapshot",
+                "CREATE PROCEDURE dashboard_snapshot(IN p_today DATE, IN p_month_start DATE, IN p_upcoming_limit INT, " +
+                        "IN p_top_slices INT) " +
+                        "BEGIN " +
+                        "DECLARE v_course_rows INT DEFAULT p_top_slices + 1; " +
+                        dashboardTotalsSelect +
+                        "SELECT c.course_name, s.session_count, totals.course_total, totals.session_total " +
+                        "FROM course_session_counts s JOIN courses c ON c.course_id = s.course_id " +
+                        "CROSS JOIN (SELECT COUNT(*) AS course_total, COALESCE(SUM(s2.session_count), 0) AS session_total " +
+                        "FROM course_session_counts s2 JOIN courses c2 ON c2.course_id = s2.course_id " +
+                        "WHERE s2.session_count > 0) totals " +
+                        "WHERE s.session_count > 0 " +
+                        "ORDER BY s.session_count DESC, c.course_name, c.course_id LIMIT v_course_rows; " +
+                        dashboardScheduleSelects +
+                        "END"));
+
+        // "Last point of the day" is the one inserted last. metric_id cannot tell: legacy IDs are random UUIDs and
+        // time-ordered IDs come from each client's clock. The server assigns metric_seq in insertion order
+        // (legacy rows are numbered in key order); the daily and monthly rollups are rebuilt with it.
+        MIGRATIONS.add(new Migration("V017_student_metrics_sequence",
+                "Insertion sequence on student_metrics, rollups rebuilt with it",
+                Step.ifColumnMissing("student_metrics", "metric_seq",
+                        "ALTER TABLE student_metrics ADD COLUMN metric_seq BIGINT NOT NULL AUTO_INCREMENT, " +
+                                "ADD UNIQUE KEY uk_student_metrics_seq (metric_seq)"),
+                Step.always("DELETE FROM student_metrics_monthly"),
+                Step.always("DELETE FROM student_metrics_daily"),
+                Step.always("INSERT INTO student_metrics_daily (student_id, course_id, day, sample_count, " +
+                        "punctuality_count, punctuality_sum, punctuality_min, punctuality_max, punctuality_last, " +
+                        "awareness_count, awareness_sum, awareness_min, awareness_max, awareness_last, notes_last) " +
+                        "SELECT m.student_id, m.course_id, m.record_date, COUNT(*), " +
+                        "COUNT(m.punctuality_score), SUM(m.punctuality_score), MIN(m.punctuality_score), MAX(m.punctuality_score), " +
+                        "(SELECT l.punctuality_score FROM student_metrics l WHERE l.student_id = m.student_id AND l.course_id = m.course_id " +
+                        "AND l.record_date = m.record_date ORDER BY l.metric_seq DESC LIMIT 1), " +
+                        "COUNT(m.awareness_score), SUM(m.awareness_score), MIN(m.awareness_score), MAX(m.awareness_score), " +
+                        "(SELECT l.awareness_score FROM student_metrics l WHERE l.student_id = m.student_id AND l.course_id = m.course_id " +
+                        "AND l.record_date = m.record_date ORDER BY l.metric_seq DESC LIMIT 1), " +
+                        "(SELECT l.notes FROM student_metrics l WHERE l.student_id = m.student_id AND l.course_id = m.course_id " +
+                        "AND l.record_date = m.record_date ORDER BY l.metric_seq DESC LIMIT 1) " +
+                        "FROM student_metrics m WHERE m.record_date IS NOT NULL " +
+                        "GROUP BY m.student_id, m.course_id, m.record_date"),
+                Step.always("INSERT INTO student_metrics_monthly (student_id, course_id, month_start, sample_count, " +
+                        "punctuality_count, punctuality_sum, punctuality_min, punctuality_max, punctuality_last, " +
+                        "awareness_count, awareness_sum, awareness_min, awareness_max, awareness_last) " +
+                        "SELECT d.student_id, d.course_id, DATE_FORMAT(d.day, '%Y-%m-01'), SUM(d.sample_count), " +
+                        "SUM(d.punctuality_count), SUM(d.punctuality_sum), MIN(d.punctuality_min), MAX(d.punctuality_max), " +
+                        "(SELECT l.punctuality_last FROM student_metrics_daily l WHERE l.student_id = d.student_id AND l.course_id = d.course_id " +
+                        "AND DATE_FORMAT(l.day, '%Y-%m-01') = DATE_FORMAT(d.day, '%Y-%m-01') ORDER BY l.day DESC LIMIT 1), " +
+                        "SUM(d.awareness_count), SUM(d.awareness_sum), MIN(d.awareness_min), MAX(d.awareness_max), " +
+                        "(SELECT l.awareness_last FROM student_metrics_daily l WHERE l.student_id = d.student_id AND l.course_id = d.course_id " +
+                        "AND DATE_FORMAT(l.day, '%Y-%m-01') = DATE_FORMAT(d.day, '%Y-%m-01') ORDER BY l.day DESC LIMIT 1) " +
+                        "FROM student_metrics_daily d " +
+                        "GROUP BY d.student_id, d.course_id, DATE_FORMAT(d.day, '%Y-%m-01')")));
+
+        // Invalidation counter checked by ReportSnapshotDAO.save; see ReportSnapshotDAO.
+        MIGRATIONS.add(new Migration("V018_report_snapshot_generation",
+                "Generation counter of report snapshot invalidations",
+                "CREATE TABLE IF NOT EXISTS report_snapshot_generation (" +
+                        "id TINYINT NOT NULL PRIMARY KEY, " +
+                        "generation BIGINT NOT NULL DEFAULT 0)",
+                "INSERT IGNORE INTO report_snapshot_generation (id, generation) VALUES (1, 0)"));
+    }
+
+    private DatabaseMigrator() {
+        // Utility class
+    }
+
+    /**
+     * @return The registered migrations, in application order
+     */
+    public static List<Migration> getMigrations() {
+        return Collections.unmodifiableList(MIGRATIONS);
+    }
+
+    /**
+     * Applies all pending migrations using a new connection.
+     * Errors are logged and not rethrown, so the application can still start on an older schema.
+     *
+     * @return Number of migrations applied in this run
+     */
+    public static int migrate() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return migrate(conn);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Database migration aborted.", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Applies all pending migrations on the given connection.
+     *
+     * @param conn Active database connection
+     * @return Number of migrations applied in this run
+     * @throws SQLException if the migration history table cannot be read or created
+     */
+    static int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                    "version VARCHAR(100) NOT NULL PRIMARY KEY, " +
+                    "description VARCHAR(255), " +
+                    "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        }
+
+        Set<String> applied = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_migrations")) {
+            while (rs.next()) {
+                applied.add(rs.getString("version"));
+            }
+        }
+
+        int appliedCount = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (applied.contains(migration.getVersion())) {
+                continue;
+            }
+            try {
+                applyMigration(conn, migration);
+                appliedCount++;
+                LOGGER.log(Level.INFO, "Applied migration {0}: {1}",
+                        new Object[]{migration.getVersion(), migration.getDescription()});
+            } catch (SQLException e) {
+                // Later migrations may depend on this one: stop here, everything pending is retried on next start
+                LOGGER.log(Level.SEVERE, "Migration " + migration.getVersion() +
+                        " failed; it and the migrations after it will be retried on next start.", e);
+                break;
+            }
+        }
+        return appliedCount;
+    }
+
+    private static void applyMigration(Connection conn, Migration migration) throws SQLException {
+        // MySQL commits DDL implicitly, so statements are applied one by one and the version is
+        // recorded only after all of them succeeded.
+        try (Statement stmt = conn.createStatement()) {
+            for (Step step : migration.getSteps()) {
+                if (step.getCondition() == null || conditionHolds(stmt, step.getCondition())) {
+                    stmt.execute(step.getSql());
+                }
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO schema_migrations (version, description) VALUES (?, ?)")) {
+            stmt.setString(1, migration.getVersion());
+            stmt.setString(2, migration.getDescription());
+            stmt.executeUpdate();
+        }
+    }
+
+    private static boolean conditionHolds(Statement stmt, String condition) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(condition)) {
+            return rs.next() && rs.getLong(1) != 0;
+        }
+    }
+}
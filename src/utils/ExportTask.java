@@ -0,0 +1,165 @@
+package src.utils;
+
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+import src.dao.Report.ReportExportDAO;
+import src.dao.Report.ReportExportDAO.ExportQuery;
+
+import java.awt.Desktop;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background export of one {@link ExportQuery} to a CSV, XLSX or PDF file.
+ * <p>
+ * Rows go from {@link ReportExportDAO#stream(ExportQuery, ReportExportDAO.RowHandler)} straight into a
+ * {@link TableWriter}, so memory use does not depend on the number of rows. Progress (rows written / rows counted
+ * up front) and a short message are published through the usual {@link Task} properties; the value is the number
+ * of rows written. A failed or cancelled export deletes its partial file.
+ */
+public class ExportTask extends Task<Long> {
+    private static final Logger LOGGER = Logger.getLogger(ExportTask.class.getName());
+
+    private static final int PROGRESS_EVERY_ROWS = 500;
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final ExecutorService EXPORTER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "report-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ReportExportDAO exportDAO;
+    private final ExportQuery query;
+    private final TableWriter.Factory writerFactory;
+    private final Path target;
+
+    public ExportTask(ReportExportDAO exportDAO, ExportQuery query, TableWriter.Format format, Path target) {
+        this(exportDAO, query, (file, title) -> TableWriter.open(format, file, title), target);
+    }
+
+    public ExportTask(ReportExportDAO exportDAO, ExportQuery query, TableWriter.Factory writerFactory, Path target) {
+        this.exportDAO = exportDAO;
+        this.query = query;
+        this.writerFactory = writerFactory;
+        this.target = target;
+    }
+
+    /**
+     * Creates an export into the default export folder and starts it on the export thread.
+     *
+     * @param query  export definition
+     * @param format file format
+     * @return The running task
+     */
+    public static ExportTask start(ExportQuery query, TableWriter.Format format) {
+        return start(query, format, (file, title) -> TableWriter.open(format, file, title));
+    }
+
+    /**
+     * Same as {@link #start(ExportQuery, TableWriter.Format)} with a writer that lays the rows out itself.
+     *
+     * @param query         export definition
+     * @param format        format of the file written by the factory (gives the file extension)
+     * @param writerFactory creates the writer
+     * @return The running task
+     */
+    public static ExportTask start(ExportQuery query, TableWriter.Format format, TableWriter.Factory writerFactory) {
+        ExportTask task = new ExportTask(DaoManager.getInstance().getReportExportDAO(), query, writerFactory,
+                defaultTarget(query.getName(), format));
+        EXPORTER.execute(task);
+        return task;
+    }
+
+    /**
+     * Exports the query to PDF and, when it succeeds, hands the file to the system print service
+     * (or opens it if the desktop cannot print directly).
+     *
+     * @param query export definition
+     * @return The running task
+     */
+    public static ExportTask startPrint(ExportQuery query) {
+        ExportTask task = start(query, TableWriter.Format.PDF);
+        task.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> EXPORTER.execute(() -> print(task.getTarget())));
+        return task;
+    }
+
+    private static void print(Path file) {
+        try {
+            if (!Desktop.isDesktopSupported()) {
+                LOGGER.warning("Desktop printing is not supported, PDF kept at " + file);
+                return;
+            }
+            Desktop desktop = Desktop.getDesktop();
+            if (desktop.isSupported(Desktop.Action.PRINT)) {
+                desktop.print(file.toFile());
+            } else if (desktop.isSupported(Desktop.Action.OPEN)) {
+                desktop.open(file.toFile());
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not send " + file + " to the printer", e);
+        }
+    }
+
+    /**
+     * @return ~/CS3332 Exports/&lt;name&gt;_&lt;timestamp&gt;.&lt;extension&gt;
+     */
+    public static Path defaultTarget(String name, TableWriter.Format format) {
+        return Paths.get(System.getProperty("user.home"), "CS3332 Exports",
+                name + "_" + LocalDateTime.now().format(FILE_TIMESTAMP) + "." + format.getExtension());
+    }
+
+    public Path getTarget() {
+        return target;
+    }
+
+    @Override
+    protected Long call() throws Exception {
+        updateMessage("Đang đếm số dòng...");
+        long total = exportDAO.count(query);
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+
+        long[] written = {0L};
+        try (TableWriter writer = writerFactory.open(target, query.getTitle())) {
+            writer.writeHeader(query.getColumns());
+            exportDAO.stream(query, row -> {
+                if (isCancelled()) {
+                    throw new CancellationException("Export cancelled");
+                }
+                writer.writeRow(row);
+                if (++written[0] % PROGRESS_EVERY_ROWS == 0) {
+                    reportProgress(written[0], total);
+                }
+            });
+        } catch (Exception e) {
+            deletePartialFile();
+            throw e;
+        }
+        reportProgress(written[0], Math.max(total, written[0]));
+        LOGGER.info("Exported " + written[0] + " rows of " + query.getName() + " to " + target);
+        return written[0];
+    }
+
+    private void reportProgress(long written, long total) {
+        updateProgress(written, total > 0 ? total : -1);
+        updateMessage(total > 0 ? "Đã xuất " + written + "/" + total + " dòng" : "Đã xuất " + written + " dòng");
+    }
+
+    private void deletePartialFile() {
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not delete partial export file " + target, e);
+        }
+    }
+}
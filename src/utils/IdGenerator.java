@@ -0,0 +1,16 @@
+package src.utils;
+
+/**
+ * Generates primary key values for new rows.
+ * Implementations should produce IDs that sort in creation order, so InnoDB inserts land at the
+ * right-hand end of the clustered index instead of being scattered across it.
+ *
+ * @see IdGenerators
+ */
+public interface IdGenerator {
+
+    /**
+     * @return A new unique ID in string form, suitable for the VARCHAR key columns used by the DAOs
+     */
+    String nextId();
+}
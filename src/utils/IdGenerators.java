@@ -0,0 +1,21 @@
+package src.utils;
+
+/**
+ * Holds the application-wide {@link IdGenerator} used by the DAOs for new primary keys.
+ * It is a {@link UuidV7Generator}, whose IDs keep the existing 36-character format but are time-ordered.
+ */
+public final class IdGenerators {
+
+    private static final IdGenerator DEFAULT_GENERATOR = new UuidV7Generator();
+
+    private IdGenerators() {
+        // Utility class
+    }
+
+    /**
+     * @return A new ID from the default generator
+     */
+    public static String nextId() {
+        return DEFAULT_GENERATOR.nextId();
+    }
+}
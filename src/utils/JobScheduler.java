@@ -0,0 +1,268 @@
+package src.utils;
+
+import src.dao.Jobs.JobRunDAO;
+
+import java.net.InetAddress;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-process scheduler for background jobs with cron-style triggers.
+ * <p>
+ * Every client runs the scheduler, but a run only starts after taking the job's lease in job_locks
+ * ({@link JobRunDAO#tryAcquire(String, String, Duration)}), so one client does the work and the others skip that
+ * trigger. Each attempt is recorded in job_runs; a failed attempt is retried with exponential backoff up to the
+ * job's attempt limit. A client that starts after a trigger was missed by every client (e.g. nobody left the
+ * application open overnight) runs the job shortly after start-up.
+ * <p>
+ * Triggers are checked by a single daemon thread once a minute, so jobs run one after another and a laptop that
+ * slept through a trigger catches up when it wakes. Disabled with {@code -Dcs3332.jobs.enabled=false}.
+ */
+public class JobScheduler {
+    private static final Logger LOGGER = Logger.getLogger(JobScheduler.class.getName());
+
+    private static final long TICK_SECONDS = 60;
+    private static final long CATCH_UP_DELAY_SECONDS = 120;
+    // Sai lệch đồng hồ chấp nhận được giữa máy khách và máy chủ CSDL khi so với lần chạy thành công gần nhất
+    private static final Duration CLOCK_SKEW_TOLERANCE = Duration.ofMinutes(5);
+
+    /**
+     * Work done by a job. Throwing marks the attempt as failed and schedules a retry.
+     */
+    @FunctionalInterface
+    public interface Job {
+        void run() throws Exception;
+    }
+
+    private static final class ScheduledJob {
+        private final String name;
+        private final CronExpression cron;
+        private final Duration lease;
+        private final int maxAttempts;
+        private final Duration retryDelay;
+        private final Job job;
+
+        // Chỉ được đọc/ghi trên luồng của scheduler
+        private LocalDateTime nextFire;
+        private LocalDateTime retryAt;
+        private int nextAttempt = 1;
+        private LocalDateTime dueSince; // lần kích hoạt đang được phục vụ (null khi chạy thủ công)
+
+        private ScheduledJob(String name, CronExpression cron, Duration lease, int maxAttempts, Duration retryDelay, Job job) {
+            this.name = name;
+            this.cron = cron;
+            this.lease = lease;
+            this.maxAttempts = maxAttempts;
+            this.retryDelay = retryDelay;
+            this.job = job;
+        }
+    }
+
+    private final JobRunDAO jobRunDAO;
+    private final String owner;
+    private final Map<String, ScheduledJob> jobs = new LinkedHashMap<>();
+    private final ScheduledExecutorService timer;
+    private volatile boolean running = false;
+
+    public JobScheduler(JobRunDAO jobRunDAO) {
+        this.jobRunDAO = jobRunDAO;
+        this.owner = ownerId();
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "job-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers a job. Must be called before {@link #start()}.
+     *
+     * @param name        unique job name (also the lock and history key)
+     * @param cron        trigger, e.g. "30 2 * * *" for 02:30 every night
+     * @param lease       maximum expected run time; the lock expires after it if this client dies mid-run
+     * @param maxAttempts attempts per trigger (1 = no retry)
+     * @param retryDelay  delay before the first retry, doubled for each further one
+     * @param job         the work
+     */
+    public synchronized void register(String name, String cron, Duration lease, int maxAttempts, Duration retryDelay, Job job) {
+        if (running) {
+            throw new IllegalStateException("Jobs must be registered before the scheduler starts");
+        }
+        jobs.put(name, new ScheduledJob(name, CronExpression.parse(cron), lease, Math.max(1, maxAttempts), retryDelay, job));
+    }
+
+    /**
+     * Computes the first trigger of every job and starts the scheduler thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (!Boolean.parseBoolean(System.getProperty("cs3332.jobs.enabled", "true"))) {
+            LOGGER.info("Background jobs are disabled (cs3332.jobs.enabled=false).");
+            return;
+        }
+        running = true;
+        timer.execute(this::planFirstRuns);
+        timer.scheduleWithFixedDelay(this::tickSafely, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+        LOGGER.info("Job scheduler started with " + jobs.size() + " jobs as " + owner);
+    }
+
+    /**
+     * Stops the scheduler thread. A job that is running is interrupted; its lease expires on its own.
+     */
+    public void shutdown() {
+        running = false;
+        timer.shutdownNow();
+    }
+
+    /**
+     * Runs a job now (on the scheduler thread), still subject to the lock.
+     *
+     * @param name job name
+     */
+    public void runNow(String name) {
+        ScheduledJob scheduled = jobs.get(name);
+        if (scheduled == null) {
+            throw new IllegalArgumentException("Unknown job: " + name);
+        }
+        if (running) {
+            timer.execute(() -> {
+                scheduled.nextAttempt = 1;
+                scheduled.dueSince = null;
+                attempt(scheduled);
+            });
+        }
+    }
+
+    // --- Scheduler thread ---
+
+    private void planFirstRuns() {
+        LocalDateTime now = LocalDateTime.now();
+        for (ScheduledJob scheduled : jobs.values()) {
+            scheduled.nextFire = scheduled.cron.next(now);
+            try {
+                LocalDateTime lastSuccess = jobRunDAO.getLastSuccess(scheduled.name);
+                LocalDateTime missed = lastSuccess != null ? scheduled.cron.next(lastSuccess) : null;
+                if (missed != null && missed.isBefore(now)) {
+                    // Lần chạy gần nhất đã bị lỡ trên mọi máy: chạy bù sau khi ứng dụng khởi động xong
+                    scheduled.retryAt = now.plusSeconds(CATCH_UP_DELAY_SECONDS);
+                    scheduled.dueSince = missed;
+                    LOGGER.info("Job " + scheduled.name + " missed its run of " + missed + "; catching up.");
+                }
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Could not read the run history of job " + scheduled.name, e);
+            }
+        }
+    }
+
+    // Một ngoại lệ lọt ra ngoài sẽ huỷ lịch chạy định kỳ của executor
+    private void tickSafely() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Unexpected error in job scheduler tick.", e);
+        }
+    }
+
+    private void tick() {
+        LocalDateTime now = LocalDateTime.now();
+        for (ScheduledJob scheduled : jobs.values()) {
+            if (!running) {
+                return;
+            }
+            if (scheduled.nextFire != null && !now.isBefore(scheduled.nextFire)) {
+                scheduled.dueSince = scheduled.nextFire;
+                scheduled.nextFire = scheduled.cron.next(now);
+                scheduled.retryAt = null;
+                scheduled.nextAttempt = 1;
+                attempt(scheduled);
+            } else if (scheduled.retryAt != null && !now.isBefore(scheduled.retryAt)) {
+                scheduled.retryAt = null;
+                attempt(scheduled);
+            }
+        }
+    }
+
+    private void attempt(ScheduledJob scheduled) {
+        int attempt = scheduled.nextAttempt;
+        try {
+            if (!jobRunDAO.tryAcquire(scheduled.name, owner, scheduled.lease)) {
+                LOGGER.fine("Job " + scheduled.name + " is being run by another client; skipped.");
+                return;
+            }
+            if (alreadyDone(scheduled)) {
+                jobRunDAO.release(scheduled.name, owner);
+                LOGGER.fine("Job " + scheduled.name + " already ran for the trigger of " + scheduled.dueSince + "; skipped.");
+                return;
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not take the lock of job " + scheduled.name, e);
+            jobRunDAO.release(scheduled.name, owner);
+            scheduleRetry(scheduled, attempt);
+            return;
+        }
+
+        long runId = -1;
+        long started = System.nanoTime();
+        try {
+            runId = jobRunDAO.startRun(scheduled.name, owner, attempt);
+            scheduled.job.run();
+            long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started);
+            jobRunDAO.finishRun(runId, JobRunDAO.STATUS_SUCCEEDED, "Hoàn tất sau " + seconds + " giây");
+            scheduled.nextAttempt = 1;
+            LOGGER.info("Job " + scheduled.name + " succeeded in " + seconds + " s (attempt " + attempt + ").");
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Job " + scheduled.name + " failed (attempt " + attempt + ").", e);
+            if (runId > 0) {
+                jobRunDAO.finishRun(runId, JobRunDAO.STATUS_FAILED, e.toString());
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            } else {
+                scheduleRetry(scheduled, attempt);
+            }
+        } finally {
+            jobRunDAO.release(scheduled.name, owner);
+        }
+    }
+
+    /**
+     * A client whose tick comes after another client finished the same trigger must not run it again.
+     */
+    private boolean alreadyDone(ScheduledJob scheduled) throws SQLException {
+        if (scheduled.dueSince == null || scheduled.nextAttempt > 1) {
+            return false;
+        }
+        LocalDateTime lastSuccess = jobRunDAO.getLastSuccess(scheduled.name);
+        return lastSuccess != null && lastSuccess.isAfter(scheduled.dueSince.minus(CLOCK_SKEW_TOLERANCE));
+    }
+
+    private void scheduleRetry(ScheduledJob scheduled, int failedAttempt) {
+        if (failedAttempt >= scheduled.maxAttempts) {
+            scheduled.nextAttempt = 1;
+            LOGGER.warning("Job " + scheduled.name + " gave up after " + failedAttempt + " attempts; next run at " + scheduled.nextFire);
+            return;
+        }
+        scheduled.nextAttempt = failedAttempt + 1;
+        scheduled.retryAt = LocalDateTime.now().plus(scheduled.retryDelay.multipliedBy(1L << (failedAttempt - 1)));
+    }
+
+    private static String ownerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown-host";
+        }
+        return host + "/" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,136 @@
+package src.utils;
+
+import src.dao.Attendance.AttendanceCounterDAO;
+import src.dao.Attendance.StudentMetricsRollupDAO;
+import src.dao.Dashboard.CourseDistributionDAO;
+import src.dao.Person.CourseDAO;
+import src.dao.Report.ReportDAO;
+import src.dao.Report.TeacherMonthlyStatisticsDAO;
+import src.dao.Report.TeacherQuarterlyStatisticsDAO;
+import src.dao.Report.TeacherYearlyStatisticsDAO;
+import src.dao.Report.TeachingRollupDAO;
+import src.dao.Report.TeachingStatisticsDAO;
+import src.model.teaching.TeachingStatisticsFilter;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.logging.Logger;
+
+/**
+ * The off-peak jobs registered with {@link JobScheduler}.
+ * <ul>
+ *   <li>course-progress (01:00): date-based progress of the active courses.</li>
+ *   <li>rollup-rebuild (01:30): recomputes the summary tables kept up to date on every write (attendance counters,
+ *   student metrics rollups, teaching rollup, course session counts) from their source tables, so a write that
+ *   bypassed the DAOs (manual SQL, a restored backup) is repaired overnight, before the reports below read them.</li>
+ *   <li>teaching-hours (02:00): teachers.teaching_hour from the teaching rollup, one set-based UPDATE.</li>
+ *   <li>report-precompute (02:30): computes and stores the report_snapshots of the periods that have closed
+ *   (last month's class report, homework score and monthly teacher statistics; last year's quarterly and yearly
+ *   teacher statistics and summary, for every status filter), so the first person to open them does not wait.</li>
+ * </ul>
+ * Reports of the open month are not pre-computed: their snapshots would be dropped by the next write.
+ */
+public final class NightlyJobs {
+    private static final Logger LOGGER = Logger.getLogger(NightlyJobs.class.getName());
+
+    public static final String COURSE_PROGRESS = "course-progress";
+    public static final String TEACHING_HOURS = "teaching-hours";
+    public static final String REPORT_PRECOMPUTE = "report-precompute";
+    public static final String ROLLUP_REBUILD = "rollup-rebuild";
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration RETRY_DELAY = Duration.ofMinutes(10);
+
+    private NightlyJobs() {
+        // Utility class
+    }
+
+    public static void register(JobScheduler scheduler, CourseDAO courseDAO, TeachingStatisticsDAO teachingStatisticsDAO,
+                                ReportDAO reportDAO, TeacherMonthlyStatisticsDAO monthlyDAO,
+                                TeacherQuarterlyStatisticsDAO quarterlyDAO, TeacherYearlyStatisticsDAO yearlyDAO,
+                                AttendanceCounterDAO attendanceCounterDAO, StudentMetricsRollupDAO studentMetricsRollupDAO,
+                                TeachingRollupDAO teachingRollupDAO, CourseDistributionDAO courseDistributionDAO) {
+        scheduler.register(COURSE_PROGRESS, "0 1 * * *", Duration.ofMinutes(15), MAX_ATTEMPTS, RETRY_DELAY, () -> {
+            if (courseDAO.refreshProgressForActiveCourses() < 0) {
+                throw new IllegalStateException("Could not refresh course progress");
+            }
+        });
+
+        scheduler.register(ROLLUP_REBUILD, "30 1 * * *", Duration.ofMinutes(30), MAX_ATTEMPTS, RETRY_DELAY,
+                () -> rebuildRollups(attendanceCounterDAO, studentMetricsRollupDAO, teachingRollupDAO,
+                        courseDistributionDAO));
+
+        scheduler.register(TEACHING_HOURS, "0 2 * * *", Duration.ofMinutes(15), MAX_ATTEMPTS, RETRY_DELAY,
+                teachingStatisticsDAO::calculateAndSaveTotalTeachingHours);
+
+        scheduler.register(REPORT_PRECOMPUTE, "30 2 * * *", Duration.ofHours(1), MAX_ATTEMPTS, RETRY_DELAY,
+                () -> precomputeClosedReports(reportDAO, monthlyDAO, quarterlyDAO, yearlyDAO));
+    }
+
+    /**
+     * Rebuilds each summary table in its own transaction; a failing table does not keep the others from being
+     * repaired, but fails the run so it is retried.
+     */
+    static void rebuildRollups(AttendanceCounterDAO attendanceCounterDAO, StudentMetricsRollupDAO studentMetricsRollupDAO,
+                               TeachingRollupDAO teachingRollupDAO, CourseDistributionDAO courseDistributionDAO)
+            throws Exception {
+        SQLException failure = null;
+        try {
+            attendanceCounterDAO.rebuildAll();
+        } catch (SQLException e) {
+            failure = e;
+        }
+        checkInterrupted();
+        try {
+            studentMetricsRollupDAO.rebuildAll();
+        } catch (SQLException e) {
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+        checkInterrupted();
+        boolean teachingRebuilt = teachingRollupDAO.rebuildAll();
+        boolean distributionRebuilt = courseDistributionDAO.rebuildAll();
+        if (failure != null) {
+            throw failure;
+        }
+        if (!teachingRebuilt || !distributionRebuilt) {
+            throw new IllegalStateException("Could not rebuild the teaching rollup or course session counts");
+        }
+        LOGGER.info("Summary tables rebuilt.");
+    }
+
+    /**
+     * Reads every report of the last closed month and year once; the DAOs store closed periods in report_snapshots
+     * on first read and only read the snapshot afterwards, so a repeated run costs one lookup per report.
+     */
+    static void precomputeClosedReports(ReportDAO reportDAO, TeacherMonthlyStatisticsDAO monthlyDAO,
+                                        TeacherQuarterlyStatisticsDAO quarterlyDAO, TeacherYearlyStatisticsDAO yearlyDAO)
+            throws Exception {
+        YearMonth lastMonth = YearMonth.now().minusMonths(1);
+        LocalDate monthStart = lastMonth.atDay(1);
+        LocalDate monthEnd = lastMonth.atEndOfMonth();
+        int lastYear = LocalDate.now().getYear() - 1;
+
+        reportDAO.getClassReportData(monthStart, monthEnd);
+        reportDAO.getOverallHomeworkSubmissionStats(monthStart, monthEnd);
+        for (String status : TeachingStatisticsFilter.STATUS_OPTIONS) {
+            checkInterrupted();
+            monthlyDAO.getTeachingStatistics(monthStart, monthEnd, status);
+            quarterlyDAO.getTeacherStatistics(lastYear, status);
+            yearlyDAO.getYearlyStatistics(lastYear, status);
+            yearlyDAO.calculateSummaryStatistics(lastYear, status);
+        }
+        LOGGER.info("Report snapshots ready for " + lastMonth + " and " + lastYear + ".");
+    }
+
+    private static void checkInterrupted() throws InterruptedException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("Nightly job interrupted");
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package src.utils;
+
+import src.utils.pdf.PdfLayout;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Printable PDF table: the rows are laid out on A4 pages (landscape for wide tables) as they arrive, so
+ * only the page being built is kept in memory.
+ */
+public class PdfTableWriter implements TableWriter {
+    private static final int LANDSCAPE_FROM_COLUMNS = 8;
+
+    private final Path target;
+    private final String title;
+    private PdfLayout layout;
+
+    public PdfTableWriter(Path target, String title) {
+        this.target = target;
+        this.title = title;
+    }
+
+    @Override
+    public void writeHeader(List<String> columns) throws IOException {
+        // Khổ giấy phụ thuộc số cột nên chỉ mở file khi biết header
+        layout = new PdfLayout(target, title, null, columns.size() >= LANDSCAPE_FROM_COLUMNS);
+        float[] weights = new float[columns.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = Math.max(6, columns.get(i).length());
+        }
+        layout.beginTable(columns, weights);
+    }
+
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+        layout.row(values);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (layout == null) {
+            layout = new PdfLayout(target, title, null, false);
+        }
+        layout.close();
+    }
+}
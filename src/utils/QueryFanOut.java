@@ -0,0 +1,182 @@
+package src.utils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs independent read queries of one screen concurrently and waits for all of them together.
+ * <p>
+ * Usage follows the structured-concurrency shape: open a scope, {@link #fork(String, Callable)} each query,
+ * {@link #join()} once, read every {@link Subtask}, then close the scope (try-with-resources). Each subtask has
+ * its own deadline counted from the moment it was forked; a subtask that misses it is cancelled and reported as
+ * {@link State#TIMED_OUT}, a subtask that throws is reported as {@link State#FAILED}. Neither affects the other
+ * subtasks, so the caller can render whatever did arrive. Closing the scope cancels anything still running, so no
+ * query outlives the screen refresh that started it.
+ * <p>
+ * Each scope runs its queries on its own daemon threads, one per forked query, and shuts them down on close.
+ * A JDBC call does not react to interrupts: a cancelled query keeps its thread (and connection) until the driver
+ * returns, and its result is discarded. Because the threads belong to the scope, such a query never delays the
+ * queries of a later refresh.
+ */
+public final class QueryFanOut implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(QueryFanOut.class.getName());
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * Outcome of a subtask after {@link #join()}.
+     */
+    public enum State {
+        /** join() has not looked at the subtask yet */
+        UNAVAILABLE,
+        SUCCESS,
+        FAILED,
+        TIMED_OUT
+    }
+
+    /**
+     * Handle to one forked query.
+     *
+     * @param <T> result type of the query
+     */
+    public static final class Subtask<T> {
+        private final String name;
+        private final Future<T> future;
+        private final long deadlineNanos;
+        private State state = State.UNAVAILABLE;
+        private T value;
+        private Throwable error;
+
+        private Subtask(String name, Future<T> future, long deadlineNanos) {
+            this.name = name;
+            this.future = future;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public String getName() { return name; }
+        public State getState() { return state; }
+        public Throwable getError() { return error; }
+
+        public boolean isSuccess() {
+            return state == State.SUCCESS;
+        }
+
+        /**
+         * @return the query result
+         * @throws IllegalStateException if the subtask did not succeed
+         */
+        public T get() {
+            if (state != State.SUCCESS) {
+                throw new IllegalStateException("Subtask '" + name + "' has no result (" + state + ")");
+            }
+            return value;
+        }
+
+        /**
+         * @param fallback value to use when the subtask failed or timed out
+         * @return the query result, or {@code fallback}
+         */
+        public T orElse(T fallback) {
+            return state == State.SUCCESS ? value : fallback;
+        }
+
+        private void await() throws InterruptedException {
+            long remaining = deadlineNanos - System.nanoTime();
+            try {
+                value = future.get(Math.max(0L, remaining), TimeUnit.NANOSECONDS);
+                state = State.SUCCESS;
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                error = e;
+                state = State.TIMED_OUT;
+                LOGGER.warning("Query '" + name + "' timed out; rendering without it.");
+            } catch (ExecutionException e) {
+                error = e.getCause() != null ? e.getCause() : e;
+                state = State.FAILED;
+                LOGGER.log(Level.WARNING, "Query '" + name + "' failed; rendering without it.", error);
+            }
+        }
+    }
+
+    private final Duration defaultTimeout;
+    private final List<Subtask<?>> subtasks = new ArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "query-fan-out-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean joined;
+
+    /**
+     * @param defaultTimeout deadline applied to subtasks forked without their own timeout
+     */
+    public QueryFanOut(Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    /**
+     * Starts a query with the scope's default timeout.
+     */
+    public <T> Subtask<T> fork(String name, Callable<T> query) {
+        return fork(name, defaultTimeout, query);
+    }
+
+    /**
+     * Starts a query with its own timeout.
+     *
+     * @param name    name used in log messages
+     * @param timeout time the query may take, counted from now
+     * @param query   the query; it must not depend on another subtask of this scope
+     * @return Handle to read after {@link #join()}
+     */
+    public <T> Subtask<T> fork(String name, Duration timeout, Callable<T> query) {
+        if (joined) {
+            throw new IllegalStateException("Cannot fork after join()");
+        }
+        Subtask<T> subtask = new Subtask<>(name, executor.submit(query), System.nanoTime() + timeout.toNanos());
+        subtasks.add(subtask);
+        return subtask;
+    }
+
+    /**
+     * Waits until every subtask has completed, failed or reached its deadline.
+     *
+     * @throws InterruptedException if the calling thread is interrupted; all subtasks are cancelled
+     */
+    public void join() throws InterruptedException {
+        joined = true;
+        try {
+            for (Subtask<?> subtask : subtasks) {
+                subtask.await();
+            }
+        } catch (InterruptedException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels every subtask that is still running and releases the scope's threads.
+     */
+    @Override
+    public void close() {
+        joined = true;
+        for (Subtask<?> subtask : subtasks) {
+            if (!subtask.future.isDone()) {
+                subtask.future.cancel(true);
+            }
+        }
+        executor.shutdownNow();
+    }
+}
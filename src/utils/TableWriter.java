@@ -0,0 +1,74 @@
+package src.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writes a table row by row to an export file without keeping earlier rows in memory.
+ * <p>
+ * Values may be null, strings, numbers, booleans or java.time values (written in ISO format).
+ * {@link #close()} finishes the file; a writer that was not closed leaves an incomplete file behind.
+ */
+public interface TableWriter extends Closeable {
+
+    /**
+     * Supported export formats.
+     */
+    enum Format {
+        CSV("csv"),
+        XLSX("xlsx"),
+        PDF("pdf");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Creates a writer with a custom layout (e.g. attendance sheets) for a file of a given format.
+     */
+    @FunctionalInterface
+    interface Factory {
+        TableWriter open(Path target, String title) throws IOException;
+    }
+
+    /**
+     * Writes the column titles. Must be called once, before the first row.
+     */
+    void writeHeader(List<String> columns) throws IOException;
+
+    /**
+     * Appends one row.
+     */
+    void writeRow(Object[] values) throws IOException;
+
+    /**
+     * Opens a writer of the given format on a new file.
+     *
+     * @param format export format
+     * @param target file to create (replaced if it exists)
+     * @param title  document title (used by PDF only)
+     * @return Writer positioned before the header
+     * @throws IOException if the file cannot be created
+     */
+    static TableWriter open(Format format, Path target, String title) throws IOException {
+        switch (format) {
+            case CSV:
+                return new CsvTableWriter(target);
+            case XLSX:
+                return new XlsxTableWriter(target);
+            case PDF:
+                return new PdfTableWriter(target, title);
+            default:
+                throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package src.utils;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Generates UUID version 7 values (RFC 9562): a 48-bit Unix millisecond timestamp followed by random bits.
+ * The canonical 36-character string form sorts in creation order, so it can replace
+ * {@code UUID.randomUUID()} without changing column types.
+ * Within one millisecond a 12-bit counter keeps IDs from this generator strictly increasing.
+ */
+public class UuidV7Generator implements IdGenerator {
+
+    private final SecureRandom random = new SecureRandom();
+
+    private long lastMillis = -1L;
+    private int counter;
+
+    @Override
+    public String nextId() {
+        return nextUuid().toString();
+    }
+
+    /**
+     * @return A new version 7 UUID
+     */
+    public UUID nextUuid() {
+        long millis;
+        int sequence;
+        synchronized (this) {
+            millis = System.currentTimeMillis();
+            if (millis <= lastMillis) {
+                // Same millisecond (or clock moved back): keep the previous timestamp and bump the counter
+                millis = lastMillis;
+                counter++;
+                if (counter > 0xFFF) {
+                    // Counter exhausted: borrow the next millisecond
+                    millis++;
+                    counter = random.nextInt(0x800);
+                }
+            } else {
+                counter = random.nextInt(0x800);
+            }
+            lastMillis = millis;
+            sequence = counter;
+        }
+
+        long mostSigBits = (millis & 0xFFFFFFFFFFFFL) << 16
+                | 0x7000L                 // version 7
+                | (sequence & 0xFFFL);
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL)
+                | 0x8000000000000000L;    // IETF variant
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -0,0 +1,256 @@
+package src.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only local journal used to make writes durable before they reach the database.
+ * <p>
+ * Each entry is one line: {@code E|entryId|type|field1,field2,...} with Base64-encoded fields.
+ * When an entry has been applied to the database an acknowledgement line {@code A|entryId} is appended.
+ * Entries without an acknowledgement are returned by {@link #readPending()} after a restart.
+ * Every call to {@link #append(String, List)} or {@link #acknowledge(Collection)} writes its lines
+ * and then issues a single fsync, so a batch of entries costs one disk flush.
+ */
+public class WriteBehindJournal {
+
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindJournal.class.getName());
+
+    private static final String ENTRY_PREFIX = "E";
+    private static final String ACK_PREFIX = "A";
+    private static final String NULL_FIELD = "-";
+
+    /**
+     * A journaled write: a type tag and its string fields (nulls allowed).
+     */
+    public static class Entry {
+        private final String id;
+        private final String type;
+        private final String[] fields;
+
+        public Entry(String id, String type, String[] fields) {
+            this.id = id;
+            this.type = type;
+            this.fields = fields;
+        }
+
+        public String getId() { return id; }
+        public String getType() { return type; }
+        public String[] getFields() { return fields; }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+
+    /**
+     * Opens (or creates) the journal file.
+     *
+     * @param file Path of the journal file
+     * @throws IOException if the file cannot be opened
+     */
+    public WriteBehindJournal(Path file) throws IOException {
+        this.file = file;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        truncateTornTail();
+    }
+
+    /**
+     * Cuts off a last line without its newline (the process stopped in the middle of a write). Otherwise the
+     * next append would continue that line and both entries would be lost on replay. The torn entry was never
+     * acknowledged to the caller as durable, so dropping it loses nothing that was promised.
+     */
+    private void truncateTornTail() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return;
+        }
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long end = size;
+            while (end > 0) {
+                int length = (int) Math.min(buffer.capacity(), end);
+                buffer.clear().limit(length);
+                long start = end - length;
+                while (buffer.hasRemaining()) {
+                    if (reader.read(buffer, start + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        long validLength = start + i + 1;
+                        if (validLength < size) {
+                            dropTail(validLength, size);
+                        }
+                        return;
+                    }
+                }
+                end = start;
+            }
+        }
+        dropTail(0, size);
+    }
+
+    private void dropTail(long validLength, long size) throws IOException {
+        LOGGER.log(Level.WARNING, "Dropping {0} bytes of a torn last line in journal {1}.",
+                new Object[]{size - validLength, file});
+        channel.truncate(validLength);
+        channel.force(true);
+    }
+
+    /**
+     * @return Default journal location in the user's home directory
+     */
+    public static Path defaultPath(String name) {
+        return Paths.get(System.getProperty("user.home"), ".cs3332", name);
+    }
+
+    /**
+     * Appends a batch of entries of the same type and flushes them to disk with one fsync.
+     *
+     * @param type    Entry type tag
+     * @param records Field arrays, one per entry
+     * @return The journaled entries, with their generated IDs
+     * @throws IOException if writing or syncing fails; in that case none of the entries should be considered durable
+     */
+    public synchronized List<Entry> append(String type, List<String[]> records) throws IOException {
+        List<Entry> entries = new ArrayList<>(records.size());
+        StringBuilder sb = new StringBuilder();
+        for (String[] fields : records) {
+            Entry entry = new Entry(UUID.randomUUID().toString(), type, fields);
+            entries.add(entry);
+            sb.append(ENTRY_PREFIX).append('|').append(entry.getId()).append('|').append(type).append('|')
+                    .append(encodeFields(fields)).append('\n');
+        }
+        write(sb.toString());
+        return entries;
+    }
+
+    /**
+     * Marks entries as applied to the database.
+     *
+     * @param entryIds IDs of the applied entries
+     * @throws IOException if writing fails
+     */
+    public synchronized void acknowledge(Collection<String> entryIds) throws IOException {
+        if (entryIds.isEmpty()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String id : entryIds) {
+            sb.append(ACK_PREFIX).append('|').append(id).append('\n');
+        }
+        write(sb.toString());
+    }
+
+    /**
+     * Reads all entries that have not been acknowledged yet, in journal order.
+     * A torn last line (crash during write) is cut off when the journal is opened; other unreadable lines are skipped.
+     *
+     * @return Pending entries
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized List<Entry> readPending() throws IOException {
+        Map<String, Entry> pending = new LinkedHashMap<>();
+        Set<String> acknowledged = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\\|", -1);
+                if (parts.length == 4 && ENTRY_PREFIX.equals(parts[0])) {
+                    try {
+                        pending.put(parts[1], new Entry(parts[1], parts[2], decodeFields(parts[3])));
+                    } catch (IllegalArgumentException e) {
+                        LOGGER.log(Level.WARNING, "Skipping corrupt journal entry in " + file, e);
+                    }
+                } else if (parts.length == 2 && ACK_PREFIX.equals(parts[0])) {
+                    acknowledged.add(parts[1]);
+                }
+            }
+        }
+        pending.keySet().removeAll(acknowledged);
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Truncates the journal when every entry has been acknowledged, so the file does not grow forever.
+     *
+     * @return true if the journal was truncated
+     * @throws IOException if the file cannot be read or truncated
+     */
+    public synchronized boolean compactIfDrained() throws IOException {
+        if (!readPending().isEmpty()) {
+            return false;
+        }
+        channel.truncate(0);
+        channel.force(true);
+        return true;
+    }
+
+    /**
+     * Closes the underlying file channel.
+     */
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error closing journal " + file, e);
+        }
+    }
+
+    private void write(String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    private static String encodeFields(String[] fields) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(fields[i] == null
+                    ? NULL_FIELD
+                    : Base64.getEncoder().encodeToString(fields[i].getBytes(StandardCharsets.UTF_8)));
+        }
+        return sb.toString();
+    }
+
+    private static String[] decodeFields(String encoded) {
+        if (encoded.isEmpty()) {
+            return new String[0];
+        }
+        String[] parts = encoded.split(",", -1);
+        String[] fields = new String[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            fields[i] = NULL_FIELD.equals(parts[i])
+                    ? null
+                    : new String(Base64.getDecoder().decode(parts[i]), StandardCharsets.UTF_8);
+        }
+        return fields;
+    }
+}
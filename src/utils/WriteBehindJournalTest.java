@@ -0,0 +1,92 @@
+package src.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pendingEntriesRoundTripTheirFields() throws Exception {
+        Path file = dir.resolve("journal.log");
+        WriteBehindJournal journal = new WriteBehindJournal(file);
+        String[] fields = {"HS001", null, "Có mặt, đúng giờ|", "", "a\nb"};
+        List<WriteBehindJournal.Entry> written = journal.append("attendance",
+                Arrays.asList(fields, new String[]{"HS002", "x"}));
+        journal.close();
+
+        List<WriteBehindJournal.Entry> pending = new WriteBehindJournal(file).readPending();
+
+        assertEquals(2, pending.size());
+        assertEquals(written.get(0).getId(), pending.get(0).getId());
+        assertEquals("attendance", pending.get(0).getType());
+        assertArrayEquals(fields, pending.get(0).getFields());
+        assertArrayEquals(new String[]{"HS002", "x"}, pending.get(1).getFields());
+    }
+
+    @Test
+    void acknowledgedEntriesAreNoLongerPending() throws Exception {
+        Path file = dir.resolve("journal.log");
+        WriteBehindJournal journal = new WriteBehindJournal(file);
+        List<WriteBehindJournal.Entry> written = journal.append("t",
+                Arrays.asList(new String[]{"1"}, new String[]{"2"}, new String[]{"3"}));
+        journal.acknowledge(Arrays.asList(written.get(0).getId(), written.get(2).getId()));
+        journal.close();
+
+        List<WriteBehindJournal.Entry> pending = new WriteBehindJournal(file).readPending();
+
+        assertEquals(1, pending.size());
+        assertEquals(written.get(1).getId(), pending.get(0).getId());
+    }
+
+    @Test
+    void tornLastLineIsDroppedWhenTheJournalIsOpened() throws Exception {
+        Path file = dir.resolve("journal.log");
+        WriteBehindJournal journal = new WriteBehindJournal(file);
+        journal.append("t", Collections.singletonList(new String[]{"kept"}));
+        journal.close();
+        long intactLength = Files.size(file);
+        Files.write(file, "E|torn-entry|t|QUJD".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        WriteBehindJournal reopened = new WriteBehindJournal(file);
+        assertEquals(intactLength, Files.size(file));
+        // Without the truncation this entry would be glued to the torn line and lost
+        reopened.append("t", Collections.singletonList(new String[]{"after"}));
+        List<WriteBehindJournal.Entry> pending = reopened.readPending();
+        reopened.close();
+
+        assertEquals(2, pending.size());
+        assertArrayEquals(new String[]{"kept"}, pending.get(0).getFields());
+        assertArrayEquals(new String[]{"after"}, pending.get(1).getFields());
+    }
+
+    @Test
+    void compactsOnlyWhenEverythingIsAcknowledged() throws Exception {
+        Path file = dir.resolve("journal.log");
+        WriteBehindJournal journal = new WriteBehindJournal(file);
+        List<WriteBehindJournal.Entry> written = journal.append("t", Collections.singletonList(new String[]{"1"}));
+
+        assertFalse(journal.compactIfDrained());
+        assertTrue(Files.size(file) > 0);
+
+        journal.acknowledge(Collections.singletonList(written.get(0).getId()));
+        assertTrue(journal.compactIfDrained());
+        assertEquals(0, Files.size(file));
+        journal.close();
+    }
+}
@@ -0,0 +1,113 @@
+package src.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XlsxTableWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesAllPartsOfASingleSheetWorkbook() throws Exception {
+        Path file = dir.resolve("out.xlsx");
+        try (XlsxTableWriter writer = new XlsxTableWriter(file)) {
+            writer.writeHeader(Arrays.asList("Tên", "Điểm"));
+            writer.writeRow(new Object[]{"A", 1});
+        }
+
+        Map<String, String> parts = readParts(file);
+
+        assertTrue(parts.containsKey("[Content_Types].xml"));
+        assertTrue(parts.containsKey("_rels/.rels"));
+        assertTrue(parts.containsKey("xl/workbook.xml"));
+        assertTrue(parts.containsKey("xl/_rels/workbook.xml.rels"));
+        assertTrue(parts.containsKey("xl/styles.xml"));
+        assertTrue(parts.containsKey("xl/worksheets/sheet1.xml"));
+        assertTrue(parts.get("xl/workbook.xml").contains("<sheet name=\"Sheet1\" sheetId=\"1\" r:id=\"rId1\"/>"));
+        assertTrue(parts.get("xl/_rels/workbook.xml.rels").contains("Id=\"rId2\"") // styles after the sheet
+                && parts.get("xl/_rels/workbook.xml.rels").contains("Target=\"styles.xml\""));
+    }
+
+    @Test
+    void writesTypedCellsWithTheHeaderInBold() throws Exception {
+        Path file = dir.resolve("out.xlsx");
+        try (XlsxTableWriter writer = new XlsxTableWriter(file)) {
+            writer.writeHeader(Arrays.asList("Tên", "Số"));
+            writer.writeRow(new Object[]{"Nguyễn <A> & \"B\"", 42, new BigDecimal("1E+3"), true, Double.NaN, null});
+        }
+
+        String sheet = readParts(file).get("xl/worksheets/sheet1.xml");
+
+        assertTrue(sheet.contains("<row r=\"1\"><c t=\"inlineStr\" s=\"1\"><is><t xml:space=\"preserve\">Tên</t></is></c>"));
+        assertTrue(sheet.contains("<row r=\"2\"><c t=\"inlineStr\"><is><t xml:space=\"preserve\">" +
+                "Nguyễn &lt;A&gt; &amp; &quot;B&quot;</t></is></c>"));
+        assertTrue(sheet.contains("<c t=\"n\"><v>42</v></c>"));
+        assertTrue(sheet.contains("<c t=\"n\"><v>1000</v></c>"));
+        assertTrue(sheet.contains("<c t=\"b\"><v>1</v></c>"));
+        // NaN is not a valid numeric cell value and is written as text
+        assertTrue(sheet.contains("<t xml:space=\"preserve\">NaN</t>"));
+        assertTrue(sheet.contains("<c/></row>"));
+        assertTrue(sheet.endsWith("</sheetData></worksheet>"));
+    }
+
+    @Test
+    void dropsCharactersThatAreNotAllowedInXml() throws Exception {
+        Path file = dir.resolve("out.xlsx");
+        try (XlsxTableWriter writer = new XlsxTableWriter(file)) {
+            writer.writeRow(new Object[]{"a\u0001b\tc\uFFFF"});
+        }
+
+        String sheet = readParts(file).get("xl/worksheets/sheet1.xml");
+
+        assertTrue(sheet.contains(">ab\tc</t>"));
+        assertFalse(sheet.contains("\u0001"));
+    }
+
+    @Test
+    void emptyExportIsStillAValidWorkbook() throws Exception {
+        Path file = dir.resolve("out.xlsx");
+        new XlsxTableWriter(file).close();
+
+        Map<String, String> parts = readParts(file);
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+                "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>" +
+                "</sheetData></worksheet>", parts.get("xl/worksheets/sheet1.xml"));
+        assertTrue(parts.get("[Content_Types].xml").contains("/xl/worksheets/sheet1.xml"));
+    }
+
+    private static Map<String, String> readParts(Path file) throws IOException {
+        Map<String, String> parts = new HashMap<>();
+        try (InputStream in = Files.newInputStream(file); ZipInputStream zip = new ZipInputStream(in)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = zip.read(buffer)) > 0) {
+                    content.write(buffer, 0, read);
+                }
+                parts.put(entry.getName(), new String(content.toByteArray(), StandardCharsets.UTF_8));
+            }
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,76 @@
+package src.utils.pdf;
+
+import src.utils.TableWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Printable attendance sheets: one page (or more) per class session, with the roster and a signature column.
+ * <p>
+ * Consumes the rows of {@code ReportExportDAO.attendanceHistory}, which arrive ordered by session, so a new sheet
+ * starts whenever the (date, course, session) columns change and nothing but the current page is kept in memory.
+ */
+public class AttendanceSheetWriter implements TableWriter {
+    // Vị trí cột trong ReportExportDAO.attendanceHistory
+    private static final int DATE = 0;
+    private static final int COURSE_ID = 1;
+    private static final int COURSE_NAME = 2;
+    private static final int SESSION_NUMBER = 3;
+    private static final int STUDENT_ID = 4;
+    private static final int STUDENT_NAME = 5;
+    private static final int PRESENT = 6;
+    private static final int PERMISSION = 7;
+    private static final int NOTES = 10;
+
+    private static final List<String> SHEET_COLUMNS =
+            Arrays.asList("STT", "Mã học viên", "Họ tên", "Có mặt", "Có phép", "Ghi chú", "Ký tên");
+    private static final float[] SHEET_WEIGHTS = {3, 10, 16, 6, 6, 12, 10};
+
+    private final PdfLayout layout;
+    private Object[] currentSession;
+    private int stt;
+
+    public AttendanceSheetWriter(Path target, String title) throws IOException {
+        this.layout = new PdfLayout(target, title, null, false);
+    }
+
+    @Override
+    public void writeHeader(List<String> columns) {
+        // Bảng điểm danh có bố cục riêng, không dùng tiêu đề cột của truy vấn
+    }
+
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+        if (!sameSession(values)) {
+            if (currentSession != null) {
+                layout.endTable();
+                layout.pageBreak();
+            }
+            currentSession = values;
+            stt = 0;
+            layout.heading("Lớp " + PdfLayout.format(values[COURSE_NAME]) + " (" + PdfLayout.format(values[COURSE_ID]) + ")");
+            layout.field("Buổi", values[SESSION_NUMBER]);
+            layout.field("Ngày", values[DATE]);
+            layout.spacer(4);
+            layout.beginTable(SHEET_COLUMNS, SHEET_WEIGHTS);
+        }
+        layout.row(new Object[]{++stt, values[STUDENT_ID], values[STUDENT_NAME], values[PRESENT], values[PERMISSION],
+                values[NOTES], ""});
+    }
+
+    private boolean sameSession(Object[] values) {
+        return currentSession != null
+                && Objects.equals(currentSession[DATE], values[DATE])
+                && Objects.equals(currentSession[COURSE_ID], values[COURSE_ID])
+                && Objects.equals(currentSession[SESSION_NUMBER], values[SESSION_NUMBER]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        layout.close();
+    }
+}
@@ -0,0 +1,96 @@
+package src.utils.pdf;
+
+import java.text.Normalizer;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Use of a {@link TrueTypeFont} inside one PDF document.
+ * <p>
+ * Text is written as 2-byte glyph IDs (Identity-H encoding). Every glyph drawn is remembered so that
+ * {@link PdfWriter} can embed a subset containing just those glyphs, a ToUnicode map (for copy/search) and the
+ * widths array when the document is closed. Not thread-safe: one instance per document.
+ */
+public final class PdfFont {
+    private final TrueTypeFont font;
+    private final String resourceName;
+    private final int objectNumber;
+    private final String subsetTag;
+    private final BitSet usedGlyphs = new BitSet();
+    private final Map<Integer, Integer> glyphByCodePoint = new HashMap<>();
+    private final Map<Integer, Integer> codePointByGlyph = new HashMap<>();
+
+    PdfFont(TrueTypeFont font, String resourceName, int objectNumber) {
+        this.font = font;
+        this.resourceName = resourceName;
+        this.objectNumber = objectNumber;
+        StringBuilder tag = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            tag.append((char) ('A' + ThreadLocalRandom.current().nextInt(26)));
+        }
+        this.subsetTag = tag.toString();
+    }
+
+    TrueTypeFont getFont() { return font; }
+    String getResourceName() { return resourceName; }
+    int getObjectNumber() { return objectNumber; }
+    BitSet getUsedGlyphs() { return usedGlyphs; }
+    Map<Integer, Integer> getCodePointByGlyph() { return codePointByGlyph; }
+
+    String getBaseFontName() {
+        return subsetTag + "+" + font.getPostScriptName();
+    }
+
+    /**
+     * Encodes text as a PDF hex string of glyph IDs and records the glyphs as used.
+     */
+    String encode(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC);
+        StringBuilder hex = new StringBuilder(normalized.length() * 4 + 2).append('<');
+        normalized.codePoints().forEach(cp -> {
+            int gid = glyph(cp);
+            usedGlyphs.set(gid);
+            hex.append(String.format("%04X", gid));
+        });
+        return hex.append('>').toString();
+    }
+
+    /**
+     * @return Width of the text in points at the given font size
+     */
+    public float width(String text, float size) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC);
+        long units = normalized.codePoints().mapToLong(cp -> font.getAdvanceWidth(glyph(cp))).sum();
+        return units * size / font.getUnitsPerEm();
+    }
+
+    /**
+     * Cuts the text so that it fits the width, ending with "…" when something was cut.
+     */
+    public String fit(String text, float size, float maxWidth) {
+        if (width(text, size) <= maxWidth) {
+            return text;
+        }
+        String ellipsis = "…";
+        float available = maxWidth - width(ellipsis, size);
+        int end = text.length();
+        while (end > 0 && width(text.substring(0, end), size) > available) {
+            end = text.offsetByCodePoints(end, -1);
+        }
+        return text.substring(0, end) + ellipsis;
+    }
+
+    private int glyph(int codePoint) {
+        Integer gid = glyphByCodePoint.get(codePoint);
+        if (gid == null) {
+            gid = font.glyphId(codePoint);
+            glyphByCodePoint.put(codePoint, gid);
+            if (gid != 0) {
+                codePointByGlyph.putIfAbsent(gid, codePoint);
+            }
+        }
+        return gid;
+    }
+}
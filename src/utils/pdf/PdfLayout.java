@@ -0,0 +1,278 @@
+package src.utils.pdf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable page template for printable reports: A4 page with a title block, a footer with the page number,
+ * headings, label/value lines and tables whose header is repeated after every page break.
+ * <p>
+ * Content is laid out top to bottom; when the next element does not fit, the page is handed to
+ * {@link PdfWriter#addPage(float, float, byte[])} and a new one is started, so only the page being built is held
+ * in memory. Cell text that does not fit its column is cut with an ellipsis, which keeps every table row the same
+ * height.
+ */
+public class PdfLayout implements Closeable {
+    private static final float A4_WIDTH = 595.28f;
+    private static final float A4_HEIGHT = 841.89f;
+    private static final float MARGIN = 36f;
+    private static final float TITLE_SIZE = 14f;
+    private static final float TEXT_SIZE = 9f;
+    private static final float ROW_HEIGHT = 15f;
+    private static final float CELL_PADDING = 3f;
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    private final PdfWriter writer;
+    private final PdfFont regular;
+    private final PdfFont bold;
+    private final float pageWidth;
+    private final float pageHeight;
+    private final String generatedAt = LocalDateTime.now().format(DATE_TIME);
+    private String title;
+    private String subtitle;
+
+    private StringBuilder content;
+    private float y;
+    private int pageNumber;
+
+    private List<String> tableColumns;
+    private float[] tableWidths;
+
+    /**
+     * Opens a new PDF file with the default fonts.
+     *
+     * @param target    file to create
+     * @param title     title printed on every page and stored in the document info
+     * @param subtitle  second line under the title (may be null)
+     * @param landscape true for A4 landscape
+     * @throws IOException if the file or the fonts cannot be opened
+     */
+    public PdfLayout(Path target, String title, String subtitle, boolean landscape) throws IOException {
+        TrueTypeFont regularFont = TrueTypeFont.defaultFont(false);
+        TrueTypeFont boldFont = TrueTypeFont.defaultFont(true);
+        this.writer = new PdfWriter(target, title);
+        this.regular = writer.addFont(regularFont);
+        this.bold = boldFont == regularFont ? regular : writer.addFont(boldFont);
+        this.pageWidth = landscape ? A4_HEIGHT : A4_WIDTH;
+        this.pageHeight = landscape ? A4_WIDTH : A4_HEIGHT;
+        this.title = title;
+        this.subtitle = subtitle;
+    }
+
+    /**
+     * Changes the title block used from the next page on (e.g. one report card per student).
+     */
+    public void setTitle(String title, String subtitle) {
+        this.title = title;
+        this.subtitle = subtitle;
+    }
+
+    public float getContentWidth() {
+        return pageWidth - 2 * MARGIN;
+    }
+
+    public int getPageCount() {
+        return writer.getPageCount() + (content != null ? 1 : 0);
+    }
+
+    // --- Elements ---
+
+    public void heading(String text) throws IOException {
+        ensureSpace(ROW_HEIGHT * 2.5f);
+        y -= ROW_HEIGHT * 0.8f;
+        text(bold, 11f, MARGIN, y, bold.fit(text, 11f, getContentWidth()));
+        y -= ROW_HEIGHT;
+    }
+
+    /**
+     * Writes "label: value" on one line.
+     */
+    public void field(String label, Object value) throws IOException {
+        ensureSpace(ROW_HEIGHT);
+        String labelText = label + ": ";
+        text(bold, TEXT_SIZE, MARGIN, y - TEXT_SIZE, labelText);
+        float labelWidth = bold.width(labelText, TEXT_SIZE);
+        text(regular, TEXT_SIZE, MARGIN + labelWidth, y - TEXT_SIZE,
+                regular.fit(format(value), TEXT_SIZE, getContentWidth() - labelWidth));
+        y -= ROW_HEIGHT;
+    }
+
+    public void spacer(float height) {
+        y -= height;
+    }
+
+    /**
+     * Starts a table; its header is drawn now and again at the top of every following page until
+     * {@link #endTable()}.
+     *
+     * @param columns column titles
+     * @param weights relative column widths (null for equal widths)
+     */
+    public void beginTable(List<String> columns, float[] weights) throws IOException {
+        tableColumns = new ArrayList<>(columns);
+        tableWidths = new float[columns.size()];
+        float total = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            total += weights != null ? weights[i] : 1f;
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            tableWidths[i] = getContentWidth() * (weights != null ? weights[i] : 1f) / total;
+        }
+        ensureSpace(ROW_HEIGHT * 2);
+        drawTableHeader();
+    }
+
+    public void row(Object[] values) throws IOException {
+        if (ensureSpace(ROW_HEIGHT)) {
+            drawTableHeader();
+        }
+        drawRow(values, regular, false);
+    }
+
+    public void endTable() {
+        tableColumns = null;
+        tableWidths = null;
+        y -= ROW_HEIGHT / 2;
+    }
+
+    /**
+     * Finishes the current page; the next element starts on a new one.
+     */
+    public void pageBreak() throws IOException {
+        if (content != null) {
+            finishPage();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (content != null || writer.getPageCount() == 0) {
+                if (content == null) {
+                    startPage();
+                }
+                finishPage();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    // --- Page handling ---
+
+    /**
+     * Makes sure the current page has the given height left, starting a new page if needed.
+     *
+     * @return true if a new page was started
+     */
+    private boolean ensureSpace(float height) throws IOException {
+        if (content == null) {
+            startPage();
+            return true;
+        }
+        if (y - height < MARGIN + ROW_HEIGHT) {
+            finishPage();
+            startPage();
+            return true;
+        }
+        return false;
+    }
+
+    private void startPage() {
+        content = new StringBuilder(8192);
+        pageNumber++;
+        y = pageHeight - MARGIN;
+        text(bold, TITLE_SIZE, MARGIN, y - TITLE_SIZE, bold.fit(title, TITLE_SIZE, getContentWidth()));
+        y -= TITLE_SIZE + 6;
+        if (subtitle != null && !subtitle.isEmpty()) {
+            text(regular, TEXT_SIZE, MARGIN, y - TEXT_SIZE, regular.fit(subtitle, TEXT_SIZE, getContentWidth()));
+            y -= TEXT_SIZE + 4;
+        }
+        line(MARGIN, y, pageWidth - MARGIN, y);
+        y -= 8;
+    }
+
+    private void finishPage() throws IOException {
+        line(MARGIN, MARGIN, pageWidth - MARGIN, MARGIN);
+        text(regular, 8f, MARGIN, MARGIN - 11, "In lúc " + generatedAt);
+        String pageLabel = "Trang " + pageNumber;
+        text(regular, 8f, pageWidth - MARGIN - regular.width(pageLabel, 8f), MARGIN - 11, pageLabel);
+        writer.addPage(pageWidth, pageHeight, content.toString().getBytes(StandardCharsets.ISO_8859_1));
+        content = null;
+    }
+
+    private void drawTableHeader() {
+        content.append("0.9 g ").append(PdfWriter.num(MARGIN)).append(' ').append(PdfWriter.num(y - ROW_HEIGHT))
+                .append(' ').append(PdfWriter.num(getContentWidth())).append(' ').append(PdfWriter.num(ROW_HEIGHT))
+                .append(" re f 0 g\n");
+        drawRow(tableColumns.toArray(), bold, true);
+    }
+
+    private void drawRow(Object[] values, PdfFont font, boolean header) {
+        float x = MARGIN;
+        for (int i = 0; i < tableWidths.length; i++) {
+            String text = i < values.length ? format(values[i]) : "";
+            float available = tableWidths[i] - 2 * CELL_PADDING;
+            text = font.fit(text, TEXT_SIZE, available);
+            float textX = x + CELL_PADDING;
+            if (!header && i < values.length && values[i] instanceof Number) {
+                textX = x + tableWidths[i] - CELL_PADDING - font.width(text, TEXT_SIZE); // số căn phải
+            }
+            text(font, TEXT_SIZE, textX, y - ROW_HEIGHT + 4.5f, text);
+            x += tableWidths[i];
+        }
+        y -= ROW_HEIGHT;
+        line(MARGIN, y, pageWidth - MARGIN, y);
+    }
+
+    // --- Drawing primitives ---
+
+    private void text(PdfFont font, float size, float x, float baseline, String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        content.append("BT /").append(font.getResourceName()).append(' ').append(PdfWriter.num(size)).append(" Tf ")
+                .append(PdfWriter.num(x)).append(' ').append(PdfWriter.num(baseline)).append(" Td ")
+                .append(font.encode(text)).append(" Tj ET\n");
+    }
+
+    private void line(float x1, float y1, float x2, float y2) {
+        content.append("0.5 w ").append(PdfWriter.num(x1)).append(' ').append(PdfWriter.num(y1)).append(" m ")
+                .append(PdfWriter.num(x2)).append(' ').append(PdfWriter.num(y2)).append(" l S\n");
+    }
+
+    /**
+     * Formats a cell value the way printed reports show it (dd/MM/yyyy dates, at most two decimals).
+     */
+    public static String format(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof LocalDate) {
+            return ((LocalDate) value).format(DATE);
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).format(DATE_TIME);
+        }
+        if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return "";
+            }
+            return new BigDecimal(d).setScale(2, java.math.RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "Có" : "Không";
+        }
+        return value.toString();
+    }
+}
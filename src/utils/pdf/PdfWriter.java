@@ -0,0 +1,262 @@
+package src.utils.pdf;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Minimal PDF 1.4 writer that streams pages to the output as they are finished.
+ * <p>
+ * Each {@link #addPage(float, float, byte[])} call writes the page's compressed content stream and page object
+ * immediately; only object offsets and page object numbers are kept until {@link #close()}. Fonts are written at
+ * the end, when the set of glyphs used by the document is known, as Type0/CIDFontType2 fonts with a subset
+ * FontFile2, widths and a ToUnicode map. Page dictionaries refer to the font and page tree objects by numbers
+ * reserved up front, which PDF allows.
+ */
+public class PdfWriter implements Closeable {
+    private final CountingOutputStream out;
+    private long[] offsets = new long[64]; // index = object number
+    private int nextObject = 1;
+    private final int catalogRef;
+    private final int pagesRef;
+    private final List<Integer> pageRefs = new ArrayList<>();
+    private final List<PdfFont> fonts = new ArrayList<>();
+    private final String title;
+
+    public PdfWriter(Path target, String title) throws IOException {
+        this.out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(target), 1 << 16));
+        this.title = title;
+        this.catalogRef = reserveObject();
+        this.pagesRef = reserveObject();
+        write("%PDF-1.4\n%âãÏÓ\n");
+    }
+
+    /**
+     * Registers a font for this document.
+     *
+     * @return Font handle used to draw text on pages of this document
+     */
+    public PdfFont addFont(TrueTypeFont font) {
+        PdfFont pdfFont = new PdfFont(font, "F" + (fonts.size() + 1), reserveObject());
+        fonts.add(pdfFont);
+        return pdfFont;
+    }
+
+    /**
+     * Writes one page.
+     *
+     * @param width   page width in points
+     * @param height  page height in points
+     * @param content page content stream (uncompressed)
+     */
+    public void addPage(float width, float height, byte[] content) throws IOException {
+        int contentRef = reserveObject();
+        writeStream(contentRef, "", content, true);
+
+        StringBuilder fontResources = new StringBuilder();
+        for (PdfFont font : fonts) {
+            fontResources.append('/').append(font.getResourceName()).append(' ').append(font.getObjectNumber()).append(" 0 R");
+        }
+        int pageRef = reserveObject();
+        beginObject(pageRef);
+        write("<< /Type /Page /Parent " + pagesRef + " 0 R /MediaBox [0 0 " + num(width) + " " + num(height) + "]" +
+                " /Resources << /Font << " + fontResources + " >> >> /Contents " + contentRef + " 0 R >>\n");
+        endObject();
+        pageRefs.add(pageRef);
+    }
+
+    public int getPageCount() {
+        return pageRefs.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            for (PdfFont font : fonts) {
+                writeFont(font);
+            }
+
+            beginObject(pagesRef);
+            StringBuilder kids = new StringBuilder();
+            for (int ref : pageRefs) {
+                kids.append(ref).append(" 0 R ");
+            }
+            write("<< /Type /Pages /Kids [" + kids + "] /Count " + pageRefs.size() + " >>\n");
+            endObject();
+
+            int infoRef = reserveObject();
+            beginObject(infoRef);
+            write("<< /Title " + utf16Text(title) + " /Producer (CS3332) >>\n");
+            endObject();
+
+            beginObject(catalogRef);
+            write("<< /Type /Catalog /Pages " + pagesRef + " 0 R >>\n");
+            endObject();
+
+            long xref = out.count;
+            StringBuilder table = new StringBuilder("xref\n0 " + nextObject + "\n0000000000 65535 f \n");
+            for (int i = 1; i < nextObject; i++) {
+                table.append(String.format("%010d 00000 n \n", offsets[i]));
+            }
+            write(table.toString());
+            write("trailer\n<< /Size " + nextObject + " /Root " + catalogRef + " 0 R /Info " + infoRef + " 0 R >>\n" +
+                    "startxref\n" + xref + "\n%%EOF\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeFont(PdfFont font) throws IOException {
+        TrueTypeFont ttf = font.getFont();
+        float scale = 1000f / ttf.getUnitsPerEm();
+        int cidFontRef = reserveObject();
+        int descriptorRef = reserveObject();
+        int fontFileRef = reserveObject();
+        int toUnicodeRef = reserveObject();
+        String baseFont = font.getBaseFontName();
+
+        beginObject(font.getObjectNumber());
+        write("<< /Type /Font /Subtype /Type0 /BaseFont /" + baseFont + " /Encoding /Identity-H" +
+                " /DescendantFonts [" + cidFontRef + " 0 R] /ToUnicode " + toUnicodeRef + " 0 R >>\n");
+        endObject();
+
+        StringBuilder widths = new StringBuilder();
+        BitSet used = font.getUsedGlyphs();
+        for (int gid = used.nextSetBit(0); gid >= 0; gid = used.nextSetBit(gid + 1)) {
+            widths.append(gid).append(" [").append(Math.round(ttf.getAdvanceWidth(gid) * scale)).append("] ");
+        }
+        beginObject(cidFontRef);
+        write("<< /Type /Font /Subtype /CIDFontType2 /BaseFont /" + baseFont +
+                " /CIDSystemInfo << /Registry (Adobe) /Ordering (Identity) /Supplement 0 >>" +
+                " /FontDescriptor " + descriptorRef + " 0 R /CIDToGIDMap /Identity /DW 1000 /W [" + widths + "] >>\n");
+        endObject();
+
+        int[] bbox = ttf.getBoundingBox();
+        beginObject(descriptorRef);
+        write("<< /Type /FontDescriptor /FontName /" + baseFont + " /Flags 32" +
+                " /FontBBox [" + Math.round(bbox[0] * scale) + " " + Math.round(bbox[1] * scale) + " " +
+                Math.round(bbox[2] * scale) + " " + Math.round(bbox[3] * scale) + "]" +
+                " /ItalicAngle 0 /Ascent " + Math.round(ttf.getAscent() * scale) +
+                " /Descent " + Math.round(ttf.getDescent() * scale) +
+                " /CapHeight " + Math.round(ttf.getCapHeight() * scale) +
+                " /StemV 80 /FontFile2 " + fontFileRef + " 0 R >>\n");
+        endObject();
+
+        byte[] program = ttf.subset(used);
+        writeStream(fontFileRef, "/Length1 " + program.length, program, true);
+
+        writeStream(toUnicodeRef, "", toUnicodeCMap(font.getCodePointByGlyph()).getBytes(StandardCharsets.US_ASCII), true);
+    }
+
+    private static String toUnicodeCMap(Map<Integer, Integer> codePointByGlyph) {
+        StringBuilder cmap = new StringBuilder("/CIDInit /ProcSet findresource begin\n12 dict begin\nbegincmap\n" +
+                "/CIDSystemInfo << /Registry (Adobe) /Ordering (UCS) /Supplement 0 >> def\n" +
+                "/CMapName /Adobe-Identity-UCS def\n/CMapType 2 def\n" +
+                "1 begincodespacerange\n<0000> <FFFF>\nendcodespacerange\n");
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<>(new TreeMap<>(codePointByGlyph).entrySet());
+        for (int i = 0; i < entries.size(); i += 100) {
+            List<Map.Entry<Integer, Integer>> chunk = entries.subList(i, Math.min(i + 100, entries.size()));
+            cmap.append(chunk.size()).append(" beginbfchar\n");
+            for (Map.Entry<Integer, Integer> entry : chunk) {
+                StringBuilder utf16 = new StringBuilder();
+                for (char c : Character.toChars(entry.getValue())) {
+                    utf16.append(String.format("%04X", (int) c));
+                }
+                cmap.append(String.format("<%04X> <", entry.getKey())).append(utf16).append(">\n");
+            }
+            cmap.append("endbfchar\n");
+        }
+        return cmap.append("endcmap\nCMapName currentdict /CMap defineresource pop\nend\nend\n").toString();
+    }
+
+    private int reserveObject() {
+        if (nextObject >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        return nextObject++;
+    }
+
+    private void beginObject(int ref) throws IOException {
+        offsets[ref] = out.count;
+        write(ref + " 0 obj\n");
+    }
+
+    private void endObject() throws IOException {
+        write("endobj\n");
+    }
+
+    private void writeStream(int ref, String extraDictionary, byte[] data, boolean compress) throws IOException {
+        byte[] body = data;
+        if (compress) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+            try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+                deflater.write(data);
+            }
+            body = compressed.toByteArray();
+        }
+        beginObject(ref);
+        write("<< /Length " + body.length + (compress ? " /Filter /FlateDecode" : "") +
+                (extraDictionary.isEmpty() ? "" : " " + extraDictionary) + " >>\nstream\n");
+        out.write(body);
+        write("\nendstream\n");
+        endObject();
+    }
+
+    private void write(String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String utf16Text(String text) {
+        StringBuilder hex = new StringBuilder("<FEFF");
+        for (char c : (text != null ? text : "").toCharArray()) {
+            hex.append(String.format("%04X", (int) c));
+        }
+        return hex.append('>').toString();
+    }
+
+    static String num(float value) {
+        if (value == Math.rint(value)) {
+            return Integer.toString((int) value);
+        }
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream delegate;
+        private long count;
+
+        CountingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
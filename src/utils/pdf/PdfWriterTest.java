@@ -0,0 +1,99 @@
+package src.utils.pdf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PdfWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void xrefOffsetsPointAtTheirObjects() throws Exception {
+        String pdf = writeTwoPages();
+
+        int xref = pdf.lastIndexOf("\nxref\n") + 1;
+        Matcher startxref = Pattern.compile("startxref\n(\\d+)\n%%EOF\n$").matcher(pdf);
+        assertTrue(startxref.find());
+        assertEquals(xref, Integer.parseInt(startxref.group(1)));
+
+        Matcher size = Pattern.compile("/Size (\\d+)").matcher(pdf);
+        assertTrue(size.find());
+        int objects = Integer.parseInt(size.group(1));
+        String[] lines = pdf.substring(xref).split("\n");
+        assertEquals("0 " + objects, lines[1]);
+        assertEquals("0000000000 65535 f ", lines[2]);
+        for (int i = 1; i < objects; i++) {
+            String entry = lines[2 + i];
+            assertEquals(20, entry.length() + 1, "xref entries are 20 bytes with the newline");
+            int offset = Integer.parseInt(entry.substring(0, 10));
+            assertTrue(pdf.startsWith(i + " 0 obj\n", offset), "object " + i + " at " + offset);
+        }
+        assertTrue(pdf.contains("/Count 2 >>"));
+    }
+
+    @Test
+    void embedsTheSubsetFontProgram() throws Exception {
+        String pdf = writeTwoPages();
+
+        Matcher stream = Pattern.compile("<< /Length (\\d+) /Filter /FlateDecode /Length1 (\\d+) >>\nstream\n").matcher(pdf);
+        assertTrue(stream.find());
+        int length = Integer.parseInt(stream.group(1));
+        int length1 = Integer.parseInt(stream.group(2));
+        byte[] compressed = pdf.substring(stream.end(), stream.end() + length).getBytes(StandardCharsets.ISO_8859_1);
+        assertTrue(pdf.startsWith("\nendstream\n", stream.end() + length));
+
+        byte[] program = inflate(compressed);
+        assertEquals(length1, program.length);
+        assertEquals(0x00010000, ByteBuffer.wrap(program).getInt(0));
+        // "AC" uses glyphs 1 and 3; 3 pulls in 2, 5 and 6, and 4 stays empty
+        ByteBuffer loca = ByteBuffer.wrap(TrueTypeFontTest.readTables(program).get("loca"));
+        assertEquals(loca.getInt(4 * 4), loca.getInt(5 * 4));
+        assertTrue(loca.getInt(3 * 4) < loca.getInt(4 * 4));
+    }
+
+    private String writeTwoPages() throws Exception {
+        TrueTypeFont font = TrueTypeFont.load(TrueTypeFontTest.writeTestFont(dir));
+        Path file = dir.resolve("out.pdf");
+        try (PdfWriter writer = new PdfWriter(file, "Bảng điểm")) {
+            PdfFont pdfFont = writer.addFont(font);
+            for (int page = 0; page < 2; page++) {
+                String content = "BT /" + pdfFont.getResourceName() + " 12 Tf 72 720 Td " + pdfFont.encode("AC") + " Tj ET\n";
+                writer.addPage(595, 842, content.getBytes(StandardCharsets.US_ASCII));
+            }
+            assertEquals(2, writer.getPageCount());
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        assertTrue(new String(Arrays.copyOf(bytes, 9), StandardCharsets.ISO_8859_1).startsWith("%PDF-1.4\n"));
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] inflate(byte[] compressed) throws Exception {
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        while (!inflater.finished()) {
+            int n = inflater.inflate(buffer);
+            if (n == 0 && inflater.needsInput()) {
+                break;
+            }
+            out.write(buffer, 0, n);
+        }
+        inflater.end();
+        return out.toByteArray();
+    }
+}
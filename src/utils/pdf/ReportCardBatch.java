@@ -0,0 +1,120 @@
+package src.utils.pdf;
+
+import javafx.concurrent.Task;
+import src.dao.Report.ReportCardDAO;
+import src.model.report.ReportCardData;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prints the report cards of every course of the center, one PDF per course.
+ * <p>
+ * Courses are rendered in parallel on a small pool. Each worker loads one course's report cards, streams them
+ * page by page into its file and drops them, so memory is bounded by (pool size x largest course) rather than by
+ * the size of the center. A course that fails is logged and skipped; the value of the task is the number of files
+ * written.
+ */
+public class ReportCardBatch extends Task<Integer> {
+    private static final Logger LOGGER = Logger.getLogger(ReportCardBatch.class.getName());
+    private static final int MAX_WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private final ReportCardDAO reportCardDAO;
+    private final Path targetDirectory;
+    private volatile int failedCourses;
+
+    public ReportCardBatch(ReportCardDAO reportCardDAO, Path targetDirectory) {
+        this.reportCardDAO = reportCardDAO;
+        this.targetDirectory = targetDirectory;
+    }
+
+    public Path getTargetDirectory() {
+        return targetDirectory;
+    }
+
+    /**
+     * @return Number of courses whose report cards could not be written
+     */
+    public int getFailedCourses() {
+        return failedCourses;
+    }
+
+    @Override
+    protected Integer call() throws Exception {
+        updateMessage("Đang tải danh sách lớp...");
+        Map<String, String> courses = reportCardDAO.getCourses();
+        Files.createDirectories(targetDirectory);
+
+        ExecutorService workers = Executors.newFixedThreadPool(MAX_WORKERS, r -> {
+            Thread thread = new Thread(r, "report-card-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ExecutorCompletionService<Path> completion = new ExecutorCompletionService<>(workers);
+        List<String> submitted = new ArrayList<>();
+        try {
+            for (Map.Entry<String, String> course : courses.entrySet()) {
+                submitted.add(course.getKey());
+                completion.submit(() -> renderCourse(course.getKey(), course.getValue()));
+            }
+
+            int written = 0;
+            int failed = 0;
+            for (int done = 1; done <= submitted.size(); done++) {
+                Future<Path> result = completion.take(); // InterruptedException khi bị huỷ
+                try {
+                    if (result.get() != null) {
+                        written++;
+                    }
+                } catch (ExecutionException e) {
+                    failed++;
+                    LOGGER.log(Level.WARNING, "Report cards of one course failed", e.getCause());
+                }
+                updateProgress(done, submitted.size());
+                updateMessage("Đã in " + done + "/" + submitted.size() + " lớp");
+            }
+            failedCourses = failed;
+            LOGGER.info("Report cards: " + written + " course files written to " + targetDirectory +
+                    (failed > 0 ? ", " + failed + " failed" : ""));
+            return written;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The file written, or null when the course has no students
+     */
+    private Path renderCourse(String courseId, String courseName) throws Exception {
+        if (isCancelled()) {
+            return null;
+        }
+        List<ReportCardData> cards = reportCardDAO.getReportCards(courseId, courseName);
+        if (cards.isEmpty()) {
+            return null;
+        }
+        Path target = targetDirectory.resolve(safeFileName(courseId) + ".pdf");
+        try {
+            ReportCardPdf.render(target, courseName != null ? courseName : courseId, cards);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw new IOException("Could not write report cards of course " + courseId, e);
+        }
+        return target;
+    }
+
+    private static String safeFileName(String name) {
+        return name.replaceAll("[\\\\/:*?\"<>|\\s]+", "_");
+    }
+}
@@ -0,0 +1,68 @@
+package src.utils.pdf;
+
+import src.model.details.DetailsModel.StudentGradeModel;
+import src.model.report.ReportCardData;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Renders the report cards of one course into a PDF, one page per student.
+ */
+public final class ReportCardPdf {
+    private static final String TITLE = "Phiếu báo cáo học tập";
+    private static final List<String> ATTENDANCE_COLUMNS =
+            Arrays.asList("Có mặt", "Vắng có phép", "Vắng không phép", "Tổng số buổi", "Tỷ lệ chuyên cần (%)");
+
+    private ReportCardPdf() {
+    }
+
+    /**
+     * @param target     file to create
+     * @param courseName course printed in the page header
+     * @param cards      report cards of the course's students
+     * @return Number of pages written
+     */
+    public static int render(Path target, String courseName, List<ReportCardData> cards) throws IOException {
+        try (PdfLayout layout = new PdfLayout(target, TITLE, "Lớp: " + courseName, false)) {
+            for (ReportCardData card : cards) {
+                layout.pageBreak();
+                renderCard(layout, card);
+            }
+            return layout.getPageCount();
+        }
+    }
+
+    private static void renderCard(PdfLayout layout, ReportCardData card) throws IOException {
+        layout.heading("Thông tin học viên");
+        layout.field("Họ tên", card.getStudentName());
+        layout.field("Mã học viên", card.getStudentId());
+        layout.field("Ngày sinh", card.getBirthday());
+
+        layout.heading("Chuyên cần");
+        layout.beginTable(ATTENDANCE_COLUMNS, null);
+        layout.row(new Object[]{card.getPresentCount(), card.getExcusedCount(), card.getUnexcusedCount(),
+                card.getTotalCount(), card.getAttendanceRate()});
+        layout.endTable();
+
+        layout.heading("Kết quả học tập");
+        StudentGradeModel grade = card.getGrade();
+        if (grade != null) {
+            layout.field("Điểm trung bình", grade.getGrade());
+            layout.field("Xếp loại", grade.getGradeLevel());
+            layout.field("Kết quả", grade.getPass());
+            layout.field("Ghi chú", grade.getNote());
+        } else {
+            layout.field("Điểm trung bình", "Chưa có điểm");
+        }
+        layout.field("Bài tập đã nộp", card.getSubmittedHomework() + "/" + card.getAssignedHomework());
+        layout.field("Điểm bài tập trung bình", card.getMetrics().getHomeworkGrade());
+
+        layout.heading("Đánh giá");
+        layout.field("Đúng giờ", card.getMetrics().getPunctualityRating());
+        layout.field("Ý thức học tập", card.getMetrics().getDiligenceRating());
+        layout.field("Điểm tổng hợp", card.getMetrics().getFinalNumericScore());
+    }
+}
@@ -0,0 +1,426 @@
+package src.utils.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A parsed TrueType font file that can produce glyph subsets for embedding in PDF.
+ * <p>
+ * Only what PDF embedding needs is read: metrics (head, hhea, hmtx, OS/2), the Unicode cmap (format 4 or 12),
+ * loca/glyf and the PostScript name. Instances are immutable and shared by every document and thread; what a
+ * document actually uses is tracked by {@link PdfFont}. {@link #subset(BitSet)} keeps glyph IDs unchanged and
+ * empties the outlines of unused glyphs, so the embedded program only carries the glyphs that were drawn.
+ */
+public final class TrueTypeFont {
+
+    // Font mặc định: có thể chỉ định bằng -Dcs3332.pdf.font=... và -Dcs3332.pdf.fontBold=...
+    private static final String[] REGULAR_CANDIDATES = {
+            "C:/Windows/Fonts/arial.ttf",
+            "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf",
+            "/usr/share/fonts/truetype/DejaVuSans.ttf",
+            "/usr/share/fonts/TTF/DejaVuSans.ttf",
+            "/System/Library/Fonts/Supplemental/Arial.ttf",
+            "/Library/Fonts/Arial.ttf"
+    };
+    private static final String[] BOLD_CANDIDATES = {
+            "C:/Windows/Fonts/arialbd.ttf",
+            "/usr/share/fonts/truetype/dejavu/DejaVuSans-Bold.ttf",
+            "/usr/share/fonts/truetype/DejaVuSans-Bold.ttf",
+            "/usr/share/fonts/TTF/DejaVuSans-Bold.ttf",
+            "/System/Library/Fonts/Supplemental/Arial Bold.ttf",
+            "/Library/Fonts/Arial Bold.ttf"
+    };
+    private static final String[] SUBSET_TABLES = {"cvt ", "fpgm", "glyf", "head", "hhea", "hmtx", "loca", "maxp", "prep"};
+
+    private static final Map<Path, TrueTypeFont> LOADED = new ConcurrentHashMap<>();
+
+    private final byte[] data;
+    private final Map<String, int[]> tables = new TreeMap<>(); // tag -> {offset, length}
+    private final String postScriptName;
+    private final int unitsPerEm;
+    private final int[] bbox = new int[4];
+    private final int ascent;
+    private final int descent;
+    private final int capHeight;
+    private final int numGlyphs;
+    private final int[] advanceWidths;
+    private final int[] glyphOffsets; // numGlyphs + 1 entries into glyf
+    private final int[] cmapSegments; // format 4: start,end,delta,rangeOffsetPos ; format 12: start,end,startGlyph
+    private final boolean cmapFormat12;
+
+    private TrueTypeFont(byte[] data, String fallbackName) throws IOException {
+        this.data = data;
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        int numTables = buf.getShort(4) & 0xFFFF;
+        for (int i = 0; i < numTables; i++) {
+            int record = 12 + i * 16;
+            String tag = new String(data, record, 4, java.nio.charset.StandardCharsets.ISO_8859_1);
+            tables.put(tag, new int[]{buf.getInt(record + 8), buf.getInt(record + 12)});
+        }
+        for (String required : new String[]{"head", "hhea", "hmtx", "maxp", "loca", "glyf", "cmap"}) {
+            if (!tables.containsKey(required)) {
+                throw new IOException("Not a TrueType outline font (missing " + required + " table)");
+            }
+        }
+
+        int head = table("head");
+        unitsPerEm = u16(head + 18);
+        for (int i = 0; i < 4; i++) {
+            bbox[i] = s16(head + 36 + i * 2);
+        }
+        boolean longLoca = s16(head + 50) == 1;
+
+        int hhea = table("hhea");
+        int numberOfHMetrics = u16(hhea + 34);
+        numGlyphs = u16(table("maxp") + 4);
+
+        if (tables.containsKey("OS/2") && tables.get("OS/2")[1] >= 90 && u16(table("OS/2")) >= 2) {
+            int os2 = table("OS/2");
+            ascent = s16(os2 + 68);
+            descent = s16(os2 + 70);
+            capHeight = s16(os2 + 88);
+        } else {
+            ascent = s16(hhea + 4);
+            descent = s16(hhea + 6);
+            capHeight = ascent;
+        }
+
+        advanceWidths = new int[numGlyphs];
+        int hmtx = table("hmtx");
+        for (int gid = 0; gid < numGlyphs; gid++) {
+            advanceWidths[gid] = u16(hmtx + Math.min(gid, numberOfHMetrics - 1) * 4);
+        }
+
+        glyphOffsets = new int[numGlyphs + 1];
+        int loca = table("loca");
+        for (int gid = 0; gid <= numGlyphs; gid++) {
+            glyphOffsets[gid] = longLoca ? buf.getInt(loca + gid * 4) : u16(loca + gid * 2) * 2;
+        }
+
+        int[][] cmap = readCmap();
+        cmapFormat12 = cmap[0][0] == 12;
+        cmapSegments = cmap[1];
+        String name = readPostScriptName();
+        postScriptName = name != null ? name : fallbackName.replaceAll("[^A-Za-z0-9-]", "");
+    }
+
+    /**
+     * Loads (once per path) a TrueType font file.
+     */
+    public static TrueTypeFont load(Path path) throws IOException {
+        TrueTypeFont font = LOADED.get(path);
+        if (font == null) {
+            String fileName = path.getFileName().toString();
+            font = new TrueTypeFont(Files.readAllBytes(path), fileName.replaceFirst("\\.[^.]*$", ""));
+            LOADED.putIfAbsent(path, font);
+        }
+        return font;
+    }
+
+    /**
+     * Finds a system font with Vietnamese coverage (Arial or DejaVu Sans), or the file named by the
+     * cs3332.pdf.font / cs3332.pdf.fontBold system properties.
+     *
+     * @param bold true for the bold face; falls back to the regular face if no bold file exists
+     * @throws IOException if no usable font file is found
+     */
+    public static TrueTypeFont defaultFont(boolean bold) throws IOException {
+        String configured = System.getProperty(bold ? "cs3332.pdf.fontBold" : "cs3332.pdf.font");
+        if (configured != null && Files.isRegularFile(Paths.get(configured))) {
+            return load(Paths.get(configured));
+        }
+        for (String candidate : bold ? BOLD_CANDIDATES : REGULAR_CANDIDATES) {
+            Path path = Paths.get(candidate);
+            if (Files.isRegularFile(path)) {
+                return load(path);
+            }
+        }
+        if (bold) {
+            return defaultFont(false);
+        }
+        throw new IOException("No TrueType font found for PDF output; set -Dcs3332.pdf.font=<path to .ttf>");
+    }
+
+    public String getPostScriptName() { return postScriptName; }
+    public int getUnitsPerEm() { return unitsPerEm; }
+    public int[] getBoundingBox() { return bbox.clone(); }
+    public int getAscent() { return ascent; }
+    public int getDescent() { return descent; }
+    public int getCapHeight() { return capHeight; }
+    public int getNumGlyphs() { return numGlyphs; }
+
+    public int getAdvanceWidth(int glyphId) {
+        return glyphId < advanceWidths.length ? advanceWidths[glyphId] : 0;
+    }
+
+    /**
+     * @return Glyph ID of the code point, or 0 (.notdef) if the font has none
+     */
+    public int glyphId(int codePoint) {
+        if (cmapFormat12) {
+            for (int i = 0; i < cmapSegments.length; i += 3) {
+                if (codePoint >= cmapSegments[i] && codePoint <= cmapSegments[i + 1]) {
+                    return cmapSegments[i + 2] + (codePoint - cmapSegments[i]);
+                }
+            }
+            return 0;
+        }
+        if (codePoint > 0xFFFF) {
+            return 0;
+        }
+        for (int i = 0; i < cmapSegments.length; i += 4) {
+            int start = cmapSegments[i];
+            int end = cmapSegments[i + 1];
+            if (codePoint > end) {
+                continue;
+            }
+            if (codePoint < start) {
+                return 0;
+            }
+            int delta = cmapSegments[i + 2];
+            int rangeOffsetPos = cmapSegments[i + 3];
+            int rangeOffset = u16(rangeOffsetPos);
+            if (rangeOffset == 0) {
+                return (codePoint + delta) & 0xFFFF;
+            }
+            int glyph = u16(rangeOffsetPos + rangeOffset + (codePoint - start) * 2);
+            return glyph == 0 ? 0 : (glyph + delta) & 0xFFFF;
+        }
+        return 0;
+    }
+
+    /**
+     * Builds a TrueType program containing only the outlines of the given glyphs (plus .notdef and the
+     * components of composite glyphs). Glyph IDs are preserved, so a CIDToGIDMap of Identity still applies.
+     *
+     * @param usedGlyphs glyph IDs drawn in the document
+     * @return The subset font file
+     */
+    public byte[] subset(BitSet usedGlyphs) {
+        BitSet keep = (BitSet) usedGlyphs.clone();
+        keep.set(0);
+        addCompositeComponents(keep);
+
+        int glyf = table("glyf");
+        ByteArrayOutputStream newGlyf = new ByteArrayOutputStream();
+        int[] newOffsets = new int[numGlyphs + 1];
+        for (int gid = 0; gid < numGlyphs; gid++) {
+            newOffsets[gid] = newGlyf.size();
+            int length = glyphOffsets[gid + 1] - glyphOffsets[gid];
+            if (keep.get(gid) && length > 0) {
+                newGlyf.write(data, glyf + glyphOffsets[gid], length);
+                while (newGlyf.size() % 4 != 0) {
+                    newGlyf.write(0);
+                }
+            }
+        }
+        newOffsets[numGlyphs] = newGlyf.size();
+
+        ByteBuffer newLoca = ByteBuffer.allocate((numGlyphs + 1) * 4);
+        for (int offset : newOffsets) {
+            newLoca.putInt(offset);
+        }
+
+        byte[] newHead = Arrays.copyOfRange(data, table("head"), table("head") + tables.get("head")[1]);
+        ByteBuffer.wrap(newHead).putInt(8, 0);           // checkSumAdjustment, tính lại bên dưới
+        ByteBuffer.wrap(newHead).putShort(50, (short) 1); // indexToLocFormat = long
+
+        Map<String, byte[]> out = new TreeMap<>();
+        for (String tag : SUBSET_TABLES) {
+            if (!tables.containsKey(tag)) {
+                continue;
+            }
+            switch (tag) {
+                case "glyf": out.put(tag, newGlyf.toByteArray()); break;
+                case "loca": out.put(tag, newLoca.array()); break;
+                case "head": out.put(tag, newHead); break;
+                default:
+                    int[] t = tables.get(tag);
+                    out.put(tag, Arrays.copyOfRange(data, t[0], t[0] + t[1]));
+            }
+        }
+        return writeFontFile(out);
+    }
+
+    private void addCompositeComponents(BitSet keep) {
+        int glyf = table("glyf");
+        Deque<Integer> pending = new ArrayDeque<>();
+        keep.stream().forEach(pending::push);
+        while (!pending.isEmpty()) {
+            int gid = pending.pop();
+            if (gid >= numGlyphs || glyphOffsets[gid + 1] - glyphOffsets[gid] < 10) {
+                continue;
+            }
+            int pos = glyf + glyphOffsets[gid];
+            if (s16(pos) >= 0) {
+                continue; // glyph đơn, không có thành phần
+            }
+            pos += 10;
+            int flags;
+            do {
+                flags = u16(pos);
+                int component = u16(pos + 2);
+                if (!keep.get(component)) {
+                    keep.set(component);
+                    pending.push(component);
+                }
+                pos += 4 + ((flags & 0x0001) != 0 ? 4 : 2);
+                if ((flags & 0x0008) != 0) {
+                    pos += 2;
+                } else if ((flags & 0x0040) != 0) {
+                    pos += 4;
+                } else if ((flags & 0x0080) != 0) {
+                    pos += 8;
+                }
+            } while ((flags & 0x0020) != 0);
+        }
+    }
+
+    private static byte[] writeFontFile(Map<String, byte[]> tablesByTag) {
+        int numTables = tablesByTag.size();
+        int entrySelector = 31 - Integer.numberOfLeadingZeros(numTables);
+        int searchRange = (1 << entrySelector) * 16;
+
+        int offset = 12 + numTables * 16;
+        int total = offset;
+        for (byte[] table : tablesByTag.values()) {
+            total += (table.length + 3) & ~3;
+        }
+        ByteBuffer font = ByteBuffer.allocate(total);
+        font.putInt(0x00010000);
+        font.putShort((short) numTables);
+        font.putShort((short) searchRange);
+        font.putShort((short) entrySelector);
+        font.putShort((short) (numTables * 16 - searchRange));
+
+        int headOffset = -1;
+        int record = 12;
+        for (Map.Entry<String, byte[]> entry : tablesByTag.entrySet()) {
+            byte[] table = entry.getValue();
+            font.put(record, entry.getKey().getBytes(java.nio.charset.StandardCharsets.ISO_8859_1));
+            font.putInt(record + 4, checksum(table, 0, table.length));
+            font.putInt(record + 8, offset);
+            font.putInt(record + 12, table.length);
+            font.position(offset);
+            font.put(table);
+            if (entry.getKey().equals("head")) {
+                headOffset = offset;
+            }
+            offset += (table.length + 3) & ~3;
+            record += 16;
+        }
+        byte[] bytes = font.array();
+        if (headOffset >= 0) {
+            ByteBuffer.wrap(bytes).putInt(headOffset + 8, (int) (0xB1B0AFBAL - (checksum(bytes, 0, bytes.length) & 0xFFFFFFFFL)));
+        }
+        return bytes;
+    }
+
+    private static int checksum(byte[] bytes, int from, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i += 4) {
+            int word = 0;
+            for (int j = 0; j < 4; j++) {
+                word = (word << 8) | (i + j < length ? bytes[from + i + j] & 0xFF : 0);
+            }
+            sum += word;
+        }
+        return sum;
+    }
+
+    private int[][] readCmap() throws IOException {
+        int cmap = table("cmap");
+        int count = u16(cmap + 2);
+        int format4 = -1;
+        int format12 = -1;
+        for (int i = 0; i < count; i++) {
+            int platform = u16(cmap + 4 + i * 8);
+            int encoding = u16(cmap + 6 + i * 8);
+            int sub = cmap + (int) (ByteBuffer.wrap(data).getInt(cmap + 8 + i * 8) & 0xFFFFFFFFL);
+            int format = u16(sub);
+            boolean unicode = platform == 0 || (platform == 3 && (encoding == 1 || encoding == 10));
+            if (unicode && format == 12) {
+                format12 = sub;
+            } else if (unicode && format == 4 && format4 < 0) {
+                format4 = sub;
+            }
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        if (format12 >= 0) {
+            int groups = buf.getInt(format12 + 12);
+            int[] segments = new int[groups * 3];
+            for (int g = 0; g < groups; g++) {
+                int pos = format12 + 16 + g * 12;
+                segments[g * 3] = buf.getInt(pos);
+                segments[g * 3 + 1] = buf.getInt(pos + 4);
+                segments[g * 3 + 2] = buf.getInt(pos + 8);
+            }
+            return new int[][]{{12}, segments};
+        }
+        if (format4 < 0) {
+            throw new IOException("Font has no Unicode cmap");
+        }
+        int segCount = u16(format4 + 6) / 2;
+        int endCodes = format4 + 14;
+        int startCodes = endCodes + segCount * 2 + 2;
+        int deltas = startCodes + segCount * 2;
+        int rangeOffsets = deltas + segCount * 2;
+        int[] segments = new int[segCount * 4];
+        for (int s = 0; s < segCount; s++) {
+            segments[s * 4] = u16(startCodes + s * 2);
+            segments[s * 4 + 1] = u16(endCodes + s * 2);
+            segments[s * 4 + 2] = s16(deltas + s * 2);
+            segments[s * 4 + 3] = rangeOffsets + s * 2;
+        }
+        return new int[][]{{4}, segments};
+    }
+
+    private String readPostScriptName() {
+        if (!tables.containsKey("name")) {
+            return null;
+        }
+        int name = table("name");
+        int count = u16(name + 2);
+        int strings = name + u16(name + 4);
+        List<String> found = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int record = name + 6 + i * 12;
+            int platform = u16(record);
+            int nameId = u16(record + 6);
+            if (nameId != 6) {
+                continue;
+            }
+            int length = u16(record + 8);
+            int offset = strings + u16(record + 10);
+            java.nio.charset.Charset charset = platform == 1 ? java.nio.charset.StandardCharsets.ISO_8859_1
+                    : java.nio.charset.StandardCharsets.UTF_16BE;
+            found.add(new String(data, offset, length, charset));
+        }
+        return found.isEmpty() ? null : found.get(0).replaceAll("[^A-Za-z0-9-]", "");
+    }
+
+    private int table(String tag) {
+        return tables.get(tag)[0];
+    }
+
+    private int u16(int pos) {
+        return ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+    }
+
+    private int s16(int pos) {
+        return (short) u16(pos);
+    }
+}
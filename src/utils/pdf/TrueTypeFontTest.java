@@ -0,0 +1,254 @@
+package src.utils.pdf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrueTypeFontTest {
+
+    // Glyphs of the test font: 0 .notdef, 1 'A', 2 'B', 3 'C' = composite of 2 and 5, 4 'D',
+    // 5 composite of 6, 6 simple (only reachable through 5), 7 ' ' without outline
+    static final int NUM_GLYPHS = 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mapsCodePointsThroughTheFormat4Cmap() throws IOException {
+        TrueTypeFont font = TrueTypeFont.load(writeTestFont(dir));
+
+        assertEquals(1, font.glyphId('A'));
+        assertEquals(4, font.glyphId('D'));
+        assertEquals(7, font.glyphId(' '));
+        assertEquals(0, font.glyphId('E'));
+        assertEquals(0, font.glyphId(0x1F600));
+        assertEquals(1000, font.getUnitsPerEm());
+        assertEquals(NUM_GLYPHS, font.getNumGlyphs());
+        assertEquals(600, font.getAdvanceWidth(1));
+        // Glyphs past numberOfHMetrics repeat the last advance width
+        assertEquals(250, font.getAdvanceWidth(7));
+    }
+
+    @Test
+    void subsetKeepsUsedGlyphsAndTheComponentsOfComposites() throws IOException {
+        TrueTypeFont font = TrueTypeFont.load(writeTestFont(dir));
+        BitSet used = new BitSet();
+        used.set(1);
+        used.set(3);
+
+        Map<String, byte[]> subset = readTables(font.subset(used));
+
+        assertEquals(Arrays.asList("glyf", "head", "hhea", "hmtx", "loca", "maxp"), Arrays.asList(subset.keySet().toArray()));
+        assertEquals(1, ByteBuffer.wrap(subset.get("head")).getShort(50), "loca is rewritten in the long format");
+
+        ByteBuffer loca = ByteBuffer.wrap(subset.get("loca"));
+        assertEquals((NUM_GLYPHS + 1) * 4, subset.get("loca").length);
+        byte[] glyf = subset.get("glyf");
+        byte[][] original = glyphs();
+        for (int gid = 0; gid < NUM_GLYPHS; gid++) {
+            int start = loca.getInt(gid * 4);
+            int end = loca.getInt(gid * 4 + 4);
+            assertEquals(0, start % 4, "glyph " + gid + " is 4-byte aligned");
+            // .notdef, the used glyphs and the components (2, 5 and, through 5, 6) keep their outlines
+            boolean kept = gid != 4 && gid != 7;
+            if (kept) {
+                assertArrayEquals(original[gid], Arrays.copyOfRange(glyf, start, start + original[gid].length),
+                        "outline of glyph " + gid);
+                assertEquals((original[gid].length + 3) & ~3, end - start);
+            } else {
+                assertEquals(start, end, "glyph " + gid + " is emptied");
+            }
+        }
+        assertEquals(glyf.length, loca.getInt(NUM_GLYPHS * 4));
+    }
+
+    @Test
+    void subsetFileHasValidChecksums() throws IOException {
+        TrueTypeFont font = TrueTypeFont.load(writeTestFont(dir));
+        BitSet used = new BitSet();
+        used.set(1);
+
+        byte[] file = font.subset(used);
+
+        assertEquals(0xB1B0AFBA, checksum(file, 0, file.length), "checkSumAdjustment makes the whole file sum to the magic");
+        ByteBuffer buf = ByteBuffer.wrap(file);
+        int numTables = buf.getShort(4);
+        for (int i = 0; i < numTables; i++) {
+            int record = 12 + i * 16;
+            String tag = new String(file, record, 4, StandardCharsets.ISO_8859_1);
+            int offset = buf.getInt(record + 8);
+            int length = buf.getInt(record + 12);
+            byte[] table = Arrays.copyOfRange(file, offset, offset + length);
+            if (tag.equals("head")) {
+                ByteBuffer.wrap(table).putInt(8, 0); // the table checksum is computed with a zero adjustment
+            }
+            assertEquals(checksum(table, 0, table.length), buf.getInt(record + 4), "checksum of " + tag);
+        }
+    }
+
+    // --- Test font ---
+
+    /**
+     * Writes the test font to dir/Test-Regular.ttf.
+     */
+    static Path writeTestFont(Path dir) throws IOException {
+        Path file = dir.resolve("Test-Regular.ttf");
+        Files.write(file, buildFont());
+        return file;
+    }
+
+    static byte[][] glyphs() {
+        return new byte[][]{
+                simpleGlyph(12, 0x01),
+                simpleGlyph(12, 0xA1),
+                simpleGlyph(16, 0xB2),
+                compositeGlyph(new int[]{0x0001 | 0x0020, 2}, new int[]{0x0008, 5}),
+                simpleGlyph(12, 0xD4),
+                compositeGlyph(new int[]{0x0000, 6}),
+                simpleGlyph(14, 0x66),
+                new byte[0]
+        };
+    }
+
+    private static byte[] simpleGlyph(int length, int fill) {
+        byte[] glyph = new byte[length];
+        Arrays.fill(glyph, (byte) fill);
+        ByteBuffer.wrap(glyph).putShort(0, (short) 1); // numberOfContours
+        return glyph;
+    }
+
+    /**
+     * @param components {flags, glyphIndex} pairs; arguments and scales are sized from the flags
+     */
+    private static byte[] compositeGlyph(int[]... components) {
+        ByteBuffer glyph = ByteBuffer.allocate(64);
+        glyph.putShort((short) -1).putLong(0);
+        for (int[] component : components) {
+            int flags = component[0];
+            glyph.putShort((short) flags).putShort((short) component[1]);
+            glyph.put(new byte[(flags & 0x0001) != 0 ? 4 : 2]);
+            if ((flags & 0x0008) != 0) {
+                glyph.putShort((short) 0x4000);
+            }
+        }
+        byte[] bytes = Arrays.copyOf(glyph.array(), glyph.position());
+        return bytes.length % 2 == 0 ? bytes : Arrays.copyOf(bytes, bytes.length + 1);
+    }
+
+    private static byte[] buildFont() {
+        byte[][] glyphs = glyphs();
+        ByteBuffer glyf = ByteBuffer.allocate(256);
+        ByteBuffer loca = ByteBuffer.allocate((NUM_GLYPHS + 1) * 2); // short format: offset / 2
+        for (byte[] glyph : glyphs) {
+            loca.putShort((short) (glyf.position() / 2));
+            glyf.put(glyph);
+        }
+        loca.putShort((short) (glyf.position() / 2));
+
+        ByteBuffer head = ByteBuffer.allocate(54);
+        head.putInt(0, 0x00010000).putInt(12, 0x5F0F3CF5).putShort(18, (short) 1000);
+        head.putShort(36, (short) -50).putShort(38, (short) -200).putShort(40, (short) 900).putShort(42, (short) 800);
+        head.putShort(50, (short) 0);
+
+        int numberOfHMetrics = 3;
+        ByteBuffer hhea = ByteBuffer.allocate(36);
+        hhea.putInt(0, 0x00010000).putShort(4, (short) 800).putShort(6, (short) -200).putShort(34, (short) numberOfHMetrics);
+        ByteBuffer hmtx = ByteBuffer.allocate(numberOfHMetrics * 4 + (NUM_GLYPHS - numberOfHMetrics) * 2);
+        hmtx.putShort((short) 500).putShort((short) 0);
+        hmtx.putShort((short) 600).putShort((short) 0);
+        hmtx.putShort((short) 250).putShort((short) 0);
+
+        ByteBuffer maxp = ByteBuffer.allocate(6);
+        maxp.putInt(0x00005000).putShort((short) NUM_GLYPHS);
+
+        // Segments: ' ' -> 7, 'A'..'D' -> 1..4, and the closing 0xFFFF segment
+        int[][] segments = {{0x20, 0x20, 7 - 0x20}, {0x41, 0x44, 1 - 0x41}, {0xFFFF, 0xFFFF, 1}};
+        int segCount = segments.length;
+        ByteBuffer cmap = ByteBuffer.allocate(12 + 16 + segCount * 8);
+        cmap.putShort((short) 0).putShort((short) 1);
+        cmap.putShort((short) 3).putShort((short) 1).putInt(12);
+        cmap.putShort((short) 4).putShort((short) (16 + segCount * 8)).putShort((short) 0);
+        cmap.putShort((short) (segCount * 2)).putShort((short) 4).putShort((short) 1).putShort((short) 2);
+        for (int[] segment : segments) {
+            cmap.putShort((short) segment[1]);
+        }
+        cmap.putShort((short) 0);
+        for (int[] segment : segments) {
+            cmap.putShort((short) segment[0]);
+        }
+        for (int[] segment : segments) {
+            cmap.putShort((short) segment[2]);
+        }
+        for (int i = 0; i < segCount; i++) {
+            cmap.putShort((short) 0);
+        }
+
+        Map<String, byte[]> tables = new TreeMap<>();
+        tables.put("cmap", cmap.array());
+        tables.put("glyf", Arrays.copyOf(glyf.array(), glyf.position()));
+        tables.put("head", head.array());
+        tables.put("hhea", hhea.array());
+        tables.put("hmtx", hmtx.array());
+        tables.put("loca", loca.array());
+        tables.put("maxp", maxp.array());
+        return writeTables(tables);
+    }
+
+    private static byte[] writeTables(Map<String, byte[]> tables) {
+        int offset = 12 + tables.size() * 16;
+        int total = offset;
+        for (byte[] table : tables.values()) {
+            total += (table.length + 3) & ~3;
+        }
+        ByteBuffer font = ByteBuffer.allocate(total);
+        font.putInt(0x00010000).putShort((short) tables.size());
+        int record = 12;
+        for (Map.Entry<String, byte[]> entry : tables.entrySet()) {
+            font.position(record);
+            font.put(entry.getKey().getBytes(StandardCharsets.ISO_8859_1));
+            font.putInt(checksum(entry.getValue(), 0, entry.getValue().length)).putInt(offset).putInt(entry.getValue().length);
+            font.position(offset);
+            font.put(entry.getValue());
+            offset += (entry.getValue().length + 3) & ~3;
+            record += 16;
+        }
+        return font.array();
+    }
+
+    static Map<String, byte[]> readTables(byte[] file) {
+        ByteBuffer buf = ByteBuffer.wrap(file);
+        Map<String, byte[]> tables = new TreeMap<>();
+        int numTables = buf.getShort(4);
+        for (int i = 0; i < numTables; i++) {
+            int record = 12 + i * 16;
+            int offset = buf.getInt(record + 8);
+            tables.put(new String(file, record, 4, StandardCharsets.ISO_8859_1),
+                    Arrays.copyOfRange(file, offset, offset + buf.getInt(record + 12)));
+        }
+        return tables;
+    }
+
+    private static int checksum(byte[] bytes, int from, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i += 4) {
+            int word = 0;
+            for (int j = 0; j < 4; j++) {
+                word = (word << 8) | (i + j < length ? bytes[from + i + j] & 0xFF : 0);
+            }
+            sum += word;
+        }
+        return sum;
+    }
+}
@@ -16,6 +16,10 @@ import src.model.person.Person;
 import src.model.person.Role;
 import src.model.person.Teacher;
 import src.view.components.Screen.BaseScreenView;
+import src.dao.Report.ReportExportDAO;
+import src.utils.ExportTask;
+import src.utils.TableWriter;
+import src.utils.pdf.AttendanceSheetWriter;
 import src.model.ClassSession;
 import src.model.attendance.Attendance;
 
@@ -46,6 +50,7 @@ public class AttendanceScreenView extends BaseScreenView {
     private TextField searchField;
     private Button searchButton;
     private Button exportExcelButton;
+    private Button printSheetButton;
     private Button attendanceListButton;
     private FlowPane cardsPane;
 
@@ -242,6 +247,7 @@ public class AttendanceScreenView extends BaseScreenView {
         }
 
         if (exportExcelButton != null) exportExcelButton.setOnAction(e -> exportToExcel());
+        if (printSheetButton != null) printSheetButton.setOnAction(e -> printAttendanceSheets());
         if (attendanceListButton != null) attendanceListButton.setOnAction(e -> viewAttendanceList());
     }
 
@@ -421,11 +427,13 @@ public class AttendanceScreenView extends BaseScreenView {
         exportExcelButton = new Button("Xuất Excel");
         styleStandardButton(exportExcelButton, PRIMARY_COLOR);
 
+        printSheetButton = new Button("In điểm danh");
+        styleStandardButton(printSheetButton, PRIMARY_COLOR);
 
         attendanceListButton = new Button("DS Vắng Mặt"); // Đổi tên nút
         styleStandardButton(attendanceListButton, GREEN_COLOR); // Màu khác cho nút này
 
-        titleBar.getChildren().addAll(titleLabel, spacer, exportExcelButton, attendanceListButton);
+        titleBar.getChildren().addAll(titleLabel, spacer, exportExcelButton, printSheetButton, attendanceListButton);
         return titleBar;
     }
     private void styleStandardButton(Button button, String backgroundColor) {
@@ -886,18 +894,55 @@ public class AttendanceScreenView extends BaseScreenView {
             List<ClassSession> finalSessionsToExport = !currentlyDisplayedSessions.isEmpty() ? currentlyDisplayedSessions : allLoadedSessions;
 
 
-            boolean success = false;
-                    //attendanceController.exportAttendancesToExcel(finalSessionsToExport, sessionAttendanceMap);
-            if (success) {
-                showSuccess("Xuất dữ liệu Excel thành công!");
-            } else {
+            // Xuất lịch sử điểm danh trong khoảng ngày của các buổi học, đọc trực tiếp từ DB theo luồng
+            LocalDate exportFrom = null;
+            LocalDate exportTo = null;
+            for (ClassSession session : finalSessionsToExport) {
+                LocalDate sessionDate = session.getDate();
+                if (sessionDate == null) continue;
+                if (exportFrom == null || sessionDate.isBefore(exportFrom)) exportFrom = sessionDate;
+                if (exportTo == null || sessionDate.isAfter(exportTo)) exportTo = sessionDate;
+            }
+            if (exportFrom == null) {
                 showError("Không thể xuất dữ liệu Excel. Có thể không có dữ liệu hoặc lỗi hệ thống.");
+                return;
             }
+            trackExport(ExportTask.start(ReportExportDAO.attendanceHistory(exportFrom, exportTo), TableWriter.Format.XLSX));
+            showInfo("Đang xuất dữ liệu điểm danh từ " + exportFrom + " đến " + exportTo + "...");
         } catch (Exception e) {
             showError("Lỗi khi xuất dữ liệu Excel: " + e.getMessage());
             e.printStackTrace();
         }
     }
+    /**
+     * Xuất bảng điểm danh (PDF, mỗi buổi học một trang có cột ký tên) cho các buổi học đang hiển thị.
+     */
+    private void printAttendanceSheets() {
+        List<ClassSession> sessions = getCurrentDisplayedSessions();
+        if (sessions.isEmpty()) {
+            sessions = allLoadedSessions;
+        }
+        LocalDate from = null;
+        LocalDate to = null;
+        Set<String> courseIds = new HashSet<>();
+        for (ClassSession session : sessions) {
+            LocalDate sessionDate = session.getDate();
+            if (sessionDate == null) continue;
+            if (from == null || sessionDate.isBefore(from)) from = sessionDate;
+            if (to == null || sessionDate.isAfter(to)) to = sessionDate;
+            courseIds.add(session.getCourseId());
+        }
+        if (from == null) {
+            showInfo("Không có dữ liệu buổi học nào để in.");
+            return;
+        }
+        // Chỉ lọc theo lớp khi tất cả buổi học đang hiển thị cùng một lớp
+        String courseId = courseIds.size() == 1 ? courseIds.iterator().next() : null;
+        trackExport(ExportTask.start(ReportExportDAO.attendanceHistory(from, to, courseId),
+                TableWriter.Format.PDF, AttendanceSheetWriter::new));
+        showInfo("Đang tạo bảng điểm danh từ " + from + " đến " + to + "...");
+    }
+
     private List<ClassSession> getCurrentDisplayedSessions() {
         // This method reconstructs the filtered list based on current filter states
         // It's better if applyFilters() itself returns or stores this final list
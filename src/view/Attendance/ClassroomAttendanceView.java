@@ -234,6 +234,17 @@ public class ClassroomAttendanceView extends BaseScreenView {
         });
         nameCol.setPrefWidth(180);
 
+        // --- Cột Điểm danh (tính từ ma trận điểm danh của khóa học trong controller) ---
+        TableColumn<StudentAttendanceData, String> attendanceSummaryCol = new TableColumn<>();
+        attendanceSummaryCol.setGraphic(createStyledHeaderLabel("Điểm danh"));
+        attendanceSummaryCol.setCellValueFactory(cellData -> new javafx.beans.property.ReadOnlyStringWrapper(
+                controller != null && cellData.getValue().getStudent() != null
+                        ? controller.getAttendanceSummary(cellData.getValue().getStudent().getId())
+                        : ""));
+        attendanceSummaryCol.setEditable(false);
+        attendanceSummaryCol.setPrefWidth(160);
+        attendanceSummaryCol.setStyle("-fx-alignment: CENTER;");
+
         // --- Cột BTVN (CheckBox) ---
         TableColumn<StudentAttendanceData, Boolean> homeworkCol = new TableColumn<>();
         Label btvnLabel = new Label("BTVN");
@@ -336,7 +347,7 @@ public class ClassroomAttendanceView extends BaseScreenView {
         finalScoreCol.setPrefWidth(80);
         finalScoreCol.setStyle("-fx-alignment: CENTER;");
 
-        tableView.getColumns().addAll(nameCol, homeworkCol, punctualityCol, homeworkGradeCol, diligenceCol, studentNotesCol, finalScoreCol);
+        tableView.getColumns().addAll(nameCol, attendanceSummaryCol, homeworkCol, punctualityCol, homeworkGradeCol, diligenceCol, studentNotesCol, finalScoreCol);
         return tableView;
     }
 
@@ -1,9 +1,11 @@
 package src.view.ClassList;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
@@ -12,6 +14,7 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.stage.Modality;
 import javafx.util.Callback;
+import javafx.util.Duration;
 import javafx.util.Pair;
 import src.dao.Person.CourseDAO;
 import src.dao.Person.StudentDAO;
@@ -21,11 +24,10 @@ import src.utils.DatabaseConnection;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class AddStudentToCourseDialog extends Dialog<Pair<String, String>> {
 
@@ -33,6 +35,21 @@ public class AddStudentToCourseDialog extends Dialog<Pair<String, String>> {
     private TextField studentIdField;
     private TextField studentNameField;
     private ListView<Student> studentListView;
+    private TextField studentSearchField;
+    private Button loadMoreStudentsButton;
+    private int loadedAvailableStudents = 0; // Số học viên (chưa ghi danh) đã tải vào danh sách bên trái
+
+    private static final int STUDENT_PAGE_SIZE = 100;
+    private static final Duration SEARCH_DEBOUNCE = Duration.millis(300);
+    // Truy vấn danh sách học viên chạy nền để không chặn luồng giao diện khi gõ tìm kiếm
+    private static final ExecutorService STUDENT_LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "add-student-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final PauseTransition searchDebounce = new PauseTransition(SEARCH_DEBOUNCE);
+    private Task<AvailableStudentsPage> pendingPageLoad; // Lần tải đang chạy; kết quả của lần tải cũ hơn bị bỏ qua
 
     // Component for the right panel (displaying enrolled students)
     private TableView<Student> enrolledStudentsTableView;
@@ -148,6 +165,19 @@ public class AddStudentToCourseDialog extends Dialog<Pair<String, String>> {
         listLabel.setFont(Font.font("Arial", 16));
         listLabel.setTextFill(Color.DARKGREEN);
 
+        studentSearchField = new TextField();
+        studentSearchField.setPromptText("Tìm theo tên, mã hoặc số điện thoại...");
+        // Tìm kiếm được thực hiện trong CSDL (chỉ học viên chưa có trong lớp), tải lại từ trang đầu
+        // khi người dùng ngừng gõ SEARCH_DEBOUNCE
+        searchDebounce.setOnFinished(e -> loadAllStudentsForSelection());
+        studentSearchField.textProperty().addListener((obs, oldVal, newVal) -> searchDebounce.playFromStart());
+
+        loadMoreStudentsButton = new Button("Xem thêm học viên");
+        loadMoreStudentsButton.setMaxWidth(Double.MAX_VALUE);
+        loadMoreStudentsButton.setVisible(false);
+        loadMoreStudentsButton.setManaged(false);
+        loadMoreStudentsButton.setOnAction(e -> loadAvailableStudentsPage(false));
+
         studentListView = new ListView<>();
         studentListView.setPrefHeight(300);
         VBox.setVgrow(studentListView, Priority.ALWAYS);
@@ -190,7 +220,7 @@ public class AddStudentToCourseDialog extends Dialog<Pair<String, String>> {
             }
         });
 
-        leftPanelRoot.getChildren().addAll(listLabel, studentListView);
+        leftPanelRoot.getChildren().addAll(listLabel, studentSearchField, studentListView, loadMoreStudentsButton);
         return leftPanelRoot;
     }
 
@@ -285,71 +315,93 @@ public class AddStudentToCourseDialog extends Dialog<Pair<String, String>> {
     }
 
     private void loadAllStudentsForSelection() {
-        System.out.println("DEBUG: Bắt đầu phương thức loadAllStudentsForSelection...");
-        List<Student> allStudentsInSystem = new ArrayList<>();
-        try {
-            allStudentsInSystem = studentDAO.findAll();
-            if (allStudentsInSystem == null) {
-                allStudentsInSystem = new ArrayList<>();
-            }
-        } catch (Exception e) { // Bắt Exception chung nếu findAll có thể ném lỗi
-            System.err.println("LỖI: Exception khi lấy tất cả học viên từ hệ thống: " + e.getMessage());
-            e.printStackTrace();
-            showAlert(Alert.AlertType.ERROR, "Lỗi Tải Dữ Liệu", "Không thể tải danh sách tất cả học viên.");
+        loadAvailableStudentsPage(true);
+    }
+
+    /**
+     * Một trang học viên chưa ghi danh cùng tổng số học viên khớp với từ khóa tìm kiếm.
+     */
+    private static final class AvailableStudentsPage {
+        private final List<Student> students;
+        private final int totalAvailable;
+
+        AvailableStudentsPage(List<Student> students, int totalAvailable) {
+            this.students = students;
+            this.totalAvailable = totalAvailable;
+        }
+    }
+
+    /**
+     * Tải một trang học viên chưa ghi danh vào lớp (anti-join trong CSDL, có tìm kiếm và phân trang).
+     * Hai truy vấn chạy trên luồng nền; kết quả được áp dụng trên luồng JavaFX nếu không có lần tải mới hơn.
+     *
+     * @param reset true để tải lại từ trang đầu, false để nối thêm trang tiếp theo
+     */
+    private void loadAvailableStudentsPage(boolean reset) {
+        if (this.courseId == null) {
             studentListView.setItems(FXCollections.emptyObservableList());
-            studentListView.setPlaceholder(new Label("Lỗi tải danh sách học viên."));
+            studentListView.setPlaceholder(new Label("Không xác định được lớp học."));
             return;
         }
-        System.out.println("DEBUG: Tổng số học viên trong hệ thống: " + allStudentsInSystem.size());
-
-        List<Student> enrolledStudentsInThisCourse = new ArrayList<>();
-        if (this.courseId != null) {
-            try (Connection conn = DatabaseConnection.getConnection()) {
-                // SỬA ĐỔI CHÍNH Ở ĐÂY:
-                // courseDAO.getStudentsByCourseId đã trả về List<Student>
-                enrolledStudentsInThisCourse = courseDAO.getStudentsByCourseId(conn, this.courseId);
-                System.out.println("DEBUG: Số đối tượng Student đã ghi danh trong khóa học '" + this.courseId + "': " + enrolledStudentsInThisCourse.size());
-            } catch (SQLException e) {
-                System.err.println("LỖI: SQLException khi lấy danh sách học viên đã ghi danh: " + e.getMessage());
-                e.printStackTrace();
-                showAlert(Alert.AlertType.ERROR, "Lỗi Tải Dữ Liệu", "Không thể tải danh sách học viên đã ghi danh để lọc.");
-                // Trong trường hợp lỗi, danh sách availableStudentsForSelection sẽ là tất cả học viên
-                // điều này có thể không mong muốn, nhưng đơn giản hơn là không hiển thị gì.
+        if (pendingPageLoad != null) {
+            pendingPageLoad.cancel(false);
+        }
+        String searchTerm = studentSearchField != null ? studentSearchField.getText() : null;
+        int offset = reset ? 0 : loadedAvailableStudents;
+        Task<AvailableStudentsPage> load = new Task<>() {
+            @Override
+            protected AvailableStudentsPage call() {
+                List<Student> page = studentDAO.findStudentsNotEnrolledInCourse(courseId, searchTerm,
+                        offset, STUDENT_PAGE_SIZE);
+                int totalAvailable = studentDAO.countStudentsNotEnrolledInCourse(courseId, searchTerm);
+                return new AvailableStudentsPage(page, totalAvailable);
             }
+        };
+        load.setOnSucceeded(e -> {
+            if (pendingPageLoad == load) {
+                pendingPageLoad = null;
+                showAvailableStudentsPage(load.getValue(), reset);
+            }
+        });
+        load.setOnFailed(e -> {
+            if (pendingPageLoad == load) {
+                pendingPageLoad = null;
+                studentListView.setPlaceholder(new Label("Lỗi tải danh sách học viên."));
+            }
+        });
+        pendingPageLoad = load;
+        loadMoreStudentsButton.setDisable(true);
+        STUDENT_LOADER.execute(load);
+    }
+
+    private void showAvailableStudentsPage(AvailableStudentsPage page, boolean reset) {
+        ObservableList<Student> items;
+        if (reset) {
+            loadedAvailableStudents = 0;
+            items = FXCollections.observableArrayList(page.students);
+            studentListView.setItems(items);
         } else {
-            System.out.println("DEBUG: courseId là null, không thể lấy danh sách học viên đã ghi danh.");
+            items = studentListView.getItems();
+            items.addAll(page.students);
         }
+        loadedAvailableStudents += page.students.size();
 
-        List<Student> availableStudentsForSelection = new ArrayList<>();
-        if (!allStudentsInSystem.isEmpty()) {
-            Set<String> enrolledIdsSet = enrolledStudentsInThisCourse.stream()
-                    .map(Student::getId)
-                    .collect(Collectors.toSet());
-
-            for (Student student : allStudentsInSystem) {
-                if (!enrolledIdsSet.contains(student.getId())) {
-                    availableStudentsForSelection.add(student);
-                }
-            }
-        }
-        System.out.println("DEBUG: Số học viên có sẵn để lựa chọn (sau khi lọc): " + availableStudentsForSelection.size());
+        boolean hasMore = loadedAvailableStudents < page.totalAvailable;
+        loadMoreStudentsButton.setText("Xem thêm học viên (" + loadedAvailableStudents + "/" + page.totalAvailable + ")");
+        loadMoreStudentsButton.setDisable(false);
+        loadMoreStudentsButton.setVisible(hasMore);
+        loadMoreStudentsButton.setManaged(hasMore);
 
-        ObservableList<Student> items = FXCollections.observableArrayList(availableStudentsForSelection);
-        studentListView.setItems(items);
         if (items.isEmpty()) {
             studentListView.setPlaceholder(new Label("Không có học viên mới hoặc tất cả đã ở trong lớp."));
         } else {
             studentListView.setPlaceholder(new Label("Chọn học viên từ danh sách."));
         }
-        System.out.println("DEBUG: Kết thúc phương thức loadAllStudentsForSelection.");
     }
 
     private void loadEnrolledStudents() {
-        // Phương thức này vẫn đúng vì nó sử dụng getStudentIdsByCourseId (trả về List<String>)
-        // và getStudentsByIds (nhận List<String>)
         try (Connection conn = DatabaseConnection.getConnection()) {
-            List<String> studentIds = courseDAO.getStudentIdsByCourseId(conn, this.courseId); // Giả sử CourseDAO có phương thức này
-            List<Student> enrolledStudents = studentDAO.getStudentsByIds(conn, studentIds); // Giả sử StudentDAO có phương thức này
+            List<Student> enrolledStudents = courseDAO.getStudentsByCourseId(conn, this.courseId); // Một truy vấn JOIN
 
             ObservableList<Student> observableList = FXCollections.observableArrayList(enrolledStudents);
             enrolledStudentsTableView.setItems(observableList);
@@ -25,6 +25,7 @@ import javafx.util.Pair;
 import src.utils.DaoManager;
 import src.view.components.Screen.BaseScreenView;
 import src.model.system.course.Course;
+import src.model.system.course.CourseSummary;
 // CreateClassScreenView đã được import ở trên nếu cần
 
 import java.time.LocalDate;
@@ -91,7 +92,8 @@ public class ClassListScreenView extends BaseScreenView {
     private void initializeData() {
         this.classesData.clear();
         try {
-            List<Course> coursesFromDb = courseDAO.findAll(); // Sử dụng this.courseDAO
+            // Một truy vấn: khóa học + tên giáo viên + ngày học + số buổi hiện tại
+            List<CourseSummary> coursesFromDb = courseDAO.findAllSummaries(LocalDate.now());
             if (coursesFromDb == null || coursesFromDb.isEmpty()) {
                 System.err.println("Không có khóa học nào được truy xuất từ cơ sở dữ liệu.");
             } else {
@@ -102,7 +104,7 @@ public class ClassListScreenView extends BaseScreenView {
                 // Thay vì gọi addCourseToTableView nhiều lần, tạo list rồi setAll
                 List<ClassInfo> infoList = new ArrayList<>();
                 int stt = 1;
-                for (Course course : coursesFromDb) {
+                for (CourseSummary course : coursesFromDb) {
                     infoList.add(createClassInfoFromCourse(course, stt++));
                 }
                 this.classesData.setAll(infoList);
@@ -118,29 +120,18 @@ public class ClassListScreenView extends BaseScreenView {
     }
 
     // Phương thức helper để tạo ClassInfo từ Course, tránh lặp code
-    private ClassInfo createClassInfoFromCourse(Course course, int stt) {
+    private ClassInfo createClassInfoFromCourse(CourseSummary course, int stt) {
         if (course == null) return null;
 
-        int currentSessionNum = 0;
-        if (this.classSessionDAO != null && course.getCourseId() != null) {
-            try {
-                currentSessionNum = this.classSessionDAO.findCurrentSessionNumberByDate(course.getCourseId(), LocalDate.now())
-                        .orElse(0);
-            } catch (Exception e) {
-                System.err.println("Lỗi khi lấy số buổi học hiện tại (createClassInfoFromCourse) cho khóa " + course.getCourseId() + ": " + e.getMessage());
-            }
-        }
+        // Số buổi học hiện tại đã được tính trong truy vấn danh sách (CourseDAO.findAllSummaries)
+        int currentSessionNum = course.getCurrentSessionNumber();
 
         int totalSess = course.getTotalSessions();
         String displayedProgressString;
         float progressPercentage = 0f;
 
         if (totalSess > 0) {
-            int effectiveCurrentSession = Math.min(currentSessionNum, totalSess);
-            progressPercentage = ((float) effectiveCurrentSession / totalSess) * 100f;
-            if (Float.isInfinite(progressPercentage) || Float.isNaN(progressPercentage)) {
-                progressPercentage = (currentSessionNum >= totalSess) ? 100f : 0f;
-            }
+            progressPercentage = course.getSessionProgress(); // min(hiện tại, tổng) / tổng * 100, tính trong SQL
             displayedProgressString = currentSessionNum + "/" + totalSess;
         } else {
             displayedProgressString = currentSessionNum + "/0 (Tổng buổi KXD)";
@@ -153,8 +144,7 @@ public class ClassListScreenView extends BaseScreenView {
 
         LocalDate actualStartDate = course.getStartDate();
         LocalDate actualEndDate = course.getEndDate();
-        String teacherName = (course.getTeacher() != null && course.getTeacher().getName() != null)
-                ? course.getTeacher().getName() : "Chưa phân công";
+        String teacherName = course.getTeacherName() != null ? course.getTeacherName() : "Chưa phân công";
 
         String classDateDisplay = course.getDaysOfWeekAsString();
         if (classDateDisplay == null || classDateDisplay.trim().isEmpty()) {
@@ -703,11 +693,11 @@ public class ClassListScreenView extends BaseScreenView {
         filterComboBox.setOnAction(e -> filterClassesByStatus(filterComboBox.getValue()));
     }
 
-    private List<ClassInfo> convertCoursesToClassInfo(List<Course> courses) {
+    private List<ClassInfo> convertCoursesToClassInfo(List<CourseSummary> courses) {
         List<ClassInfo> classInfos = new ArrayList<>();
         int stt = 1;
         if (courses != null) {
-            for (Course course : courses) {
+            for (CourseSummary course : courses) {
                 ClassInfo ci = createClassInfoFromCourse(course, stt++);
                 if (ci != null) {
                     classInfos.add(ci);
@@ -719,7 +709,7 @@ public class ClassListScreenView extends BaseScreenView {
 
     private void filterClassesByStatus(String statusFilter) {
         try {
-            List<Course> coursesFromDb = this.courseDAO.findAll(); // SỬ DỤNG this.courseDAO
+            List<CourseSummary> coursesFromDb = this.courseDAO.findAllSummaries(LocalDate.now());
             List<ClassInfo> allItemsFromDB = convertCoursesToClassInfo(coursesFromDb);
 
             if (statusFilter == null || "Tất cả".equalsIgnoreCase(statusFilter)) {
@@ -741,7 +731,7 @@ public class ClassListScreenView extends BaseScreenView {
 
     private void searchClasses(String keyword) {
         try {
-            List<Course> coursesFromDb = this.courseDAO.findAll(); // SỬ DỤNG this.courseDAO
+            List<CourseSummary> coursesFromDb = this.courseDAO.findAllSummaries(LocalDate.now());
             List<ClassInfo> allItemsFromDB = convertCoursesToClassInfo(coursesFromDb);
 
             if (keyword == null || keyword.trim().isEmpty()) {
@@ -19,6 +19,7 @@ import javafx.scene.paint.Color;
 // import java.util.logging.Level;
 import src.controller.Dashboard.DashboardController;
 import src.model.ClassSession;
+import src.model.dashboard.DashboardSnapshot;
 import src.model.system.schedule.ScheduleItem;
 import src.view.components.Screen.BaseScreenView;
 
@@ -26,8 +27,6 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
@@ -48,9 +47,11 @@ public class DashboardView extends BaseScreenView {
     private VBox scheduleList;
     private VBox todayClassesList;
     private VBox legendBox; // Biến thành viên cho legend của PieChart
+    private Label lastUpdatedLabel;
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd MMM", new Locale("vi", "VN"));
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter UPDATED_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
 
     // Danh sách màu cho PieChart và Legend
     private static final List<Color> PIE_CHART_COLORS = List.of(
@@ -65,6 +66,9 @@ public class DashboardView extends BaseScreenView {
         super("Tổng quan", "dashboard");
         this.dashboardController = new DashboardController(); // Khởi tạo Controller
         initializeView(); // Gọi initializeView từ constructor của BaseScreenView hoặc ở đây
+        // Mỗi snapshot mới (tải ở nền) được vẽ lại tại chỗ
+        dashboardController.snapshotProperty().addListener((obs, oldSnapshot, newSnapshot) -> showSnapshot(newSnapshot));
+        showSnapshot(dashboardController.snapshotProperty().get());
     }
 
     @Override
@@ -165,7 +169,10 @@ public class DashboardView extends BaseScreenView {
 
         refreshButton.setOnAction(event -> refreshView());
 
-        titleAndButtons.getChildren().addAll(dashboardTitle, spacer, refreshButton, scheduleButton, studentButton);
+        lastUpdatedLabel = new Label();
+        lastUpdatedLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #757575;");
+
+        titleAndButtons.getChildren().addAll(dashboardTitle, spacer, lastUpdatedLabel, refreshButton, scheduleButton, studentButton);
 
         // Label welcomeText = new Label("Theo dõi các hoạt động đào tạo và quản lý lớp học hiệu quả.");
         // welcomeText.setStyle("-fx-font-size: 14px; -fx-text-fill: #555555;");
@@ -509,7 +516,10 @@ public class DashboardView extends BaseScreenView {
 
     @Override
     public void onActivate() {
-        refreshView();
+        // Snapshot cũ đang hiển thị; bắt đầu tải bản mới ở nền và làm mới định kỳ
+        if (dashboardController != null) {
+            dashboardController.startAutoRefresh();
+        }
     }
 
     @Override
@@ -519,12 +529,24 @@ public class DashboardView extends BaseScreenView {
             showErrorAlert("Lỗi Hệ Thống", "Không thể làm mới dữ liệu.", "Controller chưa được khởi tạo.");
             return;
         }
+        dashboardController.refreshNow(); // Kết quả về qua snapshotProperty()
+    }
+
+    /**
+     * Repaints every section from a snapshot (the controller has already copied it into the model)
+     */
+    private void showSnapshot(DashboardSnapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
         try {
-            dashboardController.refreshDashboard(); // Controller sẽ gọi model để tải lại
             updateStatistics();
             updateCourseChart();
             updateScheduleList();
             updateTodayClasses();
+            if (lastUpdatedLabel != null) {
+                lastUpdatedLabel.setText("Cập nhật lúc " + snapshot.getLoadedAt().format(UPDATED_FORMATTER));
+            }
         } catch (Exception e) {
             e.printStackTrace(); // In lỗi ra console để debug
             showErrorAlert("Lỗi Làm Mới Dữ Liệu", "Đã có lỗi xảy ra khi làm mới thông tin.", "Chi tiết: " + e.getMessage());
@@ -548,8 +570,8 @@ public class DashboardView extends BaseScreenView {
             return;
         }
 
+        // Các lát đã được sắp xếp và gộp "Các lớp khác" sẵn trong snapshot
         ObservableList<PieChart.Data> rawPieData = dashboardController.getModel().getCourseDistribution();
-        ObservableList<PieChart.Data> processedPieData = FXCollections.observableArrayList();
         legendBox.getChildren().clear();
 
         if (rawPieData == null || rawPieData.isEmpty()) {
@@ -560,26 +582,7 @@ public class DashboardView extends BaseScreenView {
             return;
         }
 
-        List<PieChart.Data> sortedData = new ArrayList<>(rawPieData);
-        sortedData.sort(Comparator.comparingDouble(PieChart.Data::getPieValue).reversed());
-
-        int maxSlices = 9; // Số lượng lớp học hiển thị trực tiếp
-        double sumOfOthers = 0;
-
-        if (sortedData.size() <= maxSlices + 1) { // Nếu tổng số <= 10, hiển thị tất cả
-            processedPieData.addAll(sortedData);
-        } else { // Nếu nhiều hơn 10, hiển thị top 9 và gộp còn lại
-            for (int i = 0; i < maxSlices; i++) {
-                processedPieData.add(sortedData.get(i));
-            }
-            for (int i = maxSlices; i < sortedData.size(); i++) {
-                sumOfOthers += sortedData.get(i).getPieValue();
-            }
-            if (sumOfOthers > 0) {
-                processedPieData.add(new PieChart.Data("Các lớp khác...", sumOfOthers));
-            }
-        }
-
+        ObservableList<PieChart.Data> processedPieData = FXCollections.observableArrayList(rawPieData);
         courseChart.setData(processedPieData);
         applyCustomColorsToChart(courseChart, processedPieData);
 
@@ -631,6 +634,9 @@ public class DashboardView extends BaseScreenView {
 
     @Override
     public boolean onDeactivate() {
+        if (dashboardController != null) {
+            dashboardController.stopAutoRefresh();
+        }
         return true;
     }
 
@@ -737,9 +743,7 @@ public class DashboardView extends BaseScreenView {
         result.ifPresent(data -> {
             if (dashboardController != null) {
                 boolean success = dashboardController.addScheduleItem(data.name, data.description, data.date, data.time);
-                if (success) {
-                    refreshView(); // Làm mới để hiển thị lịch trình mới
-                } else {
+                if (!success) { // Khi thành công, controller tự tải lại snapshot để hiển thị lịch trình mới
                     showErrorAlert("Lỗi Lưu", "Không thể thêm lịch hẹn.", "Vui lòng thử lại sau.");
                 }
             }
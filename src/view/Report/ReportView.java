@@ -38,6 +38,7 @@ public class ReportView extends BaseScreenView {
     private Button exportPdfButton;
     private Button exportExcelButton;
     private Button printButton;
+    private Button reportCardButton;
     private TableView<ClassReportData> reportTable;
     private HBox metricsPanel;
 
@@ -101,15 +102,15 @@ public class ReportView extends BaseScreenView {
 
         exportPdfButton = new Button("Xuất PDF");
         exportPdfButton.setStyle("-fx-background-color: #D9534F; -fx-text-fill: white;");
-        exportPdfButton.setDisable(true);
 
         exportExcelButton = new Button("Xuất Excel");
         exportExcelButton.setStyle("-fx-background-color: #5CB85C; -fx-text-fill: white;");
-        exportExcelButton.setDisable(true);
 
         printButton = new Button("In Báo Cáo");
         printButton.setStyle("-fx-background-color: #5BC0DE; -fx-text-fill: white;");
-        printButton.setDisable(true);
+
+        reportCardButton = new Button("Phiếu điểm");
+        reportCardButton.setStyle("-fx-background-color: #F0AD4E; -fx-text-fill: white;");
 
         HBox filterPanelLayout = new HBox(15);
         filterPanelLayout.setPadding(new Insets(10));
@@ -132,7 +133,7 @@ public class ReportView extends BaseScreenView {
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
 
-        HBox actionButtonsGroup = new HBox(10, searchButton, exportPdfButton, exportExcelButton, printButton);
+        HBox actionButtonsGroup = new HBox(10, searchButton, exportPdfButton, exportExcelButton, printButton, reportCardButton);
         actionButtonsGroup.setAlignment(Pos.CENTER_RIGHT);
 
         // Bỏ statusFilterGroup khỏi filterPanelLayout
@@ -435,6 +436,7 @@ public class ReportView extends BaseScreenView {
     public Button getExportPdfButton() { return exportPdfButton; }
     public Button getExportExcelButton() { return exportExcelButton; }
     public Button getPrintButton() { return printButton; }
+    public Button getReportCardButton() { return reportCardButton; }
 
 
     private <S, T> void setBlackHeaderText(TableColumn<S, T> column, String title) {
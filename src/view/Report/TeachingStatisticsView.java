@@ -1,8 +1,10 @@
 package src.view.Report;
 
 import src.controller.Reports.TeachingStatisticsController;
+import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
@@ -13,10 +15,15 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.util.StringConverter;
 import src.model.teaching.TeacherStatisticsModel; // Đảm bảo model này có getTotalCalculatedSessions() và getTotalCalculatedHours()
+import src.model.teaching.cube.CubeDimension;
+import src.model.teaching.cube.CubeMeasure;
+import src.model.teaching.cube.CubeResult;
+import src.utils.ExportTask;
 import src.view.components.Screen.BaseScreenView;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.function.Function;
 
 public class TeachingStatisticsView extends BaseScreenView {
 
@@ -39,6 +46,12 @@ public class TeachingStatisticsView extends BaseScreenView {
     // Action buttons
     private Button searchButton;
     private Button exportExcelButton;
+    private Button exportPdfButton;
+    private Button printButton;
+
+    // Ad-hoc analysis on the teaching cube
+    private ComboBox<CubeDimension> groupByComboBox;
+    private Button analyzeButton;
 
     // Date formatter
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
@@ -171,10 +184,42 @@ public class TeachingStatisticsView extends BaseScreenView {
         exportExcelButton.setStyle("-fx-background-color: #4CAF50; -fx-text-fill: white;");
         exportExcelButton.setPrefSize(80, 25); // Kích thước nút Excel
 
-        actionButtonsBox.getChildren().addAll(searchButton, exportExcelButton);
+        exportPdfButton = createActionButton("PDF", "pdf-icon");
+        exportPdfButton.setStyle("-fx-background-color: #D9534F; -fx-text-fill: white;");
+        exportPdfButton.setPrefSize(80, 25);
+
+        printButton = createActionButton("In", "print-icon");
+        printButton.setStyle("-fx-background-color: #5BC0DE; -fx-text-fill: white;");
+        printButton.setPrefSize(80, 25);
+
+        actionButtonsBox.getChildren().addAll(searchButton, exportExcelButton, exportPdfButton, printButton);
 
         topFilterRow.getChildren().addAll(periodTypeBox, dateRangeBox, statusBox, actionButtonsBox);
-        filterContainer.getChildren().add(topFilterRow);
+
+        HBox analysisRow = new HBox(10);
+        analysisRow.setAlignment(Pos.CENTER_LEFT);
+        Label groupByLabel = new Label("Phân tích theo:");
+        groupByLabel.setTextFill(Color.BLACK);
+        groupByComboBox = new ComboBox<>(FXCollections.observableArrayList(CubeDimension.values()));
+        groupByComboBox.setValue(CubeDimension.TEACHER);
+        groupByComboBox.setPrefWidth(120);
+        groupByComboBox.setConverter(new StringConverter<CubeDimension>() {
+            @Override
+            public String toString(CubeDimension dimension) {
+                return dimension != null ? dimension.getLabel() : "";
+            }
+
+            @Override
+            public CubeDimension fromString(String label) {
+                return null;
+            }
+        });
+        analyzeButton = createActionButton("Phân tích", "analyze-icon");
+        analyzeButton.setStyle("-fx-background-color: #7E57C2; -fx-text-fill: white;");
+        analyzeButton.setPrefSize(100, 25);
+        analysisRow.getChildren().addAll(groupByLabel, groupByComboBox, analyzeButton);
+
+        filterContainer.getChildren().addAll(topFilterRow, analysisRow);
         filterBar.getChildren().add(filterContainer);
 
         if (!root.getChildren().contains(filterBar)) {
@@ -357,6 +402,8 @@ public class TeachingStatisticsView extends BaseScreenView {
 
         if (searchButton != null) searchButton.setOnAction(e -> handleSearch());
         if (exportExcelButton != null) exportExcelButton.setOnAction(e -> handleExportExcel());
+        if (exportPdfButton != null) exportPdfButton.setOnAction(e -> handleExportPdf());
+        if (printButton != null) printButton.setOnAction(e -> handlePrint());
     }
 
     private void loadData() {
@@ -441,21 +488,113 @@ public class TeachingStatisticsView extends BaseScreenView {
     }
 
     private void handleExportExcel() {
-        boolean success = controller.exportToExcel();
-        if (success) {
-            // Thay vì showSuccess ngay, controller nên trả về đường dẫn file hoặc thông báo cụ thể hơn
-            // Ví dụ: String filePath = controller.exportToExcel();
-            // if (filePath != null) showSuccess("Xuất Excel thành công: " + filePath);
-            showSuccess("Đang xử lý xuất file Excel..."); // Hoặc thông báo từ controller
+        ExportTask task = controller.exportToExcel();
+        if (task != null) {
+            // Xuất chạy nền; trackExport báo đường dẫn file khi xong
+            trackExport(task);
+            showSuccess("Đang xử lý xuất file Excel...");
         }
         else showError("Không thể xuất file Excel. Vui lòng thử lại sau.");
     }
 
+    private void handleExportPdf() {
+        ExportTask task = controller.exportToPdf();
+        if (task != null) {
+            trackExport(task);
+            showSuccess("Đang xử lý xuất file PDF...");
+        }
+        else showError("Không thể xuất file PDF. Vui lòng thử lại sau.");
+    }
+
+    private void handlePrint() {
+        ExportTask task = controller.print();
+        if (task != null) {
+            // File PDF được gửi tới máy in khi xuất xong
+            trackExport(task);
+            showSuccess("Đang chuẩn bị bản in...");
+        }
+        else showError("Không thể in thống kê. Vui lòng thử lại sau.");
+    }
+
+    private void handleAnalyze() {
+        LocalDate fromDate = fromDatePicker.getValue();
+        LocalDate toDate = toDatePicker.getValue();
+        if (fromDate == null || toDate == null) {
+            showError("Vui lòng chọn ngày bắt đầu và ngày kết thúc.");
+            return;
+        }
+        if (fromDate.isAfter(toDate)) {
+            showError("Ngày bắt đầu không thể sau ngày kết thúc.");
+            return;
+        }
+        CubeDimension groupBy = groupByComboBox.getValue() != null ? groupByComboBox.getValue() : CubeDimension.TEACHER;
+        controller.updateDateRange(fromDate, toDate);
+        controller.updateStatus(statusComboBox.getValue());
+        controller.updateGroupBy(groupBy);
+
+        // Lần đầu cube phải được nạp từ CSDL: chạy nền để không treo giao diện
+        Task<CubeResult> task = new Task<>() {
+            @Override
+            protected CubeResult call() {
+                return controller.queryCube();
+            }
+        };
+        task.setOnSucceeded(e -> {
+            analyzeButton.setDisable(false);
+            if (task.getValue() != null) {
+                showCubeResult(task.getValue());
+            } else {
+                showError("Không thể tải dữ liệu phân tích. Vui lòng thử lại sau.");
+            }
+        });
+        task.setOnFailed(e -> {
+            analyzeButton.setDisable(false);
+            showError("Không thể tải dữ liệu phân tích. Vui lòng thử lại sau.");
+        });
+        analyzeButton.setDisable(true);
+        Thread thread = new Thread(task, "teaching-cube-query");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void showCubeResult(CubeResult result) {
+        TableView<CubeResult.Row> table = new TableView<>();
+        for (int i = 0; i < result.getDimensions().size(); i++) {
+            int dimension = i;
+            table.getColumns().add(cubeColumn(result.getDimensions().get(i).getLabel(), row -> row.getLabel(dimension)));
+        }
+        table.getColumns().add(cubeColumn(CubeMeasure.SESSIONS.getLabel(),
+                row -> String.valueOf(row.get(CubeMeasure.SESSIONS))));
+        table.getColumns().add(cubeColumn("Số giờ dạy", row -> String.format("%.1f", row.getHours())));
+        table.getColumns().add(cubeColumn("Tỷ lệ có mặt", row -> String.format("%.1f%%", row.getAttendanceRate())));
+        table.setItems(FXCollections.observableArrayList(result.getRows()));
+        table.setPrefSize(640, 420);
+
+        CubeResult.Row total = result.getTotal();
+        Dialog<Void> dialog = new Dialog<>();
+        dialog.setTitle("Phân tích giảng dạy");
+        dialog.setHeaderText("Tổng: " + total.get(CubeMeasure.SESSIONS) + " buổi, " +
+                String.format("%.1f", total.getHours()) + " giờ");
+        dialog.getDialogPane().setContent(table);
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+        dialog.setResizable(true);
+        dialog.show();
+    }
+
+    private TableColumn<CubeResult.Row, String> cubeColumn(String title, Function<CubeResult.Row, String> value) {
+        TableColumn<CubeResult.Row, String> column = new TableColumn<>(title);
+        column.setCellValueFactory(data -> new SimpleStringProperty(value.apply(data.getValue())));
+        return column;
+    }
+
     @Override
     public void onActivate() {
         super.onActivate();
         if (searchButton != null) searchButton.setOnAction(e -> handleSearch());
         if (exportExcelButton != null) exportExcelButton.setOnAction(e -> handleExportExcel());
+        if (exportPdfButton != null) exportPdfButton.setOnAction(e -> handleExportPdf());
+        if (printButton != null) printButton.setOnAction(e -> handlePrint());
+        if (analyzeButton != null) analyzeButton.setOnAction(e -> handleAnalyze());
 
         // Khi kích hoạt màn hình này (màn hình Ngày), đảm bảo nút "Ngày" được active
         if (dayButton != null) dayButton.setStyle(activeStyle);
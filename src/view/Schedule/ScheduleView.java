@@ -15,7 +15,6 @@ import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * ScheduleView hiển thị lịch học theo tuần với các chức năng lọc và hiển thị thông tin lớp học.
@@ -37,6 +36,52 @@ public class ScheduleView extends BaseScreenView {
     // Map to store color assignments for classes
     private Map<String, String> classColorMap;
 
+    // Bảng lịch dạng "retained": các node được tạo một lần và tái sử dụng giữa các lần làm mới
+    private static final String DATE_LABEL_STYLE = "-fx-padding: 10; -fx-text-fill: black;";
+    private static final String TODAY_DATE_LABEL_STYLE = "-fx-padding: 10; -fx-text-fill: black; -fx-font-weight: bold; -fx-background-color: #e3f2fd;";
+    private static final String CELL_STYLE = "-fx-background-color: transparent;";
+    private static final String TODAY_CELL_STYLE = "-fx-background-color: #f5faff;";
+    private static final int MAX_RETAINED_SESSION_CELLS = 500;
+    private final Label[] dateLabels = new Label[7];
+    private final List<TimeSlotRow> timeSlotRows = new ArrayList<>(); // Hàng i hiển thị khung giờ thứ i (đã sắp xếp)
+    private final Map<String, SessionCell> sessionCells = new HashMap<>(); // session_id -> node đã tạo
+    private Label emptyLabel;
+    private int highlightedDay = -1;
+
+    /** Một hàng khung giờ: nhãn thời gian và 7 ô ngày. */
+    private static final class TimeSlotRow {
+        final Label timeLabel;
+        final ScrollPane[] cells = new ScrollPane[7];
+        final VBox[] containers = new VBox[7];
+        String timeSlot;
+
+        TimeSlotRow(Label timeLabel) {
+            this.timeLabel = timeLabel;
+        }
+
+        void setShown(boolean shown) {
+            timeLabel.setVisible(shown);
+            timeLabel.setManaged(shown);
+            for (ScrollPane cell : cells) {
+                cell.setVisible(shown);
+                cell.setManaged(shown);
+            }
+        }
+    }
+
+    /** Node hiển thị một buổi học; session hiện tại được cập nhật khi dữ liệu thay đổi. */
+    private static final class SessionCell {
+        final VBox box;
+        final Label titleLabel = new Label();
+        final Label teacherLabel = new Label();
+        final Label roomLabel = new Label();
+        ClassSession session;
+
+        SessionCell(VBox box) {
+            this.box = box;
+        }
+    }
+
     public ScheduleView() {
         super("Lịch học", "schedule");
         this.classColorMap = new HashMap<>();
@@ -163,6 +208,23 @@ public class ScheduleView extends BaseScreenView {
         dateLabel.setStyle("-fx-padding: 10;");
         grid.add(dateLabel, 0, 1);
 
+        // Nhãn ngày của từng cột - chỉ cập nhật nội dung khi đổi tuần
+        for (int i = 0; i < 7; i++) {
+            dateLabels[i] = new Label();
+            dateLabels[i].setStyle(DATE_LABEL_STYLE);
+            dateLabels[i].setAlignment(Pos.CENTER);
+            dateLabels[i].setPrefWidth(150);
+            grid.add(dateLabels[i], i + 1, 1);
+        }
+
+        emptyLabel = new Label("Không có lịch học");
+        emptyLabel.setStyle("-fx-padding: 10; -fx-alignment: center; -fx-text-fill: black;"); // Also set text color for empty message
+        emptyLabel.setMaxWidth(Double.MAX_VALUE);
+        emptyLabel.setVisible(false);
+        emptyLabel.setManaged(false);
+        // Add empty label spanning across columns 0 to 7 (8 columns total) in row 2
+        grid.add(emptyLabel, 0, 2, 8, 1);
+
         return grid;
     }
 
@@ -197,12 +259,10 @@ public class ScheduleView extends BaseScreenView {
     }
 
     /**
-     * Điền dữ liệu lịch học vào bảng đã được tạo sẵn
+     * Điền dữ liệu lịch học vào bảng đã được tạo sẵn.
+     * Các hàng, ô và node buổi học được tái sử dụng; chỉ phần khác biệt so với lần hiển thị trước được cập nhật.
      */
     private void populateSchedule() {
-        // Xóa tất cả các ô lịch trình (giữ lại tiêu đề)
-        clearScheduleGrid();
-
         // Lấy ngày bắt đầu của tuần hiện tại (đã được thiết lập để luôn là Thứ 2)
         LocalDate startDate = fromDatePicker.getValue();
         List<LocalDate> weekDates = new ArrayList<>();
@@ -210,75 +270,135 @@ public class ScheduleView extends BaseScreenView {
             weekDates.add(startDate.plusDays(i));
         }
 
-        // Thêm nhãn ngày vào hàng ngày
+        // Cập nhật nhãn ngày
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM");
         for (int i = 0; i < 7; i++) {
-            Label dateLabel = new Label(weekDates.get(i).format(formatter));
-            dateLabel.setStyle("-fx-padding: 10; -fx-text-fill: black;"); // Set text color to black
-            dateLabel.setAlignment(Pos.CENTER);
-            dateLabel.setPrefWidth(150);
-            // Add to grid cell for the correct day (i + 1 column)
-            // Check if cell exists before adding or remove previous date label if needed
-            // For simplicity, we clear the relevant row cells before adding new ones in clearScheduleGrid
-            scheduleGrid.add(dateLabel, i + 1, 1);
+            String text = weekDates.get(i).format(formatter);
+            if (!text.equals(dateLabels[i].getText())) {
+                dateLabels[i].setText(text);
+            }
         }
 
-        // Lấy các khoảng thời gian duy nhất và sắp xếp chúng
+        // Nhóm buổi học theo (ngày, khung giờ) trong một lần duyệt
+        Map<String, List<ClassSession>> sessionsByCell = new HashMap<>();
         Set<String> timeSlots = new HashSet<>();
         for (ClassSession session : classSessions) {
+            if (session == null || session.getDate() == null) {
+                continue;
+            }
+            int day = (int) (session.getDate().toEpochDay() - startDate.toEpochDay());
+            if (day < 0 || day > 6) {
+                continue;
+            }
             timeSlots.add(session.getTimeSlot());
+            sessionsByCell.computeIfAbsent(cellKey(day, session.getTimeSlot()), k -> new ArrayList<>()).add(session);
         }
 
         List<String> sortedTimeSlots = new ArrayList<>(timeSlots);
         // Sort time slots - assumes timeSlot is in a sortable format like "HH:mm - HH:mm"
         Collections.sort(sortedTimeSlots);
 
-        // Tạo các hàng khoảng thời gian
-        int rowIndex = 2;
-        for (String timeSlot : sortedTimeSlots) {
-            Label timeLabel = new Label(timeSlot);
-            timeLabel.setStyle("-fx-padding: 10; -fx-text-fill: black;"); // Set text color to black
-            timeLabel.setAlignment(Pos.CENTER);
-            scheduleGrid.add(timeLabel, 0, rowIndex);
+        // Bảo đảm đủ hàng, ẩn các hàng thừa thay vì xóa khỏi grid
+        while (timeSlotRows.size() < sortedTimeSlots.size()) {
+            timeSlotRows.add(createTimeSlotRow(timeSlotRows.size() + 2));
+        }
+        Set<String> shownSessionIds = new HashSet<>();
+        for (int rowIndex = 0; rowIndex < timeSlotRows.size(); rowIndex++) {
+            TimeSlotRow row = timeSlotRows.get(rowIndex);
+            if (rowIndex >= sortedTimeSlots.size()) {
+                row.timeSlot = null;
+                row.setShown(false);
+                for (VBox container : row.containers) {
+                    container.getChildren().clear();
+                }
+                continue;
+            }
+
+            String timeSlot = sortedTimeSlots.get(rowIndex);
+            if (!timeSlot.equals(row.timeSlot)) {
+                row.timeSlot = timeSlot;
+                row.timeLabel.setText(timeSlot);
+            }
+            row.setShown(true);
 
-            // Thêm ô phiên cho mỗi ngày trong khoảng thời gian này
             for (int day = 0; day < 7; day++) {
-                ScrollPane scrollPane = new ScrollPane();
-                scrollPane.setFitToWidth(true);
-                // Preserve the background color setting
-                scrollPane.setStyle("-fx-background-color: transparent;");
+                String key = cellKey(day, timeSlot);
+                VBox container = row.containers[day];
 
-                VBox dayContainer = new VBox(5);
-                dayContainer.setPadding(new Insets(5));
-                scrollPane.setContent(dayContainer);
+                List<Node> desired = new ArrayList<>();
+                for (ClassSession session : sessionsByCell.getOrDefault(key, Collections.emptyList())) {
+                    desired.add(getSessionCell(session).box);
+                    shownSessionIds.add(session.getId());
+                }
+                if (!container.getChildren().equals(desired)) {
+                    container.getChildren().setAll(desired);
+                }
+            }
+        }
 
-                // Add to the correct cell based on day index and row index
-                scheduleGrid.add(scrollPane, day + 1, rowIndex);
+        // Nếu không tìm thấy khoảng thời gian nào, hiển thị hàng trống
+        boolean empty = sortedTimeSlots.isEmpty();
+        emptyLabel.setVisible(empty);
+        emptyLabel.setManaged(empty);
 
-                LocalDate currentDate = weekDates.get(day);
+        // Giới hạn số node buổi học được giữ lại cho các tuần đã xem
+        if (sessionCells.size() > MAX_RETAINED_SESSION_CELLS) {
+            sessionCells.keySet().retainAll(shownSessionIds);
+        }
 
-                // Tìm các phiên cho ngày và khoảng thời gian này
-                List<ClassSession> daySessions = classSessions.stream()
-                        .filter(session -> session.getDate().equals(currentDate) &&
-                                session.getTimeSlot().equals(timeSlot))
-                        .collect(Collectors.toList());
+        updateTodayHighlight(startDate);
+    }
 
-                for (ClassSession session : daySessions) {
-                    VBox box = createSessionBox(session);
-                    dayContainer.getChildren().add(box);
-                }
-            }
+    private static String cellKey(int day, String timeSlot) {
+        return day + "|" + timeSlot;
+    }
 
-            rowIndex++;
+    private TimeSlotRow createTimeSlotRow(int gridRow) {
+        Label timeLabel = new Label();
+        timeLabel.setStyle("-fx-padding: 10; -fx-text-fill: black;"); // Set text color to black
+        timeLabel.setAlignment(Pos.CENTER);
+        scheduleGrid.add(timeLabel, 0, gridRow);
+
+        TimeSlotRow row = new TimeSlotRow(timeLabel);
+        for (int day = 0; day < 7; day++) {
+            ScrollPane scrollPane = new ScrollPane();
+            scrollPane.setFitToWidth(true);
+            // Preserve the background color setting
+            scrollPane.setStyle(day == highlightedDay ? TODAY_CELL_STYLE : CELL_STYLE);
+
+            VBox dayContainer = new VBox(5);
+            dayContainer.setPadding(new Insets(5));
+            scrollPane.setContent(dayContainer);
+
+            // Add to the correct cell based on day index and row index
+            scheduleGrid.add(scrollPane, day + 1, gridRow);
+            row.cells[day] = scrollPane;
+            row.containers[day] = dayContainer;
         }
+        return row;
+    }
 
-        // Nếu không tìm thấy khoảng thời gian nào, thêm một hàng trống
-        if (timeSlots.isEmpty()) {
-            Label emptyLabel = new Label("Không có lịch học");
-            emptyLabel.setStyle("-fx-padding: 10; -fx-alignment: center; -fx-text-fill: black;"); // Also set text color for empty message
-            emptyLabel.setMaxWidth(Double.MAX_VALUE);
-            // Add empty label spanning across columns 0 to 7 (8 columns total) in row 2
-            scheduleGrid.add(emptyLabel, 0, 2, 8, 1);
+    /**
+     * Tô sáng cột của ngày hôm nay; chỉ các ô của cột cũ và cột mới được cập nhật.
+     */
+    private void updateTodayHighlight(LocalDate weekStart) {
+        long offset = LocalDate.now().toEpochDay() - weekStart.toEpochDay();
+        int today = offset >= 0 && offset <= 6 ? (int) offset : -1;
+        if (today == highlightedDay) {
+            return;
+        }
+        setDayHighlighted(highlightedDay, false);
+        setDayHighlighted(today, true);
+        highlightedDay = today;
+    }
+
+    private void setDayHighlighted(int day, boolean highlighted) {
+        if (day < 0) {
+            return;
+        }
+        dateLabels[day].setStyle(highlighted ? TODAY_DATE_LABEL_STYLE : DATE_LABEL_STYLE);
+        for (TimeSlotRow row : timeSlotRows) {
+            row.cells[day].setStyle(highlighted ? TODAY_CELL_STYLE : CELL_STYLE);
         }
     }
 
@@ -313,67 +433,59 @@ public class ScheduleView extends BaseScreenView {
     }
 
     /**
-     * Xóa dữ liệu trong bảng lịch học hiện tại để chuẩn bị điền dữ liệu mới
-     * Chỉ giữ lại 2 hàng đầu (hàng tiêu đề và hàng ngày)
+     * Trả về node của buổi học, tái sử dụng node đã tạo cho cùng session_id.
+     * Chỉ nội dung nhãn thay đổi mới được cập nhật.
      */
-    private void clearScheduleGrid() {
-        // Lấy tất cả các node hiện tại trong grid
-        List<Node> toRemove = new ArrayList<>();
-
-        // Xác định các node cần xóa - tất cả các node ở hàng > 1
-        for (Node node : scheduleGrid.getChildren()) {
-            Integer rowIndex = GridPane.getRowIndex(node);
-            if (rowIndex != null && rowIndex > 1) {
-                toRemove.add(node);
+    private SessionCell getSessionCell(ClassSession session) {
+        SessionCell cell = session.getId() != null ? sessionCells.get(session.getId()) : null;
+        if (cell == null) {
+            cell = createSessionCell();
+            if (session.getId() != null) {
+                sessionCells.put(session.getId(), cell);
             }
         }
-
-        // Also remove the previous date labels in row 1 (columns 1 to 7)
-        for (Node node : scheduleGrid.getChildren()) {
-            Integer rowIndex = GridPane.getRowIndex(node);
-            Integer colIndex = GridPane.getColumnIndex(node);
-            if (rowIndex != null && rowIndex == 1 && colIndex != null && colIndex > 0) {
-                toRemove.add(node);
-            }
+        cell.session = session;
+        setTextIfChanged(cell.titleLabel, session.getCourseName());
+        setTextIfChanged(cell.teacherLabel, session.getTeacher());
+        setTextIfChanged(cell.roomLabel, session.getRoom());
+        String style = sessionBoxStyle(session, false);
+        if (!style.equals(cell.box.getStyle())) {
+            cell.box.setStyle(style);
         }
+        return cell;
+    }
 
+    private static void setTextIfChanged(Label label, String text) {
+        if (!Objects.equals(label.getText(), text)) {
+            label.setText(text);
+        }
+    }
 
-        // Xóa các node đã xác định
-        scheduleGrid.getChildren().removeAll(toRemove);
+    private String sessionBoxStyle(ClassSession session, boolean hovered) {
+        return "-fx-background-color: " + getColorForClass(session.getCourseName()) +
+                "; -fx-background-radius: 5; -fx-border-radius: 5;" +
+                (hovered ? " -fx-effect: dropshadow(three-pass-box, rgba(0,0,0,0.4), 5, 0, 0, 0);" : "");
     }
 
-    // Sửa phương thức createSessionBox để có kiểm tra
-    private VBox createSessionBox(ClassSession session) {
+    private SessionCell createSessionCell() {
         VBox box = new VBox(5);
         box.setPadding(new Insets(8));
-        box.setStyle("-fx-background-color: " + getColorForClass(session.getCourseName()) +
-                "; -fx-background-radius: 5; -fx-border-radius: 5;");
-
-        Label titleLabel = new Label(session.getCourseName());
-        titleLabel.setStyle("-fx-font-weight: bold;");
-        titleLabel.setWrapText(true);
-
-        Label teacherLabel = new Label(session.getTeacher());
-        teacherLabel.setStyle("-fx-font-size: 11px;");
+        SessionCell cell = new SessionCell(box);
 
-        Label roomLabel = new Label(session.getRoom());
-        roomLabel.setStyle("-fx-font-size: 11px;");
+        cell.titleLabel.setStyle("-fx-font-weight: bold;");
+        cell.titleLabel.setWrapText(true);
+        cell.teacherLabel.setStyle("-fx-font-size: 11px;");
+        cell.roomLabel.setStyle("-fx-font-size: 11px;");
 
-        box.getChildren().addAll(titleLabel, teacherLabel, roomLabel);
+        box.getChildren().addAll(cell.titleLabel, cell.teacherLabel, cell.roomLabel);
 
         // Thêm hiệu ứng khi hover
-        box.setOnMouseEntered(e ->
-                box.setStyle("-fx-background-color: " + getColorForClass(session.getCourseName()) +
-                        "; -fx-background-radius: 5; -fx-border-radius: 5; -fx-effect: dropshadow(three-pass-box, rgba(0,0,0,0.4), 5, 0, 0, 0);")
-        );
-
-        box.setOnMouseExited(e ->
-                box.setStyle("-fx-background-color: " + getColorForClass(session.getCourseName()) +
-                        "; -fx-background-radius: 5; -fx-border-radius: 5;")
-        );
+        box.setOnMouseEntered(e -> box.setStyle(sessionBoxStyle(cell.session, true)));
+        box.setOnMouseExited(e -> box.setStyle(sessionBoxStyle(cell.session, false)));
 
         // Add click handler to show more details with proper checking using routeExists
         box.setOnMouseClicked(e -> {
+            ClassSession session = cell.session;
             System.out.println("========== CLICK VÀO LỊCH ==========");
             System.out.println("Session được chọn: " + (session != null ? session.getCourseName() : "NULL"));
             System.out.println("mainController trong ScheduleView: " + (mainController != null ? "CÓ GIÁ TRỊ" : "NULL"));
@@ -396,7 +508,7 @@ public class ScheduleView extends BaseScreenView {
         // Thêm cursor pointer để chỉ ra rằng phần tử này có thể click
         box.setCursor(javafx.scene.Cursor.HAND);
 
-        return box;
+        return cell;
     }
 
     private String getColorForClass(String className) {
@@ -439,6 +551,7 @@ public class ScheduleView extends BaseScreenView {
     @Override
     public void handleSystemMessage(String message, Object data) {
         if ("REFRESH_SCHEDULE".equals(message)) {
+            scheduleController.clearWeekCache(); // Dữ liệu có thể đã đổi ngoài ứng dụng này
             refreshView();
         } else if ("FILTER_BY_TEACHER".equals(message) && data instanceof String) {
             String teacherName = (String) data;
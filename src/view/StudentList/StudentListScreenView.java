@@ -24,6 +24,9 @@ import src.model.person.Permission; // Import enum Permission (đảm bảo đư
 import src.model.person.RolePermissions;
 import src.model.system.course.Course;
 import src.view.components.Screen.BaseScreenView;
+import src.dao.Report.ReportExportDAO;
+import src.utils.ExportTask;
+import src.utils.TableWriter;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -917,7 +920,10 @@ public class StudentListScreenView extends BaseScreenView {
 
         addItem.setOnAction(e -> showInfo("Thêm học viên mới"));
         importItem.setOnAction(e -> showInfo("Nhập danh sách học viên từ Excel"));
-        exportItem.setOnAction(e -> showInfo("Xuất danh sách học viên sang Excel"));
+        exportItem.setOnAction(e -> {
+            trackExport(ExportTask.start(ReportExportDAO.studentList(), TableWriter.Format.XLSX));
+            showInfo("Đang xuất danh sách học viên sang Excel...");
+        });
         settingsItem.setOnAction(e -> showInfo("Cài đặt hiển thị"));
 
         contextMenu.getItems().addAll(addItem, importItem, exportItem, new SeparatorMenuItem(), settingsItem);
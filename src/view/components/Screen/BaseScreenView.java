@@ -7,6 +7,7 @@ import javafx.scene.layout.VBox;
 import src.controller.NavigationController;
 import src.controller.MainController;
 import src.model.person.Person;
+import src.utils.ExportTask;
 
 /**
  * Lớp cơ sở triển khai interface ScreenView.
@@ -173,6 +174,16 @@ public abstract class BaseScreenView implements ScreenView {
         System.out.println("Success: " + message);
     }
 
+    /**
+     * Theo dõi một tác vụ xuất file chạy nền: khi xong báo số dòng và đường dẫn file, khi lỗi báo lỗi
+     * @param task Tác vụ xuất đã được khởi chạy (gọi trên JavaFX thread)
+     */
+    public void trackExport(ExportTask task) {
+        task.setOnSucceeded(e -> showSuccess("Đã xuất " + task.getValue() + " dòng vào " + task.getTarget()));
+        task.setOnFailed(e -> showError("Không thể xuất file: " +
+                (task.getException() != null ? task.getException().getMessage() : "lỗi không xác định")));
+    }
+
     /**
      * Xác nhận hành động với người dùng
      * @param message Nội dung xác nhận
@@ -20,7 +20,7 @@ import src.dao.Person.StudentDAO; // Unused, but kept as in original
 import src.dao.Person.TeacherDAO;
 import src.dao.Person.UserDAO;
 import src.model.holidays.Holiday;
-import src.model.system.course.Course;
+import src.model.system.course.CourseSummary;
 import src.model.person.Teacher;
 import src.utils.DaoManager;
 import src.view.components.Screen.BaseScreenView;
@@ -226,11 +226,11 @@ public class SettingsView extends BaseScreenView {
         // Course data loading
         if (courseDAO != null) {
             try {
-                List<Course> coursesFromDB = courseDAO.findAll();
+                List<CourseSummary> coursesFromDB = courseDAO.findAllSummaries(); // Chỉ cần thông tin tóm tắt
                 if (coursesFromDB.isEmpty()) {
                     System.out.println("[SettingView] Không tìm thấy khóa học nào trong cơ sở dữ liệu.");
                 }
-                for (Course course : coursesFromDB) {
+                for (CourseSummary course : coursesFromDB) {
                     String durationStr = "N/A";
                     if (course.getCourseStartTime() != null && course.getCourseEndTime() != null) {
                         long minutes = java.time.Duration.between(course.getCourseStartTime(), course.getCourseEndTime()).toMinutes();